@@ -249,6 +249,11 @@ public final class ClientBuilder {
     private Client newClient(Class<?> interfaceClass) {
         final Scheme scheme = Scheme.parse(uri.getScheme());
         final SessionProtocol sessionProtocol = scheme.sessionProtocol();
+        if (!SessionProtocol.ofHttp().contains(sessionProtocol)) {
+            // e.g. TFRAMED, which is available only on the server side.
+            throw new IllegalArgumentException(
+                    "unsupported scheme: " + scheme + " (expected: an HTTP session protocol)");
+        }
 
         final RemoteInvoker remoteInvoker = remoteInvokerFactory.getInvoker(sessionProtocol);
         if (remoteInvoker == null) {
@@ -17,6 +17,7 @@ package com.linecorp.armeria.client;
 
 import java.lang.reflect.Method;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import com.linecorp.armeria.common.Scheme;
 import com.linecorp.armeria.common.ServiceInvocationContext;
@@ -47,6 +48,17 @@ public interface ClientCodec {
     <T> T decodeResponse(ServiceInvocationContext ctx, ByteBuf content, Object originalResponse)
             throws Exception;
 
+    /**
+     * Returns the {@link Executor} which invokes
+     * {@link #decodeResponse(ServiceInvocationContext, ByteBuf, Object)} for the specified response content,
+     * or {@code null} to invoke it in the event loop. Decoding a large response in a separate
+     * {@link Executor} keeps the event loop from stalling the other sessions it serves.
+     * This method is invoked in the event loop.
+     */
+    default Executor decodeExecutor(ServiceInvocationContext ctx, ByteBuf content) {
+        return null;
+    }
+
     /**
      * Returns {@code true} if the invocation result that will be returned to calling code asynchronously.
      */
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * A {@link Client} decorator that decodes a large response outside the event loop, so that decoding
+ * a multi-megabyte response, e.g. a large Thrift reply, does not stall the other sessions served by
+ * the event loop. A response whose content is shorter than the threshold is decoded in the event loop
+ * as usual, which saves a thread hand-off.
+ */
+public class DecodeOffloadingClient extends DecoratingClient {
+
+    /**
+     * Creates a new {@link Client} decorator that decodes the responses whose content is not shorter than
+     * {@code sizeThreshold} bytes using the specified {@link Executor}. If the {@link Executor} rejects
+     * a response, the response is decoded in the event loop.
+     *
+     * @param sizeThreshold the minimum length of the response content to decode in {@code executor}
+     * @param executor the {@link Executor} which runs CPU-bound tasks such as decoding
+     */
+    public static Function<Client, Client> newDecorator(int sizeThreshold, Executor executor) {
+        requireNonNull(executor, "executor");
+        if (sizeThreshold <= 0) {
+            throw new IllegalArgumentException("sizeThreshold: " + sizeThreshold + " (expected: > 0)");
+        }
+
+        return client -> new DecodeOffloadingClient(client, sizeThreshold, executor);
+    }
+
+    DecodeOffloadingClient(Client client, int sizeThreshold, Executor executor) {
+        super(client, codec -> new DecodeOffloadingClientCodec(codec, sizeThreshold, executor),
+              Function.identity());
+    }
+}
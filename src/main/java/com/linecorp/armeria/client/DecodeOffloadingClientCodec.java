@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client;
+
+import java.util.concurrent.Executor;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Decorates a {@link ClientCodec} to decode a large response in a separate {@link Executor}.
+ */
+final class DecodeOffloadingClientCodec extends DecoratingClientCodec {
+
+    private final int sizeThreshold;
+    private final Executor executor;
+
+    DecodeOffloadingClientCodec(ClientCodec codec, int sizeThreshold, Executor executor) {
+        super(codec);
+        this.sizeThreshold = sizeThreshold;
+        this.executor = executor;
+    }
+
+    @Override
+    public Executor decodeExecutor(ServiceInvocationContext ctx, ByteBuf content) {
+        if (content.readableBytes() >= sizeThreshold) {
+            return executor;
+        }
+
+        // Let the decorated codec choose, which decodes in the event loop by default.
+        return delegate().decodeExecutor(ctx, content);
+    }
+}
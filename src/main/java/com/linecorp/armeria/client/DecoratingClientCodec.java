@@ -19,6 +19,7 @@ package com.linecorp.armeria.client;
 import static java.util.Objects.requireNonNull;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
 
 import com.linecorp.armeria.common.ServiceInvocationContext;
 import com.linecorp.armeria.common.SessionProtocol;
@@ -69,6 +70,11 @@ public abstract class DecoratingClientCodec implements ClientCodec {
         return delegate().decodeResponse(ctx, content, originalResponse);
     }
 
+    @Override
+    public Executor decodeExecutor(ServiceInvocationContext ctx, ByteBuf content) {
+        return delegate().decodeExecutor(ctx, content);
+    }
+
     @Override
     public boolean isAsyncClient() {
         return delegate().isAsyncClient();
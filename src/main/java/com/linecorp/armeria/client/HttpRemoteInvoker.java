@@ -30,6 +30,8 @@ import java.util.EnumSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -47,6 +49,7 @@ import com.linecorp.armeria.client.pool.PoolKey;
 import com.linecorp.armeria.common.Scheme;
 import com.linecorp.armeria.common.ServiceInvocationContext;
 import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.jfr.FlightRecorderEvents;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
@@ -95,16 +98,27 @@ final class HttpRemoteInvoker implements RemoteInvoker {
         final InetSocketAddress remoteAddress = convertToSocketAddress(uri, sessionProtocol.isTls());
 
         final PoolKey poolKey = new PoolKey(remoteAddress, sessionProtocol);
+        final long acquireStartNanos =
+                FlightRecorderEvents.isClientChannelAcquireEnabled() ? System.nanoTime() : 0;
         final Future<Channel> channelFuture = pool(eventLoop).acquire(poolKey);
 
         final Promise<T> resultPromise = eventLoop.newPromise();
 
         codec.prepareRequest(method, args, resultPromise);
         if (channelFuture.isSuccess()) {
+            if (acquireStartNanos != 0) {
+                FlightRecorderEvents.clientChannelAcquire(remoteAddress, sessionProtocol, true, true,
+                                                          System.nanoTime() - acquireStartNanos);
+            }
             Channel ch = channelFuture.getNow();
             invoke0(codec, ch, method, args, options, resultPromise, poolKey);
         } else {
             channelFuture.addListener((Future<Channel> future) -> {
+                if (acquireStartNanos != 0) {
+                    FlightRecorderEvents.clientChannelAcquire(remoteAddress, sessionProtocol,
+                                                              future.isSuccess(), false,
+                                                              System.nanoTime() - acquireStartNanos);
+                }
                 if (future.isSuccess()) {
                     Channel ch = future.getNow();
                     invoke0(codec, ch, method, args, options, resultPromise, poolKey);
@@ -204,6 +218,29 @@ final class HttpRemoteInvoker implements RemoteInvoker {
 
     private static <T> void decodeResult(ClientCodec codec, Promise<T> resultPromise,
                                          ServiceInvocationContext ctx, FullHttpResponse response) {
+        final Executor decodeExecutor;
+        try {
+            decodeExecutor = codec.decodeExecutor(ctx, response.content());
+        } catch (Throwable e) {
+            ReferenceCountUtil.release(response);
+            ctx.rejectPromise(resultPromise, e);
+            return;
+        }
+
+        if (decodeExecutor != null) {
+            try {
+                decodeExecutor.execute(() -> decodeResultNow(codec, resultPromise, ctx, response));
+                return;
+            } catch (RejectedExecutionException e) {
+                logger.warn("{} rejected to decode a response; decoding in the event loop", decodeExecutor, e);
+            }
+        }
+
+        decodeResultNow(codec, resultPromise, ctx, response);
+    }
+
+    private static <T> void decodeResultNow(ClientCodec codec, Promise<T> resultPromise,
+                                            ServiceInvocationContext ctx, FullHttpResponse response) {
         try {
             ctx.resolvePromise(resultPromise, codec.decodeResponse(ctx, response.content(), response));
         } catch (Throwable e) {
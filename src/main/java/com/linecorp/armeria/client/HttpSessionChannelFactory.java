@@ -29,6 +29,7 @@ import java.util.function.Function;
 
 import com.linecorp.armeria.client.pool.PoolKey;
 import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.jfr.FlightRecorderEvents;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
@@ -108,6 +109,8 @@ class HttpSessionChannelFactory implements Function<PoolKey, Future<Channel>> {
                                       Future<Void> connectFuture, Promise<Channel> sessionPromise) {
         assert connectFuture.isDone();
         if (connectFuture.isSuccess()) {
+            FlightRecorderEvents.connectionOpen(ch, false);
+            ch.closeFuture().addListener(f -> FlightRecorderEvents.connectionClose(ch, false));
             watchSessionActive(protocol, ch, sessionPromise);
         } else {
             sessionPromise.setFailure(connectFuture.cause());
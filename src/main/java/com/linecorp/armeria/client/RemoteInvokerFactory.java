@@ -145,6 +145,7 @@ public final class RemoteInvokerFactory implements AutoCloseable {
         baseBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
                              ConvertUtils.safeLongToInt(options.connectTimeoutMillis()));
         baseBootstrap.option(ChannelOption.SO_KEEPALIVE, true);
+        baseBootstrap.option(ChannelOption.ALLOCATOR, options.byteBufAllocator());
 
         final Optional<EventLoopGroup> eventLoopOption = options.eventLoopGroup();
         if (eventLoopOption.isPresent()) {
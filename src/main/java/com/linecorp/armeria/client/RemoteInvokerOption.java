@@ -27,6 +27,7 @@ import com.linecorp.armeria.client.pool.KeyedChannelPoolHandler;
 import com.linecorp.armeria.client.pool.PoolKey;
 import com.linecorp.armeria.common.util.AbstractOption;
 
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.resolver.AddressResolverGroup;
@@ -97,6 +98,12 @@ public class RemoteInvokerOption<T> extends AbstractOption<T> {
      */
     public static final RemoteInvokerOption<Boolean> USE_HTTP2_PREFACE = valueOf("USE_HTTP2_PREFACE");
 
+    /**
+     * The {@link ByteBufAllocator} used by the connections made by the {@link RemoteInvoker}.
+     */
+    public static final RemoteInvokerOption<ByteBufAllocator> BYTE_BUF_ALLOCATOR =
+            valueOf("BYTE_BUF_ALLOCATOR");
+
     /**
      * Returns the {@link RemoteInvokerOption} of the specified name.
      */
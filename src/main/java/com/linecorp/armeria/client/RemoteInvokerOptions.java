@@ -16,6 +16,7 @@
 package com.linecorp.armeria.client;
 
 import static com.linecorp.armeria.client.RemoteInvokerOption.ADDRESS_RESOLVER_GROUP;
+import static com.linecorp.armeria.client.RemoteInvokerOption.BYTE_BUF_ALLOCATOR;
 import static com.linecorp.armeria.client.RemoteInvokerOption.CONNECT_TIMEOUT;
 import static com.linecorp.armeria.client.RemoteInvokerOption.EVENT_LOOP_GROUP;
 import static com.linecorp.armeria.client.RemoteInvokerOption.IDLE_TIMEOUT;
@@ -41,6 +42,7 @@ import com.linecorp.armeria.client.pool.KeyedChannelPoolHandler;
 import com.linecorp.armeria.client.pool.PoolKey;
 import com.linecorp.armeria.common.util.AbstractOptions;
 
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.EventLoopGroup;
 import io.netty.resolver.AddressResolverGroup;
 
@@ -230,4 +232,8 @@ public class RemoteInvokerOptions extends AbstractOptions {
     public boolean useHttp2Preface() {
         return getOrElse(USE_HTTP2_PREFACE, DEFAULT_USE_HTTP2_PREFACE);
     }
+
+    public ByteBufAllocator byteBufAllocator() {
+        return getOrElse(BYTE_BUF_ALLOCATOR, ByteBufAllocator.DEFAULT);
+    }
 }
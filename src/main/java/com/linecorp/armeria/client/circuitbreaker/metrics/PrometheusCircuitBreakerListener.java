@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client.circuitbreaker.metrics;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.linecorp.armeria.client.circuitbreaker.CircuitBreaker;
+import com.linecorp.armeria.client.circuitbreaker.CircuitBreakerListener;
+import com.linecorp.armeria.client.circuitbreaker.CircuitState;
+import com.linecorp.armeria.client.circuitbreaker.EventCount;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusCollector;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+
+/**
+ * A {@link CircuitBreakerListener} which monitors the status of {@link CircuitBreaker}s and exposes them
+ * in the Prometheus text format. Each {@link CircuitBreaker} is distinguished by the {@code name} label.
+ *
+ * <table summary="metrics exposed by this class">
+ * <tr><th>metric name</th><th>type</th><th>description</th></tr>
+ *
+ * <tr><td>{@code armeria_circuit_breaker_state}</td><td>gauge</td>
+ * <td>{@code 1} for the current state of the circuit, labeled with {@code state}, and {@code 0} for the
+ * other states.</td></tr>
+ *
+ * <tr><td>{@code armeria_circuit_breaker_transitions_total}</td><td>counter</td>
+ * <td>The number of times that the circuit state has changed to the state labeled with
+ * {@code state}.</td></tr>
+ *
+ * <tr><td>{@code armeria_circuit_breaker_rejected_requests_total}</td><td>counter</td>
+ * <td>The number of requests that is rejected by the circuit breaker.</td></tr>
+ *
+ * <tr><td>{@code armeria_circuit_breaker_window_requests}</td><td>gauge</td>
+ * <td>The count of requests in the counter time window, labeled with {@code result}.</td></tr>
+ * </table>
+ */
+public final class PrometheusCircuitBreakerListener implements CircuitBreakerListener, PrometheusCollector {
+
+    private static final CircuitState[] STATES = CircuitState.values();
+    private static final String[] STATE_LABELS = new String[STATES.length];
+
+    static {
+        for (CircuitState s : STATES) {
+            STATE_LABELS[s.ordinal()] = s.name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private final Map<String, Metrics> metricsMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStateChanged(CircuitBreaker circuitBreaker, CircuitState state) {
+        final Metrics metrics = metricsOf(circuitBreaker);
+        metrics.state = state;
+        metrics.transitions[state.ordinal()].increment();
+    }
+
+    @Override
+    public void onEventCountUpdated(CircuitBreaker circuitBreaker, EventCount eventCount) {
+        metricsOf(circuitBreaker).latestEventCount = eventCount;
+    }
+
+    @Override
+    public void onRequestRejected(CircuitBreaker circuitBreaker) {
+        metricsOf(circuitBreaker).requestRejected.increment();
+    }
+
+    private Metrics metricsOf(CircuitBreaker circuitBreaker) {
+        return metricsMap.computeIfAbsent(circuitBreaker.name(), name -> new Metrics());
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        final Collection<Map.Entry<String, Metrics>> entries = metricsMap.entrySet();
+
+        out.family("armeria_circuit_breaker_state", Type.GAUGE, "The current state of the circuit.");
+        for (Map.Entry<String, Metrics> e : entries) {
+            final CircuitState state = e.getValue().state;
+            for (CircuitState s : STATES) {
+                out.sample("armeria_circuit_breaker_state").label("name", e.getKey())
+                   .label("state", STATE_LABELS[s.ordinal()]).value(s == state ? 1 : 0);
+            }
+        }
+
+        out.family("armeria_circuit_breaker_transitions_total", Type.COUNTER,
+                   "The number of times that the circuit state has changed.");
+        for (Map.Entry<String, Metrics> e : entries) {
+            final LongAdder[] transitions = e.getValue().transitions;
+            for (CircuitState s : STATES) {
+                out.sample("armeria_circuit_breaker_transitions_total").label("name", e.getKey())
+                   .label("state", STATE_LABELS[s.ordinal()]).value(transitions[s.ordinal()].sum());
+            }
+        }
+
+        out.family("armeria_circuit_breaker_rejected_requests_total", Type.COUNTER,
+                   "The number of requests that is rejected by the circuit breaker.");
+        for (Map.Entry<String, Metrics> e : entries) {
+            out.sample("armeria_circuit_breaker_rejected_requests_total").label("name", e.getKey())
+               .value(e.getValue().requestRejected.sum());
+        }
+
+        out.family("armeria_circuit_breaker_window_requests", Type.GAUGE,
+                   "The count of requests in the counter time window.");
+        for (Map.Entry<String, Metrics> e : entries) {
+            final EventCount count = e.getValue().latestEventCount;
+            out.sample("armeria_circuit_breaker_window_requests").label("name", e.getKey())
+               .label("result", "success").value(count.success());
+            out.sample("armeria_circuit_breaker_window_requests").label("name", e.getKey())
+               .label("result", "failure").value(count.failure());
+        }
+    }
+
+    private static final class Metrics {
+        volatile CircuitState state = CircuitState.CLOSED;
+        volatile EventCount latestEventCount = EventCount.ZERO;
+        final LongAdder[] transitions = new LongAdder[STATES.length];
+        final LongAdder requestRejected = new LongAdder();
+
+        Metrics() {
+            for (int i = 0; i < transitions.length; i++) {
+                transitions[i] = new LongAdder();
+            }
+        }
+    }
+}
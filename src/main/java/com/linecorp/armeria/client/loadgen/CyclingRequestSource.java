@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client.loadgen;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linecorp.armeria.client.http.SimpleHttpRequest;
+import com.linecorp.armeria.client.http.SimpleHttpRequestBuilder;
+import com.linecorp.armeria.common.capture.CapturedExchange;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+
+final class CyclingRequestSource implements RequestSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(CyclingRequestSource.class);
+
+    /**
+     * The request headers which are not replayed because they are either hop-by-hop or set by the client.
+     */
+    private static final Set<String> EXCLUDED_HEADERS;
+
+    static {
+        final Set<String> excludedHeaders = new HashSet<>();
+        Collections.addAll(excludedHeaders,
+                           HttpHeaderNames.HOST.toString(),
+                           HttpHeaderNames.CONTENT_LENGTH.toString(),
+                           HttpHeaderNames.CONNECTION.toString(),
+                           "keep-alive",
+                           "proxy-connection",
+                           HttpHeaderNames.TRANSFER_ENCODING.toString(),
+                           HttpHeaderNames.TE.toString(),
+                           HttpHeaderNames.TRAILER.toString(),
+                           HttpHeaderNames.UPGRADE.toString(),
+                           "http2-settings");
+        EXCLUDED_HEADERS = Collections.unmodifiableSet(excludedHeaders);
+    }
+
+    static CyclingRequestSource of(Iterable<SimpleHttpRequest> requests) {
+        requireNonNull(requests, "requests");
+        final List<SimpleHttpRequest> list = new ArrayList<>();
+        requests.forEach(list::add);
+        return new CyclingRequestSource(list.toArray(new SimpleHttpRequest[list.size()]));
+    }
+
+    static CyclingRequestSource ofCapturedExchanges(Iterable<CapturedExchange> exchanges) {
+        requireNonNull(exchanges, "exchanges");
+        final List<SimpleHttpRequest> list = new ArrayList<>();
+        for (CapturedExchange e : exchanges) {
+            final SimpleHttpRequest req = toRequest(e);
+            if (req != null) {
+                list.add(req);
+            }
+        }
+        return new CyclingRequestSource(list.toArray(new SimpleHttpRequest[list.size()]));
+    }
+
+    private static SimpleHttpRequest toRequest(CapturedExchange e) {
+        final SimpleHttpRequestBuilder builder;
+        switch (e.httpMethod()) {
+        case "GET":
+            builder = SimpleHttpRequestBuilder.forGet(e.path());
+            break;
+        case "POST":
+            builder = SimpleHttpRequestBuilder.forPost(e.path());
+            break;
+        case "PUT":
+            builder = SimpleHttpRequestBuilder.forPut(e.path());
+            break;
+        case "PATCH":
+            builder = SimpleHttpRequestBuilder.forPatch(e.path());
+            break;
+        case "DELETE":
+            builder = SimpleHttpRequestBuilder.forDelete(e.path());
+            break;
+        case "HEAD":
+            builder = SimpleHttpRequestBuilder.forHead(e.path());
+            break;
+        case "OPTIONS":
+            builder = SimpleHttpRequestBuilder.forOptions(e.path());
+            break;
+        default:
+            logger.debug("Skipping a captured exchange with an unsupported HTTP method: {}", e);
+            return null;
+        }
+
+        for (Entry<String, String> h : e.requestHeaders()) {
+            final String name = h.getKey().toLowerCase(Locale.US);
+            if (name.isEmpty() || name.charAt(0) == ':' || name.startsWith("x-http2-") ||
+                EXCLUDED_HEADERS.contains(name)) {
+                // Skip the HTTP/2 pseudo headers, the headers added by the HTTP/2-to-HTTP/1 conversion
+                // and the hop-by-hop headers.
+                continue;
+            }
+            builder.header(name, h.getValue());
+        }
+
+        return builder.content(e.requestContent()).build();
+    }
+
+    private final SimpleHttpRequest[] requests;
+    private int index;
+
+    CyclingRequestSource(SimpleHttpRequest[] requests) {
+        if (requests.length == 0) {
+            throw new IllegalArgumentException("requests is empty.");
+        }
+        for (SimpleHttpRequest r : requests) {
+            requireNonNull(r, "requests contains null.");
+        }
+        this.requests = requests;
+    }
+
+    @Override
+    public SimpleHttpRequest next() {
+        final SimpleHttpRequest[] requests = this.requests;
+        final SimpleHttpRequest req = requests[index];
+        if (++index == requests.length) {
+            index = 0;
+        }
+        return req;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(requests: " + requests.length + ')';
+    }
+}
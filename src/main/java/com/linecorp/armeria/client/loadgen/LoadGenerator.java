@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client.loadgen;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linecorp.armeria.client.http.SimpleHttpClient;
+import com.linecorp.armeria.client.http.SimpleHttpRequest;
+import com.linecorp.armeria.client.http.SimpleHttpResponse;
+import com.linecorp.armeria.common.metrics.LatencyHistogram;
+
+import io.netty.util.concurrent.Future;
+
+/**
+ * Sends the requests supplied by a {@link RequestSource} at a fixed rate and records their latencies.
+ *
+ * <p>The load is open-loop; the start time of each request is scheduled upfront regardless of how long
+ * the previous requests take, and the latency of a request is measured from its scheduled start time
+ * rather than the time it was actually sent. Therefore, a stall of the server or the client is reflected
+ * in the latencies of all requests which should have been sent during the stall, instead of only one
+ * request, i.e. the latencies are corrected for the coordinated omission. The uncorrected latencies are
+ * recorded separately as {@link LoadGeneratorResult#serviceTime()}.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * LoadGenerator generator = new LoadGeneratorBuilder(
+ *         RemoteInvokerFactory.DEFAULT, "http://127.0.0.1:8080",
+ *         RequestSource.ofCapturedExchanges(new TrafficCaptureReader(Paths.get("/var/tmp/capture"))))
+ *         .rate(5000)
+ *         .warmupMillis(5000)
+ *         .durationMillis(30000)
+ *         .build();
+ * LoadGeneratorResult result = generator.run();
+ * System.err.println(result.latency().valueAtPercentile(99.9));
+ * }</pre>
+ *
+ * @see LoadGeneratorBuilder
+ */
+public final class LoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final SimpleHttpClient client;
+    private final RequestSource requestSource;
+    private final int rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int maxOutstandingRequests;
+
+    LoadGenerator(SimpleHttpClient client, RequestSource requestSource, int rate,
+                  long warmupNanos, long durationNanos, int maxOutstandingRequests) {
+        this.client = client;
+        this.requestSource = requestSource;
+        this.rate = rate;
+        this.warmupNanos = warmupNanos;
+        this.durationNanos = durationNanos;
+        this.maxOutstandingRequests = maxOutstandingRequests;
+    }
+
+    /**
+     * Sends the requests for the warm-up period and then the measurement period, and waits until all
+     * responses are received. The requests sent during the warm-up period are not recorded.
+     *
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    public LoadGeneratorResult run() throws InterruptedException {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final LongAdder successes = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final Semaphore outstandingRequests = new Semaphore(maxOutstandingRequests);
+
+        final double intervalNanos = (double) TimeUnit.SECONDS.toNanos(1) / rate;
+        final long totalNanos = warmupNanos + durationNanos;
+        final long startNanos = System.nanoTime();
+
+        for (long i = 0;; i++) {
+            final long offsetNanos = (long) (i * intervalNanos);
+            if (offsetNanos >= totalNanos) {
+                break;
+            }
+
+            final long intendedStartNanos = startNanos + offsetNanos;
+            waitUntil(intendedStartNanos);
+
+            // Blocks when too many requests are outstanding. The latencies are still corrected because
+            // they are measured from the intended start time.
+            outstandingRequests.acquire();
+
+            final boolean measured = offsetNanos >= warmupNanos;
+            final long actualStartNanos = System.nanoTime();
+            final Future<SimpleHttpResponse> future;
+            try {
+                final SimpleHttpRequest req = requestSource.next();
+                future = client.execute(req);
+            } catch (Throwable t) {
+                outstandingRequests.release();
+                if (measured) {
+                    failures.increment();
+                }
+                logger.debug("Failed to send a request", t);
+                continue;
+            }
+
+            future.addListener(f -> {
+                try {
+                    if (!measured) {
+                        return;
+                    }
+
+                    final long endNanos = System.nanoTime();
+                    latency.record(endNanos - intendedStartNanos);
+                    serviceTime.record(endNanos - actualStartNanos);
+
+                    final SimpleHttpResponse res = f.isSuccess() ? (SimpleHttpResponse) f.getNow() : null;
+                    if (res != null && res.status().code() < 500) {
+                        successes.increment();
+                    } else {
+                        failures.increment();
+                    }
+                } finally {
+                    outstandingRequests.release();
+                }
+            });
+        }
+
+        // Wait until all responses are received.
+        outstandingRequests.acquire(maxOutstandingRequests);
+
+        final long elapsedNanos = System.nanoTime() - startNanos - Math.min(warmupNanos, totalNanos);
+        return new LoadGeneratorResult(successes.sum(), failures.sum(), elapsedNanos, latency, serviceTime);
+    }
+
+    private static void waitUntil(long deadlineNanos) throws InterruptedException {
+        for (;;) {
+            final long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0) {
+                break;
+            }
+            LockSupport.parkNanos(remainingNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() +
+               "(rate: " + rate +
+               ", warmup: " + TimeUnit.NANOSECONDS.toMillis(warmupNanos) + "ms" +
+               ", duration: " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms" +
+               ", maxOutstandingRequests: " + maxOutstandingRequests +
+               ", requestSource: " + requestSource + ')';
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client.loadgen;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+
+import com.linecorp.armeria.client.Clients;
+import com.linecorp.armeria.client.RemoteInvokerFactory;
+import com.linecorp.armeria.client.http.SimpleHttpClient;
+
+/**
+ * Builds a {@link LoadGenerator} instance using builder pattern.
+ */
+public final class LoadGeneratorBuilder {
+
+    private static final class Defaults {
+
+        private static final int RATE = 1000;
+
+        private static final Duration WARMUP = Duration.ZERO;
+
+        private static final Duration DURATION = Duration.ofSeconds(10);
+
+        private static final int MAX_OUTSTANDING_REQUESTS = 10000;
+    }
+
+    private final SimpleHttpClient client;
+
+    private final RequestSource requestSource;
+
+    private int rate = Defaults.RATE;
+
+    private Duration warmup = Defaults.WARMUP;
+
+    private Duration duration = Defaults.DURATION;
+
+    private int maxOutstandingRequests = Defaults.MAX_OUTSTANDING_REQUESTS;
+
+    /**
+     * Creates a new {@link LoadGeneratorBuilder} that sends the requests to the server at the specified
+     * {@code uri}, e.g. {@code "http://127.0.0.1:8080"}, using a {@link SimpleHttpClient} created with the
+     * specified {@link RemoteInvokerFactory}.
+     */
+    public LoadGeneratorBuilder(RemoteInvokerFactory remoteInvokerFactory, String uri,
+                                RequestSource requestSource) {
+        this(Clients.newClient(requireNonNull(remoteInvokerFactory, "remoteInvokerFactory"),
+                               "none+" + requireNonNull(uri, "uri"), SimpleHttpClient.class),
+             requestSource);
+    }
+
+    /**
+     * Creates a new {@link LoadGeneratorBuilder} that sends the requests using the specified
+     * {@link SimpleHttpClient}.
+     */
+    public LoadGeneratorBuilder(SimpleHttpClient client, RequestSource requestSource) {
+        this.client = requireNonNull(client, "client");
+        this.requestSource = requireNonNull(requestSource, "requestSource");
+    }
+
+    /**
+     * Sets the number of the requests to send per second.
+     */
+    public LoadGeneratorBuilder rate(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate: " + rate + " (expected: > 0)");
+        }
+        this.rate = rate;
+        return this;
+    }
+
+    /**
+     * Sets the duration of the warm-up period, during which the requests are sent but not recorded.
+     */
+    public LoadGeneratorBuilder warmup(Duration warmup) {
+        requireNonNull(warmup, "warmup");
+        if (warmup.isNegative()) {
+            throw new IllegalArgumentException("warmup: " + warmup + " (expected: >= 0)");
+        }
+        this.warmup = warmup;
+        return this;
+    }
+
+    /**
+     * Sets the duration of the warm-up period, during which the requests are sent but not recorded.
+     */
+    public LoadGeneratorBuilder warmupMillis(long warmupMillis) {
+        warmup(Duration.ofMillis(warmupMillis));
+        return this;
+    }
+
+    /**
+     * Sets the duration of the measurement period which follows the warm-up period.
+     */
+    public LoadGeneratorBuilder duration(Duration duration) {
+        requireNonNull(duration, "duration");
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("duration: " + duration + " (expected: > 0)");
+        }
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * Sets the duration of the measurement period which follows the warm-up period.
+     */
+    public LoadGeneratorBuilder durationMillis(long durationMillis) {
+        duration(Duration.ofMillis(durationMillis));
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of the requests waiting for their responses. When reached, the
+     * {@link LoadGenerator} waits for a response before sending the next request, and the waiting time is
+     * included in the latency of the delayed request.
+     */
+    public LoadGeneratorBuilder maxOutstandingRequests(int maxOutstandingRequests) {
+        if (maxOutstandingRequests <= 0) {
+            throw new IllegalArgumentException(
+                    "maxOutstandingRequests: " + maxOutstandingRequests + " (expected: > 0)");
+        }
+        this.maxOutstandingRequests = maxOutstandingRequests;
+        return this;
+    }
+
+    /**
+     * Returns a newly-created {@link LoadGenerator} based on the properties of this builder.
+     */
+    public LoadGenerator build() {
+        return new LoadGenerator(client, requestSource, rate, warmup.toNanos(), duration.toNanos(),
+                                 maxOutstandingRequests);
+    }
+}
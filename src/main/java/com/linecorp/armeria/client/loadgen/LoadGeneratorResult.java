@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client.loadgen;
+
+import java.util.concurrent.TimeUnit;
+
+import com.linecorp.armeria.common.metrics.LatencyHistogram;
+import com.linecorp.armeria.common.util.UnitFormatter;
+
+/**
+ * The result of {@link LoadGenerator#run()}. Only the requests sent after the warm-up period are counted.
+ */
+public final class LoadGeneratorResult {
+
+    private final long successes;
+    private final long failures;
+    private final long elapsedNanos;
+    private final LatencyHistogram latency;
+    private final LatencyHistogram serviceTime;
+
+    LoadGeneratorResult(long successes, long failures, long elapsedNanos,
+                        LatencyHistogram latency, LatencyHistogram serviceTime) {
+        this.successes = successes;
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+    }
+
+    /**
+     * Returns the number of the requests sent.
+     */
+    public long requests() {
+        return successes + failures;
+    }
+
+    /**
+     * Returns the number of the requests which received a response whose status code is less than 500.
+     */
+    public long successes() {
+        return successes;
+    }
+
+    /**
+     * Returns the number of the requests which failed or received a response whose status code is 500 or
+     * greater.
+     */
+    public long failures() {
+        return failures;
+    }
+
+    /**
+     * Returns the time elapsed from the end of the warm-up period until the last response was received.
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of the requests completed per second.
+     */
+    public double throughput() {
+        return elapsedNanos > 0 ? (double) requests() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    /**
+     * Returns the latencies measured from the time each request was scheduled to be sent,
+     * which are corrected for the coordinated omission.
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    /**
+     * Returns the latencies measured from the time each request was actually sent, which do not include
+     * the time spent by the load generator waiting for the outstanding requests.
+     */
+    public LatencyHistogram serviceTime() {
+        return serviceTime;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(256);
+        buf.append(getClass().getSimpleName());
+        buf.append("(requests: ").append(requests());
+        buf.append(", failures: ").append(failures);
+        buf.append(", elapsed: ");
+        UnitFormatter.appendElapsed(buf, 0, elapsedNanos);
+        buf.append(", throughput: ").append((long) throughput()).append("/s");
+        buf.append(", latency: ").append(latency);
+        buf.append(", serviceTime: ").append(serviceTime);
+        buf.append(')');
+        return buf.toString();
+    }
+}
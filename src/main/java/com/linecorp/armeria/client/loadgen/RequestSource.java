@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client.loadgen;
+
+import static java.util.Objects.requireNonNull;
+
+import com.linecorp.armeria.client.http.SimpleHttpRequest;
+import com.linecorp.armeria.client.http.SimpleHttpRequestBuilder;
+import com.linecorp.armeria.client.thrift.ThriftCalls;
+import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.common.thrift.ThriftProtocolFactories;
+import com.linecorp.armeria.common.capture.CapturedExchange;
+import com.linecorp.armeria.common.capture.TrafficCaptureReader;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+
+/**
+ * Supplies the {@link SimpleHttpRequest}s sent by a {@link LoadGenerator}. {@link #next()} is always
+ * invoked by the thread which runs the {@link LoadGenerator}, so an implementation does not need to be
+ * thread-safe.
+ */
+@FunctionalInterface
+public interface RequestSource {
+
+    /**
+     * Returns a {@link RequestSource} that cycles through the specified {@link SimpleHttpRequest}s.
+     */
+    static RequestSource of(SimpleHttpRequest... requests) {
+        return new CyclingRequestSource(requireNonNull(requests, "requests").clone());
+    }
+
+    /**
+     * Returns a {@link RequestSource} that cycles through the specified {@link SimpleHttpRequest}s.
+     */
+    static RequestSource of(Iterable<SimpleHttpRequest> requests) {
+        return CyclingRequestSource.of(requests);
+    }
+
+    /**
+     * Returns a {@link RequestSource} that cycles through the requests of the specified
+     * {@link CapturedExchange}s, e.g. read by {@link TrafficCaptureReader}. The exchanges are converted into
+     * {@link SimpleHttpRequest}s upfront, so that the conversion does not affect the sending rate.
+     * The hop-by-hop headers and the headers which are set by the client are not replayed.
+     */
+    static RequestSource ofCapturedExchanges(Iterable<CapturedExchange> exchanges) {
+        return CyclingRequestSource.ofCapturedExchanges(exchanges);
+    }
+
+    /**
+     * Returns a {@link RequestSource} that repeats a synthetic call to a Thrift service.
+     *
+     * @param path the path of the Thrift service
+     * @param interfaceClass the Thrift {@code Iface} or {@code AsyncIface}
+     * @param serializationFormat the serialization format of the Thrift service
+     * @param methodName the name of the method to call
+     * @param args the arguments of the call, excluding the {@code AsyncMethodCallback}
+     */
+    static RequestSource ofThriftCall(String path, Class<?> interfaceClass,
+                                      SerializationFormat serializationFormat,
+                                      String methodName, Object... args) {
+        requireNonNull(path, "path");
+        requireNonNull(serializationFormat, "serializationFormat");
+
+        final byte[] content = ThriftCalls.encode(
+                interfaceClass, ThriftProtocolFactories.get(serializationFormat), methodName, args);
+        return of(SimpleHttpRequestBuilder.forPost(path)
+                                          .header(HttpHeaderNames.CONTENT_TYPE, serializationFormat.mimeType())
+                                          .content(content)
+                                          .build());
+    }
+
+    /**
+     * Returns the next {@link SimpleHttpRequest} to send.
+     */
+    SimpleHttpRequest next();
+}
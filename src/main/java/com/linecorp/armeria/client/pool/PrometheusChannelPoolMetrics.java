@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client.pool;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.linecorp.armeria.client.RemoteInvokerOption;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusCollector;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+
+import io.netty.channel.Channel;
+
+/**
+ * Collects the metrics of the connection pools of a {@link com.linecorp.armeria.client.RemoteInvokerFactory}
+ * and exposes them in the Prometheus text format. Install the handler decorator returned by
+ * {@link #decorator()} via {@link RemoteInvokerOption#POOL_HANDLER_DECORATOR}:
+ * <pre>{@code
+ * PrometheusChannelPoolMetrics poolMetrics = new PrometheusChannelPoolMetrics();
+ * RemoteInvokerFactory factory = new RemoteInvokerFactory(RemoteInvokerOptions.of(
+ *         RemoteInvokerOption.POOL_HANDLER_DECORATOR.newValue(poolMetrics.decorator())));
+ * }</pre>
+ *
+ * <p>Each pool is distinguished by the {@code remote} and {@code protocol} labels.
+ * <table summary="metrics exposed by this class">
+ * <tr><th>metric name</th><th>type</th><th>description</th></tr>
+ * <tr><td>{@code armeria_client_connections}</td><td>gauge</td>
+ * <td>The number of the open connections.</td></tr>
+ * <tr><td>{@code armeria_client_connections_created_total}</td><td>counter</td>
+ * <td>The number of the connections created.</td></tr>
+ * <tr><td>{@code armeria_client_connections_closed_total}</td><td>counter</td>
+ * <td>The number of the connections closed.</td></tr>
+ * <tr><td>{@code armeria_client_connection_acquisitions_total}</td><td>counter</td>
+ * <td>The number of times that a connection has been acquired from the pool.</td></tr>
+ * </table>
+ */
+public final class PrometheusChannelPoolMetrics implements PrometheusCollector {
+
+    private final Map<PoolKey, Metrics> metricsMap = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the decorator of {@link KeyedChannelPoolHandler} which updates the metrics of this collector.
+     */
+    public Function<KeyedChannelPoolHandler<PoolKey>, KeyedChannelPoolHandler<PoolKey>> decorator() {
+        return MetricCollectingHandler::new;
+    }
+
+    private Metrics metricsOf(PoolKey key) {
+        final Metrics metrics = metricsMap.get(key);
+        if (metrics != null) {
+            return metrics;
+        }
+        return metricsMap.computeIfAbsent(key, Metrics::new);
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        out.family("armeria_client_connections", Type.GAUGE, "The number of the open connections.");
+        for (Metrics m : metricsMap.values()) {
+            final long created = m.created.sum();
+            final long closed = m.closed.sum();
+            out.sample("armeria_client_connections").label("remote", m.remote).label("protocol", m.protocol)
+               .value(Math.max(0, created - closed));
+        }
+
+        out.family("armeria_client_connections_created_total", Type.COUNTER,
+                   "The number of the connections created.");
+        for (Metrics m : metricsMap.values()) {
+            out.sample("armeria_client_connections_created_total").label("remote", m.remote)
+               .label("protocol", m.protocol).value(m.created.sum());
+        }
+
+        out.family("armeria_client_connections_closed_total", Type.COUNTER,
+                   "The number of the connections closed.");
+        for (Metrics m : metricsMap.values()) {
+            out.sample("armeria_client_connections_closed_total").label("remote", m.remote)
+               .label("protocol", m.protocol).value(m.closed.sum());
+        }
+
+        out.family("armeria_client_connection_acquisitions_total", Type.COUNTER,
+                   "The number of times that a connection has been acquired from the pool.");
+        for (Metrics m : metricsMap.values()) {
+            out.sample("armeria_client_connection_acquisitions_total").label("remote", m.remote)
+               .label("protocol", m.protocol).value(m.acquired.sum());
+        }
+    }
+
+    private final class MetricCollectingHandler extends DecoratingKeyedChannelPoolHandler<PoolKey> {
+
+        MetricCollectingHandler(KeyedChannelPoolHandler<PoolKey> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void channelCreated(PoolKey key, Channel ch) throws Exception {
+            metricsOf(key).created.increment();
+            super.channelCreated(key, ch);
+        }
+
+        @Override
+        public void channelAcquired(PoolKey key, Channel ch) throws Exception {
+            metricsOf(key).acquired.increment();
+            super.channelAcquired(key, ch);
+        }
+
+        @Override
+        public void channelClosed(PoolKey key, Channel ch) throws Exception {
+            metricsOf(key).closed.increment();
+            super.channelClosed(key, ch);
+        }
+    }
+
+    private static final class Metrics {
+        final String remote;
+        final String protocol;
+        final LongAdder created = new LongAdder();
+        final LongAdder closed = new LongAdder();
+        final LongAdder acquired = new LongAdder();
+
+        Metrics(PoolKey key) {
+            final InetSocketAddress remoteAddress = key.remoteAddress();
+            remote = remoteAddress.getHostString() + ':' + remoteAddress.getPort();
+            protocol = key.sessionProtocol().uriText();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client.thrift;
+
+import static java.util.Objects.requireNonNull;
+
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+
+import com.linecorp.armeria.common.thrift.TByteBufTransport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Utility methods that encode a Thrift call without sending it, e.g. to generate synthetic requests for
+ * a load test.
+ */
+public final class ThriftCalls {
+
+    /**
+     * Encodes a call to the specified method into a byte array which can be sent as the content of an
+     * HTTP request to a Thrift service.
+     *
+     * @param interfaceClass the Thrift {@code Iface} or {@code AsyncIface}
+     * @param protocolFactory the {@link TProtocolFactory} of the Thrift service
+     * @param methodName the name of the method to call
+     * @param args the arguments of the call, excluding the {@code AsyncMethodCallback}
+     */
+    @SuppressWarnings("rawtypes")
+    public static byte[] encode(Class<?> interfaceClass, TProtocolFactory protocolFactory,
+                                String methodName, Object... args) {
+        requireNonNull(protocolFactory, "protocolFactory");
+        requireNonNull(args, "args");
+
+        final ThriftMethod thriftMethod = ThriftClientCodec.thriftMethod(interfaceClass, methodName);
+        if (thriftMethod == null) {
+            throw new IllegalArgumentException(
+                    "methodName: " + methodName + " (expected: a method of " + interfaceClass.getName() + ')');
+        }
+        if (args.length != thriftMethod.paramTypes().size()) {
+            throw new IllegalArgumentException(
+                    "args.length: " + args.length + " (expected: " + thriftMethod.paramTypes().size() + ')');
+        }
+
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            final TProtocol tProtocol = protocolFactory.getProtocol(new TByteBufTransport(buf));
+            tProtocol.writeMessageBegin(new TMessage(methodName, thriftMethod.methodType(), 0));
+            final TBase tArgs = thriftMethod.createArgs(false, args);
+            tArgs.write(tProtocol);
+            tProtocol.writeMessageEnd();
+            return ByteBufUtil.getBytes(buf);
+        } catch (TException e) {
+            throw new IllegalArgumentException("failed to encode a call: " + methodName, e);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private ThriftCalls() {}
+}
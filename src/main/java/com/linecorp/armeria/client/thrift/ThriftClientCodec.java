@@ -23,6 +23,7 @@ import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -42,6 +43,9 @@ import com.linecorp.armeria.client.ClientCodec;
 import com.linecorp.armeria.common.Scheme;
 import com.linecorp.armeria.common.ServiceInvocationContext;
 import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.thrift.TByteBufTransport;
+import com.linecorp.armeria.common.thrift.ThriftBufferSizePredictor;
+import com.linecorp.armeria.common.thrift.ThriftStructAccessor.Field;
 import com.linecorp.armeria.common.thrift.ThriftProtocolFactories;
 
 import io.netty.buffer.ByteBuf;
@@ -77,18 +81,42 @@ public class ThriftClientCodec implements ClientCodec {
         this.protocolFactory = requireNonNull(protocolFactory, "protocolFactory");
 
         final String interfaceName = interfaceClass.getName();
-        if (interfaceName.endsWith('$' + ASYNC_IFACE)) {
-            isAsyncClient = true;
-        } else if (interfaceName.endsWith('$' + SYNC_IFACE)) {
-            isAsyncClient = false;
-        } else {
-            throw new IllegalArgumentException("interfaceClass must be Iface or AsyncIface: " + interfaceName);
-        }
-
+        isAsyncClient = isAsyncInterface(interfaceName);
         loggerName = interfaceName.substring(0, interfaceName.lastIndexOf('$'));
         methodMap = getThriftMethodMapFromInterface(interfaceClass, isAsyncClient);
     }
 
+    /**
+     * Returns the {@link ThriftBufferSizePredictor}s which pre-size the buffers of the calls made by this
+     * codec, keyed by method name. The predictors are shared by the codecs of the same Thrift interface.
+     */
+    public Map<String, ThriftBufferSizePredictor> callSizePredictors() {
+        final Map<String, ThriftBufferSizePredictor> predictors = new HashMap<>();
+        methodMap.forEach((name, m) -> predictors.put(name, m.callSizePredictor()));
+        return Collections.unmodifiableMap(predictors);
+    }
+
+    /**
+     * Returns the {@link ThriftMethod} with the specified {@code methodName} in the specified Thrift
+     * {@code Iface} or {@code AsyncIface}, or {@code null} if there's no such method.
+     */
+    static ThriftMethod thriftMethod(Class<?> interfaceClass, String methodName) {
+        requireNonNull(interfaceClass, "interfaceClass");
+        requireNonNull(methodName, "methodName");
+        return getThriftMethodMapFromInterface(
+                interfaceClass, isAsyncInterface(interfaceClass.getName())).get(methodName);
+    }
+
+    private static boolean isAsyncInterface(String interfaceName) {
+        if (interfaceName.endsWith('$' + ASYNC_IFACE)) {
+            return true;
+        }
+        if (interfaceName.endsWith('$' + SYNC_IFACE)) {
+            return false;
+        }
+        throw new IllegalArgumentException("interfaceClass must be Iface or AsyncIface: " + interfaceName);
+    }
+
     private static Map<String, ThriftMethod> getThriftMethodMapFromInterface(Class<?> interfaceClass,
                                                                              boolean isAsyncInterface) {
         Map<String, ThriftMethod> methodMap = methodMapCache.get(interfaceClass);
@@ -168,8 +196,10 @@ public class ThriftClientCodec implements ClientCodec {
                                         sessionProtocol);
 
         try {
-            final ByteBuf outByteBuf = channel.alloc().buffer();
-            final TByteBufOutputTransport outTransport = new TByteBufOutputTransport(outByteBuf);
+            final ThriftBufferSizePredictor sizePredictor = thriftMethod.callSizePredictor();
+            final ByteBuf outByteBuf = sizePredictor.newBuffer(channel.alloc());
+            final int initialCapacity = outByteBuf.capacity();
+            final TByteBufTransport outTransport = new TByteBufTransport(outByteBuf);
             final TProtocol tProtocol = protocolFactory.getProtocol(outTransport);
             final TMessage tMessage = new TMessage(method.getName(), thriftMethod.methodType(),
                                                    seq.incrementAndGet());
@@ -178,6 +208,7 @@ public class ThriftClientCodec implements ClientCodec {
             final TBase tArgs = thriftMethod.createArgs(isAsyncClient, args);
             tArgs.write(tProtocol);
             tProtocol.writeMessageEnd();
+            sizePredictor.record(initialCapacity, outByteBuf.readableBytes());
 
             AsyncMethodCallback asyncMethodCallback = null;
             if (isAsyncClient) {
@@ -208,7 +239,7 @@ public class ThriftClientCodec implements ClientCodec {
             throw new TApplicationException(TApplicationException.MISSING_RESULT, ctx.toString());
         }
 
-        TByteBufInputTransport inputTransport = new TByteBufInputTransport(content);
+        TByteBufTransport inputTransport = new TByteBufTransport(content);
         TProtocol inputProtocol = protocolFactory.getProtocol(inputTransport);
         TMessage msg = inputProtocol.readMessageBegin();
         if (msg.type == TMessageType.EXCEPTION) {
@@ -224,22 +255,24 @@ public class ThriftClientCodec implements ClientCodec {
         result.read(inputProtocol);
         inputProtocol.readMessageEnd();
 
-        for (TFieldIdEnum fieldIdEnum : method.getExceptionFields()) {
-            if (result.isSet(fieldIdEnum)) {
-                throw (TException) result.getFieldValue(fieldIdEnum);
+        final List<Field> exceptionFields = method.getExceptionFields();
+        for (int i = 0; i < exceptionFields.size(); i++) {
+            final Field f = exceptionFields.get(i);
+            if (f.isSet(result)) {
+                throw (TException) f.get(result);
             }
         }
 
-        TFieldIdEnum successField = method.successField();
+        Field successField = method.successField();
         if (successField == null) { //void method
             return null;
         }
-        if (result.isSet(successField)) {
-            return (T) result.getFieldValue(successField);
+        if (successField.isSet(result)) {
+            return (T) successField.get(result);
         }
 
         throw new TApplicationException(TApplicationException.MISSING_RESULT,
-                                        result.getClass().getName() + '.' + successField.getFieldName());
+                                        result.getClass().getName() + '.' + successField.name());
     }
 
     private ThriftMethod getThriftMethod(ServiceInvocationContext ctx) {
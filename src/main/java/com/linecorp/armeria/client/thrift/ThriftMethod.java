@@ -22,8 +22,6 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
 import org.apache.thrift.TBase;
@@ -34,6 +32,9 @@ import org.apache.thrift.meta_data.FieldValueMetaData;
 import org.apache.thrift.protocol.TMessageType;
 
 import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.thrift.ThriftBufferSizePredictor;
+import com.linecorp.armeria.common.thrift.ThriftStructAccessor;
+import com.linecorp.armeria.common.thrift.ThriftStructAccessor.Field;
 import com.linecorp.armeria.common.thrift.ThriftUtil;
 
 @SuppressWarnings("rawtypes")
@@ -41,15 +42,16 @@ class ThriftMethod {
     private final boolean oneWay;
     private final String name;
     final Class<?>[] declaredThrowableException;
-    private final TBase<? extends TBase, TFieldIdEnum> argsObject;
-    private final TFieldIdEnum[] argsFieldIdEnums;
+    private final ThriftStructAccessor args;
+    private final Field[] argsFields;
 
-    private final TBase<? extends TBase, TFieldIdEnum> resultObject;
-    private final TFieldIdEnum successField;
-    private final List<TFieldIdEnum> exceptionFields;
+    private final ThriftStructAccessor result;
+    private final Field successField;
+    private final List<Field> exceptionFields;
 
     private final List<Class<?>> paramTypes;
     private final Class<?> returnType;
+    private final ThriftBufferSizePredictor callSizePredictor = new ThriftBufferSizePredictor();
 
     @SuppressWarnings({ "unchecked", "SuspiciousArrayCast" })
     ThriftMethod(Class<?> clientClass, Method method, String thriftServiceName) {
@@ -71,7 +73,7 @@ class ThriftMethod {
         final Class<TBase<? extends TBase, TFieldIdEnum>> argClass;
         try {
             argClass = (Class<TBase<? extends TBase, TFieldIdEnum>>) Class.forName(argClassName);
-            argsObject = argClass.newInstance();
+            args = ThriftStructAccessor.of(argClass);
         } catch (Exception e) {
             throw new IllegalArgumentException("fail to create a new instance: " + argClassName, e);
         }
@@ -79,15 +81,21 @@ class ThriftMethod {
         String argFieldEnumName = thriftServiceName + '$' + name + "_args$_Fields";
         try {
             Class<?> fieldIdEnumClass = Class.forName(argFieldEnumName);
-            argsFieldIdEnums = (TFieldIdEnum[]) requireNonNull(fieldIdEnumClass.getEnumConstants(),
-                                                               "field enum may not be empty");
+            final TFieldIdEnum[] argsFieldIdEnums =
+                    (TFieldIdEnum[]) requireNonNull(fieldIdEnumClass.getEnumConstants(),
+                                                    "field enum may not be empty");
+            argsFields = new Field[argsFieldIdEnums.length];
+            for (int i = 0; i < argsFields.length; i++) {
+                argsFields[i] = requireNonNull(args.field(argsFieldIdEnums[i].getFieldName()),
+                                               "field not found");
+            }
         } catch (Exception e) {
             throw new IllegalArgumentException("fail to create a new instance : " + argFieldEnumName, e);
         }
 
         FieldValueMetaData successFieldMetadata = null;
         if (oneWay) {
-            resultObject = null;
+            result = null;
             successField = null;
             exceptionFields = Collections.emptyList();
         } else {
@@ -95,31 +103,23 @@ class ThriftMethod {
             final Class resultClass;
             try {
                 resultClass = Class.forName(resultClassName);
-                resultObject = (TBase<? extends TBase, TFieldIdEnum>) resultClass.newInstance();
+                result = ThriftStructAccessor.of(resultClass);
             } catch (Exception e) {
                 throw new IllegalArgumentException("fail to create a new instance : " + resultClassName, e);
             }
 
             try {
-
-                @SuppressWarnings("unchecked")
-                final Map<TFieldIdEnum, FieldMetaData> resultMetaDataMap =
-                        (Map<TFieldIdEnum, FieldMetaData>) FieldMetaData.getStructMetaDataMap(resultClass);
-
-                TFieldIdEnum successField = null;
-                List<TFieldIdEnum> exceptionFields = new ArrayList<>(resultMetaDataMap.size());
-                for (Entry<TFieldIdEnum, FieldMetaData> e : resultMetaDataMap.entrySet()) {
-                    final TFieldIdEnum key = e.getKey();
-                    final String fieldName = key.getFieldName();
-                    if ("success".equals(fieldName)) {
-                        successField = key;
-                        successFieldMetadata = e.getValue().valueMetaData;
+                Field successField = null;
+                List<Field> exceptionFields = new ArrayList<>(result.fields().size());
+                for (Field f : result.fields()) {
+                    if ("success".equals(f.name())) {
+                        successField = f;
+                        successFieldMetadata = f.metaData().valueMetaData;
                         continue;
                     }
 
-                    Class<?> fieldType = resultClass.getField(fieldName).getType();
-                    if (Throwable.class.isAssignableFrom(fieldType)) {
-                        exceptionFields.add(key);
+                    if (Throwable.class.isAssignableFrom(f.type())) {
+                        exceptionFields.add(f);
                     }
                 }
 
@@ -145,16 +145,15 @@ class ThriftMethod {
     }
 
     TBase createArgs() {
-        return argsObject.deepCopy();
+        return args.newInstance();
     }
 
-    @SuppressWarnings("unchecked")
     TBase createArgs(boolean isAsync, Object[] args) {
         final TBase newArgs = createArgs();
         if (args != null) {
             final int toFillArgLength = args.length - (isAsync ? 1 : 0);
             for (int i = 0; i < toFillArgLength; i++) {
-                newArgs.setFieldValue(argsFieldIdEnums[i], args[i]);
+                argsFields[i].set(newArgs, args[i]);
             }
         }
         return newArgs;
@@ -168,6 +167,13 @@ class ThriftMethod {
         return oneWay ? TMessageType.ONEWAY : TMessageType.CALL;
     }
 
+    /**
+     * Returns the {@link ThriftBufferSizePredictor} which pre-sizes the buffers of the calls.
+     */
+    ThriftBufferSizePredictor callSizePredictor() {
+        return callSizePredictor;
+    }
+
     List<Class<?>> paramTypes() {
         return paramTypes;
     }
@@ -206,14 +212,14 @@ class ThriftMethod {
     }
 
     TBase<? extends TBase, TFieldIdEnum> createResult() {
-        return resultObject.deepCopy();
+        return result.newInstance();
     }
 
-    TFieldIdEnum successField() {
+    Field successField() {
         return successField;
     }
 
-    List<TFieldIdEnum> getExceptionFields() {
+    List<Field> getExceptionFields() {
         return exceptionFields;
     }
 }
@@ -26,6 +26,8 @@ import com.github.kristofa.brave.ClientRequestInterceptor;
 import com.github.kristofa.brave.ClientResponseAdapter;
 import com.github.kristofa.brave.ClientResponseInterceptor;
 import com.github.kristofa.brave.ClientSpanThreadBinder;
+import com.github.kristofa.brave.ServerSpan;
+import com.github.kristofa.brave.ServerSpanThreadBinder;
 import com.twitter.zipkin.gen.Span;
 
 class ClientTracingInterceptor {
@@ -36,11 +38,23 @@ class ClientTracingInterceptor {
 
     private final ClientSpanThreadBinder spanThreadBinder;
 
+    private final ServerSpanThreadBinder serverSpanThreadBinder;
+
     ClientTracingInterceptor(Brave brave) {
         requireNonNull(brave, "brave");
         requestInterceptor = brave.clientRequestInterceptor();
         responseInterceptor = brave.clientResponseInterceptor();
         spanThreadBinder = brave.clientSpanThreadBinder();
+        serverSpanThreadBinder = brave.serverSpanThreadBinder();
+    }
+
+    /**
+     * Returns {@code true} if the request being served by the current thread has been decided not to be
+     * sampled, which means no span needs to be opened for the client requests it makes.
+     */
+    boolean isUnsampled() {
+        final ServerSpan serverSpan = serverSpanThreadBinder.getCurrentServerSpan();
+        return serverSpan != null && Boolean.FALSE.equals(serverSpan.getSample());
     }
 
     @Nullable
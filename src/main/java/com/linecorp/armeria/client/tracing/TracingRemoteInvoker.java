@@ -58,6 +58,11 @@ public abstract class TracingRemoteInvoker extends DecoratingRemoteInvoker {
     public final <T> Future<T> invoke(EventLoop eventLoop,  URI uri, ClientOptions options, ClientCodec codec,
                                       Method method, Object[] args) throws Exception {
 
+        if (clientInterceptor.isUnsampled()) {
+            // skip tracing without creating a request adapter or a span
+            return super.invoke(eventLoop, uri, putTraceData(options, null), codec, method, args);
+        }
+
         // create new request adapter to catch generated spanId
         final InternalClientRequestAdapter requestAdapter = new InternalClientRequestAdapter(method.getName());
 
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linecorp.armeria.common.util.UnitFormatter;
+
+/**
+ * The {@link System#nanoTime()} stamps taken at the boundaries of the phases of a server-side invocation,
+ * which break down its latency into:
+ * <ol>
+ *   <li>decode - from when the request was received until the {@link ServiceInvocationContext} was
+ *       created from it</li>
+ *   <li>queue - from the end of the decode phase until the service started to handle the invocation,
+ *       e.g. the time spent waiting in the blocking task executor</li>
+ *   <li>handler - from the start of the handler until the invocation was completed</li>
+ *   <li>encode - from the completion of the invocation until the response was encoded</li>
+ *   <li>pending - from the end of the encode phase until the response was written, e.g. the time spent
+ *       waiting for the responses of the previous HTTP/1 requests due to head-of-line blocking</li>
+ * </ol>
+ * A stamp is {@code 0} if it has not been taken yet. A phase whose end stamp has not been taken, or which
+ * was skipped, e.g. the encode phase of a service which produces an HTTP response by itself, has the
+ * duration of {@code 0}.
+ *
+ * <p>The stamps are taken by the I/O thread and the thread which runs the handler. Read them from the
+ * listeners registered via {@link #onComplete(Runnable)}, or from the I/O thread after the invocation has
+ * been completed.
+ */
+public final class InvocationTimings {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvocationTimings.class);
+
+    private long requestStartNanos;
+    private long decodeEndNanos;
+    private long handlerStartNanos;
+    private long handlerEndNanos;
+    private long encodeEndNanos;
+    private long responseEndNanos;
+    private List<Runnable> onCompleteCallbacks;
+
+    /**
+     * Returns the time when the request was received.
+     */
+    public long requestStartNanos() {
+        return requestStartNanos;
+    }
+
+    /**
+     * Returns the time when the request was decoded.
+     */
+    public long decodeEndNanos() {
+        return decodeEndNanos;
+    }
+
+    /**
+     * Returns the time when the handler started to handle the invocation.
+     */
+    public long handlerStartNanos() {
+        return handlerStartNanos;
+    }
+
+    /**
+     * Returns the time when the invocation was completed.
+     */
+    public long handlerEndNanos() {
+        return handlerEndNanos;
+    }
+
+    /**
+     * Returns the time when the response was encoded.
+     */
+    public long encodeEndNanos() {
+        return encodeEndNanos;
+    }
+
+    /**
+     * Returns the time when the response was written, or discarded because the connection or the stream
+     * was closed.
+     */
+    public long responseEndNanos() {
+        return responseEndNanos;
+    }
+
+    /**
+     * Returns the duration of the decode phase.
+     */
+    public long decodeDurationNanos() {
+        return duration(requestStartNanos, decodeEndNanos);
+    }
+
+    /**
+     * Returns the duration of the queue phase.
+     */
+    public long queueDurationNanos() {
+        return duration(decodeEndNanos, handlerStartNanos);
+    }
+
+    /**
+     * Returns the duration of the handler phase.
+     */
+    public long handlerDurationNanos() {
+        return duration(handlerStartNanos, handlerEndNanos);
+    }
+
+    /**
+     * Returns the duration of the encode phase.
+     */
+    public long encodeDurationNanos() {
+        return duration(handlerEndNanos, encodeEndNanos);
+    }
+
+    /**
+     * Returns the duration of the pending phase.
+     */
+    public long pendingDurationNanos() {
+        return duration(encodeEndNanos != 0 ? encodeEndNanos : handlerEndNanos, responseEndNanos);
+    }
+
+    /**
+     * Returns the duration from when the request was received until the response was written.
+     */
+    public long totalDurationNanos() {
+        return duration(requestStartNanos, responseEndNanos);
+    }
+
+    private static long duration(long startNanos, long endNanos) {
+        return startNanos != 0 && endNanos != 0 ? endNanos - startNanos : 0;
+    }
+
+    /**
+     * Returns {@code true} if the response has been written or discarded and thus all stamps have been
+     * taken.
+     */
+    public boolean isComplete() {
+        return responseEndNanos != 0;
+    }
+
+    /**
+     * Registers {@code callback} to be run by the I/O thread when the response has been written or
+     * discarded. {@code callback} is run immediately if the response has been written already.
+     */
+    public InvocationTimings onComplete(Runnable callback) {
+        requireNonNull(callback, "callback");
+        if (isComplete()) {
+            runCallback(callback);
+        } else {
+            if (onCompleteCallbacks == null) {
+                onCompleteCallbacks = new ArrayList<>(4);
+            }
+            onCompleteCallbacks.add(callback);
+        }
+        return this;
+    }
+
+    /**
+     * (Do not use; internal use only) Records the start and the end of the decode phase.
+     */
+    public void setDecodeTimes(long requestStartNanos, long decodeEndNanos) {
+        this.requestStartNanos = requestStartNanos;
+        this.decodeEndNanos = decodeEndNanos;
+    }
+
+    /**
+     * (Do not use; internal use only) Records the start of the handler phase. When invoked more than once,
+     * e.g. once by the I/O thread and once by the blocking task executor, the last invocation wins.
+     */
+    public void markHandlerStart() {
+        handlerStartNanos = System.nanoTime();
+    }
+
+    /**
+     * (Do not use; internal use only) Records the end of the handler phase.
+     */
+    public void markHandlerEnd() {
+        handlerEndNanos = System.nanoTime();
+    }
+
+    /**
+     * (Do not use; internal use only) Records the end of the encode phase.
+     */
+    public void markEncodeEnd() {
+        encodeEndNanos = System.nanoTime();
+    }
+
+    /**
+     * (Do not use; internal use only) Records the end of the pending phase and runs the callbacks
+     * registered via {@link #onComplete(Runnable)}. Does nothing if invoked more than once.
+     */
+    public void markResponseEnd() {
+        if (isComplete()) {
+            return;
+        }
+
+        responseEndNanos = System.nanoTime();
+
+        final List<Runnable> onCompleteCallbacks = this.onCompleteCallbacks;
+        if (onCompleteCallbacks != null) {
+            this.onCompleteCallbacks = null;
+            onCompleteCallbacks.forEach(InvocationTimings::runCallback);
+        }
+    }
+
+    private static void runCallback(Runnable callback) {
+        try {
+            callback.run();
+        } catch (Throwable t) {
+            logger.warn("onComplete() callback raised an exception: {}", callback, t);
+        }
+    }
+
+    /**
+     * Appends the durations of the phases whose end stamps have been taken to the specified
+     * {@link StringBuilder}, e.g. {@code "decode: 12µs, queue: 0ns, handler: 3ms"}.
+     */
+    public void appendTo(StringBuilder buf) {
+        final int initialLength = buf.length();
+        if (decodeEndNanos != 0) {
+            append(buf, initialLength, "decode: ", decodeDurationNanos());
+        }
+        if (handlerStartNanos != 0) {
+            append(buf, initialLength, "queue: ", queueDurationNanos());
+        }
+        if (handlerEndNanos != 0) {
+            append(buf, initialLength, "handler: ", handlerDurationNanos());
+        }
+        if (encodeEndNanos != 0) {
+            append(buf, initialLength, "encode: ", encodeDurationNanos());
+        }
+        if (responseEndNanos != 0) {
+            append(buf, initialLength, "pending: ", pendingDurationNanos());
+        }
+    }
+
+    private static void append(StringBuilder buf, int initialLength, String name, long durationNanos) {
+        if (buf.length() != initialLength) {
+            buf.append(", ");
+        }
+        buf.append(name);
+        UnitFormatter.appendElapsed(buf, 0, durationNanos);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(80);
+        buf.append('(');
+        appendTo(buf);
+        buf.append(')');
+        return buf.toString();
+    }
+}
@@ -115,6 +115,7 @@ public abstract class ServiceInvocationContext extends DefaultAttributeMap {
     private final String mappedPath;
     private final String loggerName;
     private final Object originalRequest;
+    private volatile InvocationTimings timings;
     private Logger logger;
     private String strVal;
     private List<Runnable> onEnterCallbacks;
@@ -401,6 +402,24 @@ public abstract class ServiceInvocationContext extends DefaultAttributeMap {
         return ch.localAddress();
     }
 
+    /**
+     * Returns the {@link InvocationTimings} which break down the latency of this invocation into phases.
+     * Only the server side invocations record the {@link InvocationTimings}.
+     */
+    public final InvocationTimings timings() {
+        InvocationTimings timings = this.timings;
+        if (timings == null) {
+            // Accessed by both the I/O thread and the thread which runs the handler.
+            synchronized (this) {
+                timings = this.timings;
+                if (timings == null) {
+                    this.timings = timings = new InvocationTimings();
+                }
+            }
+        }
+        return timings;
+    }
+
     /**
      * Returns the ID of this invocation. Note that the ID returned by this method is only for debugging
      * purposes and thus is never guaranteed to be unique.
@@ -47,7 +47,12 @@ public enum SessionProtocol {
     /**
      * HTTP/2 (cleartext)
      */
-    H2C(false, "h2c", true);
+    H2C(false, "h2c", true),
+    /**
+     * Thrift messages framed as done by {@code TFramedTransport}, i.e. each prefixed with its length
+     * (cleartext). Available only on the server side; a client rejects a {@link Scheme} with this protocol.
+     */
+    TFRAMED(false, "tframed", true);
 
     private static final Set<SessionProtocol> HTTP_PROTOCOLS = Collections.unmodifiableSet(
             EnumSet.of(HTTP, HTTPS, H1, H1C, H2, H2C));
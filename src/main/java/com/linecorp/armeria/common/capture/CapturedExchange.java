@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.capture;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * A captured pair of a raw request and its response, as written by {@link TrafficCaptureWriter} and read by
+ * {@link TrafficCaptureReader}.
+ */
+public final class CapturedExchange {
+
+    private final long timestampMillis;
+    private final long elapsedNanos;
+    private final String scheme;
+    private final String virtualHost;
+    private final String hostname;
+    private final String httpMethod;
+    private final String path;
+    private final String mappedPath;
+    private final String method;
+    private final List<Entry<String, String>> requestHeaders;
+    private final byte[] requestContent;
+    private final int statusCode;
+    private final byte[] responseContent;
+
+    /**
+     * Creates a new instance.
+     */
+    public CapturedExchange(long timestampMillis, long elapsedNanos, String scheme, String virtualHost,
+                            String hostname, String httpMethod, String path, String mappedPath, String method,
+                            List<Entry<String, String>> requestHeaders, byte[] requestContent,
+                            int statusCode, byte[] responseContent) {
+
+        this.timestampMillis = timestampMillis;
+        this.elapsedNanos = elapsedNanos;
+        this.scheme = requireNonNull(scheme, "scheme");
+        this.virtualHost = requireNonNull(virtualHost, "virtualHost");
+        this.hostname = requireNonNull(hostname, "hostname");
+        this.httpMethod = requireNonNull(httpMethod, "httpMethod");
+        this.path = requireNonNull(path, "path");
+        this.mappedPath = requireNonNull(mappedPath, "mappedPath");
+        this.method = method;
+        this.requestHeaders = requireNonNull(requestHeaders, "requestHeaders");
+        this.requestContent = requireNonNull(requestContent, "requestContent");
+        this.statusCode = statusCode;
+        this.responseContent = requireNonNull(responseContent, "responseContent");
+    }
+
+    /**
+     * Returns the time when the response was produced, in milliseconds since the epoch.
+     */
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Returns the elapsed time between the decoding of the request and the encoding of the response,
+     * in nanoseconds.
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the {@link com.linecorp.armeria.common.Scheme#uriText() URI text} of the scheme of the request.
+     * e.g. {@code "tbinary+h2c"}
+     */
+    public String scheme() {
+        return scheme;
+    }
+
+    /**
+     * Returns the {@linkplain com.linecorp.armeria.server.VirtualHost#hostnamePattern() hostname pattern} of
+     * the {@link com.linecorp.armeria.server.VirtualHost} which handled the request.
+     */
+    public String virtualHost() {
+        return virtualHost;
+    }
+
+    /**
+     * Returns the hostname of the request.
+     */
+    public String hostname() {
+        return hostname;
+    }
+
+    /**
+     * Returns the HTTP method of the request. e.g. {@code "POST"}
+     */
+    public String httpMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * Returns the absolute path of the request, followed by its query string if any.
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * Returns the path of the request with its context path removed.
+     */
+    public String mappedPath() {
+        return mappedPath;
+    }
+
+    /**
+     * Returns the method name of the invocation, or {@code null} if the request could not be decoded.
+     */
+    public String method() {
+        return method;
+    }
+
+    /**
+     * Returns the headers of the request.
+     */
+    public List<Entry<String, String>> requestHeaders() {
+        return requestHeaders;
+    }
+
+    /**
+     * Returns the content of the request. Do not modify the returned array.
+     */
+    public byte[] requestContent() {
+        return requestContent;
+    }
+
+    /**
+     * Returns the {@link com.linecorp.armeria.common.SessionProtocol}-specific status code of the response.
+     */
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the content of the response. Do not modify the returned array.
+     */
+    public byte[] responseContent() {
+        return responseContent;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() +
+               '(' + scheme + "://" + hostname + path + '#' + (method != null ? method : "<unknown>") +
+               ", virtualHost: " + virtualHost +
+               ", httpMethod: " + httpMethod +
+               ", mappedPath: " + mappedPath +
+               ", status: " + statusCode +
+               ", request: " + requestContent.length + 'B' +
+               ", response: " + responseContent.length + "B)";
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.capture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The binary format of the segment files written by {@link TrafficCaptureWriter}.
+ *
+ * <p>A segment file starts with an 8-byte magic, followed by the records. Each record is prefixed with its
+ * 32-bit length, which is written after the record itself so that a reader never sees a partially written
+ * record. The remainder of a segment file is filled with zeroes, which marks the end of the records.
+ */
+final class TrafficCaptureFormat {
+
+    private static final byte[] MAGIC = "ARMCAP01".getBytes(StandardCharsets.US_ASCII);
+
+    static final int HEADER_LENGTH = MAGIC.length;
+
+    static final int LENGTH_FIELD_LENGTH = 4;
+
+    private static final Pattern SEGMENT_NAME_PATTERN = Pattern.compile("^capture-([0-9]{16})\\.bin$");
+
+    static String segmentName(long sequence) {
+        return String.format("capture-%016d.bin", sequence);
+    }
+
+    /**
+     * Returns the sequence number of the segment file at the specified {@link Path}, or {@code -1} if the
+     * file is not a segment file.
+     */
+    static long segmentSequence(Path path) {
+        final Matcher m = SEGMENT_NAME_PATTERN.matcher(path.getFileName().toString());
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    static void writeHeader(ByteBuffer buf) {
+        buf.put(MAGIC);
+    }
+
+    static boolean readHeader(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_LENGTH) {
+            return false;
+        }
+
+        for (byte b : MAGIC) {
+            if (buf.get() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static byte[] encode(CapturedExchange e) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream(
+                256 + e.requestContent().length + e.responseContent().length);
+        final DataOutputStream out = new DataOutputStream(bout);
+
+        out.writeLong(e.timestampMillis());
+        out.writeLong(e.elapsedNanos());
+        writeString(out, e.scheme());
+        writeString(out, e.virtualHost());
+        writeString(out, e.hostname());
+        writeString(out, e.httpMethod());
+        writeString(out, e.path());
+        writeString(out, e.mappedPath());
+        writeString(out, e.method());
+        out.writeInt(e.requestHeaders().size());
+        for (Entry<String, String> h : e.requestHeaders()) {
+            writeString(out, h.getKey());
+            writeString(out, h.getValue());
+        }
+        writeBytes(out, e.requestContent());
+        out.writeInt(e.statusCode());
+        writeBytes(out, e.responseContent());
+
+        return bout.toByteArray();
+    }
+
+    static CapturedExchange decode(ByteBuffer buf) {
+        final long timestampMillis = buf.getLong();
+        final long elapsedNanos = buf.getLong();
+        final String scheme = readString(buf);
+        final String virtualHost = readString(buf);
+        final String hostname = readString(buf);
+        final String httpMethod = readString(buf);
+        final String path = readString(buf);
+        final String mappedPath = readString(buf);
+        final String method = readString(buf);
+        final int numHeaders = buf.getInt();
+        final List<Entry<String, String>> headers = new ArrayList<>(numHeaders);
+        for (int i = 0; i < numHeaders; i++) {
+            headers.add(new SimpleImmutableEntry<>(readString(buf), readString(buf)));
+        }
+        final byte[] requestContent = readBytes(buf);
+        final int statusCode = buf.getInt();
+        final byte[] responseContent = readBytes(buf);
+
+        return new CapturedExchange(timestampMillis, elapsedNanos, scheme, virtualHost, hostname,
+                                    httpMethod, path, mappedPath, method,
+                                    Collections.unmodifiableList(headers), requestContent,
+                                    statusCode, responseContent);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        final byte[] bytes = readBytes(buf);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] readBytes(ByteBuffer buf) {
+        final int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private TrafficCaptureFormat() {}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.capture;
+
+import static com.linecorp.armeria.common.capture.TrafficCaptureFormat.LENGTH_FIELD_LENGTH;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Reads the {@link CapturedExchange}s written by {@link TrafficCaptureWriter}, from the oldest to the newest.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * for (CapturedExchange e : new TrafficCaptureReader(Paths.get("/var/tmp/capture"))) {
+ *     System.err.println(e);
+ * }
+ * }</pre>
+ */
+public final class TrafficCaptureReader implements Iterable<CapturedExchange> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficCaptureReader.class);
+
+    private final Path directory;
+
+    /**
+     * Creates a new instance that reads the segment files in the specified {@code directory}.
+     */
+    public TrafficCaptureReader(Path directory) {
+        this.directory = requireNonNull(directory, "directory");
+    }
+
+    /**
+     * Reads all {@link CapturedExchange}s into a {@link List}.
+     */
+    public List<CapturedExchange> readAll() {
+        final List<CapturedExchange> exchanges = new ArrayList<>();
+        forEach(exchanges::add);
+        return Collections.unmodifiableList(exchanges);
+    }
+
+    /**
+     * Returns a new {@link Iterator} which maps the segment files one at a time.
+     *
+     * @throws UncheckedIOException if failed to list the segment files
+     */
+    @Override
+    public Iterator<CapturedExchange> iterator() {
+        try {
+            return new SegmentIterator(TrafficCaptureWriter.listSegments(directory).iterator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '(' + directory + ')';
+    }
+
+    private static final class SegmentIterator implements Iterator<CapturedExchange> {
+
+        private final Iterator<Path> segments;
+        private MappedByteBuffer current;
+        private CapturedExchange next;
+
+        SegmentIterator(Iterator<Path> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+
+            for (;;) {
+                if (current != null) {
+                    next = readNext(current);
+                    if (next != null) {
+                        return true;
+                    }
+
+                    PlatformDependent.freeDirectBuffer(current);
+                    current = null;
+                }
+
+                if (!segments.hasNext()) {
+                    return false;
+                }
+
+                current = map(segments.next());
+            }
+        }
+
+        @Override
+        public CapturedExchange next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final CapturedExchange next = this.next;
+            this.next = null;
+            return next;
+        }
+
+        private static MappedByteBuffer map(Path path) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                final MappedByteBuffer buf = ch.map(MapMode.READ_ONLY, 0, ch.size());
+                if (!TrafficCaptureFormat.readHeader(buf)) {
+                    logger.warn("Skipping a segment with an invalid header: {}", path);
+                    PlatformDependent.freeDirectBuffer(buf);
+                    return null;
+                }
+                return buf;
+            } catch (NoSuchFileException e) {
+                // Deleted by the writer due to rotation.
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static CapturedExchange readNext(ByteBuffer buf) {
+            if (buf.remaining() < LENGTH_FIELD_LENGTH) {
+                return null;
+            }
+
+            final int length = buf.getInt();
+            if (length <= 0 || length > buf.remaining()) {
+                // Reached at the end of the records.
+                return null;
+            }
+
+            final ByteBuffer record = buf.slice();
+            record.limit(length);
+            buf.position(buf.position() + length);
+            return TrafficCaptureFormat.decode(record);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.capture;
+
+import static com.linecorp.armeria.common.capture.TrafficCaptureFormat.HEADER_LENGTH;
+import static com.linecorp.armeria.common.capture.TrafficCaptureFormat.LENGTH_FIELD_LENGTH;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Writes {@link CapturedExchange}s into a rotating set of memory-mapped segment files in a directory.
+ * {@link #write(CapturedExchange)} never blocks; the {@link CapturedExchange}s are queued and written by a
+ * background thread, and dropped when the queue is full. The disk usage is bounded by
+ * {@code segmentSize * maxSegments}; the oldest segment file is deleted when a new one is created.
+ *
+ * @see TrafficCaptureWriterBuilder
+ * @see TrafficCaptureReader
+ */
+public final class TrafficCaptureWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficCaptureWriter.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Queue<CapturedExchange> queue;
+
+    private final AtomicLong droppedExchanges = new AtomicLong();
+    private final AtomicLong writtenExchanges = new AtomicLong();
+
+    private final Deque<Path> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private MappedByteBuffer currentSegment;
+
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    TrafficCaptureWriter(Path directory, int segmentSize, int maxSegments, int maxPendingExchanges)
+            throws IOException {
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        queue = PlatformDependent.newFixedMpscQueue(maxPendingExchanges);
+
+        Files.createDirectories(directory);
+        final List<Path> existingSegments = listSegments(directory);
+        segments.addAll(existingSegments);
+        if (!existingSegments.isEmpty()) {
+            nextSequence = TrafficCaptureFormat.segmentSequence(
+                    existingSegments.get(existingSegments.size() - 1)) + 1;
+        }
+
+        writerThread = new DefaultThreadFactory("armeria-traffic-capture", true).newThread(this::runWriter);
+        writerThread.start();
+    }
+
+    /**
+     * Returns the segment files in the specified {@code directory}, sorted from the oldest to the newest.
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path p : stream) {
+                if (TrafficCaptureFormat.segmentSequence(p) >= 0) {
+                    segments.add(p);
+                }
+            }
+        }
+
+        Collections.sort(segments, Comparator.comparingLong(TrafficCaptureFormat::segmentSequence));
+        return segments;
+    }
+
+    /**
+     * Queues the specified {@link CapturedExchange} to be written. This method never blocks; the
+     * {@link CapturedExchange} is dropped if the queue is full or this writer has been closed.
+     *
+     * @return {@code true} if the {@link CapturedExchange} has been queued
+     */
+    public boolean write(CapturedExchange exchange) {
+        if (closed || !queue.offer(exchange)) {
+            droppedExchanges.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the directory where the segment files are written.
+     */
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of the {@link CapturedExchange}s written so far.
+     */
+    public long writtenExchanges() {
+        return writtenExchanges.get();
+    }
+
+    /**
+     * Returns the number of the {@link CapturedExchange}s dropped because the queue was full, the
+     * {@link CapturedExchange} was larger than a segment or an I/O error occurred.
+     */
+    public long droppedExchanges() {
+        return droppedExchanges.get();
+    }
+
+    private void runWriter() {
+        for (;;) {
+            final boolean closed = this.closed;
+            final CapturedExchange e = queue.poll();
+            if (e != null) {
+                try {
+                    if (writeExchange(e)) {
+                        writtenExchanges.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    droppedExchanges.incrementAndGet();
+                    logger.warn("Failed to write a captured exchange to: {}", directory, t);
+                }
+                continue;
+            }
+
+            if (closed) {
+                break;
+            }
+
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+
+        if (currentSegment != null) {
+            closeSegment();
+        }
+    }
+
+    private boolean writeExchange(CapturedExchange e) throws IOException {
+        final byte[] encoded = TrafficCaptureFormat.encode(e);
+        final int recordLength = LENGTH_FIELD_LENGTH + encoded.length;
+        if (recordLength > segmentSize - HEADER_LENGTH) {
+            droppedExchanges.incrementAndGet();
+            logger.debug("Dropped a captured exchange larger than a segment ({}B): {}", recordLength, e);
+            return false;
+        }
+
+        if (currentSegment == null || currentSegment.remaining() < recordLength) {
+            newSegment();
+        }
+
+        final MappedByteBuffer buf = currentSegment;
+        final int start = buf.position();
+        buf.position(start + LENGTH_FIELD_LENGTH);
+        buf.put(encoded);
+        // Write the length field last so that a reader never sees a partially written record.
+        buf.putInt(start, encoded.length);
+        return true;
+    }
+
+    private void newSegment() throws IOException {
+        if (currentSegment != null) {
+            closeSegment();
+        }
+
+        while (segments.size() >= maxSegments) {
+            final Path oldest = segments.removeFirst();
+            try {
+                Files.deleteIfExists(oldest);
+            } catch (IOException e) {
+                logger.warn("Failed to delete an old segment: {}", oldest, e);
+            }
+        }
+
+        final Path path = directory.resolve(TrafficCaptureFormat.segmentName(nextSequence++));
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            currentSegment = ch.map(MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segments.addLast(path);
+        TrafficCaptureFormat.writeHeader(currentSegment);
+    }
+
+    private void closeSegment() {
+        final MappedByteBuffer buf = currentSegment;
+        currentSegment = null;
+        try {
+            buf.force();
+        } finally {
+            PlatformDependent.freeDirectBuffer(buf);
+        }
+    }
+
+    /**
+     * Writes the queued {@link CapturedExchange}s and stops the background thread.
+     * {@link CapturedExchange}s added after this method is called are dropped.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        LockSupport.unpark(writerThread);
+
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                writerThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() +
+               "(directory: " + directory +
+               ", segmentSize: " + segmentSize +
+               ", maxSegments: " + maxSegments + ')';
+    }
+}
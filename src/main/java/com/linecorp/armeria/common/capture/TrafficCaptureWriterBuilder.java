@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.capture;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Builds a {@link TrafficCaptureWriter} instance using builder pattern.
+ */
+public final class TrafficCaptureWriterBuilder {
+
+    private static final class Defaults {
+
+        private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+        private static final int MAX_SEGMENTS = 16;
+
+        private static final int MAX_PENDING_EXCHANGES = 1024;
+    }
+
+    private final Path directory;
+
+    private int segmentSize = Defaults.SEGMENT_SIZE;
+
+    private int maxSegments = Defaults.MAX_SEGMENTS;
+
+    private int maxPendingExchanges = Defaults.MAX_PENDING_EXCHANGES;
+
+    /**
+     * Creates a new {@link TrafficCaptureWriterBuilder} that writes the segment files into the specified
+     * {@code directory}.
+     */
+    public TrafficCaptureWriterBuilder(Path directory) {
+        this.directory = requireNonNull(directory, "directory");
+    }
+
+    /**
+     * Sets the size of each memory-mapped segment file in bytes.
+     */
+    public TrafficCaptureWriterBuilder segmentSize(int segmentSize) {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("segmentSize: " + segmentSize + " (expected: >= 4096)");
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of segment files to keep. The oldest segment file is deleted when a new one
+     * is created.
+     */
+    public TrafficCaptureWriterBuilder maxSegments(int maxSegments) {
+        if (maxSegments <= 0) {
+            throw new IllegalArgumentException("maxSegments: " + maxSegments + " (expected: > 0)");
+        }
+        this.maxSegments = maxSegments;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of {@link CapturedExchange}s waiting to be written by the background thread.
+     * {@link CapturedExchange}s are dropped when the queue is full.
+     */
+    public TrafficCaptureWriterBuilder maxPendingExchanges(int maxPendingExchanges) {
+        if (maxPendingExchanges <= 0) {
+            throw new IllegalArgumentException(
+                    "maxPendingExchanges: " + maxPendingExchanges + " (expected: > 0)");
+        }
+        this.maxPendingExchanges = maxPendingExchanges;
+        return this;
+    }
+
+    /**
+     * Returns a newly-created {@link TrafficCaptureWriter} whose background thread has been started.
+     */
+    public TrafficCaptureWriter build() throws IOException {
+        return new TrafficCaptureWriter(directory, segmentSize, maxSegments, maxPendingExchanges);
+    }
+}
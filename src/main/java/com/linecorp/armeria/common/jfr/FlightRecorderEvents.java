@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.jfr;
+
+import java.net.SocketAddress;
+
+import com.linecorp.armeria.common.InvocationTimings;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.jfr.JfrEventType.Field;
+
+import io.netty.channel.Channel;
+
+/**
+ * Emits the Java Flight Recorder events of Armeria, so that the phases of the requests and the life cycle
+ * of the connections can be correlated with GC and allocation profiling. The events are emitted only while
+ * a recording is in progress; otherwise, emitting an event costs a single check.
+ *
+ * <p>The events are defined at runtime via the {@code jdk.jfr} API when it is available, i.e. on JDK 11 or
+ * above and on the JDK 8 updates which backported it. Otherwise, or when the system property
+ * {@code com.linecorp.armeria.useJfr} is {@code false}, no events are emitted.
+ * <table summary="events emitted by this class">
+ * <tr><th>event name</th><th>description</th></tr>
+ * <tr><td>{@code armeria.ServerRequest}</td>
+ * <td>A request handled by a server, with the time spent for each phase, emitted when its response has
+ * been written.</td></tr>
+ * <tr><td>{@code armeria.ConnectionOpen}</td><td>A connection has been opened.</td></tr>
+ * <tr><td>{@code armeria.ConnectionClose}</td><td>A connection has been closed.</td></tr>
+ * <tr><td>{@code armeria.ClientChannelAcquire}</td>
+ * <td>A client has acquired a connection from its connection pool.</td></tr>
+ * </table>
+ */
+public final class FlightRecorderEvents {
+
+    private static final JfrEventType SERVER_REQUEST = new JfrEventType(
+            "armeria.ServerRequest", "Server Request",
+            "A request handled by a server, emitted when its response has been written",
+            Field.of("scheme", "Scheme", String.class),
+            Field.of("host", "Host", String.class),
+            Field.of("path", "Path", String.class),
+            Field.of("method", "Method", String.class),
+            Field.of("invocationId", "Invocation ID", String.class),
+            Field.ofTimespan("decodeDuration", "Decode Duration"),
+            Field.ofTimespan("queueDuration", "Queue Duration"),
+            Field.ofTimespan("handlerDuration", "Handler Duration"),
+            Field.ofTimespan("encodeDuration", "Encode Duration"),
+            Field.ofTimespan("pendingDuration", "Pending Duration"),
+            Field.ofTimespan("totalDuration", "Total Duration"));
+
+    private static final JfrEventType CONNECTION_OPEN = new JfrEventType(
+            "armeria.ConnectionOpen", "Connection Open", "A connection has been opened",
+            Field.of("server", "Server Side", boolean.class),
+            Field.of("localAddress", "Local Address", String.class),
+            Field.of("remoteAddress", "Remote Address", String.class));
+
+    private static final JfrEventType CONNECTION_CLOSE = new JfrEventType(
+            "armeria.ConnectionClose", "Connection Close", "A connection has been closed",
+            Field.of("server", "Server Side", boolean.class),
+            Field.of("localAddress", "Local Address", String.class),
+            Field.of("remoteAddress", "Remote Address", String.class));
+
+    private static final JfrEventType CLIENT_CHANNEL_ACQUIRE = new JfrEventType(
+            "armeria.ClientChannelAcquire", "Client Channel Acquire",
+            "A client has acquired a connection from its connection pool",
+            Field.of("remoteAddress", "Remote Address", String.class),
+            Field.of("protocol", "Session Protocol", String.class),
+            Field.of("success", "Success", boolean.class),
+            Field.of("pooled", "Pooled", boolean.class),
+            Field.ofTimespan("acquireDuration", "Acquire Duration"));
+
+    /**
+     * Returns {@code true} if the Flight Recorder events can be emitted in this JVM.
+     */
+    public static boolean isAvailable() {
+        return JfrEventType.isAvailable();
+    }
+
+    /**
+     * Returns {@code true} if {@code armeria.ServerRequest} events are being recorded.
+     */
+    public static boolean isServerRequestEnabled() {
+        return SERVER_REQUEST.isEnabled();
+    }
+
+    /**
+     * Emits an {@code armeria.ServerRequest} event from the {@link InvocationTimings} of the specified
+     * {@link ServiceInvocationContext}. Call this method when the response has been written.
+     */
+    public static void serverRequest(ServiceInvocationContext ctx) {
+        if (!SERVER_REQUEST.isEnabled()) {
+            return;
+        }
+
+        final InvocationTimings timings = ctx.timings();
+        SERVER_REQUEST.commit(ctx.scheme().uriText(), ctx.host(), ctx.path(), ctx.method(),
+                              ctx.invocationId(),
+                              timings.decodeDurationNanos(), timings.queueDurationNanos(),
+                              timings.handlerDurationNanos(), timings.encodeDurationNanos(),
+                              timings.pendingDurationNanos(), timings.totalDurationNanos());
+    }
+
+    /**
+     * Emits an {@code armeria.ConnectionOpen} event.
+     */
+    public static void connectionOpen(Channel ch, boolean server) {
+        if (CONNECTION_OPEN.isEnabled()) {
+            CONNECTION_OPEN.commit(server, toString(ch.localAddress()), toString(ch.remoteAddress()));
+        }
+    }
+
+    /**
+     * Emits an {@code armeria.ConnectionClose} event.
+     */
+    public static void connectionClose(Channel ch, boolean server) {
+        if (CONNECTION_CLOSE.isEnabled()) {
+            CONNECTION_CLOSE.commit(server, toString(ch.localAddress()), toString(ch.remoteAddress()));
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code armeria.ClientChannelAcquire} events are being recorded.
+     */
+    public static boolean isClientChannelAcquireEnabled() {
+        return CLIENT_CHANNEL_ACQUIRE.isEnabled();
+    }
+
+    /**
+     * Emits an {@code armeria.ClientChannelAcquire} event.
+     *
+     * @param pooled whether an existing connection in the pool was acquired without waiting
+     * @param acquireDurationNanos the time taken to acquire the connection
+     */
+    public static void clientChannelAcquire(SocketAddress remoteAddress, SessionProtocol protocol,
+                                            boolean success, boolean pooled, long acquireDurationNanos) {
+        if (CLIENT_CHANNEL_ACQUIRE.isEnabled()) {
+            CLIENT_CHANNEL_ACQUIRE.commit(toString(remoteAddress), protocol.uriText(),
+                                          success, pooled, acquireDurationNanos);
+        }
+    }
+
+    private static String toString(SocketAddress addr) {
+        return addr != null ? addr.toString() : null;
+    }
+
+    private FlightRecorderEvents() {}
+}
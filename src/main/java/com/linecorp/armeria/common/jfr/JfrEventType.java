@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.jfr;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Flight Recorder event type defined at runtime via {@code jdk.jfr.EventFactory}. The {@code jdk.jfr} API
+ * is accessed reflectively, so that Armeria can still be built and run on a JDK without it, in which case
+ * {@link #isEnabled()} always returns {@code false}.
+ */
+final class JfrEventType {
+
+    private static final Logger logger = LoggerFactory.getLogger(JfrEventType.class);
+
+    private static final boolean USE_JFR =
+            !"false".equals(System.getProperty("com.linecorp.armeria.useJfr", "true"));
+
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    private static final Class<? extends Annotation> NAME;
+    private static final Class<? extends Annotation> LABEL;
+    private static final Class<? extends Annotation> DESCRIPTION;
+    private static final Class<? extends Annotation> CATEGORY;
+    private static final Class<? extends Annotation> STACK_TRACE;
+    private static final Class<? extends Annotation> TIMESPAN;
+
+    private static final MethodHandle NEW_ANNOTATION_ELEMENT;
+    private static final MethodHandle NEW_VALUE_DESCRIPTOR;
+    private static final MethodHandle CREATE_EVENT_FACTORY;
+    private static final MethodHandle GET_EVENT_TYPE;
+    private static final MethodHandle IS_ENABLED;
+    private static final MethodHandle NEW_EVENT;
+    private static final MethodHandle SET;
+    private static final MethodHandle COMMIT;
+
+    static {
+        Class<? extends Annotation> name = null;
+        Class<? extends Annotation> label = null;
+        Class<? extends Annotation> description = null;
+        Class<? extends Annotation> category = null;
+        Class<? extends Annotation> stackTrace = null;
+        Class<? extends Annotation> timespan = null;
+        MethodHandle newAnnotationElement = null;
+        MethodHandle newValueDescriptor = null;
+        MethodHandle createEventFactory = null;
+        MethodHandle getEventType = null;
+        MethodHandle isEnabled = null;
+        MethodHandle newEvent = null;
+        MethodHandle set = null;
+        MethodHandle commit = null;
+        Throwable cause = null;
+
+        if (USE_JFR) {
+            try {
+                name = annotationType("jdk.jfr.Name");
+                label = annotationType("jdk.jfr.Label");
+                description = annotationType("jdk.jfr.Description");
+                category = annotationType("jdk.jfr.Category");
+                stackTrace = annotationType("jdk.jfr.StackTrace");
+                timespan = annotationType("jdk.jfr.Timespan");
+
+                final Class<?> annotationElementType = Class.forName("jdk.jfr.AnnotationElement");
+                final Class<?> valueDescriptorType = Class.forName("jdk.jfr.ValueDescriptor");
+                final Class<?> eventFactoryType = Class.forName("jdk.jfr.EventFactory");
+                final Class<?> eventTypeType = Class.forName("jdk.jfr.EventType");
+                final Class<?> eventType = Class.forName("jdk.jfr.Event");
+
+                final Lookup lookup = MethodHandles.publicLookup();
+                newAnnotationElement = lookup.findConstructor(
+                        annotationElementType, MethodType.methodType(void.class, Class.class, Object.class));
+                newValueDescriptor = lookup.findConstructor(
+                        valueDescriptorType,
+                        MethodType.methodType(void.class, Class.class, String.class, List.class));
+                createEventFactory = lookup.findStatic(
+                        eventFactoryType, "create",
+                        MethodType.methodType(eventFactoryType, List.class, List.class));
+                getEventType = lookup.findVirtual(
+                        eventFactoryType, "getEventType", MethodType.methodType(eventTypeType));
+                isEnabled = lookup.findVirtual(
+                        eventTypeType, "isEnabled", MethodType.methodType(boolean.class));
+                newEvent = lookup.findVirtual(
+                        eventFactoryType, "newEvent", MethodType.methodType(eventType));
+                set = lookup.findVirtual(
+                        eventType, "set", MethodType.methodType(void.class, int.class, Object.class));
+                commit = lookup.findVirtual(eventType, "commit", MethodType.methodType(void.class));
+            } catch (Throwable t) {
+                cause = t;
+            }
+        } else {
+            cause = new IllegalStateException("disabled by com.linecorp.armeria.useJfr");
+        }
+
+        UNAVAILABILITY_CAUSE = cause;
+        NAME = name;
+        LABEL = label;
+        DESCRIPTION = description;
+        CATEGORY = category;
+        STACK_TRACE = stackTrace;
+        TIMESPAN = timespan;
+        NEW_ANNOTATION_ELEMENT = newAnnotationElement;
+        NEW_VALUE_DESCRIPTOR = newValueDescriptor;
+        CREATE_EVENT_FACTORY = createEventFactory;
+        GET_EVENT_TYPE = getEventType;
+        IS_ENABLED = isEnabled;
+        NEW_EVENT = newEvent;
+        SET = set;
+        COMMIT = commit;
+
+        if (cause == null) {
+            logger.debug("Flight Recorder events: available");
+        } else {
+            logger.debug("Flight Recorder events: unavailable", cause);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotationType(String name) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(name);
+    }
+
+    /**
+     * Returns {@code true} if the {@code jdk.jfr} API is available.
+     */
+    static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Returns the cause of the unavailability of the {@code jdk.jfr} API, or {@code null} if available.
+     */
+    static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    private final String name;
+    private final Object factory;
+    private final Object eventType;
+    private final int numFields;
+
+    /**
+     * Creates a new event type, which is registered to the Flight Recorder if available.
+     */
+    JfrEventType(String name, String label, String description, Field... fields) {
+        this.name = requireNonNull(name, "name");
+        requireNonNull(label, "label");
+        requireNonNull(description, "description");
+        requireNonNull(fields, "fields");
+        numFields = fields.length;
+
+        Object factory = null;
+        Object eventType = null;
+        if (isAvailable()) {
+            try {
+                final List<Object> annotations = new ArrayList<>();
+                annotations.add(annotation(NAME, name));
+                annotations.add(annotation(LABEL, label));
+                annotations.add(annotation(DESCRIPTION, description));
+                annotations.add(annotation(CATEGORY, new String[] { "Armeria" }));
+                annotations.add(annotation(STACK_TRACE, false));
+
+                final List<Object> valueDescriptors = new ArrayList<>(fields.length);
+                for (Field f : fields) {
+                    final List<Object> fieldAnnotations = new ArrayList<>(2);
+                    fieldAnnotations.add(annotation(LABEL, f.label));
+                    if (f.timespan) {
+                        fieldAnnotations.add(annotation(TIMESPAN, "NANOSECONDS"));
+                    }
+                    valueDescriptors.add(NEW_VALUE_DESCRIPTOR.invoke(f.type, f.name, fieldAnnotations));
+                }
+
+                factory = CREATE_EVENT_FACTORY.invoke(annotations, valueDescriptors);
+                eventType = GET_EVENT_TYPE.invoke(factory);
+            } catch (Throwable t) {
+                logger.warn("Failed to register a Flight Recorder event: {}", name, t);
+                factory = null;
+                eventType = null;
+            }
+        }
+
+        this.factory = factory;
+        this.eventType = eventType;
+    }
+
+    private static Object annotation(Class<? extends Annotation> type, Object value) throws Throwable {
+        return NEW_ANNOTATION_ELEMENT.invoke(type, value);
+    }
+
+    /**
+     * Returns the name of this event type.
+     */
+    String name() {
+        return name;
+    }
+
+    /**
+     * Returns {@code true} if this event type is being recorded. This check is cheap enough to be done for
+     * every event; call {@link #commit(Object...)} only when it returns {@code true}.
+     */
+    boolean isEnabled() {
+        final Object eventType = this.eventType;
+        if (eventType == null) {
+            return false;
+        }
+
+        try {
+            return (boolean) IS_ENABLED.invoke(eventType);
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * Commits a new event with the specified field values, in the order of the fields specified in the
+     * constructor.
+     */
+    void commit(Object... values) {
+        if (values.length != numFields) {
+            throw new IllegalArgumentException(
+                    "values.length: " + values.length + " (expected: " + numFields + ')');
+        }
+
+        final Object factory = this.factory;
+        if (factory == null) {
+            return;
+        }
+
+        try {
+            final Object event = NEW_EVENT.invoke(factory);
+            for (int i = 0; i < values.length; i++) {
+                SET.invoke(event, i, values[i]);
+            }
+            COMMIT.invoke(event);
+        } catch (Throwable t) {
+            logger.debug("Failed to commit a Flight Recorder event: {}", name, t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JfrEventType(" + name + ", " + (eventType != null ? "registered" : "unavailable") + ')';
+    }
+
+    /**
+     * A field of a {@link JfrEventType}. The name of a field must not clash with the implicit fields of
+     * the Flight Recorder events, such as {@code startTime}, {@code duration} and {@code eventThread}.
+     */
+    static final class Field {
+
+        /**
+         * Returns a new field of the specified type.
+         */
+        static Field of(String name, String label, Class<?> type) {
+            return new Field(name, label, type, false);
+        }
+
+        /**
+         * Returns a new {@code long} field which holds a duration in nanoseconds.
+         */
+        static Field ofTimespan(String name, String label) {
+            return new Field(name, label, long.class, true);
+        }
+
+        final String name;
+        final String label;
+        final Class<?> type;
+        final boolean timespan;
+
+        private Field(String name, String label, Class<?> type, boolean timespan) {
+            this.name = requireNonNull(name, "name");
+            this.label = requireNonNull(label, "label");
+            this.type = requireNonNull(type, "type");
+            this.timespan = timespan;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * <a href="https://docs.oracle.com/javacomponents/jmc-5-5/jfr-runtime-guide/about.htm">Java Flight
+ * Recorder</a> events emitted by Armeria, which are available only when running on a JDK that provides
+ * the {@code jdk.jfr} API.
+ */
+package com.linecorp.armeria.common.jfr;
@@ -36,8 +36,24 @@ public class DropwizardMetricConsumer implements MetricConsumer {
     public void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
                                    int responseSize, String hostname, String path, Optional<String> method) {
 
-        final String metricName = MetricRegistry.name(metricNamePrefix, method.orElse("__unknown__"));
-        final DropwizardRequestMetrics metrics = getRequestMetrics(metricName);
+        record(getRequestMetrics(metricName(method.orElse("__unknown__"))),
+               code, processTimeNanos, requestSize, responseSize);
+    }
+
+    @Override
+    public MethodMetricConsumer methodConsumer(String method) {
+        requireNonNull(method, "method");
+        final DropwizardRequestMetrics metrics = getRequestMetrics(metricName(method));
+        return (scheme, code, processTimeNanos, requestSize, responseSize, hostname, path, timings) ->
+                record(metrics, code, processTimeNanos, requestSize, responseSize);
+    }
+
+    private String metricName(String method) {
+        return MetricRegistry.name(metricNamePrefix, method);
+    }
+
+    private static void record(DropwizardRequestMetrics metrics, int code, long processTimeNanos,
+                               int requestSize, int responseSize) {
         metrics.updateTime(processTimeNanos);
         if (code < 400) {
             metrics.markSuccess();
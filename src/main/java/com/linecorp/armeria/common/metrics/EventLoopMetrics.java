@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+/**
+ * The metrics of an event loop monitored by {@link EventLoopWatchdog}.
+ */
+public final class EventLoopMetrics {
+
+    private final EventExecutor eventLoop;
+    private final LatencyRecorder taskLatency = new LatencyRecorder();
+
+    /**
+     * The thread of the event loop, which is known after the first probe is run.
+     */
+    private volatile Thread thread;
+
+    /**
+     * The time when the outstanding probe was submitted, or {@code 0} if there's no outstanding probe.
+     */
+    private volatile long probeStartNanos;
+
+    private volatile long pendingTasks;
+    private volatile long blockedCount;
+
+    // Accessed only by the watchdog thread.
+    private boolean reportedBlocked;
+    private long lastLoggedNanos;
+
+    EventLoopMetrics(EventExecutor eventLoop) {
+        this.eventLoop = requireNonNull(eventLoop, "eventLoop");
+    }
+
+    /**
+     * Returns the event loop whose metrics are kept by this object.
+     */
+    public EventExecutor eventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * Returns the name of the event loop thread, or the string representation of the event loop if the
+     * thread is not known yet.
+     */
+    public String name() {
+        final Thread thread = this.thread;
+        return thread != null ? thread.getName() : eventLoop.toString();
+    }
+
+    /**
+     * Returns the {@link LatencySnapshot} of the time taken for a task submitted to the event loop to start,
+     * sampled periodically by {@link EventLoopWatchdog}.
+     */
+    public LatencySnapshot taskLatency() {
+        return taskLatency.snapshot();
+    }
+
+    /**
+     * Returns the number of the tasks in the task queue of the event loop when it was sampled last time,
+     * or {@code -1} if the event loop does not expose it.
+     */
+    public long pendingTasks() {
+        return pendingTasks;
+    }
+
+    /**
+     * Returns the number of times that the event loop has been found blocked for longer than the threshold.
+     */
+    public long blockedCount() {
+        return blockedCount;
+    }
+
+    /**
+     * Returns how long the event loop has not run the outstanding probe of {@link EventLoopWatchdog} in
+     * nanoseconds, which is close to {@code 0} unless the event loop is busy or blocked.
+     */
+    public long stallNanos() {
+        final long probeStartNanos = this.probeStartNanos;
+        return probeStartNanos != 0 ? Math.max(0, System.nanoTime() - probeStartNanos) : 0;
+    }
+
+    /**
+     * Submits a probe to the event loop unless there's an outstanding one, and returns the time elapsed
+     * since the outstanding probe was submitted, or {@code -1} if a new probe was submitted.
+     */
+    long probe(long currentTimeNanos) {
+        if (eventLoop instanceof SingleThreadEventExecutor) {
+            pendingTasks = ((SingleThreadEventExecutor) eventLoop).pendingTasks();
+        } else {
+            pendingTasks = -1;
+        }
+
+        final long probeStartNanos = this.probeStartNanos;
+        if (probeStartNanos != 0) {
+            return currentTimeNanos - probeStartNanos;
+        }
+
+        // Never use 0 because it means there's no outstanding probe.
+        this.probeStartNanos = currentTimeNanos != 0 ? currentTimeNanos : 1;
+        reportedBlocked = false;
+        eventLoop.execute(this::onProbe);
+        return -1;
+    }
+
+    void cancelProbe() {
+        probeStartNanos = 0;
+    }
+
+    private void onProbe() {
+        final long probeStartNanos = this.probeStartNanos;
+        if (probeStartNanos == 0) {
+            return;
+        }
+
+        taskLatency.record(System.nanoTime() - probeStartNanos);
+        thread = Thread.currentThread();
+        this.probeStartNanos = 0;
+    }
+
+    Thread thread() {
+        return thread;
+    }
+
+    /**
+     * Returns {@code true} if the current stall has not been counted yet, and counts it.
+     */
+    boolean markBlocked() {
+        if (reportedBlocked) {
+            return false;
+        }
+
+        reportedBlocked = true;
+        blockedCount++;
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if a blocked event loop may be logged now.
+     */
+    boolean tryLog(long currentTimeNanos, long logIntervalNanos) {
+        if (lastLoggedNanos != 0 && currentTimeNanos - lastLoggedNanos < logIntervalNanos) {
+            return false;
+        }
+
+        lastLoggedNanos = currentTimeNanos != 0 ? currentTimeNanos : 1;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "EventLoopMetrics(" + name() + ", pendingTasks: " + pendingTasks +
+               ", blockedCount: " + blockedCount + ", taskLatency: " + taskLatency() + ')';
+    }
+}
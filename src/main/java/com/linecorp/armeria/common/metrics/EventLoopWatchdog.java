@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+/**
+ * Detects the event loops blocked by a long-running task, such as blocking I/O performed by a service
+ * in an event loop, which stalls all connections served by the event loop.
+ *
+ * <p>A watchdog thread periodically submits a probe task to each event loop, and measures how long it takes
+ * for the probe to start. When a probe does not start within the threshold, the event loop is considered
+ * blocked; {@link EventLoopMetrics#blockedCount()} is incremented and the stack trace of the event loop
+ * thread, which usually points to the offending code, is logged at most once every 10 seconds per event
+ * loop. The probe latency and the task queue length are also sampled into {@link EventLoopMetrics}.
+ */
+public final class EventLoopWatchdog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLoopWatchdog.class);
+
+    private static final long MIN_PROBE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_PROBE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final long blockedThresholdNanos;
+    private final long probeIntervalNanos;
+    private final List<EventLoopMetrics> metrics;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a new watchdog that monitors the event loops of the specified {@link EventExecutorGroup}.
+     * Call {@link #start()} to start monitoring.
+     *
+     * @param blockedThreshold the amount of time an event loop can take to run a newly submitted task
+     *                         before it is considered blocked
+     */
+    public EventLoopWatchdog(EventExecutorGroup eventLoopGroup, Duration blockedThreshold) {
+        requireNonNull(eventLoopGroup, "eventLoopGroup");
+        requireNonNull(blockedThreshold, "blockedThreshold");
+        if (blockedThreshold.isNegative() || blockedThreshold.isZero()) {
+            throw new IllegalArgumentException("blockedThreshold: " + blockedThreshold + " (expected: > 0)");
+        }
+
+        blockedThresholdNanos = blockedThreshold.toNanos();
+        probeIntervalNanos = Math.max(MIN_PROBE_INTERVAL_NANOS,
+                                      Math.min(MAX_PROBE_INTERVAL_NANOS, blockedThresholdNanos / 2));
+
+        final List<EventLoopMetrics> metrics = new ArrayList<>();
+        for (EventExecutor e : eventLoopGroup) {
+            metrics.add(new EventLoopMetrics(e));
+        }
+        this.metrics = Collections.unmodifiableList(metrics);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("armeria-event-loop-watchdog", true));
+    }
+
+    /**
+     * Starts monitoring the event loops.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::check, probeIntervalNanos, probeIntervalNanos,
+                                         TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the {@link EventLoopMetrics} of the monitored event loops.
+     */
+    public List<EventLoopMetrics> metrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops monitoring the event loops.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        metrics.forEach(EventLoopMetrics::cancelProbe);
+    }
+
+    private void check() {
+        final long currentTimeNanos = System.nanoTime();
+        for (EventLoopMetrics m : metrics) {
+            if (m.eventLoop().isShuttingDown()) {
+                continue;
+            }
+
+            final long stallNanos;
+            try {
+                stallNanos = m.probe(currentTimeNanos);
+            } catch (RejectedExecutionException e) {
+                // The event loop has been shut down.
+                m.cancelProbe();
+                continue;
+            } catch (Throwable t) {
+                logger.warn("Unexpected exception while probing an event loop: {}", m.name(), t);
+                continue;
+            }
+
+            if (stallNanos >= blockedThresholdNanos && m.markBlocked() &&
+                m.tryLog(currentTimeNanos, LOG_INTERVAL_NANOS)) {
+                logBlocked(m, stallNanos);
+            }
+        }
+    }
+
+    private static void logBlocked(EventLoopMetrics m, long stallNanos) {
+        final Thread thread = m.thread();
+        final BlockedEventLoopStackTrace stackTrace;
+        if (thread != null) {
+            stackTrace = new BlockedEventLoopStackTrace(thread);
+        } else {
+            stackTrace = null;
+        }
+
+        logger.warn("{} has been blocked for {} ms ({} time(s) so far):",
+                    m.name(), TimeUnit.NANOSECONDS.toMillis(stallNanos), m.blockedCount(), stackTrace);
+    }
+
+    @Override
+    public String toString() {
+        return "EventLoopWatchdog(blockedThreshold: " + TimeUnit.NANOSECONDS.toMillis(blockedThresholdNanos) +
+               "ms, eventLoops: " + metrics.size() + ')';
+    }
+
+    /**
+     * Carries the stack trace of a blocked event loop thread.
+     */
+    private static final class BlockedEventLoopStackTrace extends Exception {
+
+        private static final long serialVersionUID = 6284617440561549425L;
+
+        BlockedEventLoopStackTrace(Thread thread) {
+            super("stack trace of " + thread.getName(), null, false, true);
+            setStackTrace(thread.getStackTrace());
+        }
+    }
+}
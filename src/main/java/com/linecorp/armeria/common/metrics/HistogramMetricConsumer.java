@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.linecorp.armeria.client.metrics.MetricCollectingClient;
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.server.metrics.MetricCollectingService;
+
+/**
+ * {@link MetricConsumer} that accepts metric data from {@link MetricCollectingClient} or
+ * {@link MetricCollectingService} and records the processing time of each method into a
+ * {@link LatencyRecorder}. Unlike {@link DropwizardMetricConsumer}, whose {@code Timer}s sample the recorded
+ * values into a reservoir guarded by a lock, no value is discarded and the recording threads never contend
+ * with each other, which makes the high percentiles such as p99.9 and p99.99 accurate.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * HistogramMetricConsumer consumer = new HistogramMetricConsumer();
+ * serverBuilder.serviceAt(
+ *         "/service",
+ *         ThriftService.of(handler).decorate(MetricCollectingService.newHistogramDecorator(consumer)));
+ * ...
+ * // Report the latencies of the last interval periodically.
+ * consumer.requestMetrics().forEach((method, metrics) -> {
+ *     LatencySnapshot snapshot = metrics.latency().intervalSnapshot();
+ *     report(method, snapshot.valueAtPercentile(99.9), snapshot.valueAtPercentile(99.99));
+ * });
+ * }</pre>
+ */
+public class HistogramMetricConsumer implements MetricConsumer {
+
+    private final Map<String, HistogramRequestMetrics> methodRequestMetrics = new ConcurrentHashMap<>();
+    private final Map<String, HistogramRequestMetrics> unmodifiableMethodRequestMetrics =
+            Collections.unmodifiableMap(methodRequestMetrics);
+
+    @Override
+    public void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
+                                   int responseSize, String hostname, String path, Optional<String> method) {
+
+        final HistogramRequestMetrics metrics = getRequestMetrics(method.orElse("__unknown__"));
+        metrics.record(code, processTimeNanos, requestSize, responseSize);
+    }
+
+    @Override
+    public MethodMetricConsumer methodConsumer(String method) {
+        final HistogramRequestMetrics metrics = getRequestMetrics(requireNonNull(method, "method"));
+        return (scheme, code, processTimeNanos, requestSize, responseSize, hostname, path, timings) ->
+                metrics.record(code, processTimeNanos, requestSize, responseSize);
+    }
+
+    private HistogramRequestMetrics getRequestMetrics(String method) {
+        final HistogramRequestMetrics metrics = methodRequestMetrics.get(method);
+        if (metrics != null) {
+            return metrics;
+        }
+        return methodRequestMetrics.computeIfAbsent(method, HistogramRequestMetrics::new);
+    }
+
+    /**
+     * Returns the {@link HistogramRequestMetrics} of the methods invoked so far, keyed by method name.
+     */
+    public Map<String, HistogramRequestMetrics> requestMetrics() {
+        return unmodifiableMethodRequestMetrics;
+    }
+}
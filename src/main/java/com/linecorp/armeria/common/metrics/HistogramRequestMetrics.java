@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the invocations of a method, collected by {@link HistogramMetricConsumer}.
+ */
+public final class HistogramRequestMetrics {
+
+    private final String name;
+    private final LatencyRecorder latency = new LatencyRecorder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+
+    HistogramRequestMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the method.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the {@link LatencyRecorder} which records the processing time of the invocations.
+     */
+    public LatencyRecorder latency() {
+        return latency;
+    }
+
+    /**
+     * Returns the number of the successful invocations.
+     */
+    public long successes() {
+        return successes.sum();
+    }
+
+    /**
+     * Returns the number of the failed invocations.
+     */
+    public long failures() {
+        return failures.sum();
+    }
+
+    /**
+     * Returns the total number of the bytes in the requests.
+     */
+    public long requestBytes() {
+        return requestBytes.sum();
+    }
+
+    /**
+     * Returns the total number of the bytes in the responses.
+     */
+    public long responseBytes() {
+        return responseBytes.sum();
+    }
+
+    void record(int code, long processTimeNanos, int requestSize, int responseSize) {
+        latency.record(processTimeNanos);
+        if (code < 400) {
+            successes.increment();
+        } else {
+            failures.increment();
+        }
+        requestBytes.add(requestSize);
+        responseBytes.add(responseSize);
+    }
+
+    @Override
+    public String toString() {
+        return "<HistogramRequestMetrics for: " + name + '\n' +
+               "  latency: " + latency.snapshot() + '\n' +
+               "  successes: " + successes() + '\n' +
+               "  failures: " + failures() + '\n' +
+               "  requestBytes: " + requestBytes() + '\n' +
+               "  responseBytes: " + responseBytes() + "\n>";
+    }
+}
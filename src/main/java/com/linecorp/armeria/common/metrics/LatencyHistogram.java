@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.linecorp.armeria.common.util.UnitFormatter;
+
+/**
+ * A lock-free histogram of durations in nanoseconds whose buckets grow logarithmically, so that any
+ * recorded value is reported with a relative error less than 1% while the memory footprint stays constant
+ * regardless of the range of the recorded values. Unlike a reservoir-sampling histogram, no value is
+ * discarded, which makes the high percentiles trustworthy.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of bits used to locate a sub-bucket within a power-of-two range.
+     * 2^7 sub-buckets give the relative error of 1/128.
+     */
+    private static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (Long.SIZE - SUB_BUCKET_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records the specified duration. A negative duration is recorded as {@code 0}.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        counts.incrementAndGet(bucketIndex(nanos));
+        totalCount.increment();
+        totalNanos.add(nanos);
+
+        for (;;) {
+            final long max = maxNanos.get();
+            if (nanos <= max || maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the recorded durations.
+     */
+    public long count() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Returns the sum of the recorded durations in nanoseconds.
+     */
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns the largest recorded duration in nanoseconds.
+     */
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the arithmetic mean of the recorded durations in nanoseconds.
+     */
+    public double meanNanos() {
+        final long count = count();
+        return count != 0 ? (double) totalNanos.sum() / count : 0;
+    }
+
+    /**
+     * Returns the duration in nanoseconds at the specified percentile.
+     *
+     * @param percentile the percentile, between 0 and 100 (inclusive)
+     */
+    public long valueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException(
+                    "percentile: " + percentile + " (expected: >= 0 and <= 100)");
+        }
+
+        final long count = count();
+        if (count == 0) {
+            return 0;
+        }
+
+        final long targetCount = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulativeCount += counts.get(i);
+            if (cumulativeCount >= targetCount) {
+                return Math.min(highestEquivalentValue(i), maxNanos());
+            }
+        }
+
+        // Reached when the counts were updated concurrently.
+        return maxNanos();
+    }
+
+    /**
+     * Clears all recorded durations. The durations recorded concurrently may or may not be cleared.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        // Shift the value right so that it fits into [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT).
+        final int shift = Long.SIZE - SUB_BUCKET_BITS - 1 - Long.numberOfLeadingZeros(value);
+        return SUB_BUCKET_COUNT * (shift + 1) + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        final long lowest = subBucket << shift;
+        final long highest = lowest + (1L << shift) - 1;
+        // Prevent overflow in the last bucket.
+        return highest >= lowest ? highest : Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(128);
+        buf.append(getClass().getSimpleName());
+        buf.append("(count: ").append(count());
+        buf.append(", p50: ");
+        UnitFormatter.appendElapsed(buf, 0, valueAtPercentile(50));
+        buf.append(", p90: ");
+        UnitFormatter.appendElapsed(buf, 0, valueAtPercentile(90));
+        buf.append(", p99: ");
+        UnitFormatter.appendElapsed(buf, 0, valueAtPercentile(99));
+        buf.append(", p99.9: ");
+        UnitFormatter.appendElapsed(buf, 0, valueAtPercentile(99.9));
+        buf.append(", max: ");
+        UnitFormatter.appendElapsed(buf, 0, maxNanos());
+        buf.append(')');
+        return buf.toString();
+    }
+}
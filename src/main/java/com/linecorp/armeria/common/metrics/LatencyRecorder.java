@@ -0,0 +1,253 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * Records durations in nanoseconds into the histograms owned by the recording threads, e.g. the event
+ * loops, and merges them on read. Unlike {@link LatencyHistogram}, recording a duration involves neither
+ * a lock nor a compare-and-set operation, and the threads recording concurrently never contend for the
+ * same memory location.
+ *
+ * <p>{@link #snapshot()} returns all durations recorded so far, and {@link #intervalSnapshot()} returns
+ * only the durations recorded since the previous invocation of {@link #intervalSnapshot()}.
+ *
+ * <p>The histogram of a terminated thread is folded into a shared histogram and removed, so that the
+ * threads which recorded once and then terminated, e.g. those of a cached thread pool, do not leave their
+ * histograms behind.
+ *
+ * <p>Because a server creates a recorder per method and every event loop records into each of them, the
+ * per-thread histograms are kept small: only the durations up to {@link #MAX_TRACKABLE_NANOS} (about 68
+ * seconds) are tracked with the precision of {@link LatencyHistogram}, and the buckets of a power-of-two
+ * range are allocated when a duration in that range is recorded for the first time. A longer duration is
+ * counted as {@link #MAX_TRACKABLE_NANOS} in the percentiles, while {@link LatencySnapshot#maxNanos()} and
+ * {@link LatencySnapshot#totalNanos()} remain exact.
+ */
+public final class LatencyRecorder {
+
+    /**
+     * The largest duration tracked by the histogram, i.e. 2^36 - 1 nanoseconds.
+     */
+    static final long MAX_TRACKABLE_NANOS = (1L << 36) - 1;
+
+    /**
+     * The number of buckets required to track the durations up to {@link #MAX_TRACKABLE_NANOS}, which
+     * is a multiple of {@link LatencyHistogram#SUB_BUCKET_COUNT}.
+     */
+    static final int BUCKET_COUNT = LatencyHistogram.bucketIndex(MAX_TRACKABLE_NANOS) + 1;
+
+    private static final int RANGE_COUNT = BUCKET_COUNT / LatencyHistogram.SUB_BUCKET_COUNT;
+
+    /**
+     * The per-thread histograms of all recorders, shared so that each recorder does not consume an index
+     * of {@link FastThreadLocal}, which is never reclaimed. The recorders are weakly referenced, so that
+     * a discarded recorder does not stay in the map of every thread which recorded into it.
+     */
+    private static final FastThreadLocal<Map<LatencyRecorder, ThreadRecorder>> threadLocalRecorders =
+            new FastThreadLocal<Map<LatencyRecorder, ThreadRecorder>>() {
+                @Override
+                protected Map<LatencyRecorder, ThreadRecorder> initialValue() {
+                    return new WeakHashMap<>();
+                }
+            };
+
+    private final List<ThreadRecorder> recorders = new CopyOnWriteArrayList<>();
+
+    /**
+     * The histogram of the recorders removed from {@link #recorders}, which is updated together with
+     * {@link #recorders} while holding the lock of this recorder.
+     */
+    private final long[] retiredCounts = new long[BUCKET_COUNT];
+    private long retiredCount;
+    private long retiredTotalNanos;
+    private long retiredMaxNanos;
+
+    private LatencySnapshot lastSnapshot = LatencySnapshot.EMPTY;
+
+    /**
+     * Records the specified duration. A negative duration is recorded as {@code 0}.
+     */
+    public void record(long nanos) {
+        final Map<LatencyRecorder, ThreadRecorder> threadRecorders = threadLocalRecorders.get();
+        ThreadRecorder recorder = threadRecorders.get(this);
+        if (recorder == null) {
+            recorder = new ThreadRecorder(Thread.currentThread());
+            threadRecorders.put(this, recorder);
+            recorders.add(recorder);
+            removeRetiredRecorders();
+        }
+        recorder.record(nanos < 0 ? 0 : nanos);
+    }
+
+    /**
+     * Returns the {@link LatencySnapshot} of all durations recorded so far.
+     */
+    public synchronized LatencySnapshot snapshot() {
+        removeRetiredRecorders();
+
+        final long[] counts = retiredCounts.clone();
+        long count = retiredCount;
+        long totalNanos = retiredTotalNanos;
+        long maxNanos = retiredMaxNanos;
+        for (ThreadRecorder r : recorders) {
+            count += r.addCountsTo(counts);
+            totalNanos += r.totalNanos.get();
+            maxNanos = Math.max(maxNanos, r.maxNanos.get());
+        }
+
+        return new LatencySnapshot(counts, count, totalNanos, maxNanos);
+    }
+
+    /**
+     * Returns the {@link LatencySnapshot} of the durations recorded since the previous invocation of this
+     * method, or since this recorder was created if this method is invoked for the first time.
+     * The maximum duration of an interval is approximated with the precision of {@link LatencyHistogram}.
+     */
+    public synchronized LatencySnapshot intervalSnapshot() {
+        final LatencySnapshot current = snapshot();
+        final LatencySnapshot last = lastSnapshot;
+        lastSnapshot = current;
+
+        final long[] currentCounts = current.counts();
+        final long[] lastCounts = last.counts();
+        final long[] counts = new long[currentCounts.length];
+        long count = 0;
+        int highestIndex = -1;
+        for (int i = 0; i < counts.length; i++) {
+            final long c = currentCounts[i] - lastCounts[i];
+            if (c != 0) {
+                counts[i] = c;
+                count += c;
+                highestIndex = i;
+            }
+        }
+
+        final long maxNanos;
+        if (highestIndex >= 0) {
+            maxNanos = Math.min(LatencyHistogram.highestEquivalentValue(highestIndex), current.maxNanos());
+        } else {
+            maxNanos = 0;
+        }
+        return new LatencySnapshot(counts, count, current.totalNanos() - last.totalNanos(), maxNanos);
+    }
+
+    /**
+     * Folds the histograms of the terminated threads into {@link #retiredCounts} and removes them.
+     */
+    private synchronized void removeRetiredRecorders() {
+        for (ThreadRecorder r : recorders) {
+            if (!r.isRetired()) {
+                continue;
+            }
+
+            retiredCount += r.addCountsTo(retiredCounts);
+            retiredTotalNanos += r.totalNanos.get();
+            retiredMaxNanos = Math.max(retiredMaxNanos, r.maxNanos.get());
+            recorders.remove(r);
+        }
+    }
+
+    /**
+     * Returns the number of the per-thread histograms, which is one per live thread which recorded a duration.
+     */
+    int numRecorders() {
+        return recorders.size();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(recorders: " + recorders.size() + ')';
+    }
+
+    /**
+     * A histogram updated only by its owner thread. The updates are published with
+     * {@code lazySet()}, which is sufficient because there is only one writer. The buckets are allocated
+     * per power-of-two range, when a duration in the range is recorded for the first time.
+     */
+    private static final class ThreadRecorder {
+
+        private final WeakReference<Thread> owner;
+        private final AtomicReferenceArray<AtomicLongArray> ranges = new AtomicReferenceArray<>(RANGE_COUNT);
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        ThreadRecorder(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        /**
+         * Returns whether the thread which owns this histogram has terminated, i.e. no duration will be
+         * recorded into this histogram anymore. The termination of a thread happens-before
+         * {@link Thread#isAlive()} returns {@code false}, so all updates made by the thread are visible.
+         */
+        boolean isRetired() {
+            final Thread owner = this.owner.get();
+            return owner == null || !owner.isAlive();
+        }
+
+        void record(long nanos) {
+            final int index = LatencyHistogram.bucketIndex(Math.min(nanos, MAX_TRACKABLE_NANOS));
+            final int rangeIndex = index / LatencyHistogram.SUB_BUCKET_COUNT;
+            AtomicLongArray range = ranges.get(rangeIndex);
+            if (range == null) {
+                range = new AtomicLongArray(LatencyHistogram.SUB_BUCKET_COUNT);
+                ranges.lazySet(rangeIndex, range);
+            }
+
+            final int subIndex = index % LatencyHistogram.SUB_BUCKET_COUNT;
+            range.lazySet(subIndex, range.get(subIndex) + 1);
+            totalNanos.lazySet(totalNanos.get() + nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.lazySet(nanos);
+            }
+        }
+
+        /**
+         * Adds the counts of this histogram to the specified buckets, skipping the ranges which have never
+         * been recorded into.
+         *
+         * @return the number of the durations added
+         */
+        long addCountsTo(long[] counts) {
+            long count = 0;
+            for (int i = 0; i < RANGE_COUNT; i++) {
+                final AtomicLongArray range = ranges.get(i);
+                if (range == null) {
+                    continue;
+                }
+
+                final int offset = i * LatencyHistogram.SUB_BUCKET_COUNT;
+                for (int j = 0; j < LatencyHistogram.SUB_BUCKET_COUNT; j++) {
+                    final long c = range.get(j);
+                    counts[offset + j] += c;
+                    count += c;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import com.linecorp.armeria.common.util.UnitFormatter;
+
+/**
+ * An immutable snapshot of the durations recorded by a {@link LatencyRecorder}, which has the same
+ * precision as {@link LatencyHistogram}.
+ */
+public final class LatencySnapshot {
+
+    static final LatencySnapshot EMPTY =
+            new LatencySnapshot(new long[LatencyRecorder.BUCKET_COUNT], 0, 0, 0);
+
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    LatencySnapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+        this.counts = counts;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    long[] counts() {
+        return counts;
+    }
+
+    /**
+     * Returns the number of the recorded durations.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the recorded durations in nanoseconds.
+     */
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns the largest recorded duration in nanoseconds.
+     */
+    public long maxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Returns the arithmetic mean of the recorded durations in nanoseconds.
+     */
+    public double meanNanos() {
+        return count != 0 ? (double) totalNanos / count : 0;
+    }
+
+    /**
+     * Returns the duration in nanoseconds at the specified percentile.
+     *
+     * @param percentile the percentile, between 0 and 100 (inclusive)
+     */
+    public long valueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException(
+                    "percentile: " + percentile + " (expected: >= 0 and <= 100)");
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        final long targetCount = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulativeCount += counts[i];
+            if (cumulativeCount >= targetCount) {
+                return Math.min(LatencyHistogram.highestEquivalentValue(i), maxNanos);
+            }
+        }
+
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(160);
+        buf.append(getClass().getSimpleName());
+        buf.append("(count: ").append(count);
+        buf.append(", p50: ");
+        UnitFormatter.appendElapsed(buf, 0, valueAtPercentile(50));
+        buf.append(", p99: ");
+        UnitFormatter.appendElapsed(buf, 0, valueAtPercentile(99));
+        buf.append(", p99.9: ");
+        UnitFormatter.appendElapsed(buf, 0, valueAtPercentile(99.9));
+        buf.append(", p99.99: ");
+        UnitFormatter.appendElapsed(buf, 0, valueAtPercentile(99.99));
+        buf.append(", max: ");
+        UnitFormatter.appendElapsed(buf, 0, maxNanos);
+        buf.append(')');
+        return buf.toString();
+    }
+}
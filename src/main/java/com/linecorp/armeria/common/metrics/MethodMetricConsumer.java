@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+import com.linecorp.armeria.common.InvocationTimings;
+import com.linecorp.armeria.common.Scheme;
+
+/**
+ * A {@link MetricConsumer} bound to a certain method, which has resolved everything that depends only on the
+ * method name, such as the metric names, in advance.
+ *
+ * @see MetricConsumer#methodConsumer(String)
+ */
+@FunctionalInterface
+public interface MethodMetricConsumer {
+    /**
+     * Invoked for each request to the method that has been processed.
+     *
+     * @see MetricConsumer#invocationComplete(Scheme, int, long, int, int, String, String, Optional,
+     *      InvocationTimings)
+     */
+    void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
+                            int responseSize, String hostname, String path,
+                            @Nullable InvocationTimings timings);
+}
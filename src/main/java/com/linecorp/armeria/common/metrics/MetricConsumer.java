@@ -19,8 +19,11 @@ package com.linecorp.armeria.common.metrics;
 import java.util.Objects;
 import java.util.Optional;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.LoggerFactory;
 
+import com.linecorp.armeria.common.InvocationTimings;
 import com.linecorp.armeria.common.Scheme;
 import com.linecorp.armeria.common.SessionProtocol;
 
@@ -39,20 +42,79 @@ public interface MetricConsumer {
     void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
                             int responseSize, String hostname, String path, Optional<String> method);
 
+    /**
+     * Invoked for each request that has been processed, with the {@link InvocationTimings} which break down
+     * {@code processTimeNanos} into phases. The default implementation ignores {@code timings} and invokes
+     * {@link #invocationComplete(Scheme, int, long, int, int, String, String, Optional)}. Override this
+     * method to record the latency of each phase.
+     *
+     * @param timings the {@link InvocationTimings} of the invocation, or {@code null} if the request was
+     *                rejected before an invocation is created from it, e.g. due to a decode failure
+     */
+    default void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
+                                    int responseSize, String hostname, String path, Optional<String> method,
+                                    @Nullable InvocationTimings timings) {
+        invocationComplete(scheme, code, processTimeNanos, requestSize, responseSize, hostname, path, method);
+    }
+
+    /**
+     * Returns a {@link MethodMetricConsumer} which consumes the metric data of the specified method.
+     * The returned {@link MethodMetricConsumer} is resolved once per method and cached by the caller, so that
+     * no per-method lookup is performed for each request. The default implementation returns a
+     * {@link MethodMetricConsumer} which invokes
+     * {@link #invocationComplete(Scheme, int, long, int, int, String, String, Optional, InvocationTimings)}.
+     * Override this method to resolve the method-specific resources such as the metrics in advance.
+     */
+    default MethodMetricConsumer methodConsumer(String method) {
+        final Optional<String> optionalMethod = Optional.of(method);
+        return (scheme, code, processTimeNanos, requestSize, responseSize, hostname, path, timings) ->
+                invocationComplete(scheme, code, processTimeNanos, requestSize, responseSize,
+                                   hostname, path, optionalMethod, timings);
+    }
+
     default MetricConsumer andThen(MetricConsumer other) {
         Objects.requireNonNull(other, "other");
-        return (scheme, code, processNanoTime, requestSize, responseSize, hostname, path,
-                mappedPath) -> {
-            try {
-                invocationComplete(scheme, code, processNanoTime, requestSize, responseSize,
-                                   hostname, path, mappedPath);
-            } catch (Throwable e) {
-                LoggerFactory.getLogger(MetricConsumer.class).warn(
-                        "invocationComplete() failed with an exception: {}", e);
+        final MetricConsumer first = this;
+        return new MetricConsumer() {
+            @Override
+            public void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
+                                           int responseSize, String hostname, String path,
+                                           Optional<String> method) {
+                invocationComplete(scheme, code, processTimeNanos, requestSize, responseSize,
+                                   hostname, path, method, null);
+            }
+
+            @Override
+            public void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
+                                           int responseSize, String hostname, String path,
+                                           Optional<String> method, InvocationTimings timings) {
+                try {
+                    first.invocationComplete(scheme, code, processTimeNanos, requestSize, responseSize,
+                                             hostname, path, method, timings);
+                } catch (Throwable e) {
+                    LoggerFactory.getLogger(MetricConsumer.class).warn(
+                            "invocationComplete() failed with an exception: {}", e);
+                }
+                other.invocationComplete(scheme, code, processTimeNanos, requestSize, responseSize,
+                                         hostname, path, method, timings);
+            }
+
+            @Override
+            public MethodMetricConsumer methodConsumer(String method) {
+                final MethodMetricConsumer firstMethodConsumer = first.methodConsumer(method);
+                final MethodMetricConsumer otherMethodConsumer = other.methodConsumer(method);
+                return (scheme, code, processTimeNanos, requestSize, responseSize, hostname, path, timings) -> {
+                    try {
+                        firstMethodConsumer.invocationComplete(scheme, code, processTimeNanos, requestSize,
+                                                               responseSize, hostname, path, timings);
+                    } catch (Throwable e) {
+                        LoggerFactory.getLogger(MetricConsumer.class).warn(
+                                "invocationComplete() failed with an exception: {}", e);
+                    }
+                    otherMethodConsumer.invocationComplete(scheme, code, processTimeNanos, requestSize,
+                                                           responseSize, hostname, path, timings);
+                };
             }
-            other.invocationComplete(scheme, code, processNanoTime, requestSize, responseSize,
-                                     hostname, path, mappedPath);
         };
     }
 }
-
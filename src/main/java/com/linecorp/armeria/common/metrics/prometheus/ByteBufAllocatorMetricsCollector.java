@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics.prometheus;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.ToLongFunction;
+
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+import com.linecorp.armeria.common.util.ByteBufAllocatorBuilder;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * A {@link PrometheusCollector} that exposes the arena and chunk usage of {@link PooledByteBufAllocator}s,
+ * such as the ones built by {@link ByteBufAllocatorBuilder}. Each allocator is distinguished by the
+ * {@code allocator} label, and each arena by the {@code type} ({@code heap} or {@code direct}) and
+ * {@code arena} labels. The allocators which are not a {@link PooledByteBufAllocator} are ignored.
+ *
+ * <table summary="metrics exposed by this collector">
+ * <tr><th>metric name</th><th>type</th><th>labels</th></tr>
+ * <tr><td>{@code armeria_bytebuf_thread_local_caches}</td><td>gauge</td>
+ *     <td>{@code allocator}</td></tr>
+ * <tr><td>{@code armeria_bytebuf_arena_thread_caches}</td><td>gauge</td>
+ *     <td>{@code allocator}, {@code type}, {@code arena}</td></tr>
+ * <tr><td>{@code armeria_bytebuf_arena_allocations_total}</td><td>counter</td>
+ *     <td>{@code allocator}, {@code type}, {@code arena}, {@code size}</td></tr>
+ * <tr><td>{@code armeria_bytebuf_arena_deallocations_total}</td><td>counter</td>
+ *     <td>{@code allocator}, {@code type}, {@code arena}, {@code size}</td></tr>
+ * <tr><td>{@code armeria_bytebuf_arena_active_allocations}</td><td>gauge</td>
+ *     <td>{@code allocator}, {@code type}, {@code arena}, {@code size}</td></tr>
+ * <tr><td>{@code armeria_bytebuf_arena_active_bytes}</td><td>gauge</td>
+ *     <td>{@code allocator}, {@code type}, {@code arena}</td></tr>
+ * <tr><td>{@code armeria_bytebuf_arena_chunks}</td><td>gauge</td>
+ *     <td>{@code allocator}, {@code type}, {@code arena}, {@code usage}</td></tr>
+ * <tr><td>{@code armeria_bytebuf_arena_chunk_bytes}</td><td>gauge</td>
+ *     <td>{@code allocator}, {@code type}, {@code arena}</td></tr>
+ * <tr><td>{@code armeria_bytebuf_arena_chunk_free_bytes}</td><td>gauge</td>
+ *     <td>{@code allocator}, {@code type}, {@code arena}</td></tr>
+ * </table>
+ *
+ * <p>The {@code size} label is one of {@code tiny}, {@code small}, {@code normal} and {@code huge}, and
+ * the {@code usage} label is the usage range of the chunk list which holds the chunks, e.g. {@code 25-75}.
+ */
+public final class ByteBufAllocatorMetricsCollector implements PrometheusCollector {
+
+    private static final String[] SIZE_LABELS = { "tiny", "small", "normal", "huge" };
+
+    private static final List<ToLongFunction<PoolArenaMetric>> ALLOCATIONS = Arrays.asList(
+            PoolArenaMetric::numTinyAllocations,
+            PoolArenaMetric::numSmallAllocations,
+            PoolArenaMetric::numNormalAllocations,
+            PoolArenaMetric::numHugeAllocations);
+
+    private static final List<ToLongFunction<PoolArenaMetric>> DEALLOCATIONS = Arrays.asList(
+            PoolArenaMetric::numTinyDeallocations,
+            PoolArenaMetric::numSmallDeallocations,
+            PoolArenaMetric::numNormalDeallocations,
+            PoolArenaMetric::numHugeDeallocations);
+
+    private static final List<ToLongFunction<PoolArenaMetric>> ACTIVE_ALLOCATIONS = Arrays.asList(
+            PoolArenaMetric::numActiveTinyAllocations,
+            PoolArenaMetric::numActiveSmallAllocations,
+            PoolArenaMetric::numActiveNormalAllocations,
+            PoolArenaMetric::numActiveHugeAllocations);
+
+    private final Map<String, PooledByteBufAllocator> allocators;
+
+    /**
+     * Creates a new instance that exposes the metrics of the specified {@link ByteBufAllocator}, labeled
+     * with the specified {@code name}.
+     */
+    public ByteBufAllocatorMetricsCollector(String name, ByteBufAllocator allocator) {
+        this(Collections.singletonMap(requireNonNull(name, "name"), requireNonNull(allocator, "allocator")));
+    }
+
+    /**
+     * Creates a new instance that exposes the metrics of the specified {@link ByteBufAllocator}s, keyed by
+     * the value of the {@code allocator} label.
+     */
+    public ByteBufAllocatorMetricsCollector(Map<String, ? extends ByteBufAllocator> allocators) {
+        requireNonNull(allocators, "allocators");
+        this.allocators = new LinkedHashMap<>();
+        for (Entry<String, ? extends ByteBufAllocator> e : allocators.entrySet()) {
+            if (e.getValue() instanceof PooledByteBufAllocator) {
+                this.allocators.put(e.getKey(), (PooledByteBufAllocator) e.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        if (allocators.isEmpty()) {
+            return;
+        }
+
+        out.family("armeria_bytebuf_thread_local_caches", Type.GAUGE,
+                   "The number of the thread-local caches of the allocator.");
+        for (Entry<String, PooledByteBufAllocator> e : allocators.entrySet()) {
+            out.sample("armeria_bytebuf_thread_local_caches").label("allocator", e.getKey())
+               .value(e.getValue().numThreadLocalCaches());
+        }
+
+        // Flatten the arenas so that every family lists them in the same order.
+        final List<Arena> arenas = new ArrayList<>();
+        for (Entry<String, PooledByteBufAllocator> e : allocators.entrySet()) {
+            addArenas(arenas, e.getKey(), "heap", e.getValue().heapArenas());
+            addArenas(arenas, e.getKey(), "direct", e.getValue().directArenas());
+        }
+        if (arenas.isEmpty()) {
+            return;
+        }
+
+        out.family("armeria_bytebuf_arena_thread_caches", Type.GAUGE,
+                   "The number of the thread-local caches backed by the arena.");
+        for (Arena a : arenas) {
+            a.sample(out, "armeria_bytebuf_arena_thread_caches").value(a.metric.numThreadCaches());
+        }
+
+        collectBySize(out, arenas, "armeria_bytebuf_arena_allocations_total", Type.COUNTER,
+                      "The number of the allocations from the arena.", ALLOCATIONS);
+        collectBySize(out, arenas, "armeria_bytebuf_arena_deallocations_total", Type.COUNTER,
+                      "The number of the deallocations from the arena.", DEALLOCATIONS);
+        collectBySize(out, arenas, "armeria_bytebuf_arena_active_allocations", Type.GAUGE,
+                      "The number of the buffers allocated from the arena and not released yet.",
+                      ACTIVE_ALLOCATIONS);
+
+        out.family("armeria_bytebuf_arena_active_bytes", Type.GAUGE,
+                   "The number of the bytes allocated from the arena and not released yet.");
+        for (Arena a : arenas) {
+            a.sample(out, "armeria_bytebuf_arena_active_bytes").value(a.metric.numActiveBytes());
+        }
+
+        // Walk the chunks only once because it requires the lock of the arena.
+        final long[] chunkBytes = new long[arenas.size()];
+        final long[] chunkFreeBytes = new long[arenas.size()];
+        out.family("armeria_bytebuf_arena_chunks", Type.GAUGE,
+                   "The number of the chunks in the arena, labeled with the usage range of the chunk list.");
+        for (int i = 0; i < chunkBytes.length; i++) {
+            final Arena a = arenas.get(i);
+            for (PoolChunkListMetric list : a.metric.chunkLists()) {
+                long numChunks = 0;
+                for (PoolChunkMetric chunk : list) {
+                    numChunks++;
+                    chunkBytes[i] += chunk.chunkSize();
+                    chunkFreeBytes[i] += chunk.freeBytes();
+                }
+                a.sample(out, "armeria_bytebuf_arena_chunks")
+                 .label("usage", Math.max(0, list.minUsage()) + "-" + Math.min(100, list.maxUsage()))
+                 .value(numChunks);
+            }
+        }
+
+        out.family("armeria_bytebuf_arena_chunk_bytes", Type.GAUGE,
+                   "The number of the bytes of the chunks in the arena.");
+        for (int i = 0; i < chunkBytes.length; i++) {
+            arenas.get(i).sample(out, "armeria_bytebuf_arena_chunk_bytes").value(chunkBytes[i]);
+        }
+
+        out.family("armeria_bytebuf_arena_chunk_free_bytes", Type.GAUGE,
+                   "The number of the free bytes of the chunks in the arena.");
+        for (int i = 0; i < chunkFreeBytes.length; i++) {
+            arenas.get(i).sample(out, "armeria_bytebuf_arena_chunk_free_bytes").value(chunkFreeBytes[i]);
+        }
+    }
+
+    private static void addArenas(List<Arena> arenas, String allocator, String type,
+                                  List<PoolArenaMetric> metrics) {
+        for (int i = 0; i < metrics.size(); i++) {
+            arenas.add(new Arena(allocator, type, String.valueOf(i), metrics.get(i)));
+        }
+    }
+
+    private static void collectBySize(PrometheusWriter out, List<Arena> arenas, String name, Type type,
+                                      String help, List<ToLongFunction<PoolArenaMetric>> values) {
+        out.family(name, type, help);
+        for (Arena a : arenas) {
+            for (int i = 0; i < SIZE_LABELS.length; i++) {
+                a.sample(out, name).label("size", SIZE_LABELS[i]).value(values.get(i).applyAsLong(a.metric));
+            }
+        }
+    }
+
+    private static final class Arena {
+        final String allocator;
+        final String type;
+        final String index;
+        final PoolArenaMetric metric;
+
+        Arena(String allocator, String type, String index, PoolArenaMetric metric) {
+            this.allocator = allocator;
+            this.type = type;
+            this.index = index;
+            this.metric = metric;
+        }
+
+        PrometheusWriter sample(PrometheusWriter out, String name) {
+            return out.sample(name).label("allocator", allocator).label("type", type).label("arena", index);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics.prometheus;
+
+/**
+ * Writes a set of metric families in the Prometheus text format when scraped. Each metric family must be
+ * written by only one {@link PrometheusCollector}.
+ */
+@FunctionalInterface
+public interface PrometheusCollector {
+    /**
+     * Writes the current values of the metrics of this collector into the specified
+     * {@link PrometheusWriter}.
+     */
+    void collect(PrometheusWriter out) throws Exception;
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics.prometheus;
+
+import static java.util.Objects.requireNonNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * Writes metrics in the
+ * <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus text format</a>
+ * directly into a {@link ByteBuf}, without creating an intermediate {@link String} for a sample or a value.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * out.family("armeria_requests_total", Type.COUNTER, "The number of the requests.");
+ * out.sample("armeria_requests_total").label("method", "hello").label("result", "success").value(42);
+ * }</pre>
+ * produces:
+ * <pre>{@code
+ * # HELP armeria_requests_total The number of the requests.
+ * # TYPE armeria_requests_total counter
+ * armeria_requests_total{method="hello",result="success"} 42
+ * }</pre>
+ */
+public final class PrometheusWriter {
+
+    /**
+     * The type of a metric family.
+     */
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary"),
+        UNTYPED("untyped");
+
+        private final String typeName;
+
+        Type(String typeName) {
+            this.typeName = typeName;
+        }
+    }
+
+    private final ByteBuf out;
+    private boolean inLabels;
+
+    /**
+     * Creates a new instance that writes into the specified {@link ByteBuf}.
+     */
+    public PrometheusWriter(ByteBuf out) {
+        this.out = requireNonNull(out, "out");
+    }
+
+    /**
+     * Returns the {@link ByteBuf} this writer writes into.
+     */
+    public ByteBuf out() {
+        return out;
+    }
+
+    /**
+     * Writes the {@code HELP} and {@code TYPE} lines of a metric family. Invoke this method once before
+     * writing the samples of a family.
+     */
+    public PrometheusWriter family(String name, Type type, String help) {
+        requireNonNull(name, "name");
+        requireNonNull(type, "type");
+        requireNonNull(help, "help");
+
+        ByteBufUtil.writeAscii(out, "# HELP ");
+        ByteBufUtil.writeAscii(out, name);
+        out.writeByte(' ');
+        writeEscaped(help, false);
+        out.writeByte('\n');
+        ByteBufUtil.writeAscii(out, "# TYPE ");
+        ByteBufUtil.writeAscii(out, name);
+        out.writeByte(' ');
+        ByteBufUtil.writeAscii(out, type.typeName);
+        out.writeByte('\n');
+        return this;
+    }
+
+    /**
+     * Starts a sample of the specified metric. Invoke {@link #label(String, String)} for each label and then
+     * {@link #value(long)} or {@link #nanosAsSeconds(long)} to complete the sample.
+     */
+    public PrometheusWriter sample(String name) {
+        ByteBufUtil.writeAscii(out, requireNonNull(name, "name"));
+        inLabels = false;
+        return this;
+    }
+
+    /**
+     * Adds a label to the current sample.
+     */
+    public PrometheusWriter label(String name, String value) {
+        requireNonNull(name, "name");
+        requireNonNull(value, "value");
+
+        out.writeByte(inLabels ? ',' : '{');
+        inLabels = true;
+        ByteBufUtil.writeAscii(out, name);
+        out.writeByte('=');
+        out.writeByte('"');
+        writeEscaped(value, true);
+        out.writeByte('"');
+        return this;
+    }
+
+    /**
+     * Completes the current sample with the specified value.
+     */
+    public PrometheusWriter value(long value) {
+        endLabels();
+        writeLong(out, value);
+        out.writeByte('\n');
+        return this;
+    }
+
+    /**
+     * Completes the current sample with the specified duration in nanoseconds, which is written in seconds
+     * as the Prometheus convention suggests. The value is written in the scientific notation, e.g.
+     * {@code 1500e-9}, so that no floating-point formatting is involved.
+     */
+    public PrometheusWriter nanosAsSeconds(long nanos) {
+        endLabels();
+        writeLong(out, nanos);
+        if (nanos != 0) {
+            ByteBufUtil.writeAscii(out, "e-9");
+        }
+        out.writeByte('\n');
+        return this;
+    }
+
+    private void endLabels() {
+        if (inLabels) {
+            out.writeByte('}');
+            inLabels = false;
+        }
+        out.writeByte(' ');
+    }
+
+    private void writeEscaped(String value, boolean quoted) {
+        final int length = value.length();
+        int i;
+        for (i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80 || c == '\\' || c == '\n' || quoted && c == '"') {
+                break;
+            }
+        }
+
+        if (i == length) {
+            // Fast path: ASCII only and nothing to escape.
+            ByteBufUtil.writeAscii(out, value);
+            return;
+        }
+
+        for (i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                out.writeByte('\\').writeByte('\\');
+                break;
+            case '\n':
+                out.writeByte('\\').writeByte('n');
+                break;
+            case '"':
+                if (quoted) {
+                    out.writeByte('\\');
+                }
+                out.writeByte('"');
+                break;
+            default:
+                if (c < 0x80) {
+                    out.writeByte(c);
+                } else if (Character.isHighSurrogate(c) && i + 1 < length) {
+                    ByteBufUtil.writeUtf8(out, value.substring(i, i + 2));
+                    i++;
+                } else {
+                    ByteBufUtil.writeUtf8(out, String.valueOf(c));
+                }
+            }
+        }
+    }
+
+    static void writeLong(ByteBuf out, long value) {
+        if (value == Long.MIN_VALUE) {
+            ByteBufUtil.writeAscii(out, "-9223372036854775808");
+            return;
+        }
+
+        if (value < 0) {
+            out.writeByte('-');
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+
+        out.ensureWritable(digits);
+        final int start = out.writerIndex();
+        for (int i = start + digits - 1; i >= start; i--) {
+            out.setByte(i, '0' + (int) (value % 10));
+            value /= 10;
+        }
+        out.writerIndex(start + digits);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics.prometheus;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.linecorp.armeria.common.metrics.HistogramMetricConsumer;
+import com.linecorp.armeria.common.metrics.HistogramRequestMetrics;
+import com.linecorp.armeria.common.metrics.LatencySnapshot;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+
+/**
+ * A {@link PrometheusCollector} that exposes the request metrics collected by
+ * {@link HistogramMetricConsumer}s. Each {@link HistogramMetricConsumer} is distinguished by the
+ * {@code service} label.
+ *
+ * <table summary="metrics exposed by this collector">
+ * <tr><th>metric name</th><th>type</th><th>labels</th></tr>
+ * <tr><td>{@code armeria_requests_total}</td><td>counter</td>
+ *     <td>{@code service}, {@code method}, {@code result}</td></tr>
+ * <tr><td>{@code armeria_request_bytes_total}</td><td>counter</td>
+ *     <td>{@code service}, {@code method}</td></tr>
+ * <tr><td>{@code armeria_response_bytes_total}</td><td>counter</td>
+ *     <td>{@code service}, {@code method}</td></tr>
+ * <tr><td>{@code armeria_request_duration_seconds}</td><td>summary</td>
+ *     <td>{@code service}, {@code method}, {@code quantile}</td></tr>
+ * </table>
+ */
+public final class RequestMetricsCollector implements PrometheusCollector {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999, 0.9999 };
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.9", "0.99", "0.999", "0.9999" };
+
+    private final Map<String, HistogramMetricConsumer> consumers;
+
+    /**
+     * Creates a new instance that exposes the metrics of the specified {@link HistogramMetricConsumer}s,
+     * keyed by the value of the {@code service} label.
+     */
+    public RequestMetricsCollector(Map<String, HistogramMetricConsumer> consumers) {
+        requireNonNull(consumers, "consumers");
+        this.consumers = new LinkedHashMap<>(consumers);
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        // Flatten the metrics so that every family lists them in the same order.
+        final List<String> services = new ArrayList<>();
+        final List<HistogramRequestMetrics> metricsList = new ArrayList<>();
+        for (Entry<String, HistogramMetricConsumer> e : consumers.entrySet()) {
+            for (HistogramRequestMetrics m : e.getValue().requestMetrics().values()) {
+                services.add(e.getKey());
+                metricsList.add(m);
+            }
+        }
+
+        final int size = metricsList.size();
+        out.family("armeria_requests_total", Type.COUNTER, "The number of the requests.");
+        for (int i = 0; i < size; i++) {
+            final HistogramRequestMetrics m = metricsList.get(i);
+            out.sample("armeria_requests_total").label("service", services.get(i)).label("method", m.name())
+               .label("result", "success").value(m.successes());
+            out.sample("armeria_requests_total").label("service", services.get(i)).label("method", m.name())
+               .label("result", "failure").value(m.failures());
+        }
+
+        out.family("armeria_request_bytes_total", Type.COUNTER, "The number of the bytes in the requests.");
+        for (int i = 0; i < size; i++) {
+            final HistogramRequestMetrics m = metricsList.get(i);
+            out.sample("armeria_request_bytes_total").label("service", services.get(i))
+               .label("method", m.name()).value(m.requestBytes());
+        }
+
+        out.family("armeria_response_bytes_total", Type.COUNTER, "The number of the bytes in the responses.");
+        for (int i = 0; i < size; i++) {
+            final HistogramRequestMetrics m = metricsList.get(i);
+            out.sample("armeria_response_bytes_total").label("service", services.get(i))
+               .label("method", m.name()).value(m.responseBytes());
+        }
+
+        out.family("armeria_request_duration_seconds", Type.SUMMARY, "The processing time of the requests.");
+        for (int i = 0; i < size; i++) {
+            final HistogramRequestMetrics m = metricsList.get(i);
+            final LatencySnapshot snapshot = m.latency().snapshot();
+            for (int j = 0; j < QUANTILES.length; j++) {
+                out.sample("armeria_request_duration_seconds").label("service", services.get(i))
+                   .label("method", m.name()).label("quantile", QUANTILE_LABELS[j])
+                   .nanosAsSeconds(snapshot.valueAtPercentile(QUANTILES[j] * 100));
+            }
+            out.sample("armeria_request_duration_seconds_sum").label("service", services.get(i))
+               .label("method", m.name()).nanosAsSeconds(snapshot.totalNanos());
+            out.sample("armeria_request_duration_seconds_count").label("service", services.get(i))
+               .label("method", m.name()).value(snapshot.count());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.linecorp.armeria.common.metrics.prometheus;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.linecorp.armeria.client.thrift.ThriftClientCodec;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+import com.linecorp.armeria.common.thrift.ThriftBufferSizePredictor;
+import com.linecorp.armeria.server.thrift.ThriftService;
+
+/**
+ * A {@link PrometheusCollector} that exposes the {@link ThriftBufferSizePredictor}s of Thrift methods,
+ * such as the ones returned by {@link ThriftService#replySizePredictors()} and
+ * {@link ThriftClientCodec#callSizePredictors()}. Each set of predictors is distinguished by the
+ * {@code service} label, and each predictor by the {@code method} label.
+ *
+ * <table summary="metrics exposed by this collector">
+ * <tr><th>metric name</th><th>type</th><th>labels</th></tr>
+ * <tr><td>{@code armeria_thrift_buffer_predicted_bytes}</td><td>gauge</td>
+ *     <td>{@code service}, {@code method}</td></tr>
+ * <tr><td>{@code armeria_thrift_buffer_messages_total}</td><td>counter</td>
+ *     <td>{@code service}, {@code method}</td></tr>
+ * <tr><td>{@code armeria_thrift_buffer_resized_messages_total}</td><td>counter</td>
+ *     <td>{@code service}, {@code method}</td></tr>
+ * </table>
+ */
+public final class ThriftBufferSizeMetricsCollector implements PrometheusCollector {
+
+    private final Map<String, Map<String, ThriftBufferSizePredictor>> predictors;
+
+    /**
+     * Creates a new instance that exposes the specified {@link ThriftBufferSizePredictor}s keyed by method
+     * name, labeled with the specified {@code service}.
+     */
+    public ThriftBufferSizeMetricsCollector(String service, Map<String, ThriftBufferSizePredictor> predictors) {
+        this(Collections.singletonMap(requireNonNull(service, "service"),
+                                      requireNonNull(predictors, "predictors")));
+    }
+
+    /**
+     * Creates a new instance that exposes the specified sets of {@link ThriftBufferSizePredictor}s keyed by
+     * method name, which are keyed by the value of the {@code service} label.
+     */
+    public ThriftBufferSizeMetricsCollector(
+            Map<String, ? extends Map<String, ThriftBufferSizePredictor>> predictors) {
+        requireNonNull(predictors, "predictors");
+        this.predictors = new LinkedHashMap<>(predictors);
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        // Flatten the predictors so that every family lists them in the same order.
+        final List<String> services = new ArrayList<>();
+        final List<String> methods = new ArrayList<>();
+        final List<ThriftBufferSizePredictor> predictorList = new ArrayList<>();
+        for (Entry<String, Map<String, ThriftBufferSizePredictor>> e : predictors.entrySet()) {
+            for (Entry<String, ThriftBufferSizePredictor> m : e.getValue().entrySet()) {
+                services.add(e.getKey());
+                methods.add(m.getKey());
+                predictorList.add(m.getValue());
+            }
+        }
+
+        final int size = predictorList.size();
+        if (size == 0) {
+            return;
+        }
+
+        out.family("armeria_thrift_buffer_predicted_bytes", Type.GAUGE,
+                   "The initial capacity of the buffer of the next message.");
+        for (int i = 0; i < size; i++) {
+            out.sample("armeria_thrift_buffer_predicted_bytes")
+               .label("service", services.get(i)).label("method", methods.get(i))
+               .value(predictorList.get(i).predictedSize());
+        }
+
+        out.family("armeria_thrift_buffer_messages_total", Type.COUNTER,
+                   "The number of the messages whose size was recorded.");
+        for (int i = 0; i < size; i++) {
+            out.sample("armeria_thrift_buffer_messages_total")
+               .label("service", services.get(i)).label("method", methods.get(i))
+               .value(predictorList.get(i).count());
+        }
+
+        out.family("armeria_thrift_buffer_resized_messages_total", Type.COUNTER,
+                   "The number of the messages which outgrew their initial buffers.");
+        for (int i = 0; i < size; i++) {
+            out.sample("armeria_thrift_buffer_resized_messages_total")
+               .label("service", services.get(i)).label("method", methods.get(i))
+               .value(predictorList.get(i).resizedCount());
+        }
+    }
+}
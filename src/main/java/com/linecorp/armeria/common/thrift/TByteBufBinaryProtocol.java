@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import static com.linecorp.armeria.common.thrift.TByteBufProtocolUtil.readable;
+
+import java.nio.ByteBuffer;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * A {@link TBinaryProtocol} that reads from and writes to the {@link ByteBuf} of a {@link TByteBufTransport}
+ * directly. Strings are decoded from and encoded into the {@link ByteBuf} without intermediate
+ * {@code byte[]}s, and binary fields are returned as the views of the {@link ByteBuf} if
+ * {@linkplain TByteBufTransport#sliceBinary() allowed by the transport}. The encoding is the same as that
+ * of {@link TBinaryProtocol} with non-strict read and strict write.
+ */
+public final class TByteBufBinaryProtocol extends TBinaryProtocol {
+
+    /**
+     * A {@link TBinaryProtocol.Factory} that creates a {@link TByteBufBinaryProtocol} for
+     * a {@link TByteBufTransport} and a {@link TBinaryProtocol} for other transports.
+     */
+    public static class Factory extends TBinaryProtocol.Factory {
+
+        private static final long serialVersionUID = -3406470487427436457L;
+
+        @Override
+        public TProtocol getProtocol(TTransport trans) {
+            if (trans instanceof TByteBufTransport) {
+                return new TByteBufBinaryProtocol((TByteBufTransport) trans);
+            }
+            return super.getProtocol(trans);
+        }
+    }
+
+    private final TByteBufTransport transport;
+
+    /**
+     * Creates a new instance that reads from and writes to the specified {@link TByteBufTransport}.
+     */
+    public TByteBufBinaryProtocol(TByteBufTransport transport) {
+        super(transport);
+        this.transport = transport;
+    }
+
+    @Override
+    public void writeByte(byte b) {
+        transport.buf().writeByte(b);
+    }
+
+    @Override
+    public void writeI16(short i16) {
+        transport.buf().writeShort(i16);
+    }
+
+    @Override
+    public void writeI32(int i32) {
+        transport.buf().writeInt(i32);
+    }
+
+    @Override
+    public void writeI64(long i64) {
+        transport.buf().writeLong(i64);
+    }
+
+    @Override
+    public void writeString(String str) {
+        // Reserve the length field and fill it in once the string is encoded.
+        final ByteBuf buf = transport.buf();
+        final int lengthIndex = buf.writerIndex();
+        buf.writeInt(0);
+        buf.setInt(lengthIndex, ByteBufUtil.writeUtf8(buf, str));
+    }
+
+    @Override
+    public void writeBinary(ByteBuffer bin) {
+        final ByteBuf buf = transport.buf();
+        buf.writeInt(bin.remaining());
+        TByteBufProtocolUtil.writeBinary(buf, bin);
+    }
+
+    @Override
+    public byte readByte() throws TException {
+        return readable(transport, 1).readByte();
+    }
+
+    @Override
+    public short readI16() throws TException {
+        return readable(transport, 2).readShort();
+    }
+
+    @Override
+    public int readI32() throws TException {
+        return readable(transport, 4).readInt();
+    }
+
+    @Override
+    public long readI64() throws TException {
+        return readable(transport, 8).readLong();
+    }
+
+    @Override
+    public String readString() throws TException {
+        return TByteBufProtocolUtil.readString(transport, readI32());
+    }
+
+    @Override
+    public String readStringBody(int size) throws TException {
+        return TByteBufProtocolUtil.readString(transport, size);
+    }
+
+    @Override
+    public ByteBuffer readBinary() throws TException {
+        return TByteBufProtocolUtil.readBinary(transport, readI32());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import static com.linecorp.armeria.common.thrift.TByteBufProtocolUtil.readable;
+
+import java.nio.ByteBuffer;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.transport.TTransport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * A {@link TCompactProtocol} that reads from and writes to the {@link ByteBuf} of
+ * a {@link TByteBufTransport} directly. Integers, strings and binaries are decoded from and encoded into
+ * the {@link ByteBuf} without intermediate {@code byte[]}s, and binary fields are returned as the views of
+ * the {@link ByteBuf} if {@linkplain TByteBufTransport#sliceBinary() allowed by the transport}.
+ */
+public final class TByteBufCompactProtocol extends TCompactProtocol {
+
+    /**
+     * A {@link TCompactProtocol.Factory} that creates a {@link TByteBufCompactProtocol} for
+     * a {@link TByteBufTransport} and a {@link TCompactProtocol} for other transports.
+     */
+    public static class Factory extends TCompactProtocol.Factory {
+
+        private static final long serialVersionUID = 2209404467224540417L;
+
+        @Override
+        public TProtocol getProtocol(TTransport trans) {
+            if (trans instanceof TByteBufTransport) {
+                return new TByteBufCompactProtocol((TByteBufTransport) trans);
+            }
+            return super.getProtocol(trans);
+        }
+    }
+
+    private final TByteBufTransport transport;
+
+    /**
+     * Creates a new instance that reads from and writes to the specified {@link TByteBufTransport}.
+     */
+    public TByteBufCompactProtocol(TByteBufTransport transport) {
+        super(transport);
+        this.transport = transport;
+    }
+
+    @Override
+    public void writeI16(short i16) {
+        writeVarint32(intToZigZag(i16));
+    }
+
+    @Override
+    public void writeI32(int i32) {
+        writeVarint32(intToZigZag(i32));
+    }
+
+    @Override
+    public void writeI64(long i64) {
+        writeVarint64(longToZigZag(i64));
+    }
+
+    @Override
+    public void writeDouble(double dub) {
+        transport.buf().writeLong(Long.reverseBytes(Double.doubleToLongBits(dub)));
+    }
+
+    @Override
+    public void writeString(String str) {
+        final int length = TByteBufProtocolUtil.utf8Length(str);
+        writeVarint32(length);
+        if (length != 0) {
+            ByteBufUtil.writeUtf8(transport.buf(), str);
+        }
+    }
+
+    @Override
+    public void writeBinary(ByteBuffer bin) {
+        writeVarint32(bin.remaining());
+        TByteBufProtocolUtil.writeBinary(transport.buf(), bin);
+    }
+
+    @Override
+    public byte readByte() throws TException {
+        return readable(transport, 1).readByte();
+    }
+
+    @Override
+    public short readI16() throws TException {
+        return (short) zigZagToInt(readVarint32());
+    }
+
+    @Override
+    public int readI32() throws TException {
+        return zigZagToInt(readVarint32());
+    }
+
+    @Override
+    public long readI64() throws TException {
+        return zigZagToLong(readVarint64());
+    }
+
+    @Override
+    public double readDouble() throws TException {
+        return Double.longBitsToDouble(Long.reverseBytes(readable(transport, 8).readLong()));
+    }
+
+    @Override
+    public String readString() throws TException {
+        return TByteBufProtocolUtil.readString(transport, readVarint32());
+    }
+
+    @Override
+    public ByteBuffer readBinary() throws TException {
+        return TByteBufProtocolUtil.readBinary(transport, readVarint32());
+    }
+
+    private void writeVarint32(int n) {
+        final ByteBuf buf = transport.buf();
+        while ((n & ~0x7F) != 0) {
+            buf.writeByte(n & 0x7F | 0x80);
+            n >>>= 7;
+        }
+        buf.writeByte(n);
+    }
+
+    private void writeVarint64(long n) {
+        final ByteBuf buf = transport.buf();
+        while ((n & ~0x7FL) != 0) {
+            buf.writeByte((int) n & 0x7F | 0x80);
+            n >>>= 7;
+        }
+        buf.writeByte((int) n);
+    }
+
+    private int readVarint32() throws TException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new TProtocolException(TProtocolException.INVALID_DATA, "varint32 too long");
+    }
+
+    private long readVarint64() throws TException {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final byte b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new TProtocolException(TProtocolException.INVALID_DATA, "varint64 too long");
+    }
+
+    private static int intToZigZag(int n) {
+        return n << 1 ^ n >> 31;
+    }
+
+    private static long longToZigZag(long n) {
+        return n << 1 ^ n >> 63;
+    }
+
+    private static int zigZagToInt(int n) {
+        return n >>> 1 ^ -(n & 1);
+    }
+
+    private static long zigZagToLong(long n) {
+        return n >>> 1 ^ -(n & 1);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.transport.TTransportException;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Utility methods shared by {@link TByteBufBinaryProtocol} and {@link TByteBufCompactProtocol}.
+ */
+final class TByteBufProtocolUtil {
+
+    private static final ByteBuffer EMPTY_BINARY = ByteBuffer.allocate(0);
+
+    /**
+     * Returns the {@link ByteBuf} of the specified transport after ensuring it has at least the specified
+     * number of readable bytes.
+     */
+    static ByteBuf readable(TByteBufTransport transport, int length) throws TTransportException {
+        final ByteBuf buf = transport.buf();
+        if (buf.readableBytes() < length) {
+            throw new TTransportException(TTransportException.END_OF_FILE, "unexpected end of frame");
+        }
+        return buf;
+    }
+
+    static String readString(TByteBufTransport transport, int length) throws TException {
+        if (length == 0) {
+            return "";
+        }
+
+        final ByteBuf buf = readable(transport, validateLength(length));
+        final String str = buf.toString(buf.readerIndex(), length, StandardCharsets.UTF_8);
+        buf.skipBytes(length);
+        return str;
+    }
+
+    static ByteBuffer readBinary(TByteBufTransport transport, int length) throws TException {
+        if (length == 0) {
+            return EMPTY_BINARY.duplicate();
+        }
+
+        final ByteBuf buf = readable(transport, validateLength(length));
+        final ByteBuffer binary;
+        if (transport.sliceBinary()) {
+            binary = buf.nioBuffer(buf.readerIndex(), length);
+            buf.skipBytes(length);
+        } else {
+            final byte[] array = new byte[length];
+            buf.readBytes(array);
+            binary = ByteBuffer.wrap(array);
+        }
+        return binary;
+    }
+
+    /**
+     * Writes the remaining bytes of the specified {@link ByteBuffer} without changing its position.
+     * Unlike the protocols of Thrift, a direct {@link ByteBuffer} is also accepted.
+     */
+    static void writeBinary(ByteBuf buf, ByteBuffer binary) {
+        buf.writeBytes(binary.duplicate());
+    }
+
+    /**
+     * Returns the number of the bytes of the specified {@link String} encoded in UTF-8, which is the same
+     * with {@code str.getBytes(StandardCharsets.UTF_8).length}, without encoding it.
+     */
+    static int utf8Length(String str) {
+        final int length = str.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                utf8Length++;
+            } else if (Character.isSurrogate(c)) {
+                // A valid surrogate pair takes 4 bytes and a malformed surrogate is replaced with '?'.
+                if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(str.charAt(i + 1))) {
+                    utf8Length += 2;
+                    i++;
+                }
+            } else {
+                utf8Length += 2;
+            }
+        }
+        return utf8Length;
+    }
+
+    private static int validateLength(int length) throws TProtocolException {
+        if (length < 0) {
+            throw new TProtocolException(TProtocolException.NEGATIVE_SIZE, "Negative length: " + length);
+        }
+        return length;
+    }
+
+    private TByteBufProtocolUtil() {}
+}
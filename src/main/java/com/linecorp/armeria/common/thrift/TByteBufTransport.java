@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A {@link TTransport} that reads from and writes to a {@link ByteBuf}. {@link TByteBufBinaryProtocol} and
+ * {@link TByteBufCompactProtocol} access the {@link ByteBuf} of this transport directly, so that they
+ * decode and encode strings and binaries without intermediate {@code byte[]}s.
+ */
+public final class TByteBufTransport extends TTransport {
+
+    private ByteBuf buf;
+    private boolean sliceBinary;
+
+    /**
+     * Creates a new transport without a {@link ByteBuf}. Call {@link #reset(ByteBuf)} before use.
+     */
+    public TByteBufTransport() {}
+
+    /**
+     * Creates a new transport that reads from and writes to the specified {@link ByteBuf}.
+     */
+    public TByteBufTransport(ByteBuf buf) {
+        reset(buf);
+    }
+
+    /**
+     * Makes this transport read from and write to the specified {@link ByteBuf}. The binary fields read
+     * from this transport are copied out of the {@link ByteBuf}.
+     */
+    public void reset(ByteBuf buf) {
+        reset(buf, false);
+    }
+
+    /**
+     * Makes this transport read from and write to the specified {@link ByteBuf}.
+     *
+     * @param sliceBinary whether the binary fields read from this transport may share the memory of
+     *                    the {@link ByteBuf} rather than being copied out of it. Specify {@code true} only
+     *                    when the {@link ByteBuf} is not released while the decoded objects are in use.
+     */
+    public void reset(ByteBuf buf, boolean sliceBinary) {
+        this.buf = buf;
+        this.sliceBinary = sliceBinary;
+    }
+
+    /**
+     * Removes the reference to the {@link ByteBuf} specified with {@link #reset(ByteBuf)}.
+     */
+    public void clear() {
+        buf = null;
+        sliceBinary = false;
+    }
+
+    /**
+     * Returns the {@link ByteBuf} this transport reads from and writes to.
+     */
+    public ByteBuf buf() {
+        return buf;
+    }
+
+    /**
+     * Returns whether the binary fields read from this transport may share the memory of {@link #buf()}.
+     */
+    public boolean sliceBinary() {
+        return sliceBinary;
+    }
+
+    @Override
+    public void close() { }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void open() { }
+
+    @Override
+    public int read(byte[] buf, int off, int len) {
+        int bytesRemaining = this.buf.readableBytes();
+        int amtToRead = len > bytesRemaining ? bytesRemaining : len;
+        if (amtToRead > 0) {
+            this.buf.readBytes(buf, off, amtToRead);
+        }
+        return amtToRead;
+    }
+
+    @Override
+    public int readAll(byte[] buf, int off, int len) throws TTransportException {
+        int bytesRemaining = this.buf.readableBytes();
+        if (len > bytesRemaining) {
+            throw new TTransportException(TTransportException.END_OF_FILE, "unexpected end of frame");
+        }
+
+        this.buf.readBytes(buf, off, len);
+        return len;
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        this.buf.writeBytes(buf, off, len);
+    }
+
+    // Expose the backing array only when slicing is allowed, because the protocols of Thrift return
+    // the binary fields read via the array as the views of it.
+
+    @Override
+    public byte[] getBuffer() {
+        ByteBuf buf = this.buf;
+        if (buf == null || !sliceBinary || !buf.hasArray())  {
+            return null;
+        } else {
+            return buf.array();
+        }
+    }
+
+    @Override
+    public int getBufferPosition() {
+        ByteBuf buf = this.buf;
+        if (buf == null || !sliceBinary || !buf.hasArray())  {
+            return 0;
+        } else {
+            return buf.arrayOffset() + buf.readerIndex();
+        }
+    }
+
+    @Override
+    public int getBytesRemainingInBuffer() {
+        ByteBuf buf = this.buf;
+        if (buf != null && sliceBinary && buf.hasArray()) {
+            return buf.readableBytes();
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public void consumeBuffer(int len) {
+        buf.skipBytes(len);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.linecorp.armeria.common.metrics.prometheus.ThriftBufferSizeMetricsCollector;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Predicts the size of the messages of a Thrift method from the sizes of its recent messages, so that the
+ * buffer of a message is allocated large enough up front rather than grown by reallocation and copy while
+ * the message is being written.
+ *
+ * <p>The predicted size is the 90th percentile of the last {@value #WINDOW_SIZE} recorded sizes, which is
+ * updated every {@value #UPDATE_INTERVAL} records. The number of the messages which outgrew their initial
+ * buffers is kept as {@link #resizedCount()}. The counts can be exposed with
+ * {@link ThriftBufferSizeMetricsCollector}.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class ThriftBufferSizePredictor {
+
+    static final int WINDOW_SIZE = 64;
+    static final int UPDATE_INTERVAL = 16;
+
+    private static final int MIN_SIZE = 64;
+    private static final int DEFAULT_SIZE = 256;
+    private static final int MAX_SIZE = 4 * 1024 * 1024;
+    private static final int PERCENTILE_INDEX = WINDOW_SIZE * 9 / 10;
+
+    // Recorded by the event loops and the other threads which encode messages, without a lock. The window
+    // may be read by update() while another thread writes a size into it, but a stale size only skews one
+    // prediction slightly, and predictedSize is volatile so that every thread sees the latest prediction.
+    private final AtomicIntegerArray sizes = new AtomicIntegerArray(WINDOW_SIZE);
+    private final AtomicLong count = new AtomicLong();
+    private final LongAdder resizedCount = new LongAdder();
+    private volatile int predictedSize = DEFAULT_SIZE;
+
+    /**
+     * Returns a new {@link ByteBuf} whose initial capacity is the predicted size.
+     */
+    public ByteBuf newBuffer(ByteBufAllocator alloc) {
+        return alloc.buffer(predictedSize);
+    }
+
+    /**
+     * Records the size of a message written into a {@link ByteBuf} of the specified initial capacity.
+     */
+    public void record(int initialCapacity, int size) {
+        if (size > initialCapacity) {
+            resizedCount.increment();
+        }
+
+        final long count = this.count.getAndIncrement();
+        sizes.lazySet((int) (count & WINDOW_SIZE - 1), size);
+
+        final long newCount = count + 1;
+        if (newCount % UPDATE_INTERVAL == 0) {
+            update(newCount);
+        }
+    }
+
+    private void update(long count) {
+        final int[] sizes = new int[(int) Math.min(count, WINDOW_SIZE)];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = this.sizes.get(i);
+        }
+        Arrays.sort(sizes);
+
+        final int size = sizes[PERCENTILE_INDEX * sizes.length / WINDOW_SIZE];
+        predictedSize = Math.max(MIN_SIZE, Math.min(MAX_SIZE, size));
+    }
+
+    /**
+     * Returns the initial capacity of the next buffer.
+     */
+    public int predictedSize() {
+        return predictedSize;
+    }
+
+    /**
+     * Returns the number of the recorded messages.
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Returns the number of the recorded messages which did not fit into their initial buffers.
+     */
+    public long resizedCount() {
+        return resizedCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ThriftBufferSizePredictor(predictedSize: " + predictedSize + ", count: " + count() +
+               ", resizedCount: " + resizedCount() + ')';
+    }
+}
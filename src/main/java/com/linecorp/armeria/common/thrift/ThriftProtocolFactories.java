@@ -32,9 +32,10 @@ import com.linecorp.armeria.common.thrift.text.TTextProtocol;
 public final class ThriftProtocolFactories {
 
     /**
-     * {@link TProtocolFactory} for Thrift TBinary protocol
+     * {@link TProtocolFactory} for Thrift TBinary protocol. It creates a {@link TByteBufBinaryProtocol} for
+     * a {@link TByteBufTransport}.
      */
-    public static final TProtocolFactory BINARY = new TBinaryProtocol.Factory() {
+    public static final TProtocolFactory BINARY = new TByteBufBinaryProtocol.Factory() {
         private static final long serialVersionUID = -9020693963961565748L;
 
         @Override
@@ -44,9 +45,10 @@ public final class ThriftProtocolFactories {
     };
 
     /**
-     * {@link TProtocolFactory} for Thrift TCompact protocol
+     * {@link TProtocolFactory} for Thrift TCompact protocol. It creates a {@link TByteBufCompactProtocol} for
+     * a {@link TByteBufTransport}.
      */
-    public static final TProtocolFactory COMPACT = new TCompactProtocol.Factory() {
+    public static final TProtocolFactory COMPACT = new TByteBufCompactProtocol.Factory() {
         private static final long serialVersionUID = 1629726795326210377L;
 
         @Override
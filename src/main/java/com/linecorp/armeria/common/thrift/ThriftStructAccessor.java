@@ -0,0 +1,347 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.thrift.TBase;
+import org.apache.thrift.TBaseHelper;
+import org.apache.thrift.TFieldIdEnum;
+import org.apache.thrift.meta_data.FieldMetaData;
+
+/**
+ * Creates a generated Thrift struct and accesses its fields via the {@link MethodHandle}s resolved once
+ * per struct class. Unlike {@link TBase#setFieldValue(TFieldIdEnum, Object)},
+ * {@link TBase#getFieldValue(TFieldIdEnum)} and {@link TBase#isSet(TFieldIdEnum)}, which look a field up
+ * with a {@code switch} statement on every call, each {@link Field} invokes the generated setter, field
+ * and {@code isSet} method of its own field directly.
+ */
+public final class ThriftStructAccessor {
+
+    private static final Lookup lookup = MethodHandles.publicLookup();
+
+    private static final MethodType NEW_INSTANCE_TYPE = MethodType.methodType(TBase.class);
+    private static final MethodType GET_TYPE = MethodType.methodType(Object.class, TBase.class);
+    private static final MethodType SET_TYPE = MethodType.methodType(void.class, TBase.class, Object.class);
+    private static final MethodType IS_SET_TYPE = MethodType.methodType(boolean.class, TBase.class);
+
+    private static final MethodHandle GET_FIELD_VALUE;
+    private static final MethodHandle SET_FIELD_VALUE;
+    private static final MethodHandle IS_SET;
+
+    static {
+        try {
+            GET_FIELD_VALUE = lookup.findVirtual(
+                    TBase.class, "getFieldValue", MethodType.methodType(Object.class, TFieldIdEnum.class));
+            SET_FIELD_VALUE = lookup.findVirtual(
+                    TBase.class, "setFieldValue",
+                    MethodType.methodType(void.class, TFieldIdEnum.class, Object.class));
+            IS_SET = lookup.findVirtual(
+                    TBase.class, "isSet", MethodType.methodType(boolean.class, TFieldIdEnum.class));
+        } catch (ReflectiveOperationException e) {
+            throw new Error(e);
+        }
+    }
+
+    private static final ClassValue<ThriftStructAccessor> accessors = new ClassValue<ThriftStructAccessor>() {
+        @Override
+        protected ThriftStructAccessor computeValue(Class<?> structClass) {
+            return new ThriftStructAccessor(structClass);
+        }
+    };
+
+    /**
+     * Returns the {@link ThriftStructAccessor} of the specified generated Thrift struct class.
+     *
+     * @throws IllegalArgumentException if the specified class is not a concrete {@link TBase} class with
+     *                                  a public no-arg constructor
+     */
+    public static ThriftStructAccessor of(Class<?> structClass) {
+        requireNonNull(structClass, "structClass");
+        if (!TBase.class.isAssignableFrom(structClass) || Modifier.isAbstract(structClass.getModifiers())) {
+            throw new IllegalArgumentException(
+                    "structClass: " + structClass.getName() + " (expected: a concrete TBase class)");
+        }
+        return accessors.get(structClass);
+    }
+
+    private final Class<?> structClass;
+    private final MethodHandle constructor;
+    private final List<Field> fields;
+    private final Map<String, Field> fieldsByName;
+
+    private ThriftStructAccessor(Class<?> structClass) {
+        this.structClass = structClass;
+
+        try {
+            constructor = lookup.findConstructor(structClass, MethodType.methodType(void.class))
+                                .asType(NEW_INSTANCE_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(
+                    "structClass: " + structClass.getName() + " (expected: a public no-arg constructor)", e);
+        }
+
+        @SuppressWarnings("unchecked")
+        final Map<? extends TFieldIdEnum, FieldMetaData> metaDataMap =
+                FieldMetaData.getStructMetaDataMap((Class<? extends TBase<?, ?>>) structClass);
+
+        final List<Field> fields = new ArrayList<>(metaDataMap.size());
+        final Map<String, Field> fieldsByName = new HashMap<>();
+        for (Map.Entry<? extends TFieldIdEnum, FieldMetaData> e : metaDataMap.entrySet()) {
+            final TFieldIdEnum id = e.getKey();
+            final Field field = new Field(structClass, id, e.getValue());
+            fields.add(field);
+            fieldsByName.put(id.getFieldName(), field);
+        }
+
+        this.fields = Collections.unmodifiableList(fields);
+        this.fieldsByName = Collections.unmodifiableMap(fieldsByName);
+    }
+
+    /**
+     * Returns the struct class accessed by this accessor.
+     */
+    public Class<?> structClass() {
+        return structClass;
+    }
+
+    /**
+     * Creates a new empty instance of the struct.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends TBase<?, ?>> T newInstance() {
+        try {
+            return (T) (TBase<?, ?>) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Returns the {@link Field}s of the struct, in the order of their declaration.
+     */
+    public List<Field> fields() {
+        return fields;
+    }
+
+    /**
+     * Returns the {@link Field} with the specified name, or {@code null} if there's no such field.
+     */
+    public Field field(String name) {
+        return fieldsByName.get(name);
+    }
+
+    /**
+     * Returns the values of all fields of the specified struct, in the order of their declaration.
+     * A {@code binary} field is returned as a {@code byte[]} like {@link TBase#getFieldValue(TFieldIdEnum)}
+     * does, while {@link Field#get(TBase)} returns its {@link ByteBuffer}.
+     */
+    public List<Object> values(TBase<?, ?> struct) {
+        final int numFields = fields.size();
+        final Object[] values = new Object[numFields];
+        for (int i = 0; i < numFields; i++) {
+            final Object value = fields.get(i).get(struct);
+            values[i] = value instanceof ByteBuffer ? TBaseHelper.byteBufferToByteArray((ByteBuffer) value)
+                                                    : value;
+        }
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    @Override
+    public String toString() {
+        return "ThriftStructAccessor(" + structClass.getName() + ')';
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    /**
+     * Accesses a field of a generated Thrift struct. The generated setter, public field and {@code isSet}
+     * method of the field are used when found, and the equivalent {@link TBase} methods otherwise, e.g. when
+     * the struct was generated with private members.
+     */
+    public static final class Field {
+
+        private final TFieldIdEnum id;
+        private final FieldMetaData metaData;
+        private final Class<?> type;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final MethodHandle isSet;
+
+        Field(Class<?> structClass, TFieldIdEnum id, FieldMetaData metaData) {
+            this.id = id;
+            this.metaData = metaData;
+
+            final String name = id.getFieldName();
+            final String capitalizedName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+            java.lang.reflect.Field field;
+            try {
+                field = structClass.getField(name);
+                if (Modifier.isStatic(field.getModifiers())) {
+                    field = null;
+                }
+            } catch (NoSuchFieldException ignored) {
+                field = null;
+            }
+
+            MethodHandle getter = null;
+            MethodHandle setter = null;
+            MethodHandle isSet = null;
+            if (field != null) {
+                type = field.getType();
+                try {
+                    getter = lookup.unreflectGetter(field);
+                    setter = findSetter(structClass, "set" + capitalizedName, type);
+                    isSet = findIsSet(structClass, "isSet" + capitalizedName);
+                } catch (IllegalAccessException ignored) {
+                    // Fall back to the TBase methods.
+                }
+            } else {
+                type = Object.class;
+            }
+
+            this.getter = getter != null ? getter.asType(GET_TYPE)
+                                         : MethodHandles.insertArguments(GET_FIELD_VALUE, 1, id)
+                                                        .asType(GET_TYPE);
+            this.setter = setter != null ? setter.asType(SET_TYPE)
+                                         : MethodHandles.insertArguments(SET_FIELD_VALUE, 1, id)
+                                                        .asType(SET_TYPE);
+            this.isSet = isSet != null ? isSet.asType(IS_SET_TYPE)
+                                       : MethodHandles.insertArguments(IS_SET, 1, id).asType(IS_SET_TYPE);
+        }
+
+        private static MethodHandle findSetter(
+                Class<?> structClass, String name, Class<?> type) throws IllegalAccessException {
+            final Method method;
+            try {
+                method = structClass.getMethod(name, type);
+            } catch (NoSuchMethodException ignored) {
+                return null;
+            }
+
+            // The struct returned by the generated setter for chaining is dropped by asType().
+            return lookup.unreflect(method);
+        }
+
+        private static MethodHandle findIsSet(Class<?> structClass, String name) throws IllegalAccessException {
+            final Method method;
+            try {
+                method = structClass.getMethod(name);
+            } catch (NoSuchMethodException ignored) {
+                return null;
+            }
+            return method.getReturnType() == boolean.class ? lookup.unreflect(method) : null;
+        }
+
+        /**
+         * Returns the {@link TFieldIdEnum} of the field.
+         */
+        public TFieldIdEnum id() {
+            return id;
+        }
+
+        /**
+         * Returns the {@link FieldMetaData} of the field.
+         */
+        public FieldMetaData metaData() {
+            return metaData;
+        }
+
+        /**
+         * Returns the name of the field.
+         */
+        public String name() {
+            return id.getFieldName();
+        }
+
+        /**
+         * Returns the Java type of the field, or {@link Object} if unknown.
+         */
+        public Class<?> type() {
+            return type;
+        }
+
+        /**
+         * Returns the value of the field in the specified struct.
+         */
+        public Object get(TBase<?, ?> struct) {
+            try {
+                return getter.invokeExact(struct);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        /**
+         * Sets the value of the field in the specified struct, or unsets the field if the value is
+         * {@code null}.
+         */
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        public void set(TBase<?, ?> struct, Object value) {
+            if (value == null) {
+                // Let the struct unset the field, which is what the generated code does for null.
+                ((TBase) struct).setFieldValue(id, null);
+                return;
+            }
+
+            try {
+                setter.invokeExact(struct, value);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        /**
+         * Returns whether the field is set in the specified struct.
+         */
+        public boolean isSet(TBase<?, ?> struct) {
+            try {
+                return (boolean) isSet.invokeExact(struct);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name() + ':' + type.getSimpleName();
+        }
+    }
+}
@@ -16,15 +16,12 @@
 
 package com.linecorp.armeria.common.thrift;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.apache.thrift.TBase;
 import org.apache.thrift.TFieldIdEnum;
-import org.apache.thrift.meta_data.FieldMetaData;
 import org.apache.thrift.meta_data.FieldValueMetaData;
 import org.apache.thrift.meta_data.StructMetaData;
 import org.apache.thrift.protocol.TType;
@@ -43,12 +40,11 @@ public final class ThriftUtil {
     }
 
     /**
-     * Converts the specified Thrift call parameters to a list of Java objects.
+     * Converts the specified Thrift call parameters to a list of Java objects. A {@code binary} parameter is
+     * converted to a {@code byte[]}.
      */
     public static List<Object> toJavaParams(TBase<TBase<?, ?>, TFieldIdEnum> params) {
-        return Collections.unmodifiableList(
-                FieldMetaData.getStructMetaDataMap(params.getClass()).keySet().stream()
-                             .map(params::getFieldValue).collect(Collectors.toList()));
+        return ThriftStructAccessor.of(params.getClass()).values(params);
     }
 
     /**
@@ -19,8 +19,6 @@ package com.linecorp.armeria.common.thrift.text;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TField;
 
-import com.fasterxml.jackson.databind.JsonNode;
-
 /**
  * A base parsing context. Used as a root level parsing context for
  * parsing Json Objects
@@ -63,19 +61,4 @@ class BaseContext {
     protected TField getTFieldByName(String name) throws TException {
         return unsupportedOperation();
     }
-
-    /**
-     * Return the json element that should be processed next. Used for
-     * Contexts that have child JsonElements, e.g. Sequences, Maps, etc.
-     */
-    protected JsonNode getCurrentChild() {
-        return unsupportedOperation();
-    }
-
-    /**
-     * Are there more child elements to process?
-     */
-    protected boolean hasMoreChildren() {
-        return (Boolean) unsupportedOperation();
-    }
 }
@@ -20,6 +20,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.thrift.TApplicationException;
 import org.apache.thrift.TBase;
@@ -32,8 +33,6 @@ import org.apache.thrift.protocol.TType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
-
 /**
  * A struct parsing context. Builds a map from field name to TField.
  *
@@ -42,26 +41,36 @@ import com.fasterxml.jackson.databind.JsonNode;
 class StructContext extends PairContext {
     private static final Logger log = LoggerFactory.getLogger(StructContext.class);
 
-    // When processing a given thrift struct, we need certain information
-    // for every field in that struct. We store that here, in a map
-    // from fieldName (a string) to a TField object describing that
-    // field.
-    private final Map<String, TField> fieldNameMap;
+    /**
+     * Caches the result of the class name lookups done while walking the call stack.
+     * {@code Void.class} denotes a class which is neither a thrift message nor a TApplicationException.
+     */
+    private static final Map<String, Class<?>> messageClasses = new ConcurrentHashMap<>();
 
     /**
-     * Build the name -> TField map
+     * Caches the field name map of each thrift message class.
      */
-    StructContext(JsonNode json) {
-        super(json);
-        fieldNameMap = computeFieldNameMap();
-    }
+    private static final Map<Class<?>, Map<String, TField>> fieldNameMaps = new ConcurrentHashMap<>();
+
+    // When processing a given thrift struct, we need certain information
+    // for every field in that struct. We store that here, in a map
+    // from fieldName (a string) to a TField object describing that
+    // field. It is looked up when the first field is read, so that
+    // writing a struct does not pay for walking the call stack.
+    private Map<String, TField> fieldNameMap;
 
     @Override
     protected TField getTFieldByName(String name) throws TException {
-        if (!fieldNameMap.containsKey(name)) {
+        if (fieldNameMap == null) {
+            fieldNameMap = fieldNameMaps.computeIfAbsent(getCurrentThriftMessageClass(),
+                                                         StructContext::computeFieldNameMap);
+        }
+
+        final TField field = fieldNameMap.get(name);
+        if (field == null) {
             throw new TException("Unknown field: " + name);
         }
-        return fieldNameMap.get(name);
+        return field;
     }
 
     /**
@@ -94,47 +103,54 @@ class StructContext extends PairContext {
      * To fix this, we can track call stack of nested thrift objects on our own by overriding
      * TProtocol.writeStructBegin(), rather than relying on the stack trace.
      */
-    private Class<?> getCurrentThriftMessageClass() {
+    private static Class<?> getCurrentThriftMessageClass() {
         StackTraceElement[] frames =
                 Thread.currentThread().getStackTrace();
 
         for (int i = 0; i < frames.length; ++i) {
-            String className = frames[i].getClassName();
-
-            try {
-                Class clazz = Class.forName(className);
-
-                // Note, we need to check
-                // if the class is abstract, because abstract class does not have metaDataMap
-                // if the class has no-arg constructor, because FieldMetaData.getStructMetaDataMap
-                //   calls clazz.newInstance
-                if (isTBase(clazz) && !isAbstract(clazz) && hasNoArgConstructor(clazz)) {
-                    return clazz;
-                }
-
-                if (isTApplicationException(clazz)) {
-                    return clazz;
-                }
-            } catch (ClassNotFoundException ex) {
-                log.warn("Can't find class: " + className, ex);
+            final Class<?> clazz = messageClasses.computeIfAbsent(frames[i].getClassName(),
+                                                                  StructContext::findMessageClass);
+            if (clazz != Void.class) {
+                return clazz;
             }
         }
         throw new RuntimeException("Must call (indirectly) from a TBase/TApplicationException object.");
     }
 
-    private boolean isTBase(Class clazz) {
+    private static Class<?> findMessageClass(String className) {
+        try {
+            Class clazz = Class.forName(className);
+
+            // Note, we need to check
+            // if the class is abstract, because abstract class does not have metaDataMap
+            // if the class has no-arg constructor, because FieldMetaData.getStructMetaDataMap
+            //   calls clazz.newInstance
+            if (isTBase(clazz) && !isAbstract(clazz) && hasNoArgConstructor(clazz)) {
+                return clazz;
+            }
+
+            if (isTApplicationException(clazz)) {
+                return clazz;
+            }
+        } catch (ClassNotFoundException ex) {
+            log.warn("Can't find class: " + className, ex);
+        }
+        return Void.class;
+    }
+
+    private static boolean isTBase(Class clazz) {
         return TBase.class.isAssignableFrom(clazz);
     }
 
-    private boolean isTApplicationException(Class clazz) {
+    private static boolean isTApplicationException(Class clazz) {
         return TApplicationException.class.isAssignableFrom(clazz);
     }
 
-    private boolean isAbstract(Class clazz) {
+    private static boolean isAbstract(Class clazz) {
         return Modifier.isAbstract(clazz.getModifiers());
     }
 
-    private boolean hasNoArgConstructor(Class clazz) {
+    private static boolean hasNoArgConstructor(Class clazz) {
         Constructor[] allConstructors = clazz.getConstructors();
         for (Constructor ctor : allConstructors) {
             Class<?>[] pType = ctor.getParameterTypes();
@@ -147,14 +163,11 @@ class StructContext extends PairContext {
     }
 
     /**
-     * Compute a new field name map for the current thrift message
-     * we are parsing.
+     * Compute a new field name map for the given thrift message class.
      */
-    private Map<String, TField> computeFieldNameMap() {
+    private static Map<String, TField> computeFieldNameMap(Class<?> clazz) {
         Map<String, TField> map = new HashMap<String, TField>();
 
-        Class<?> clazz = getCurrentThriftMessageClass();
-
         if (isTBase(clazz)) {
             // Get the metaDataMap for this Thrift class
             Map<? extends TFieldIdEnum, FieldMetaData> metaDataMap =
@@ -16,10 +16,15 @@
 
 package com.linecorp.armeria.common.thrift.text;
 
-import java.io.ByteArrayOutputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.nio.ByteBuffer;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TField;
@@ -38,10 +43,16 @@ import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
 
 import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.JsonParser.Feature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import com.linecorp.armeria.common.thrift.TByteBufTransport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * A simple text format for serializing/deserializing thrift
@@ -56,6 +67,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * <p>
  * Whitespace (including newlines) is not significant.
  * <p>
+ * The input is read with a streaming {@link JsonParser} rather than being
+ * parsed into a tree first, and the output is written by a {@link JsonGenerator}
+ * straight into the {@link ByteBuf} of a {@link TByteBufTransport}, or into
+ * the {@link TTransport} otherwise.
+ * <p>
  * No comments are allowed in the json.
  * <p>
  * Messages must be formatted as a JSON object with a field 'method' containing
@@ -96,8 +112,9 @@ public class TTextProtocol extends TProtocol {
     private static final String SEQUENCE_AS_KEY_ILLEGAL =
             "Can't have a sequence (list or set) as a key in a map!";
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
-            .configure(Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 
     private static final TStruct ANONYMOUS_STRUCT = new TStruct();
 
@@ -105,9 +122,24 @@ public class TTextProtocol extends TProtocol {
     private static final int READ_BUFFER_SIZE = 1024;
 
     private static final byte UNUSED_TYPE = TType.STOP;
-    private final Stack<WriterByteArrayOutputStream> writers;
-    private final Stack<BaseContext> contextStack;
-    private JsonNode root;
+
+    /**
+     * The generators being written to. The bottom one writes to the transport, and the others write
+     * the structs and maps used as map keys, which become the field names of their enclosing map.
+     */
+    private final Deque<JsonGenerator> writers = new ArrayDeque<>();
+    private final Deque<BaseContext> contextStack = new ArrayDeque<>();
+
+    /**
+     * The inputs being read from. The bottom one reads from the transport, and the others read
+     * the structs and maps used as map keys, which are encoded in the field names of their enclosing map.
+     */
+    private final Deque<Input> inputs = new ArrayDeque<>();
+
+    /**
+     * Whether the fields after 'args' have to be skipped when the message ends.
+     */
+    private boolean skipMessageEnd;
 
     /**
      * Create a parser which can read from trans, and create the output writer
@@ -115,15 +147,7 @@ public class TTextProtocol extends TProtocol {
      */
     public TTextProtocol(TTransport trans) {
         super(trans);
-
-        writers = new Stack<>();
-
-        ByteArrayOutputStream mybaos = new TTransportOutputStream();
-        pushWriter(mybaos);
-
         reset();
-        contextStack = new Stack<>();
-        contextStack.push(new BaseContext());
     }
 
     @Override
@@ -133,7 +157,16 @@ public class TTextProtocol extends TProtocol {
 
     @Override
     public final void reset() {
-        root = null;
+        // Do not close the generators left by a failed write; closing them would write the pending
+        // content into the transport.
+        writers.clear();
+        contextStack.clear();
+        contextStack.push(new BaseContext());
+        for (Input in : inputs) {
+            in.close();
+        }
+        inputs.clear();
+        skipMessageEnd = false;
     }
 
     /**
@@ -144,14 +177,15 @@ public class TTextProtocol extends TProtocol {
     @Override
     public void writeMessageBegin(TMessage message) throws TException {
         try {
-            getCurrentWriter().writeStartObject();
-            getCurrentWriter().writeFieldName("method");
-            getCurrentWriter().writeString(message.name);
-            getCurrentWriter().writeFieldName("type");
-            TypedParser.TMESSAGE_TYPE.writeValue(getCurrentWriter(), message.type);
-            getCurrentWriter().writeFieldName("seqid");
-            getCurrentWriter().writeNumber(message.seqid);
-            getCurrentWriter().writeFieldName("args");
+            final JsonGenerator writer = getCurrentWriter();
+            writer.writeStartObject();
+            writer.writeFieldName("method");
+            writer.writeString(message.name);
+            writer.writeFieldName("type");
+            TypedParser.TMESSAGE_TYPE.writeValue(writer, message.type);
+            writer.writeFieldName("seqid");
+            writer.writeNumber(message.seqid);
+            writer.writeFieldName("args");
         } catch (IOException e) {
             throw new TTransportException(e);
         }
@@ -161,7 +195,7 @@ public class TTextProtocol extends TProtocol {
     public void writeMessageEnd() throws TException {
         try {
             getCurrentWriter().writeEndObject();
-            getCurrentWriter().flush();
+            finishWriting();
         } catch (IOException e) {
             throw new TTransportException(e);
         }
@@ -169,7 +203,7 @@ public class TTextProtocol extends TProtocol {
 
     @Override
     public void writeStructBegin(TStruct struct) throws TException {
-        writeJsonObjectBegin(new StructContext(null));
+        writeJsonObjectBegin(new StructContext());
     }
 
     @Override
@@ -196,7 +230,7 @@ public class TTextProtocol extends TProtocol {
 
     @Override
     public void writeMapBegin(TMap map) throws TException {
-        writeJsonObjectBegin(new MapContext(null));
+        writeJsonObjectBegin(new MapContext());
     }
 
     @Override
@@ -211,7 +245,7 @@ public class TTextProtocol extends TProtocol {
     private void writeJsonObjectBegin(BaseContext context) throws TException {
         getCurrentContext().write();
         if (getCurrentContext().isMapKey()) {
-            pushWriter(new ByteArrayOutputStream());
+            writers.push(newGenerator(new StringWriter()));
         }
         pushContext(context);
         try {
@@ -232,14 +266,14 @@ public class TTextProtocol extends TProtocol {
             getCurrentWriter().writeEndObject();
             popContext();
             if (getCurrentContext().isMapKey()) {
-                String writerString = getWriterString();
-                popWriter();
-                getCurrentWriter().writeFieldName(writerString);
+                final JsonGenerator keyWriter = writers.pop();
+                keyWriter.close();
+                getCurrentWriter().writeFieldName(keyWriter.getOutputTarget().toString());
             }
 
-            // flush at the end of the final struct.
-            if (1 == contextStack.size()) {
-                getCurrentWriter().flush();
+            // flush at the end of the final struct, unless it is the args of a message.
+            if (1 == contextStack.size() && getCurrentWriter().getOutputContext().inRoot()) {
+                finishWriting();
             }
         } catch (IOException ex) {
             throw new TException(ex);
@@ -274,7 +308,7 @@ public class TTextProtocol extends TProtocol {
         if (getCurrentContext().isMapKey()) {
             throw new TException(SEQUENCE_AS_KEY_ILLEGAL);
         }
-        pushContext(new SequenceContext(null));
+        pushContext(new SequenceContext());
 
         try {
             getCurrentWriter().writeStartArray();
@@ -291,10 +325,13 @@ public class TTextProtocol extends TProtocol {
     private void writeSequenceEnd() throws TException {
         try {
             getCurrentWriter().writeEndArray();
+            popContext();
+            if (1 == contextStack.size()) {
+                finishWriting();
+            }
         } catch (IOException ex) {
             throw new TTransportException(ex);
         }
-        popContext();
     }
 
     @Override
@@ -363,102 +400,136 @@ public class TTextProtocol extends TProtocol {
     public TMessage readMessageBegin() throws TException {
         try {
             readRoot();
-        } catch (IOException e) {
-            throw new TException("Could not parse input, is it valid json?", e);
-        }
-        if (!root.isObject()) {
-            throw new TException("The top level of the input must be a json object with method and args!");
-        }
-
-        if (!root.has("method")) {
-            throw new TException("Object must have field 'method' with the rpc method name!");
-        }
-        String methodName = root.get("method").asText();
 
-        if (!root.has("type")) {
-            throw new TException(
-                    "Object must have field 'type' with the message type (CALL, REPLY, EXCEPTION, ONEWAY)!");
-        }
-        Byte messageType = TypedParser.TMESSAGE_TYPE.readFromJsonElement(root.get("type"));
+            final Input in = inputs.peek();
+            if (in.nextToken() != JsonToken.START_OBJECT) {
+                throw new TException(
+                        "The top level of the input must be a json object with method and args!");
+            }
 
-        if (!root.has("args") || !root.get("args").isObject()) {
-            throw new TException("Object must have field 'args' with the rpc method args!");
-        }
+            String methodName = null;
+            Byte messageType = null;
+            boolean hasSequenceId = false;
+            int sequenceId = 0;
+            int argsOffset = -1;
+            while (in.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = in.parser.getCurrentName();
+                final JsonToken valueToken = in.nextToken();
+                switch (name) {
+                case "method":
+                    methodName = in.parser.getText();
+                    break;
+                case "type":
+                    messageType = TypedParser.TMESSAGE_TYPE.readFromParser(in.parser);
+                    break;
+                case "seqid":
+                    hasSequenceId = true;
+                    sequenceId = in.parser.getValueAsInt();
+                    break;
+                case "args":
+                    if (valueToken != JsonToken.START_OBJECT) {
+                        throw new TException("Object must have field 'args' with the rpc method args!");
+                    }
+                    if (methodName != null && messageType != null && hasSequenceId) {
+                        // Everything but args is known already, which is the case for the messages
+                        // written by this protocol. Let thrift read args right from here.
+                        in.pushBack();
+                        skipMessageEnd = true;
+                        return new TMessage(methodName, messageType, sequenceId);
+                    }
+                    // Come back after the other fields are read.
+                    argsOffset = in.tokenOffset();
+                    break;
+                }
+                in.parser.skipChildren();
+            }
 
-        int sequenceId = root.has("seqid") ? root.get("seqid").asInt() : 0;
+            if (methodName == null) {
+                throw new TException("Object must have field 'method' with the rpc method name!");
+            }
+            if (messageType == null) {
+                throw new TException("Object must have field 'type' with the message type " +
+                                     "(CALL, REPLY, EXCEPTION, ONEWAY)!");
+            }
+            if (argsOffset < 0) {
+                throw new TException("Object must have field 'args' with the rpc method args!");
+            }
 
-        // Override the root with the content of args - thrift's rpc reading will
-        // proceed to read it as a message object.
-        root = root.get("args");
+            // Replace the input with the content of args - thrift's rpc reading will
+            // proceed to read it as a message object.
+            inputs.pop().close();
+            inputs.push(new Input(in.array, argsOffset, in.end));
 
-        return new TMessage(methodName, messageType, sequenceId);
+            return new TMessage(methodName, messageType, sequenceId);
+        } catch (IOException e) {
+            throw new TException("Could not parse input, is it valid json?", e);
+        }
     }
 
     @Override
     public void readMessageEnd() throws TException {
-        // We've already finished parsing the top level struct in
-        // readMessageBegin, so nothing to do here.
+        if (!skipMessageEnd) {
+            // We've already finished parsing the top level struct in
+            // readMessageBegin, so nothing to do here.
+            return;
+        }
+
+        skipMessageEnd = false;
+        try {
+            final Input in = inputs.peek();
+            JsonToken token;
+            while ((token = in.nextToken()) == JsonToken.FIELD_NAME) {
+                in.nextToken();
+                in.parser.skipChildren();
+            }
+            if (token != JsonToken.END_OBJECT) {
+                throw new TException("Expected the end of the message: " + token);
+            }
+        } catch (IOException e) {
+            throw new TException("Could not parse input, is it valid json?", e);
+        }
     }
 
     @Override
     public TStruct readStructBegin() throws TException {
         getCurrentContext().read();
 
-        JsonNode structElem;
-        // Reading a new top level struct if the only item on the stack
-        // is the BaseContext
-        if (1 == contextStack.size()) {
-            try {
-                readRoot();
-            } catch (IOException e) {
-                throw new TException("Could not parse input, is it valid json?", e);
-            }
-            if (root == null) {
-                throw new TException("parser.next() has nothing to parse!");
-            }
-            structElem = root;
-        } else {
-            structElem = getCurrentContext().getCurrentChild();
-        }
-
-        if (getCurrentContext().isMapKey()) {
-            try {
-                structElem = OBJECT_MAPPER.readTree(structElem.asText());
-            } catch (IOException e) {
-                throw new TException("Could not parse map key, is it valid json?", e);
+        try {
+            final Input in = nextObjectInput();
+            if (in.nextToken() != JsonToken.START_OBJECT) {
+                throw new TException("Expected Json Object!");
             }
-        }
 
-        if (!structElem.isObject()) {
-            throw new TException("Expected Json Object!");
+            pushContext(new StructContext(), in);
+            return ANONYMOUS_STRUCT;
+        } catch (IOException e) {
+            throw new TException("Could not parse input, is it valid json?", e);
         }
-
-        pushContext(new StructContext(structElem));
-        return ANONYMOUS_STRUCT;
     }
 
     @Override
     public void readStructEnd() throws TException {
+        // The end of the object has been read by readFieldBegin().
         popContext();
     }
 
     @Override
     public TField readFieldBegin() throws TException {
-        String name = null;
-
-        if (!getCurrentContext().hasMoreChildren()) {
-            return new TField("", UNUSED_TYPE, (short) 0);
-        }
-
-        getCurrentContext().read();
-
-        JsonNode jsonName = getCurrentContext().getCurrentChild();
+        try {
+            final Input in = inputs.peek();
+            final JsonToken token = in.nextToken();
+            if (token == JsonToken.END_OBJECT) {
+                return new TField("", UNUSED_TYPE, (short) 0);
+            }
+            if (token != JsonToken.FIELD_NAME) {
+                throw new TException("Expected String for a field name: " + token);
+            }
 
-        if (!jsonName.isTextual()) {
-            throw new RuntimeException("Expected String for a field name");
+            getCurrentContext().read();
+            return getCurrentContext().getTFieldByName(in.parser.getCurrentName());
+        } catch (IOException e) {
+            throw new TException("Could not parse input, is it valid json?", e);
         }
-
-        return getCurrentContext().getTFieldByName(jsonName.asText());
     }
 
     @Override
@@ -469,28 +540,23 @@ public class TTextProtocol extends TProtocol {
     public TMap readMapBegin() throws TException {
         getCurrentContext().read();
 
-        JsonNode curElem = getCurrentContext().getCurrentChild();
-
-        if (getCurrentContext().isMapKey()) {
-            try {
-                curElem = OBJECT_MAPPER.readTree(curElem.asText());
-            } catch (IOException e) {
-                throw new TException("Could not parse map key, is it valid json?", e);
+        try {
+            final Input in = nextObjectInput();
+            if (in.nextToken() != JsonToken.START_OBJECT) {
+                throw new TException("Expected JSON Object!");
             }
-        }
 
-        if (!curElem.isObject()) {
-            throw new TException("Expected JSON Object!");
+            final int size = in.countChildren();
+            pushContext(new MapContext(), in);
+            return new TMap(UNUSED_TYPE, UNUSED_TYPE, size);
+        } catch (IOException e) {
+            throw new TException("Could not parse input, is it valid json?", e);
         }
-
-        pushContext(new MapContext(curElem));
-
-        return new TMap(UNUSED_TYPE, UNUSED_TYPE, curElem.size());
     }
 
     @Override
     public void readMapEnd() throws TException {
-        popContext();
+        readJsonEnd(JsonToken.END_OBJECT);
     }
 
     @Override
@@ -524,19 +590,44 @@ public class TTextProtocol extends TProtocol {
             throw new TException(SEQUENCE_AS_KEY_ILLEGAL);
         }
 
-        JsonNode curElem = getCurrentContext().getCurrentChild();
-        if (!curElem.isArray()) {
-            throw new TException("Expected JSON Array!");
-        }
+        try {
+            if (1 == contextStack.size()) {
+                readRoot();
+            }
 
-        pushContext(new SequenceContext(curElem));
-        return curElem.size();
+            final Input in = inputs.peek();
+            if (in.nextToken() != JsonToken.START_ARRAY) {
+                throw new TException("Expected JSON Array!");
+            }
+
+            final int size = in.countChildren();
+            pushContext(new SequenceContext(), in);
+            return size;
+        } catch (IOException e) {
+            throw new TException("Could not parse input, is it valid json?", e);
+        }
     }
 
     /**
      * Helper shared by read{List/Set}End
      */
-    private void readSequenceEnd() {
+    private void readSequenceEnd() throws TException {
+        readJsonEnd(JsonToken.END_ARRAY);
+    }
+
+    /**
+     * Helper shared by read{Map/List/Set}End. Thrift reads exactly as many entries as
+     * read{Map/List/Set}Begin returned, so the end of the JSON Object or Array comes next.
+     */
+    private void readJsonEnd(JsonToken expectedToken) throws TException {
+        try {
+            final JsonToken token = inputs.peek().nextToken();
+            if (token != expectedToken) {
+                throw new TException("Expected " + expectedToken + ": " + token);
+            }
+        } catch (IOException e) {
+            throw new TException("Could not parse input, is it valid json?", e);
+        }
         popContext();
     }
 
@@ -582,8 +673,8 @@ public class TTextProtocol extends TProtocol {
 
     /**
      * Read in a value of the given type, either as a name (meaning the
-     * JSONElement is a string and we convert it), or as a value
-     * (meaning the JSONElement has the type we expect).
+     * token is a field name and we convert it), or as a value
+     * (meaning the token has the type we expect).
      * Uses a TypedParser to do the real work.
      * <p>
      * TODO(Alex Roetter): not sure TypedParser is a win for the number of
@@ -591,37 +682,94 @@ public class TTextProtocol extends TProtocol {
      * do what readNameOrValue does, calling the relevant methods from
      * the TypedParser directly.
      */
-    private <T> T readNameOrValue(TypedParser<T> ch) {
+    private <T> T readNameOrValue(TypedParser<T> ch) throws TException {
         getCurrentContext().read();
 
-        JsonNode elem = getCurrentContext().getCurrentChild();
-        if (getCurrentContext().isMapKey()) {
-            // Will throw a ClassCastException if this is not a JsonPrimitive string
-            return ch.readFromString(elem.asText());
-        } else {
-            return ch.readFromJsonElement(elem);
+        try {
+            final Input in = inputs.peek();
+            final JsonToken token = in.nextToken();
+            if (getCurrentContext().isMapKey()) {
+                if (token != JsonToken.FIELD_NAME) {
+                    throw new TException("Expected String for a map key: " + token);
+                }
+                return ch.readFromString(in.parser.getCurrentName());
+            }
+
+            if (token == null || !token.isScalarValue()) {
+                throw new TException("Expected a scalar value: " + token);
+            }
+            return ch.readFromParser(in.parser);
+        } catch (IOException e) {
+            throw new TException("Could not parse input, is it valid json?", e);
+        }
+    }
+
+    /**
+     * Returns the input to read the next struct or map from. A struct or map used as a map key
+     * is encoded in the field name, which is parsed by a new input.
+     */
+    private Input nextObjectInput() throws IOException, TException {
+        // Reading a new top level struct or map if the only item on the stack
+        // is the BaseContext
+        if (1 == contextStack.size()) {
+            readRoot();
         }
+
+        final Input in = inputs.peek();
+        if (!getCurrentContext().isMapKey()) {
+            return in;
+        }
+
+        if (in.nextToken() != JsonToken.FIELD_NAME) {
+            throw new TException("Expected String for a map key: " + in.parser.getCurrentToken());
+        }
+        final byte[] key = in.parser.getCurrentName().getBytes(UTF_8);
+        final Input keyInput = new Input(key, 0, key.length);
+        inputs.push(keyInput);
+        return keyInput;
     }
 
     /**
-     * Read in the root node if it has not yet been read.
+     * Read in the root input if it has not yet been read.
      */
     private void readRoot() throws IOException {
-        if (root != null) {
+        if (!inputs.isEmpty()) {
             return;
         }
-        ByteArrayOutputStream content = new ByteArrayOutputStream();
-        byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+        if (trans_ instanceof TByteBufTransport) {
+            // Parse the readable bytes of the buffer in place if possible.
+            final ByteBuf buf = ((TByteBufTransport) trans_).buf();
+            final int length = buf.readableBytes();
+            if (buf.hasArray()) {
+                final int offset = buf.arrayOffset() + buf.readerIndex();
+                inputs.push(new Input(buf.array(), offset, offset + length));
+            } else {
+                inputs.push(new Input(ByteBufUtil.getBytes(buf), 0, length));
+            }
+            buf.skipBytes(length);
+            return;
+        }
+
+        byte[] content = new byte[READ_BUFFER_SIZE];
+        int length = 0;
         try {
-            while (trans_.read(buffer, 0, READ_BUFFER_SIZE) > 0) {
-                content.write(buffer);
+            for (;;) {
+                if (length == content.length) {
+                    content = Arrays.copyOf(content, content.length << 1);
+                }
+                final int read = trans_.read(content, length, content.length - length);
+                if (read <= 0) {
+                    break;
+                }
+                length += read;
             }
         } catch (TTransportException e) {
             if (TTransportException.END_OF_FILE != e.getType()) {
                 throw new IOException(e);
             }
         }
-        root = OBJECT_MAPPER.readTree(content.toByteArray());
+        inputs.push(new Input(content, 0, length));
     }
 
     /**
@@ -639,57 +787,68 @@ public class TTextProtocol extends TProtocol {
     }
 
     /**
-     * Pop a parsing context from the parse context stack
+     * Add a new parsing context onto the parse context stack, which
+     * owns the given input if the input has no owner yet.
      */
-    private void popContext() {
-        contextStack.pop();
+    private void pushContext(BaseContext c, Input in) {
+        if (in.owner == null && in != inputs.peekLast()) {
+            in.owner = c;
+        }
+        contextStack.push(c);
     }
 
     /**
-     * Return the current parsing context
+     * Pop a parsing context from the parse context stack, and the input
+     * it owns if any.
      */
-    private JsonGenerator getCurrentWriter() {
-        return writers.peek().writer;
+    private void popContext() {
+        final BaseContext c = contextStack.pop();
+        final Input in = inputs.peek();
+        if (in != null && in.owner == c) {
+            inputs.pop().close();
+        }
     }
 
-    private String getWriterString() throws TException {
-        WriterByteArrayOutputStream wbaos = writers.peek();
-        String ret;
-        try {
-            wbaos.writer.flush();
-            ret = new String(wbaos.baos.toByteArray());
-            wbaos.writer.close();
-        } catch (IOException e) {
-            throw new TException(e);
+    /**
+     * Return the current writer, creating a new one which writes to
+     * the transport if there's none.
+     */
+    private JsonGenerator getCurrentWriter() throws TException {
+        final JsonGenerator writer = writers.peek();
+        if (writer != null) {
+            return writer;
+        }
+
+        final OutputStream out;
+        if (trans_ instanceof TByteBufTransport) {
+            out = new ByteBufOutputStream(((TByteBufTransport) trans_).buf());
+        } else {
+            out = new TTransportOutputStream();
         }
-        return ret;
-    }
 
-    private void pushWriter(ByteArrayOutputStream baos) {
-        JsonGenerator generator;
+        final JsonGenerator newWriter;
         try {
-            generator = OBJECT_MAPPER.getFactory().createGenerator(baos, JsonEncoding.UTF8)
-                    .useDefaultPrettyPrinter();
+            newWriter = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8).useDefaultPrettyPrinter();
         } catch (IOException e) {
-            // Can't happen, using a byte stream.
-            throw new IllegalStateException(e);
+            throw new TTransportException(e);
         }
-
-        WriterByteArrayOutputStream wbaos = new WriterByteArrayOutputStream(generator, baos);
-        writers.push(wbaos);
+        writers.push(newWriter);
+        return newWriter;
     }
 
-    private void popWriter() {
-        writers.pop();
+    /**
+     * Flush and discard the writer which writes to the transport.
+     */
+    private void finishWriting() throws IOException {
+        writers.pop().close();
     }
 
-    private static class WriterByteArrayOutputStream {
-        final JsonGenerator writer;
-        final ByteArrayOutputStream baos;
-
-        private WriterByteArrayOutputStream(JsonGenerator writer, ByteArrayOutputStream baos) {
-            this.writer = writer;
-            this.baos = baos;
+    private static JsonGenerator newGenerator(StringWriter out) {
+        try {
+            return JSON_FACTORY.createGenerator(out).useDefaultPrettyPrinter();
+        } catch (IOException e) {
+            // Can't happen, using a string writer.
+            throw new IllegalStateException(e);
         }
     }
 
@@ -704,33 +863,111 @@ public class TTextProtocol extends TProtocol {
     }
 
     /**
-     * Just a byte array output stream that forwards all data to
-     * a TTransport when it is flushed or closed
+     * A part of a byte array being parsed.
      */
-    private class TTransportOutputStream extends ByteArrayOutputStream {
-        // This isn't necessary, but a good idea to close the transport
+    private static final class Input {
+        final byte[] array;
+        final int offset;
+        final int end;
+        final JsonParser parser;
+
+        /**
+         * The context which reads the whole input, e.g. a struct used as a map key.
+         */
+        BaseContext owner;
+
+        /**
+         * Whether the current token has been pushed back to be returned by {@link #nextToken()} again.
+         */
+        private boolean pushedBack;
+
+        Input(byte[] array, int offset, int end) throws IOException {
+            this.array = array;
+            this.offset = offset;
+            this.end = end;
+            parser = JSON_FACTORY.createParser(array, offset, end - offset);
+        }
+
+        JsonToken nextToken() throws IOException {
+            if (pushedBack) {
+                pushedBack = false;
+                return parser.getCurrentToken();
+            }
+            return parser.nextToken();
+        }
+
+        void pushBack() {
+            pushedBack = true;
+        }
+
+        /**
+         * Returns the offset of the current token in the array.
+         */
+        int tokenOffset() {
+            // The location is relative to the offset the parser started from.
+            return offset + (int) parser.getTokenLocation().getByteOffset();
+        }
+
+        /**
+         * Returns the number of the entries of the JSON Object or Array which starts at the current token,
+         * by looking ahead with a separate parser.
+         */
+        int countChildren() throws IOException {
+            final int tokenOffset = tokenOffset();
+            try (JsonParser lookahead = JSON_FACTORY.createParser(array, tokenOffset, end - tokenOffset)) {
+                lookahead.nextToken();
+                int count = 0;
+                for (;;) {
+                    JsonToken token = lookahead.nextToken();
+                    if (token == null) {
+                        throw new IOException("Unexpected end of input");
+                    }
+                    if (token.isStructEnd()) {
+                        return count;
+                    }
+                    if (token == JsonToken.FIELD_NAME) {
+                        lookahead.nextToken();
+                    }
+                    lookahead.skipChildren();
+                    count++;
+                }
+            }
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+                // Never happens for a byte array.
+            }
+        }
+    }
+
+    /**
+     * An output stream that forwards all data to a TTransport.
+     */
+    private class TTransportOutputStream extends OutputStream {
         @Override
-        public void close() throws IOException {
-            flush();
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
 
-            super.close();
-            trans_.close();
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                trans_.write(b, off, len);
+            } catch (TTransportException ex) {
+                throw new IOException(ex);
+            }
         }
 
         @Override
         public void flush() throws IOException {
             try {
-                super.flush();
-                byte[] bytes = toByteArray();
-                trans_.write(bytes);
                 trans_.flush();
-
             } catch (TTransportException ex) {
                 throw new IOException(ex);
             }
-            // Clears the internal memory buffer, since we've already
-            // written it out.
-            super.reset();
         }
     }
 }
@@ -23,11 +23,11 @@ import org.apache.thrift.protocol.TMessageType;
 
 import com.fasterxml.jackson.core.Base64Variants;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 
 /**
  * A type parsing helper, knows how to parse a given type either from a string
- * or from a JsonElement, and knows how to emit a given type to a JsonGenerator.
+ * or from a JsonParser, and knows how to emit a given type to a JsonGenerator.
  * <p>
  * Clients should use the static members defined here for common types.
  * Should be implemented for each integral type we need to read/write.
@@ -46,8 +46,8 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        public Boolean readFromJsonElement(JsonNode elem) {
-            return elem.asBoolean();
+        public Boolean readFromParser(JsonParser parser) throws IOException {
+            return parser.getValueAsBoolean();
         }
 
         @Override
@@ -64,8 +64,8 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        public Byte readFromJsonElement(JsonNode elem) {
-            return (byte) elem.asInt();
+        public Byte readFromParser(JsonParser parser) throws IOException {
+            return (byte) parser.getValueAsInt();
         }
 
         @Override
@@ -82,8 +82,8 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        public Short readFromJsonElement(JsonNode elem) {
-            return (short) elem.asInt();
+        public Short readFromParser(JsonParser parser) throws IOException {
+            return (short) parser.getValueAsInt();
         }
 
         @Override
@@ -100,8 +100,8 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        public Integer readFromJsonElement(JsonNode elem) {
-            return elem.asInt();
+        public Integer readFromParser(JsonParser parser) throws IOException {
+            return parser.getValueAsInt();
         }
 
         @Override
@@ -117,8 +117,8 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        public Long readFromJsonElement(JsonNode elem) {
-            return elem.asLong();
+        public Long readFromParser(JsonParser parser) throws IOException {
+            return parser.getValueAsLong();
         }
 
         @Override
@@ -134,8 +134,8 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        public Double readFromJsonElement(JsonNode elem) {
-            return elem.asDouble();
+        public Double readFromParser(JsonParser parser) throws IOException {
+            return parser.getValueAsDouble();
         }
 
         @Override
@@ -151,8 +151,8 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        public String readFromJsonElement(JsonNode elem) {
-            return elem.asText();
+        public String readFromParser(JsonParser parser) throws IOException {
+            return parser.getText();
         }
 
         @Override
@@ -168,17 +168,19 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        public ByteBuffer readFromJsonElement(JsonNode elem) {
-            try {
-                return ByteBuffer.wrap(elem.binaryValue());
-            } catch (IOException e) {
-                throw new IllegalArgumentException("Error decoding binary value, is it valid base64?", e);
-            }
+        public ByteBuffer readFromParser(JsonParser parser) throws IOException {
+            return ByteBuffer.wrap(parser.getBinaryValue());
         }
 
         @Override
         public void writeValue(JsonGenerator jw, ByteBuffer val) throws IOException {
-            jw.writeBinary(val.array());
+            if (val.hasArray()) {
+                jw.writeBinary(val.array(), val.arrayOffset() + val.position(), val.remaining());
+            } else {
+                final byte[] array = new byte[val.remaining()];
+                val.duplicate().get(array);
+                jw.writeBinary(array);
+            }
         }
     };
 
@@ -200,8 +202,8 @@ abstract class TypedParser<T> {
         }
 
         @Override
-        Byte readFromJsonElement(JsonNode elem) {
-            return readFromString(elem.asText());
+        Byte readFromParser(JsonParser parser) throws IOException {
+            return readFromString(parser.getText());
         }
 
         @Override
@@ -233,9 +235,9 @@ abstract class TypedParser<T> {
     abstract T readFromString(String s);
 
     /**
-     * Read the given type from a JsonElement
+     * Read the given type from the current value token of a JsonParser
      */
-    abstract T readFromJsonElement(JsonNode elem);
+    abstract T readFromParser(JsonParser parser) throws IOException;
 
     /**
      * Write the given type out using a JsonGenerator
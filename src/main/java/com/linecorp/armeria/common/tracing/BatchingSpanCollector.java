@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.tracing;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kristofa.brave.SpanCollector;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Span;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * A {@link SpanCollector} that queues the collected {@link Span}s and sends them to a {@link SpanReporter}
+ * in batches from a background thread, so that the threads which complete spans, such as event loops,
+ * never block on the tracing backend.
+ *
+ * <p>The queue is bounded; when the {@link SpanReporter} cannot keep up, the newly collected {@link Span}s
+ * are dropped and counted in {@link #droppedSpans()} rather than consuming more memory.
+ */
+public final class BatchingSpanCollector implements SpanCollector, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingSpanCollector.class);
+
+    /**
+     * The default maximum number of the {@link Span}s waiting to be reported.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    /**
+     * The default maximum number of the {@link Span}s reported at once.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    /**
+     * The default interval between reports.
+     */
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    private final SpanReporter reporter;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<Span> queue;
+    private final List<BinaryAnnotation> defaultAnnotations = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder acceptedSpans = new LongAdder();
+    private final LongAdder droppedSpans = new LongAdder();
+    private final LongAdder reportedSpans = new LongAdder();
+    private final LongAdder failedSpans = new LongAdder();
+
+    /**
+     * Creates a new collector with the default queue capacity, batch size and flush interval.
+     */
+    public BatchingSpanCollector(SpanReporter reporter) {
+        this(reporter, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Creates a new collector.
+     *
+     * @param queueCapacity the maximum number of the {@link Span}s waiting to be reported
+     * @param maxBatchSize the maximum number of the {@link Span}s passed to {@link SpanReporter} at once
+     * @param flushInterval the interval between reports
+     */
+    public BatchingSpanCollector(SpanReporter reporter, int queueCapacity, int maxBatchSize,
+                                 Duration flushInterval) {
+
+        this.reporter = requireNonNull(reporter, "reporter");
+        requireNonNull(flushInterval, "flushInterval");
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity: " + queueCapacity + " (expected: > 0)");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize: " + maxBatchSize + " (expected: > 0)");
+        }
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("flushInterval: " + flushInterval + " (expected: > 0)");
+        }
+
+        this.maxBatchSize = maxBatchSize;
+        flushIntervalNanos = flushInterval.toNanos();
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("armeria-span-reporter", true));
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalNanos, flushIntervalNanos,
+                                         TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void collect(Span span) {
+        requireNonNull(span, "span");
+        if (queue.offer(span)) {
+            acceptedSpans.increment();
+        } else {
+            droppedSpans.increment();
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void addDefaultAnnotation(String key, String value) {
+        requireNonNull(key, "key");
+        requireNonNull(value, "value");
+        defaultAnnotations.add(BinaryAnnotation.create(key, value, null));
+    }
+
+    /**
+     * Returns the number of the {@link Span}s queued to be reported.
+     */
+    public long acceptedSpans() {
+        return acceptedSpans.sum();
+    }
+
+    /**
+     * Returns the number of the {@link Span}s dropped because the queue was full.
+     */
+    public long droppedSpans() {
+        return droppedSpans.sum();
+    }
+
+    /**
+     * Returns the number of the {@link Span}s reported successfully.
+     */
+    public long reportedSpans() {
+        return reportedSpans.sum();
+    }
+
+    /**
+     * Returns the number of the {@link Span}s discarded because {@link SpanReporter} failed to report them.
+     */
+    public long failedSpans() {
+        return failedSpans.sum();
+    }
+
+    /**
+     * Returns the number of the {@link Span}s waiting to be reported.
+     */
+    public int pendingSpans() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the background thread and reports the remaining {@link Span}s.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        boolean interrupted = false;
+        try {
+            // Wait for the ongoing report, if any, to avoid reporting concurrently.
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+
+        flush();
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush() {
+        final List<Span> batch = new ArrayList<>(Math.min(maxBatchSize, queue.size()));
+        while (queue.drainTo(batch, maxBatchSize) != 0) {
+            report(batch);
+            batch.clear();
+        }
+    }
+
+    private void report(List<Span> batch) {
+        if (!defaultAnnotations.isEmpty()) {
+            for (Span span : batch) {
+                for (BinaryAnnotation a : defaultAnnotations) {
+                    span.addToBinary_annotations(a);
+                }
+            }
+        }
+
+        try {
+            reporter.report(batch);
+            reportedSpans.add(batch.size());
+        } catch (Throwable t) {
+            failedSpans.add(batch.size());
+            logger.warn("Failed to report {} span(s) via {}", batch.size(), reporter, t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchingSpanCollector(pending: " + pendingSpans() + ", accepted: " + acceptedSpans() +
+               ", dropped: " + droppedSpans() + ", reported: " + reportedSpans() +
+               ", failed: " + failedSpans() + ')';
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.kristofa.brave.Sampler;
+
+/**
+ * A {@link Sampler} that samples at most the specified number of traces per second, regardless of the
+ * request rate. Unlike a probabilistic {@link Sampler}, the tracing overhead stays bounded when the request
+ * rate rises, while low-traffic services still get most of their requests traced.
+ *
+ * <p>The decision is made with a single compare-and-set on a shared counter, so it is cheap enough to be
+ * made for every request before any span is created.
+ */
+public final class RateLimitingSampler extends Sampler {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final int tracesPerSecond;
+
+    /**
+     * The upper 32 bits hold the current one-second window and the lower 32 bits hold the number of the
+     * traces sampled in the window.
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * Creates a new sampler that samples at most {@code tracesPerSecond} traces per second.
+     */
+    public RateLimitingSampler(int tracesPerSecond) {
+        if (tracesPerSecond < 0) {
+            throw new IllegalArgumentException(
+                    "tracesPerSecond: " + tracesPerSecond + " (expected: >= 0)");
+        }
+        this.tracesPerSecond = tracesPerSecond;
+    }
+
+    /**
+     * Returns the maximum number of the traces sampled per second.
+     */
+    public int tracesPerSecond() {
+        return tracesPerSecond;
+    }
+
+    @Override
+    public boolean isSampled(long traceId) {
+        return trySample(System.nanoTime());
+    }
+
+    boolean trySample(long currentTimeNanos) {
+        if (tracesPerSecond == 0) {
+            return false;
+        }
+
+        final long window = (currentTimeNanos / NANOS_PER_SECOND) << 32;
+        for (;;) {
+            final long oldState = state.get();
+            final long newState;
+            if ((oldState & 0xFFFFFFFF00000000L) != window) {
+                // A new window has started.
+                newState = window | 1;
+            } else {
+                final long count = oldState & 0xFFFFFFFFL;
+                if (count >= tracesPerSecond) {
+                    return false;
+                }
+                newState = oldState + 1;
+            }
+
+            if (state.compareAndSet(oldState, newState)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitingSampler(" + tracesPerSecond + "/s)";
+    }
+}
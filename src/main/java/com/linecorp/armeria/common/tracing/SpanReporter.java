@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.tracing;
+
+import java.util.List;
+
+import com.twitter.zipkin.gen.Span;
+
+/**
+ * Sends a batch of {@link Span}s collected by {@link BatchingSpanCollector} to a tracing backend,
+ * such as a Zipkin collector.
+ */
+@FunctionalInterface
+public interface SpanReporter {
+
+    /**
+     * Sends the specified {@link Span}s. This method is always invoked by a single background thread,
+     * and thus it is allowed to block.
+     *
+     * @throws Exception if failed to send the {@link Span}s, which are discarded then
+     */
+    void report(List<Span> spans) throws Exception;
+}
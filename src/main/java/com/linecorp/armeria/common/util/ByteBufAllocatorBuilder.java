@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.util;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * Builds a new {@link ByteBufAllocator}. Unless specified otherwise, the properties of the built allocator
+ * are the same with those of {@link PooledByteBufAllocator#DEFAULT}, which are configurable with the
+ * {@code io.netty.allocator.*} system properties.
+ * <pre>{@code
+ * // An allocator with fewer arenas and without thread-local caches, which keeps the memory footprint
+ * // of a server with many idle connections low.
+ * ByteBufAllocator alloc = new ByteBufAllocatorBuilder().numHeapArenas(0)
+ *                                                        .numDirectArenas(4)
+ *                                                        .threadLocalCache(false)
+ *                                                        .build();
+ * Server server = new ServerBuilder().byteBufAllocator(alloc)...build();
+ * }</pre>
+ *
+ * @see com.linecorp.armeria.common.metrics.prometheus.ByteBufAllocatorMetricsCollector
+ */
+public final class ByteBufAllocatorBuilder {
+
+    private boolean pooled = true;
+    private boolean preferDirect = true;
+    private int numHeapArenas = PooledByteBufAllocator.defaultNumHeapArena();
+    private int numDirectArenas = PooledByteBufAllocator.defaultNumDirectArena();
+    private int pageSize = PooledByteBufAllocator.defaultPageSize();
+    private int maxOrder = PooledByteBufAllocator.defaultMaxOrder();
+    private int tinyCacheSize = PooledByteBufAllocator.defaultTinyCacheSize();
+    private int smallCacheSize = PooledByteBufAllocator.defaultSmallCacheSize();
+    private int normalCacheSize = PooledByteBufAllocator.defaultNormalCacheSize();
+
+    /**
+     * Sets whether the built allocator pools the buffers it allocates. An unpooled allocator allocates
+     * a new buffer for every request and ignores all other properties but {@link #preferDirect(boolean)}.
+     * The default value is {@code true}.
+     */
+    public ByteBufAllocatorBuilder pooled(boolean pooled) {
+        this.pooled = pooled;
+        return this;
+    }
+
+    /**
+     * Sets whether the built allocator allocates a direct buffer rather than a heap buffer when not
+     * specified explicitly, e.g. by {@link ByteBufAllocator#buffer()}. The default value is {@code true}.
+     */
+    public ByteBufAllocatorBuilder preferDirect(boolean preferDirect) {
+        this.preferDirect = preferDirect;
+        return this;
+    }
+
+    /**
+     * Sets the number of the arenas for heap buffers. Threads are assigned to the arenas in a round-robin
+     * manner, so fewer arenas mean less memory and more contention. {@code 0} disables the pooling of
+     * heap buffers.
+     */
+    public ByteBufAllocatorBuilder numHeapArenas(int numHeapArenas) {
+        this.numHeapArenas = validateNonNegative(numHeapArenas, "numHeapArenas");
+        return this;
+    }
+
+    /**
+     * Sets the number of the arenas for direct buffers. Threads are assigned to the arenas in a round-robin
+     * manner, so fewer arenas mean less memory and more contention. {@code 0} disables the pooling of
+     * direct buffers.
+     */
+    public ByteBufAllocatorBuilder numDirectArenas(int numDirectArenas) {
+        this.numDirectArenas = validateNonNegative(numDirectArenas, "numDirectArenas");
+        return this;
+    }
+
+    /**
+     * Sets the size of a page, which must be a power of 2 and not less than 4096. A chunk of an arena
+     * consists of {@code 2^maxOrder} pages.
+     */
+    public ByteBufAllocatorBuilder pageSize(int pageSize) {
+        if (pageSize < 4096 || (pageSize & pageSize - 1) != 0) {
+            throw new IllegalArgumentException(
+                    "pageSize: " + pageSize + " (expected: a power of 2 and >= 4096)");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Sets the binary logarithm of the number of the pages in a chunk of an arena.
+     */
+    public ByteBufAllocatorBuilder maxOrder(int maxOrder) {
+        if (maxOrder < 0 || maxOrder > 14) {
+            throw new IllegalArgumentException("maxOrder: " + maxOrder + " (expected: 0-14)");
+        }
+        this.maxOrder = maxOrder;
+        return this;
+    }
+
+    /**
+     * Sets the number of the cached tiny buffers (smaller than 512 bytes) per size in a thread-local cache.
+     */
+    public ByteBufAllocatorBuilder tinyCacheSize(int tinyCacheSize) {
+        this.tinyCacheSize = validateNonNegative(tinyCacheSize, "tinyCacheSize");
+        return this;
+    }
+
+    /**
+     * Sets the number of the cached small buffers (smaller than a page) per size in a thread-local cache.
+     */
+    public ByteBufAllocatorBuilder smallCacheSize(int smallCacheSize) {
+        this.smallCacheSize = validateNonNegative(smallCacheSize, "smallCacheSize");
+        return this;
+    }
+
+    /**
+     * Sets the number of the cached normal buffers (not larger than a chunk) per size in a thread-local
+     * cache.
+     */
+    public ByteBufAllocatorBuilder normalCacheSize(int normalCacheSize) {
+        this.normalCacheSize = validateNonNegative(normalCacheSize, "normalCacheSize");
+        return this;
+    }
+
+    /**
+     * Sets whether each thread caches the buffers it released for its later allocations. This is
+     * a shortcut of setting all cache sizes to {@code 0} or to their default values. Disabling the
+     * thread-local caches reduces the memory retained by the threads that allocate rarely, at the cost of
+     * more contention on the arenas.
+     */
+    public ByteBufAllocatorBuilder threadLocalCache(boolean threadLocalCache) {
+        if (threadLocalCache) {
+            tinyCacheSize = PooledByteBufAllocator.defaultTinyCacheSize();
+            smallCacheSize = PooledByteBufAllocator.defaultSmallCacheSize();
+            normalCacheSize = PooledByteBufAllocator.defaultNormalCacheSize();
+        } else {
+            tinyCacheSize = 0;
+            smallCacheSize = 0;
+            normalCacheSize = 0;
+        }
+        return this;
+    }
+
+    /**
+     * Returns a newly-created {@link ByteBufAllocator} based on the properties of this builder.
+     */
+    public ByteBufAllocator build() {
+        if (!pooled) {
+            return new UnpooledByteBufAllocator(preferDirect);
+        }
+
+        return new PooledByteBufAllocator(preferDirect, numHeapArenas, numDirectArenas, pageSize, maxOrder,
+                                          tinyCacheSize, smallCacheSize, normalCacheSize);
+    }
+
+    private static int validateNonNegative(int value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + ": " + value + " (expected: >= 0)");
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        if (!pooled) {
+            return "ByteBufAllocatorBuilder(pooled: false, preferDirect: " + preferDirect + ')';
+        }
+
+        return "ByteBufAllocatorBuilder(pooled: true, preferDirect: " + preferDirect +
+               ", numHeapArenas: " + numHeapArenas + ", numDirectArenas: " + numDirectArenas +
+               ", pageSize: " + pageSize + ", maxOrder: " + maxOrder +
+               ", tinyCacheSize: " + tinyCacheSize + ", smallCacheSize: " + smallCacheSize +
+               ", normalCacheSize: " + normalCacheSize + ')';
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * The metrics of {@link ServerConfig#blockingTaskExecutor()}, such as how many tasks are waiting in the
+ * queue and how long they wait. The {@link Executor} given to
+ * {@link ServiceInvocationHandler#invoke(com.linecorp.armeria.common.ServiceInvocationContext, Executor,
+ * io.netty.util.concurrent.Promise)} updates the {@link BlockingTaskMetrics} of the {@link Service}.
+ *
+ * @see Server#blockingTaskExecutorMetrics()
+ */
+public final class BlockingTaskExecutorMetrics {
+
+    private final Executor executor;
+    private final Map<String, BlockingTaskMetrics> serviceMetrics = new ConcurrentHashMap<>();
+    private final Map<String, BlockingTaskMetrics> unmodifiableServiceMetrics =
+            Collections.unmodifiableMap(serviceMetrics);
+
+    BlockingTaskExecutorMetrics(Executor executor) {
+        this.executor = requireNonNull(executor, "executor");
+    }
+
+    /**
+     * Returns the {@link Executor} whose metrics are kept by this object.
+     */
+    public Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Returns the current number of the threads in the pool, or {@code -1} if the {@link Executor} is not
+     * a {@link ThreadPoolExecutor}.
+     */
+    public int poolSize() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getPoolSize() : -1;
+    }
+
+    /**
+     * Returns the maximum allowed number of the threads in the pool, or {@code -1} if the {@link Executor}
+     * is not a {@link ThreadPoolExecutor}.
+     */
+    public int maxPoolSize() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getMaximumPoolSize()
+                                                      : -1;
+    }
+
+    /**
+     * Returns the number of the tasks submitted by the {@link Service}s which are waiting in the queue.
+     */
+    public long queuedTasks() {
+        long sum = 0;
+        for (BlockingTaskMetrics m : serviceMetrics.values()) {
+            sum += m.queuedTasks();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the number of the tasks submitted by the {@link Service}s which are running.
+     */
+    public long activeTasks() {
+        long sum = 0;
+        for (BlockingTaskMetrics m : serviceMetrics.values()) {
+            sum += m.activeTasks();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the {@link BlockingTaskMetrics} of the {@link Service}s, keyed by
+     * {@link BlockingTaskMetrics#serviceName()}.
+     */
+    public Map<String, BlockingTaskMetrics> serviceMetrics() {
+        return unmodifiableServiceMetrics;
+    }
+
+    /**
+     * Returns the {@link Executor} which submits the tasks of the specified {@link Service} to
+     * {@link #executor()} while updating its {@link BlockingTaskMetrics}.
+     */
+    Executor executor(ServiceConfig serviceConfig) {
+        final BlockingTaskMetrics metrics = serviceMetrics.computeIfAbsent(
+                serviceConfig.loggerNameWithoutPrefix(), BlockingTaskMetrics::new);
+        return metrics.newExecutor(executor);
+    }
+
+    @Override
+    public String toString() {
+        return "BlockingTaskExecutorMetrics(" + executor +
+               ", queuedTasks: " + queuedTasks() + ", activeTasks: " + activeTasks() + ')';
+    }
+}
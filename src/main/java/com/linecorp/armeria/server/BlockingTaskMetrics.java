@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.linecorp.armeria.common.metrics.LatencyHistogram;
+
+/**
+ * The metrics of the blocking tasks submitted by a {@link Service} to
+ * {@link ServerConfig#blockingTaskExecutor()}.
+ *
+ * @see BlockingTaskExecutorMetrics#serviceMetrics()
+ */
+public final class BlockingTaskMetrics {
+
+    private final String serviceName;
+    private final LatencyHistogram queueWaitTime = new LatencyHistogram();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+    private final LongAdder submittedTasks = new LongAdder();
+    private final LongAdder rejectedTasks = new LongAdder();
+    private final LongAdder queuedTasks = new LongAdder();
+    private final LongAdder activeTasks = new LongAdder();
+
+    BlockingTaskMetrics(String serviceName) {
+        this.serviceName = requireNonNull(serviceName, "serviceName");
+    }
+
+    /**
+     * Returns the name of the {@link Service}, which is the name of its
+     * {@linkplain ServiceConfig#loggerName() service logger} without the prefix.
+     */
+    public String serviceName() {
+        return serviceName;
+    }
+
+    /**
+     * Returns the {@link LatencyHistogram} of the time the tasks spent in the queue before they start.
+     */
+    public LatencyHistogram queueWaitTime() {
+        return queueWaitTime;
+    }
+
+    /**
+     * Returns the {@link LatencyHistogram} of the time taken to run the tasks.
+     */
+    public LatencyHistogram executionTime() {
+        return executionTime;
+    }
+
+    /**
+     * Returns the number of the tasks submitted so far.
+     */
+    public long submittedTasks() {
+        return submittedTasks.sum();
+    }
+
+    /**
+     * Returns the number of the tasks rejected by the {@link Executor} so far.
+     */
+    public long rejectedTasks() {
+        return rejectedTasks.sum();
+    }
+
+    /**
+     * Returns the number of the tasks which are waiting in the queue.
+     */
+    public long queuedTasks() {
+        return queuedTasks.sum();
+    }
+
+    /**
+     * Returns the number of the tasks which are running.
+     */
+    public long activeTasks() {
+        return activeTasks.sum();
+    }
+
+    /**
+     * Returns a new {@link Executor} that submits the tasks to the specified {@link Executor} while
+     * updating this metrics.
+     */
+    Executor newExecutor(Executor delegate) {
+        requireNonNull(delegate, "delegate");
+        return command -> {
+            requireNonNull(command, "command");
+            submittedTasks.increment();
+            queuedTasks.increment();
+            try {
+                delegate.execute(new InstrumentedTask(command, System.nanoTime()));
+            } catch (RejectedExecutionException e) {
+                queuedTasks.decrement();
+                rejectedTasks.increment();
+                throw e;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "BlockingTaskMetrics(" + serviceName +
+               ", queuedTasks: " + queuedTasks() + ", activeTasks: " + activeTasks() +
+               ", rejectedTasks: " + rejectedTasks() + ", queueWaitTime: " + queueWaitTime + ')';
+    }
+
+    private final class InstrumentedTask implements Runnable {
+
+        private final Runnable task;
+        private final long submitTimeNanos;
+
+        InstrumentedTask(Runnable task, long submitTimeNanos) {
+            this.task = task;
+            this.submitTimeNanos = submitTimeNanos;
+        }
+
+        @Override
+        public void run() {
+            final long startTimeNanos = System.nanoTime();
+            queuedTasks.decrement();
+            activeTasks.increment();
+            queueWaitTime.record(startTimeNanos - submitTimeNanos);
+            try {
+                task.run();
+            } finally {
+                activeTasks.decrement();
+                executionTime.record(System.nanoTime() - startTimeNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import io.netty.util.Mapping;
+
+/**
+ * Maps a hostname to a value associated with a matching hostname pattern, as defined in
+ * <a href="http://tools.ietf.org/html/rfc2818#section-3.1">the section 3.1 of RFC2818</a>.
+ *
+ * <p>Unlike {@link io.netty.util.DomainNameMapping}, the patterns are compiled into a hash table for
+ * exact hostnames and a trie of reversed labels for wildcard hostnames, so that a lookup does not scan
+ * all patterns and does not allocate a normalized copy of the hostname. A lookup prefers an exact match to
+ * a wildcard match, and a longer wildcard match to a shorter one.
+ *
+ * <p>{@link Server} builds one instance that maps a hostname to an {@link io.netty.handler.ssl.SslContext}
+ * for the SNI handler, and {@link ServerConfig} builds another one that maps a hostname to a {@link VirtualHost}
+ * for the {@code "Host"} header based lookup.
+ */
+final class HostnameMatcher<V> implements Mapping<String, V> {
+
+    private final V defaultValue;
+
+    // Open-addressing hash table of exact hostnames.
+    private final String[] exactKeys;
+    private final int[] exactHashes;
+    private final Object[] exactValues;
+
+    private final Node wildcardRoot;
+
+    private String strVal;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param defaultValue the value returned when no pattern matches
+     * @param mappings the normalized hostname patterns and their values. If the same pattern appears more
+     *                 than once, the first one is used.
+     */
+    HostnameMatcher(V defaultValue, Iterable<? extends Entry<String, ? extends V>> mappings) {
+        this.defaultValue = requireNonNull(defaultValue, "defaultValue");
+        requireNonNull(mappings, "mappings");
+
+        final Map<String, V> exact = new LinkedHashMap<>();
+        Node wildcardRoot = null;
+        for (Entry<String, ? extends V> e : mappings) {
+            final String pattern = requireNonNull(e.getKey(), "pattern");
+            final V value = requireNonNull(e.getValue(), "value");
+            if (pattern.startsWith("*.")) {
+                if (wildcardRoot == null) {
+                    wildcardRoot = new Node();
+                }
+                wildcardRoot.add(pattern, 2, value);
+            } else {
+                exact.putIfAbsent(pattern, value);
+            }
+        }
+
+        final int capacity = tableCapacity(exact.size());
+        exactKeys = new String[capacity];
+        exactHashes = new int[capacity];
+        exactValues = new Object[capacity];
+        for (Entry<String, V> e : exact.entrySet()) {
+            final String key = e.getKey();
+            final int hash = hashIgnoreCase(key, 0, key.length());
+            final int idx = findSlot(exactKeys, exactHashes, key, 0, key.length(), hash);
+            exactKeys[idx] = key;
+            exactHashes[idx] = hash;
+            exactValues[idx] = e.getValue();
+        }
+
+        if (wildcardRoot != null) {
+            wildcardRoot.compile();
+        }
+        this.wildcardRoot = wildcardRoot;
+    }
+
+    /**
+     * Returns the value whose pattern matches the specified {@code hostname}, or the default value if
+     * there's no match.
+     */
+    @Override
+    public V map(String hostname) {
+        if (hostname == null) {
+            return defaultValue;
+        }
+        return map(hostname, 0, hostname.length());
+    }
+
+    /**
+     * Returns the value whose pattern matches the hostname in the specified range of {@code hostname},
+     * or the default value if there's no match. This method does not allocate unless the hostname contains
+     * a non-ASCII character.
+     */
+    V map(CharSequence hostname, int start, int end) {
+        if (start >= end) {
+            return defaultValue;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (hostname.charAt(i) > 0x7F) {
+                final String normalized =
+                        VirtualHost.normalizeHostnamePattern(hostname.subSequence(start, end).toString());
+                return map(normalized, 0, normalized.length());
+            }
+        }
+
+        final V exactValue = findExact(hostname, start, end);
+        if (exactValue != null) {
+            return exactValue;
+        }
+
+        final V wildcardValue = findWildcard(hostname, start, end);
+        if (wildcardValue != null) {
+            return wildcardValue;
+        }
+
+        return defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V findExact(CharSequence hostname, int start, int end) {
+        final int hash = hashIgnoreCase(hostname, start, end);
+        final int idx = findSlot(exactKeys, exactHashes, hostname, start, end, hash);
+        return (V) exactValues[idx];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V findWildcard(CharSequence hostname, int start, int end) {
+        Object value = null;
+        Node node = wildcardRoot;
+        int labelEnd = end;
+        while (node != null) {
+            if (node.value != null) {
+                // A longer match overrides a shorter one.
+                value = node.value;
+            }
+
+            if (labelEnd <= start) {
+                break;
+            }
+
+            int labelStart = labelEnd - 1;
+            while (labelStart >= start && hostname.charAt(labelStart) != '.') {
+                labelStart--;
+            }
+            labelStart++;
+
+            node = node.child(hostname, labelStart, labelEnd);
+            labelEnd = labelStart - 1;
+        }
+
+        return (V) value;
+    }
+
+    @Override
+    public String toString() {
+        String strVal = this.strVal;
+        if (strVal == null) {
+            final StringBuilder buf = new StringBuilder();
+            buf.append(getClass().getSimpleName());
+            buf.append("(default: ");
+            buf.append(defaultValue);
+            buf.append(", exact: ");
+            int numExact = 0;
+            for (String k : exactKeys) {
+                if (k != null) {
+                    numExact++;
+                }
+            }
+            buf.append(numExact);
+            buf.append(", wildcard: ");
+            buf.append(wildcardRoot != null ? wildcardRoot.count() : 0);
+            buf.append(')');
+            this.strVal = strVal = buf.toString();
+        }
+        return strVal;
+    }
+
+    /**
+     * A node of the trie of reversed hostname labels. e.g. {@code "*.foo.com"} is stored as
+     * {@code root -> "com" -> "foo"} where the {@code "foo"} node has the value.
+     */
+    private static final class Node {
+
+        private Map<String, Node> childMap = new LinkedHashMap<>();
+        private String[] labels;
+        private int[] labelHashes;
+        private Node[] children;
+        Object value;
+
+        void add(String pattern, int start, Object value) {
+            Node node = this;
+            int labelEnd = pattern.length();
+            while (labelEnd > start) {
+                final int labelStart = pattern.lastIndexOf('.', labelEnd - 1) + 1;
+                final String label = pattern.substring(Math.max(labelStart, start), labelEnd);
+                node = node.childMap.computeIfAbsent(label, l -> new Node());
+                labelEnd = labelStart - 1;
+            }
+
+            if (node.value == null) {
+                node.value = value;
+            }
+        }
+
+        void compile() {
+            final int capacity = tableCapacity(childMap.size());
+            labels = new String[capacity];
+            labelHashes = new int[capacity];
+            children = new Node[capacity];
+            for (Entry<String, Node> e : childMap.entrySet()) {
+                final String label = e.getKey();
+                final int hash = hashIgnoreCase(label, 0, label.length());
+                final int idx = findSlot(labels, labelHashes, label, 0, label.length(), hash);
+                labels[idx] = label;
+                labelHashes[idx] = hash;
+                children[idx] = e.getValue();
+                e.getValue().compile();
+            }
+            childMap = null;
+        }
+
+        Node child(CharSequence hostname, int start, int end) {
+            final int hash = hashIgnoreCase(hostname, start, end);
+            final int idx = findSlot(labels, labelHashes, hostname, start, end, hash);
+            return children[idx];
+        }
+
+        int count() {
+            int count = value != null ? 1 : 0;
+            for (Node c : children) {
+                if (c != null) {
+                    count += c.count();
+                }
+            }
+            return count;
+        }
+    }
+
+    private static int tableCapacity(int size) {
+        // Keep the load factor at or below 0.5.
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the index of the slot which contains the specified key, or the index of the empty slot where
+     * the key should be inserted.
+     */
+    private static int findSlot(String[] keys, int[] hashes, CharSequence key, int start, int end, int hash) {
+        final int mask = keys.length - 1;
+        int idx = hash & mask;
+        for (;;) {
+            final String k = keys[idx];
+            if (k == null || hashes[idx] == hash && contentEqualsIgnoreCase(k, key, start, end)) {
+                return idx;
+            }
+            idx = idx + 1 & mask;
+        }
+    }
+
+    private static int hashIgnoreCase(CharSequence value, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash * 31 + toLowerCase(value.charAt(i));
+        }
+        // Spread the higher bits because the table index uses the lower bits only.
+        return hash ^ hash >>> 16;
+    }
+
+    private static boolean contentEqualsIgnoreCase(String lowerCased, CharSequence value, int start, int end) {
+        final int length = lowerCased.length();
+        if (length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (lowerCased.charAt(i) != toLowerCase(value.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -19,8 +19,8 @@ package com.linecorp.armeria.server;
 import static java.util.Objects.requireNonNull;
 
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -125,6 +125,8 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
     private static final Exception SERVICE_NOT_FOUND = new ServiceNotFoundException();
 
     private final ServerConfig config;
+    private final ServerPortMetrics metrics;
+    private final ServiceInvoker invoker;
     private SessionProtocol protocol;
     private Http2Connection http2conn;
 
@@ -147,19 +149,59 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
     /**
      * The map which maps a sequence number to its related pending response.
      */
-    private final IntObjectMap<FullHttpResponse> pendingResponses = new IntObjectHashMap<>();
+    private final IntObjectMap<PendingResponse> pendingResponses = new IntObjectHashMap<>();
 
     private boolean handledLastRequest;
 
-    HttpServerHandler(ServerConfig config, SessionProtocol protocol) {
+    /**
+     * The number of the requests in this connection whose responses have not been written yet.
+     */
+    private int inflightRequests;
+
+    /**
+     * Set when this handler is removed from the pipeline, after which {@link #metrics} is not updated.
+     */
+    private boolean removed;
+
+    HttpServerHandler(ServerConfig config, ServerPortMetrics metrics,
+                      @Nullable SlowRequestWatchdog slowRequestWatchdog, SessionProtocol protocol) {
         assert protocol == SessionProtocol.H1 ||
                protocol == SessionProtocol.H1C ||
                protocol == SessionProtocol.H2;
 
         this.config = requireNonNull(config, "config");
+        this.metrics = requireNonNull(metrics, "metrics");
+        invoker = new ServiceInvoker(config, slowRequestWatchdog);
         this.protocol = requireNonNull(protocol, "protocol");
     }
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        metrics.increment(connectionMetric());
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        removed = true;
+        metrics.decrement(connectionMetric());
+        metrics.add(ServerPortMetrics.INFLIGHT_REQUESTS, -inflightRequests);
+        metrics.add(ServerPortMetrics.PENDING_RESPONSES, -pendingResponses.size());
+
+        // Complete the invocations whose responses will never be written, so that they are still reported.
+        for (PendingResponse pendingRes : pendingResponses.values()) {
+            if (pendingRes.iCtx != null) {
+                pendingRes.iCtx.timings().markResponseEnd();
+            }
+            ReferenceCountUtil.safeRelease(pendingRes.res);
+        }
+        pendingResponses.clear();
+    }
+
+    private int connectionMetric() {
+        return protocol == SessionProtocol.H2 || protocol == SessionProtocol.H2C ?
+               ServerPortMetrics.ACTIVE_HTTP2_CONNECTIONS : ServerPortMetrics.ACTIVE_HTTP1_CONNECTIONS;
+    }
+
     private boolean isHttp2() {
         return http2conn != null;
     }
@@ -168,9 +210,11 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
         switch (protocol) {
             case H1:
                 protocol = SessionProtocol.H2;
+                switchedToHttp2();
                 break;
             case H1C:
                 protocol = SessionProtocol.H2C;
+                switchedToHttp2();
                 break;
         }
 
@@ -178,6 +222,30 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
         http2conn = handler.connection();
     }
 
+    private void switchedToHttp2() {
+        metrics.decrement(ServerPortMetrics.ACTIVE_HTTP1_CONNECTIONS);
+        metrics.increment(ServerPortMetrics.ACTIVE_HTTP2_CONNECTIONS);
+    }
+
+    private void requestStarted() {
+        inflightRequests++;
+        metrics.increment(ServerPortMetrics.REQUESTS);
+        metrics.increment(ServerPortMetrics.INFLIGHT_REQUESTS);
+    }
+
+    private void requestEnded() {
+        if (!removed) {
+            inflightRequests--;
+            metrics.decrement(ServerPortMetrics.INFLIGHT_REQUESTS);
+        }
+    }
+
+    private void updatePendingResponses(int delta) {
+        if (!removed) {
+            metrics.add(ServerPortMetrics.PENDING_RESPONSES, delta);
+        }
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         isReading = true; // Cleared in channelReadComplete()
@@ -201,6 +269,8 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
             return;
         }
 
+        final long requestStartNanos = System.nanoTime();
+        requestStarted();
         boolean invoked = false;
         try {
             // If we received the message with keep-alive disabled,
@@ -221,8 +291,10 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
                 return;
             }
 
-            final String hostname = hostname(req);
-            final VirtualHost host = config.findVirtualHost(hostname);
+            final String hostHeader = req.headers().get(HttpHeaderNames.HOST);
+            final int hostnameEnd = hostnameEnd(hostHeader);
+            final VirtualHost host = config.findVirtualHost(hostHeader, 0, hostnameEnd);
+            final String hostname = hostname(hostHeader, hostnameEnd);
             final String path = stripQuery(req.uri());
 
             // Find the service that matches the path.
@@ -247,11 +319,9 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
             case SUCCESS: {
                 // A successful decode; perform the invocation.
                 final ServiceInvocationContext iCtx = decodeResult.invocationContext();
-                invoke(iCtx, service.handler(), promise);
                 invoked = true;
-
-                // Do the post-invocation tasks such as scheduling a timeout.
-                handleInvocationPromise(ctx, reqSeq, req, codec, iCtx, promise);
+                invoker.invoke(ctx, serviceCfg, iCtx, requestStartNanos, req, promise,
+                               future -> handleInvocationResult(ctx, reqSeq, req, iCtx, codec, future));
                 break;
             }
             case FAILURE: {
@@ -266,7 +336,7 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
                 break;
             }
         } finally {
-            // If invocation has been started successfully, handleInvocationResult() will call
+            // If invocation has been started successfully, ServiceInvoker will call
             // ReferenceCountUtil.safeRelease() when the invocation is done.
             if (!invoked) {
                 ReferenceCountUtil.safeRelease(req);
@@ -295,87 +365,40 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
         respond(ctx, reqSeq, req, HttpResponseStatus.NOT_FOUND);
     }
 
-    private void invoke(ServiceInvocationContext iCtx, ServiceInvocationHandler handler,
-                        Promise<Object> promise) {
-
-        ServiceInvocationContext.setCurrent(iCtx);
-        try {
-            handler.invoke(iCtx, config.blockingTaskExecutor(), promise);
-        } catch (Throwable t) {
-            if (!promise.tryFailure(t)) {
-                logger.warn("{} invoke() failed with a finished promise: {}", iCtx, promise, t);
-            }
-        } finally {
-            ServiceInvocationContext.removeCurrent();
-        }
-    }
-
-    private void handleInvocationPromise(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req,
-                                         ServiceCodec codec, ServiceInvocationContext iCtx,
-                                         Promise<Object> promise) throws Exception {
-        if (promise.isDone()) {
-            // If the invocation has been finished immediately,
-            // there's no need to schedule a timeout nor to add a listener to the promise.
-            handleInvocationResult(ctx, reqSeq, req, iCtx, codec, promise, null);
-        } else {
-            final long timeoutMillis = config.requestTimeoutPolicy().timeout(iCtx);
-            final ScheduledFuture<?> timeoutFuture;
-            if (timeoutMillis > 0) {
-                timeoutFuture = ctx.executor().schedule(
-                        () -> promise.tryFailure(new RequestTimeoutException(
-                                "request timed out after " + timeoutMillis + "ms: " + iCtx)),
-                        timeoutMillis, TimeUnit.MILLISECONDS);
-            } else {
-                timeoutFuture = null;
-            }
-
-            promise.addListener((Future<Object> future) -> {
-                try {
-                    handleInvocationResult(ctx, reqSeq, req, iCtx, codec, future, timeoutFuture);
-                } catch (Exception e) {
-                    respond(ctx, reqSeq, req, HttpResponseStatus.INTERNAL_SERVER_ERROR, e);
-                }
-            });
-        }
-    }
-
     private void handleInvocationResult(
             ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req,
-            ServiceInvocationContext iCtx, ServiceCodec codec, Future<Object> future,
-            ScheduledFuture<?> timeoutFuture) throws Exception {
-
-        // Release the original request which was retained before the invocation.
-        ReferenceCountUtil.safeRelease(req);
-
-        // Cancel the associated timeout, if any.
-        if (timeoutFuture != null) {
-            timeoutFuture.cancel(true);
-        }
+            ServiceInvocationContext iCtx, ServiceCodec codec, Future<Object> future) {
 
-        // No need to build the HTTP response if the connection/stream has been closed.
-        if (isStreamClosed(ctx, req)) {
-            if (future.isSuccess()) {
-                ReferenceCountUtil.safeRelease(future.getNow());
+        try {
+            // No need to build the HTTP response if the connection/stream has been closed.
+            if (isStreamClosed(ctx, req)) {
+                if (future.isSuccess()) {
+                    ReferenceCountUtil.safeRelease(future.getNow());
+                }
+                iCtx.timings().markResponseEnd();
+                requestEnded();
+                return;
             }
-            return;
-        }
 
-        if (future.isSuccess()) {
-            final Object res = future.getNow();
-            if (res instanceof FullHttpResponse) {
-                respond(ctx, reqSeq, req, (FullHttpResponse) res);
-            } else {
-                final ByteBuf encoded = codec.encodeResponse(iCtx, res);
-                respond(ctx, reqSeq, req, encoded);
-            }
-        } else {
-            final Throwable cause = future.cause();
-            final ByteBuf encoded = codec.encodeFailureResponse(iCtx, cause);
-            if (codec.failureResponseFailsSession(iCtx)) {
-                respond(ctx, reqSeq, req, toHttpResponseStatus(cause), encoded);
+            if (future.isSuccess()) {
+                final Object res = future.getNow();
+                if (res instanceof FullHttpResponse) {
+                    respond(ctx, reqSeq, req, (FullHttpResponse) res, iCtx);
+                } else {
+                    final ByteBuf encoded = codec.encodeResponse(iCtx, res);
+                    iCtx.timings().markEncodeEnd();
+                    respond(ctx, reqSeq, req, newResponse(HttpResponseStatus.OK, encoded), iCtx);
+                }
             } else {
-                respond(ctx, reqSeq, req, encoded);
+                final Throwable cause = future.cause();
+                final ByteBuf encoded = codec.encodeFailureResponse(iCtx, cause);
+                iCtx.timings().markEncodeEnd();
+                final HttpResponseStatus status = codec.failureResponseFailsSession(iCtx) ?
+                                                  toHttpResponseStatus(cause) : HttpResponseStatus.OK;
+                respond(ctx, reqSeq, req, newResponse(status, encoded), iCtx);
             }
+        } catch (Exception e) {
+            respond(ctx, reqSeq, req, HttpResponseStatus.INTERNAL_SERVER_ERROR, e, iCtx);
         }
     }
 
@@ -421,18 +444,26 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
-    private static String hostname(FullHttpRequest req) {
-        final String hostname = req.headers().getAsString(HttpHeaderNames.HOST);
-        if (hostname == null) {
-            return "";
+    /**
+     * Returns the end index of the hostname part of the specified {@code "Host"} header value,
+     * i.e. the index of the port separator if there's one.
+     */
+    private static int hostnameEnd(String hostHeader) {
+        if (hostHeader == null) {
+            return 0;
         }
 
-        final int hostnameColonIdx = hostname.lastIndexOf(':');
-        if (hostnameColonIdx < 0) {
-            return hostname;
+        final int hostnameColonIdx = hostHeader.lastIndexOf(':');
+        return hostnameColonIdx < 0 ? hostHeader.length() : hostnameColonIdx;
+    }
+
+    private static String hostname(String hostHeader, int hostnameEnd) {
+        if (hostHeader == null) {
+            return "";
         }
 
-        return hostname.substring(0, hostnameColonIdx);
+        // Do not allocate a new string when there's no port number.
+        return hostnameEnd == hostHeader.length() ? hostHeader : hostHeader.substring(0, hostnameEnd);
     }
 
     private static String stripQuery(String uri) {
@@ -448,17 +479,16 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
         return HttpResponseStatus.INTERNAL_SERVER_ERROR;
     }
 
-    private void respond(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req, ByteBuf content) {
-        respond(ctx, reqSeq, req, HttpResponseStatus.OK, content);
-    }
-
     private void respond(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req,
                          HttpResponseStatus status, ByteBuf content) {
+        respond(ctx, reqSeq, req, newResponse(status, content));
+    }
 
+    private static FullHttpResponse newResponse(HttpResponseStatus status, ByteBuf content) {
         if (content == null) {
             content = Unpooled.EMPTY_BUFFER;
         }
-        respond(ctx, reqSeq, req, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content));
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
     }
 
     private void respond(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req,
@@ -473,6 +503,11 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
 
     private void respond(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req,
                          HttpResponseStatus status, Throwable cause) {
+        respond(ctx, reqSeq, req, status, cause, null);
+    }
+
+    private void respond(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req,
+                         HttpResponseStatus status, Throwable cause, ServiceInvocationContext iCtx) {
 
         assert status.code() >= 400;
 
@@ -494,7 +529,7 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
         final DefaultFullHttpResponse res = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
         res.headers().set(HttpHeaderNames.CONTENT_TYPE, ERROR_CONTENT_TYPE);
 
-        respond(ctx, reqSeq, req, res);
+        respond(ctx, reqSeq, req, res, iCtx);
     }
 
     private void redirect(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req, String location) {
@@ -516,10 +551,15 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
     }
 
     private void respond(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req, FullHttpResponse res) {
+        respond(ctx, reqSeq, req, res, null);
+    }
+
+    private void respond(ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req, FullHttpResponse res,
+                         ServiceInvocationContext iCtx) {
         if (isHttp2()) {
             final String streamId = req.headers().getAsString(STREAM_ID);
             res.headers().set(STREAM_ID, streamId);
-        } else if (!handlePendingResponses(ctx, reqSeq, req, res)) {
+        } else if (!handlePendingResponses(ctx, reqSeq, req, res, iCtx)) {
             // HTTP/1 and the responses for the previous requests are not all ready.
             return;
         }
@@ -535,30 +575,43 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
             ctx.write(res).addListener(CLOSE);
         }
 
+        if (iCtx != null) {
+            iCtx.timings().markResponseEnd();
+        }
+        requestEnded();
+
         if (!isReading) {
             ctx.flush();
         }
     }
 
     private boolean handlePendingResponses(
-            ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req, FullHttpResponse res) {
+            ChannelHandlerContext ctx, int reqSeq, FullHttpRequest req, FullHttpResponse res,
+            ServiceInvocationContext iCtx) {
 
-        final IntObjectMap<FullHttpResponse> pendingResponses = this.pendingResponses;
+        final IntObjectMap<PendingResponse> pendingResponses = this.pendingResponses;
         while (reqSeq != resSeq) {
-            FullHttpResponse pendingRes = pendingResponses.remove(resSeq);
+            PendingResponse pendingRes = pendingResponses.remove(resSeq);
             if (pendingRes == null) {
                 // Stuck by head-of-line blocking; try again later.
                 addKeepAliveHeaders(req, res);
-                FullHttpResponse oldPendingRes = pendingResponses.put(reqSeq, res);
+                PendingResponse oldPendingRes = pendingResponses.put(reqSeq, new PendingResponse(res, iCtx));
                 if (oldPendingRes != null) {
                     // It is impossible to reach here as long as there are 2G+ pending responses.
-                    logger.error("{} Orphaned pending response ({}): {}", reqSeq, oldPendingRes);
-                    ReferenceCountUtil.safeRelease(oldPendingRes.release());
+                    logger.error("{} Orphaned pending response ({}): {}", reqSeq, oldPendingRes.res);
+                    ReferenceCountUtil.safeRelease(oldPendingRes.res.release());
+                } else {
+                    updatePendingResponses(1);
                 }
                 return false;
             }
 
-            ctx.write(pendingRes);
+            updatePendingResponses(-1);
+            ctx.write(pendingRes.res);
+            if (pendingRes.iCtx != null) {
+                pendingRes.iCtx.timings().markResponseEnd();
+            }
+            requestEnded();
             resSeq++;
         }
 
@@ -634,4 +687,14 @@ final class HttpServerHandler extends ChannelInboundHandlerAdapter {
             ctx.close();
         }
     }
+
+    private static final class PendingResponse {
+        final FullHttpResponse res;
+        final ServiceInvocationContext iCtx;
+
+        PendingResponse(FullHttpResponse res, ServiceInvocationContext iCtx) {
+            this.res = res;
+            this.iCtx = iCtx;
+        }
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+
+/**
+ * A request which is being handled by a {@link Server}, as tracked when
+ * {@link ServerConfig#slowRequestThreshold()} is set.
+ *
+ * @see Server#slowRequests()
+ */
+public final class InflightRequest {
+
+    private static final StackTraceElement[] EMPTY_STACK_TRACE = new StackTraceElement[0];
+
+    private final ServiceInvocationContext context;
+    private final long startTimeNanos;
+    private final Set<InflightRequest> stripe;
+
+    /**
+     * The thread of {@link ServerConfig#blockingTaskExecutor()} which is running a task submitted on behalf of
+     * this request, or {@code null} if there's no such task.
+     */
+    private volatile Thread blockingTaskThread;
+
+    /**
+     * The stack trace of {@link #blockingTaskThread} captured when this request was found slow.
+     */
+    private volatile StackTraceElement[] stackTrace = EMPTY_STACK_TRACE;
+
+    private volatile boolean slow;
+
+    InflightRequest(ServiceInvocationContext context, long startTimeNanos, Set<InflightRequest> stripe) {
+        this.context = requireNonNull(context, "context");
+        this.startTimeNanos = startTimeNanos;
+        this.stripe = stripe;
+    }
+
+    /**
+     * Returns the {@link ServiceInvocationContext} of this request.
+     */
+    public ServiceInvocationContext context() {
+        return context;
+    }
+
+    /**
+     * Returns how long this request has been running in nanoseconds.
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startTimeNanos;
+    }
+
+    /**
+     * Returns the thread of {@link ServerConfig#blockingTaskExecutor()} which is running a task submitted on
+     * behalf of this request, or {@code null} if this request is not running on a blocking task thread.
+     */
+    @Nullable
+    public Thread blockingTaskThread() {
+        return blockingTaskThread;
+    }
+
+    /**
+     * Returns the stack trace of the blocking task thread, which was captured when this request was found
+     * slow. An empty array is returned if this request was not running on a blocking task thread.
+     */
+    public StackTraceElement[] stackTrace() {
+        return stackTrace.clone();
+    }
+
+    /**
+     * Returns whether this request has been running for longer than
+     * {@link ServerConfig#slowRequestThreshold()}.
+     */
+    public boolean isSlow() {
+        return slow;
+    }
+
+    long startTimeNanos() {
+        return startTimeNanos;
+    }
+
+    Set<InflightRequest> stripe() {
+        return stripe;
+    }
+
+    /**
+     * Returns an {@link Executor} that records the thread which runs the tasks submitted on behalf of this
+     * request.
+     */
+    Executor newExecutor(Executor delegate) {
+        return command -> delegate.execute(() -> {
+            final Thread thread = Thread.currentThread();
+            blockingTaskThread = thread;
+            try {
+                command.run();
+            } finally {
+                if (blockingTaskThread == thread) {
+                    blockingTaskThread = null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Marks this request as slow and captures the stack trace of its blocking task thread, if any.
+     *
+     * @return {@code true} if this request has not been marked as slow yet
+     */
+    boolean markSlow() {
+        if (slow) {
+            return false;
+        }
+
+        final Thread thread = blockingTaskThread;
+        if (thread != null) {
+            stackTrace = thread.getStackTrace();
+        }
+        slow = true;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        final Thread thread = blockingTaskThread;
+        return "InflightRequest(" + context + ", elapsed: " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos()) +
+               "ms" + (thread != null ? ", thread: " + thread.getName() : "") + ')';
+    }
+}
@@ -19,9 +19,14 @@ package com.linecorp.armeria.server;
 import static java.util.Objects.requireNonNull;
 
 import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -35,11 +40,14 @@ import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.linecorp.armeria.common.metrics.EventLoopMetrics;
+import com.linecorp.armeria.common.metrics.EventLoopWatchdog;
 import com.linecorp.armeria.common.util.NativeLibraries;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.epoll.Epoll;
@@ -48,8 +56,6 @@ import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.ssl.SslContext;
-import io.netty.util.DomainMappingBuilder;
-import io.netty.util.DomainNameMapping;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GlobalEventExecutor;
@@ -78,17 +84,21 @@ public final class Server implements AutoCloseable {
             new DefaultThreadFactory("armeria-server-epoll", false);
 
     private final ServerConfig config;
-    private final DomainNameMapping<SslContext> sslContexts;
+    private final HostnameMatcher<SslContext> sslContexts;
 
     private final StateManager stateManager = new StateManager();
     private final Map<InetSocketAddress, ServerPort> activePorts = new ConcurrentHashMap<>();
     private final Map<InetSocketAddress, ServerPort> unmodifiableActivePorts = Collections.unmodifiableMap(activePorts);
+    private final Map<ServerPort, ServerPortMetrics> portMetrics;
+    private final BlockingTaskExecutorMetrics blockingTaskExecutorMetrics;
+    private final SlowRequestWatchdog slowRequestWatchdog;
 
     private final List<ServerListener> listeners = new CopyOnWriteArrayList<>();
 
     private volatile ServerPort primaryActivePort;
     private volatile EventLoopGroup bossGroup;
     private volatile EventLoopGroup workerGroup;
+    private volatile EventLoopWatchdog eventLoopWatchdog;
 
     /**
      * A handler that is shared by all ports and channels to be able to keep
@@ -114,14 +124,32 @@ public final class Server implements AutoCloseable {
                 }
             }
         } else {
-            final DomainMappingBuilder<SslContext> mappingBuilder = new DomainMappingBuilder<>(lastSslContext);
+            final List<Entry<String, SslContext>> mappings = new ArrayList<>();
             for (VirtualHost h : config.virtualHosts()) {
                 final SslContext sslCtx = h.sslContext();
                 if (sslCtx != null) {
-                    mappingBuilder.add(h.hostnamePattern(), sslCtx);
+                    mappings.add(new SimpleImmutableEntry<>(h.hostnamePattern(), sslCtx));
                 }
             }
-            sslContexts = mappingBuilder.build();
+            sslContexts = new HostnameMatcher<>(lastSslContext, mappings);
+        }
+
+        final Map<ServerPort, ServerPortMetrics> portMetrics = new LinkedHashMap<>();
+        for (ServerPort p : config.ports()) {
+            portMetrics.put(p, new ServerPortMetrics(p));
+        }
+        this.portMetrics = Collections.unmodifiableMap(portMetrics);
+
+        // Give each service the blocking task executor which updates the metrics of the service.
+        blockingTaskExecutorMetrics = new BlockingTaskExecutorMetrics(config.blockingTaskExecutor());
+        for (ServiceConfig c : config.serviceConfigs()) {
+            c.setBlockingTaskExecutor(blockingTaskExecutorMetrics.executor(c));
+        }
+
+        if (config.slowRequestThreshold().isZero()) {
+            slowRequestWatchdog = null;
+        } else {
+            slowRequestWatchdog = new SlowRequestWatchdog(config.slowRequestThreshold());
         }
 
         // Invoke the service/codec/handlerAdded() methods in Service/ServiceCodec/ServiceInvocationHandler
@@ -158,6 +186,45 @@ public final class Server implements AutoCloseable {
         return unmodifiableActivePorts;
     }
 
+    /**
+     * Returns the connection and stream-level metrics of the {@link ServerPort}s that this {@link Server}
+     * listens to. The metrics are kept across restarts.
+     *
+     * @return a {@link Map} whose key is the {@link ServerPort} specified in {@link ServerConfig#ports()}
+     */
+    public Map<ServerPort, ServerPortMetrics> portMetrics() {
+        return portMetrics;
+    }
+
+    /**
+     * Returns the metrics of {@link ServerConfig#blockingTaskExecutor()}.
+     */
+    public BlockingTaskExecutorMetrics blockingTaskExecutorMetrics() {
+        return blockingTaskExecutorMetrics;
+    }
+
+    /**
+     * Returns the {@link EventLoopMetrics} of the worker event loops.
+     *
+     * @return the {@link List} of {@link EventLoopMetrics}. an empty {@link List} if this {@link Server} is
+     *         not running or {@link ServerConfig#eventLoopBlockedThreshold()} is {@link Duration#ZERO}.
+     */
+    public List<EventLoopMetrics> eventLoopMetrics() {
+        final EventLoopWatchdog eventLoopWatchdog = this.eventLoopWatchdog;
+        return eventLoopWatchdog != null ? eventLoopWatchdog.metrics() : Collections.emptyList();
+    }
+
+    /**
+     * Returns the requests which have been running for longer than
+     * {@link ServerConfig#slowRequestThreshold()}, the oldest first.
+     *
+     * @return the {@link List} of {@link InflightRequest}s. an empty {@link List} if
+     *         {@link ServerConfig#slowRequestThreshold()} is {@link Duration#ZERO}.
+     */
+    public List<InflightRequest> slowRequests() {
+        return slowRequestWatchdog != null ? slowRequestWatchdog.slowRequests() : Collections.emptyList();
+    }
+
     /**
      * Returns the primary {@link ServerPort} that this {@link Server} is listening to. This method is useful
      * when a {@link Server} listens to only one {@link ServerPort}.
@@ -259,6 +326,19 @@ public final class Server implements AutoCloseable {
                 workerGroup = new NioEventLoopGroup(config.numWorkers(), DEFAULT_THREAD_FACTORY_NIO);
             }
 
+            // Start monitoring the worker event loops if necessary.
+            final Duration eventLoopBlockedThreshold = config.eventLoopBlockedThreshold();
+            if (!eventLoopBlockedThreshold.isZero()) {
+                final EventLoopWatchdog eventLoopWatchdog =
+                        new EventLoopWatchdog(workerGroup, eventLoopBlockedThreshold);
+                eventLoopWatchdog.start();
+                this.eventLoopWatchdog = eventLoopWatchdog;
+            }
+
+            if (slowRequestWatchdog != null) {
+                slowRequestWatchdog.start();
+            }
+
             // Initialize the server sockets asynchronously.
             final List<ServerPort> ports = config().ports();
             final AtomicInteger remainingPorts = new AtomicInteger(ports.size());
@@ -285,7 +365,10 @@ public final class Server implements AutoCloseable {
 
         b.group(bossGroup, workerGroup);
         b.channel(Epoll.isAvailable()? EpollServerSocketChannel.class : NioServerSocketChannel.class);
-        b.childHandler(new ServerInitializer(config, port, sslContexts,
+        b.option(ChannelOption.ALLOCATOR, config.byteBufAllocator());
+        b.childOption(ChannelOption.ALLOCATOR, config.byteBufAllocator());
+        b.childHandler(new ServerInitializer(config, port, portMetrics.get(port), slowRequestWatchdog,
+                                             sslContexts,
                                              Optional.ofNullable(gracefulShutdownHandler)));
 
         return b.bind(port.localAddress());
@@ -403,6 +486,16 @@ public final class Server implements AutoCloseable {
             primaryActivePort = null;
             activePorts.clear();
 
+            // Stop monitoring the workers before shutting them down.
+            final EventLoopWatchdog eventLoopWatchdog = this.eventLoopWatchdog;
+            if (eventLoopWatchdog != null) {
+                eventLoopWatchdog.close();
+                this.eventLoopWatchdog = null;
+            }
+            if (slowRequestWatchdog != null) {
+                slowRequestWatchdog.close();
+            }
+
             // Shut down the workers.
             final EventLoopGroup workerGroup = this.workerGroup;
             final Future<?> workerShutdownFuture;
@@ -576,7 +669,7 @@ public final class Server implements AutoCloseable {
 
             if (f.isSuccess()) {
                 InetSocketAddress localAddress = (InetSocketAddress) f.channel().localAddress();
-                ServerPort actualPort = new ServerPort(localAddress, port.protocol());
+                ServerPort actualPort = new ServerPort(localAddress, port.protocol(), port.path());
 
                 activePorts.put(localAddress, actualPort);
 
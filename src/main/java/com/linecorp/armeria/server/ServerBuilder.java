@@ -34,7 +34,9 @@ import javax.net.ssl.SSLException;
 import com.linecorp.armeria.common.ServiceInvocationContext;
 import com.linecorp.armeria.common.SessionProtocol;
 import com.linecorp.armeria.common.TimeoutPolicy;
+import com.linecorp.armeria.common.util.ByteBufAllocatorBuilder;
 
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.handler.ssl.SslContext;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Promise;
@@ -71,6 +73,10 @@ public final class ServerBuilder {
     private static final Duration DEFAULT_GRACEFUL_SHUTDOWN_TIMEOUT = Duration.ZERO;
     private static final int DEFAULT_MAX_BLOCKING_TASK_THREADS = 200; // from Tomcat's maxThreads.
     private static final String DEFAULT_SERVICE_LOGGER_PREFIX = "armeria.services";
+    // Defaults to no event loop monitoring.
+    private static final Duration DEFAULT_EVENT_LOOP_BLOCKED_THRESHOLD = Duration.ZERO;
+    private static final Duration DEFAULT_SLOW_REQUEST_THRESHOLD = Duration.ZERO;
+    private static final ByteBufAllocator DEFAULT_BYTE_BUF_ALLOCATOR = ByteBufAllocator.DEFAULT;
 
     static {
         String value = System.getProperty("io.netty.eventLoopThreads", "0");
@@ -116,6 +122,9 @@ public final class ServerBuilder {
     private Duration gracefulShutdownTimeout = DEFAULT_GRACEFUL_SHUTDOWN_TIMEOUT;
     private Executor blockingTaskExecutor;
     private String serviceLoggerPrefix = DEFAULT_SERVICE_LOGGER_PREFIX;
+    private Duration eventLoopBlockedThreshold = DEFAULT_EVENT_LOOP_BLOCKED_THRESHOLD;
+    private Duration slowRequestThreshold = DEFAULT_SLOW_REQUEST_THRESHOLD;
+    private ByteBufAllocator byteBufAllocator = DEFAULT_BYTE_BUF_ALLOCATOR;
 
     /**
      * Adds a new {@link ServerPort} that listens to the specified {@code port} of all available network
@@ -294,6 +303,48 @@ public final class ServerBuilder {
         return this;
     }
 
+    /**
+     * Sets the amount of time a worker event loop can take to run a newly submitted task before it is
+     * considered blocked. When an event loop is blocked, e.g. by a service that performs blocking I/O
+     * in an event loop, the stack trace of the event loop thread is logged and
+     * {@link Server#eventLoopMetrics()} is updated.
+     *
+     * @param eventLoopBlockedThreshold the threshold. {@link Duration#ZERO} disables the monitoring.
+     */
+    public ServerBuilder eventLoopBlockedThreshold(Duration eventLoopBlockedThreshold) {
+        requireNonNull(eventLoopBlockedThreshold, "eventLoopBlockedThreshold");
+        this.eventLoopBlockedThreshold =
+                ServerConfig.validateNonNegative(eventLoopBlockedThreshold, "eventLoopBlockedThreshold");
+        return this;
+    }
+
+    /**
+     * Sets the amount of time a request can take before it is considered slow. The details of a slow
+     * request, including the stack trace of the blocking task thread running it if any, are logged and
+     * listed in {@link Server#slowRequests()}. Set it well below the
+     * {@linkplain #requestTimeout(Duration) request timeout} to see what a request is doing
+     * before it times out.
+     *
+     * @param slowRequestThreshold the threshold. {@link Duration#ZERO} disables the monitoring.
+     */
+    public ServerBuilder slowRequestThreshold(Duration slowRequestThreshold) {
+        requireNonNull(slowRequestThreshold, "slowRequestThreshold");
+        this.slowRequestThreshold =
+                ServerConfig.validateNonNegative(slowRequestThreshold, "slowRequestThreshold");
+        return this;
+    }
+
+    /**
+     * Sets the {@link ByteBufAllocator} used by the connections accepted by the server. The default value
+     * is {@link ByteBufAllocator#DEFAULT}, which is shared with other Netty-based libraries in the same JVM.
+     * Use {@link ByteBufAllocatorBuilder} to build an allocator with a dedicated memory pool, e.g. with
+     * fewer arenas or smaller thread-local caches for the servers with a large number of connections.
+     */
+    public ServerBuilder byteBufAllocator(ByteBufAllocator byteBufAllocator) {
+        this.byteBufAllocator = requireNonNull(byteBufAllocator, "byteBufAllocator");
+        return this;
+    }
+
     /**
      * Sets the {@link SslContext} of the default {@link VirtualHost}.
      *
@@ -442,7 +493,8 @@ public final class ServerBuilder {
         return new Server(new ServerConfig(
                 ports, defaultVirtualHost, virtualHosts, numWorkers, maxPendingRequests, maxConnections,
                 requestTimeoutPolicy, idleTimeoutMillis, maxFrameLength, gracefulShutdownQuietPeriod,
-                gracefulShutdownTimeout, blockingTaskExecutor, serviceLoggerPrefix));
+                gracefulShutdownTimeout, blockingTaskExecutor, serviceLoggerPrefix, eventLoopBlockedThreshold,
+                slowRequestThreshold, byteBufAllocator));
     }
 
     @Override
@@ -451,6 +503,6 @@ public final class ServerBuilder {
                 getClass(), ports, defaultVirtualHost, virtualHosts,
                 numWorkers, maxPendingRequests, maxConnections, requestTimeoutPolicy, idleTimeoutMillis,
                 maxFrameLength, gracefulShutdownQuietPeriod, gracefulShutdownTimeout, blockingTaskExecutor,
-                serviceLoggerPrefix);
+                serviceLoggerPrefix, eventLoopBlockedThreshold, slowRequestThreshold, byteBufAllocator);
     }
 }
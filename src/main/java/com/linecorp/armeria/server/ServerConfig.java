@@ -19,19 +19,22 @@ package com.linecorp.armeria.server;
 import static java.util.Objects.requireNonNull;
 
 import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
 import com.linecorp.armeria.common.TimeoutPolicy;
+import com.linecorp.armeria.server.thrift.ThriftService;
 
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.handler.ssl.SslContext;
-import io.netty.util.DomainMappingBuilder;
-import io.netty.util.DomainNameMapping;
 import io.netty.util.concurrent.Promise;
 
 /**
@@ -45,7 +48,7 @@ public final class ServerConfig {
     private final List<ServerPort> ports;
     private final VirtualHost defaultVirtualHost;
     private final List<VirtualHost> virtualHosts;
-    private final DomainNameMapping<VirtualHost> virtualHostMapping;
+    private final HostnameMatcher<VirtualHost> virtualHostMapping;
     private final List<ServiceConfig> services;
 
     private final int numWorkers;
@@ -62,6 +65,12 @@ public final class ServerConfig {
 
     private final String serviceLoggerPrefix;
 
+    private final Duration eventLoopBlockedThreshold;
+
+    private final Duration slowRequestThreshold;
+
+    private final ByteBufAllocator byteBufAllocator;
+
     private String strVal;
 
     ServerConfig(
@@ -70,7 +79,8 @@ public final class ServerConfig {
             int numWorkers, int maxPendingRequests, int maxConnections,
             TimeoutPolicy requestTimeoutPolicy, long idleTimeoutMillis, int maxFrameLength,
             Duration gracefulShutdownQuietPeriod, Duration gracefulShutdownTimeout,
-            Executor blockingTaskExecutor, String serviceLoggerPrefix) {
+            Executor blockingTaskExecutor, String serviceLoggerPrefix, Duration eventLoopBlockedThreshold,
+            Duration slowRequestThreshold, ByteBufAllocator byteBufAllocator) {
 
         requireNonNull(ports, "ports");
         requireNonNull(virtualHosts, "virtualHosts");
@@ -92,6 +102,11 @@ public final class ServerConfig {
 
         this.blockingTaskExecutor = requireNonNull(blockingTaskExecutor, "blockingTaskExecutor");
         this.serviceLoggerPrefix = ServiceConfig.validateLoggerName(serviceLoggerPrefix, "serviceLoggerPrefix");
+        this.eventLoopBlockedThreshold = validateNonNegative(requireNonNull(
+                eventLoopBlockedThreshold), "eventLoopBlockedThreshold");
+        this.slowRequestThreshold = validateNonNegative(requireNonNull(
+                slowRequestThreshold), "slowRequestThreshold");
+        this.byteBufAllocator = requireNonNull(byteBufAllocator, "byteBufAllocator");
 
         // Set localAddresses.
         final List<ServerPort> portsCopy = new ArrayList<>();
@@ -110,16 +125,16 @@ public final class ServerConfig {
 
         // Set virtual host definitions and initialize their domain name mapping.
         defaultVirtualHost = normalizeDefaultVirtualHost(defaultVirtualHost, portsCopy);
-        final DomainMappingBuilder<VirtualHost> mappingBuilder = new DomainMappingBuilder<>(defaultVirtualHost);
         final List<VirtualHost> virtualHostsCopy = new ArrayList<>();
+        final List<Entry<String, VirtualHost>> mappings = new ArrayList<>();
         for (VirtualHost h : virtualHosts) {
             if (h == null) {
                 break;
             }
             virtualHostsCopy.add(h);
-            mappingBuilder.add(h.hostnamePattern(), h);
+            mappings.add(new SimpleImmutableEntry<>(h.hostnamePattern(), h));
         }
-        virtualHostMapping = mappingBuilder.build();
+        virtualHostMapping = new HostnameMatcher<>(defaultVirtualHost, mappings);
 
         // Add the default VirtualHost to the virtualHosts so that a user can retrieve all VirtualHosts
         // via virtualHosts(). i.e. no need to check defaultVirtualHost().
@@ -132,6 +147,27 @@ public final class ServerConfig {
             throw new IllegalArgumentException("no services in the server");
         }
 
+        // The ports whose protocol does not carry a path are served by the service at the path of the port.
+        for (ServerPort p : portsCopy) {
+            if (p.protocol() != SessionProtocol.TFRAMED) {
+                continue;
+            }
+
+            final PathMapped<ServiceConfig> serviceCfg = defaultVirtualHost.findServiceConfig(p.path());
+            if (!serviceCfg.isPresent()) {
+                throw new IllegalArgumentException(
+                        "no service at the path of " + p + " in the default virtual host");
+            }
+
+            // Only a non-batched Thrift service can decode a raw Thrift message read from a frame.
+            final Service service = serviceCfg.value().service();
+            final Optional<ThriftService> thriftService = service.as(ThriftService.class);
+            if (!thriftService.isPresent() || thriftService.get().isBatched()) {
+                throw new IllegalArgumentException(
+                        "not a non-batched Thrift service at the path of " + p + ": " + service);
+            }
+        }
+
         this.virtualHosts = Collections.unmodifiableList(virtualHostsCopy);
         this.defaultVirtualHost = defaultVirtualHost;
 
@@ -253,12 +289,23 @@ public final class ServerConfig {
 
     /**
      * Finds the {@link VirtualHost} that matches the specified {@code hostname}. If there's no match, the
-     * {@link #defaultVirtualHost()} is returned.
+     * {@link #defaultVirtualHost()} is returned. When more than one {@link VirtualHost} matches, an exact
+     * hostname pattern is preferred to a wildcard one, and a longer wildcard pattern to a shorter one.
      */
     public VirtualHost findVirtualHost(String hostname) {
         return virtualHostMapping.map(hostname);
     }
 
+    /**
+     * Finds the {@link VirtualHost} that matches the hostname in the specified range of {@code hostname}
+     * without allocating a substring.
+     *
+     * @see #findVirtualHost(String)
+     */
+    VirtualHost findVirtualHost(CharSequence hostname, int start, int end) {
+        return virtualHostMapping.map(hostname, start, end);
+    }
+
     /**
      * Finds the {@link List} of {@link VirtualHost}s that contains the specified {@link Service}. If there's
      * no match, an empty {@link List} is returned. Note that this is potentially an expensive operation and
@@ -368,6 +415,33 @@ public final class ServerConfig {
         return serviceLoggerPrefix;
     }
 
+    /**
+     * Returns the amount of time a worker event loop can take to run a newly submitted task before it is
+     * considered blocked. {@link Duration#ZERO} means the event loops are not monitored.
+     *
+     * @see Server#eventLoopMetrics()
+     */
+    public Duration eventLoopBlockedThreshold() {
+        return eventLoopBlockedThreshold;
+    }
+
+    /**
+     * Returns the amount of time a request can take before it is considered slow and its details are
+     * captured. {@link Duration#ZERO} means the requests are not monitored.
+     *
+     * @see Server#slowRequests()
+     */
+    public Duration slowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    /**
+     * Returns the {@link ByteBufAllocator} used by the connections accepted by the server.
+     */
+    public ByteBufAllocator byteBufAllocator() {
+        return byteBufAllocator;
+    }
+
     @Override
     public String toString() {
         String strVal = this.strVal;
@@ -377,7 +451,8 @@ public final class ServerConfig {
                     numWorkers(), maxPendingRequests(), maxConnections(),
                     requestTimeoutPolicy(), idleTimeoutMillis(), maxFrameLength(),
                     gracefulShutdownQuietPeriod(), gracefulShutdownTimeout(),
-                    blockingTaskExecutor(), serviceLoggerPrefix());
+                    blockingTaskExecutor(), serviceLoggerPrefix(), eventLoopBlockedThreshold(),
+                    slowRequestThreshold(), byteBufAllocator());
         }
 
         return strVal;
@@ -389,7 +464,8 @@ public final class ServerConfig {
             int numWorkers, int maxPendingRequests, int maxConnections,
             TimeoutPolicy requestTimeoutPolicy, long idleTimeoutMillis, int maxFrameLength,
             Duration gracefulShutdownQuietPeriod, Duration gracefulShutdownTimeout,
-            Executor blockingTaskExecutor, String serviceLoggerPrefix) {
+            Executor blockingTaskExecutor, String serviceLoggerPrefix, Duration eventLoopBlockedThreshold,
+            Duration slowRequestThreshold, ByteBufAllocator byteBufAllocator) {
 
         StringBuilder buf = new StringBuilder();
         if (type != null) {
@@ -400,7 +476,7 @@ public final class ServerConfig {
 
         boolean hasPorts = false;
         for (ServerPort p : ports) {
-            buf.append(ServerPort.toString(null, p.localAddress(), p.protocol()));
+            buf.append(ServerPort.toString(null, p.localAddress(), p.protocol(), p.path()));
             buf.append(", ");
             hasPorts = true;
         }
@@ -449,6 +525,12 @@ public final class ServerConfig {
         buf.append(blockingTaskExecutor);
         buf.append(", serviceLoggerPrefix: ");
         buf.append(serviceLoggerPrefix);
+        buf.append(", eventLoopBlockedThreshold: ");
+        buf.append(eventLoopBlockedThreshold);
+        buf.append(", slowRequestThreshold: ");
+        buf.append(slowRequestThreshold);
+        buf.append(", byteBufAllocator: ");
+        buf.append(byteBufAllocator);
         buf.append(')');
 
         return buf.toString();
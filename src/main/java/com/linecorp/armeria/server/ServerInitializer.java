@@ -21,6 +21,8 @@ import static java.util.Objects.requireNonNull;
 import java.util.List;
 import java.util.Optional;
 
+import javax.annotation.Nullable;
+
 import com.linecorp.armeria.common.SessionProtocol;
 import com.linecorp.armeria.common.http.AbstractHttpToHttp2ConnectionHandler;
 import com.linecorp.armeria.common.http.Http2GoAwayListener;
@@ -32,6 +34,8 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.HttpServerUpgradeHandler;
@@ -42,6 +46,7 @@ import io.netty.handler.codec.http2.DefaultHttp2FrameReader;
 import io.netty.handler.codec.http2.DefaultHttp2FrameWriter;
 import io.netty.handler.codec.http2.Http2CodecUtil;
 import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
 import io.netty.handler.codec.http2.Http2ConnectionDecoder;
 import io.netty.handler.codec.http2.Http2ConnectionEncoder;
 import io.netty.handler.codec.http2.Http2ConnectionHandler;
@@ -51,37 +56,47 @@ import io.netty.handler.codec.http2.Http2FrameReader;
 import io.netty.handler.codec.http2.Http2FrameWriter;
 import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
 import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
 import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
 import io.netty.handler.ssl.ApplicationProtocolNames;
 import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
 import io.netty.handler.ssl.SniHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.util.AsciiString;
-import io.netty.util.DomainNameMapping;
 
 final class ServerInitializer extends ChannelInitializer<Channel> {
 
     private final ServerConfig config;
     private final ServerPort port;
-    private final DomainNameMapping<SslContext> sslContexts;
+    private final ServerPortMetrics metrics;
+    private final ServerPortMetricsHandler metricsHandler;
+    private final SlowRequestWatchdog slowRequestWatchdog;
+    private final HostnameMatcher<SslContext> sslContexts;
     private final Optional<GracefulShutdownHandler> gracefulShutdownHandler;
 
     ServerInitializer(
-            ServerConfig config, ServerPort port,
-            DomainNameMapping<SslContext> sslContexts,
+            ServerConfig config, ServerPort port, ServerPortMetrics metrics,
+            @Nullable SlowRequestWatchdog slowRequestWatchdog, HostnameMatcher<SslContext> sslContexts,
             Optional<GracefulShutdownHandler> gracefulShutdownHandler) {
 
         this.config = requireNonNull(config, "config");
         this.port = requireNonNull(port, "port");
+        this.metrics = requireNonNull(metrics, "metrics");
+        this.slowRequestWatchdog = slowRequestWatchdog;
         this.sslContexts = sslContexts;
         this.gracefulShutdownHandler = requireNonNull(gracefulShutdownHandler);
+
+        metricsHandler = new ServerPortMetricsHandler(metrics);
     }
 
     @Override
     protected void initChannel(Channel ch) throws Exception {
         final ChannelPipeline p = ch.pipeline();
+        p.addLast(metricsHandler);
 
-        if (port.protocol().isTls()) {
+        if (port.protocol() == SessionProtocol.TFRAMED) {
+            configureTFramed(p);
+        } else if (port.protocol().isTls()) {
             p.addLast(new SniHandler(sslContexts));
             configureHttps(p);
         } else {
@@ -92,7 +107,16 @@ final class ServerInitializer extends ChannelInitializer<Channel> {
     private void configureHttp(ChannelPipeline p) {
         p.addLast(new Http2PrefaceOrHttpHandler());
         configureRequestCountingHandlers(p);
-        p.addLast(new HttpServerHandler(config, SessionProtocol.H1C));
+        p.addLast(new HttpServerHandler(config, metrics, slowRequestWatchdog, SessionProtocol.H1C));
+    }
+
+    private void configureTFramed(ChannelPipeline p) {
+        p.addLast(new LengthFieldBasedFrameDecoder(config.maxFrameLength(), 0, 4, 0, 4));
+        p.addLast(new LengthFieldPrepender(4));
+        if (config.idleTimeoutMillis() > 0) {
+            p.addLast(new TFramedServerHandler.IdleTimeoutHandler(config.idleTimeoutMillis()));
+        }
+        p.addLast(new TFramedServerHandler(config, metrics, slowRequestWatchdog, port.path()));
     }
 
     private void configureRequestCountingHandlers(ChannelPipeline p) {
@@ -113,6 +137,17 @@ final class ServerInitializer extends ChannelInitializer<Channel> {
         final boolean validateHeaders = true;
         final Http2Connection conn = new DefaultHttp2Connection(true);
         conn.addListener(new Http2GoAwayListener(pipeline.channel()));
+        conn.addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamActive(Http2Stream stream) {
+                metrics.increment(ServerPortMetrics.ACTIVE_HTTP2_STREAMS);
+            }
+
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                metrics.decrement(ServerPortMetrics.ACTIVE_HTTP2_STREAMS);
+            }
+        });
 
         final Http2FrameListener listener = new InboundHttp2ToHttpAdapterBuilder(conn)
                 .propagateSettings(true).validateHttpHeaders(validateHeaders)
@@ -189,7 +224,7 @@ final class ServerInitializer extends ChannelInitializer<Channel> {
             final ChannelPipeline p = ctx.pipeline();
             p.addLast(createHttp2ConnectionHandler(p));
             configureRequestCountingHandlers(p);
-            p.addLast(new HttpServerHandler(config, SessionProtocol.H2));
+            p.addLast(new HttpServerHandler(config, metrics, slowRequestWatchdog, SessionProtocol.H2));
         }
 
         private void addHttpHandlers(ChannelHandlerContext ctx) {
@@ -197,7 +232,7 @@ final class ServerInitializer extends ChannelInitializer<Channel> {
             p.addLast(new HttpServerCodec());
             p.addLast(new HttpObjectAggregator(config.maxFrameLength()));
             configureRequestCountingHandlers(p);
-            p.addLast(new HttpServerHandler(config, SessionProtocol.H1));
+            p.addLast(new HttpServerHandler(config, metrics, slowRequestWatchdog, SessionProtocol.H1));
         }
     }
 
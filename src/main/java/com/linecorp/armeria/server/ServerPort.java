@@ -32,6 +32,7 @@ public final class ServerPort implements Comparable<ServerPort> {
     private final InetSocketAddress localAddress;
     private final String localAddressString;
     private final SessionProtocol protocol;
+    private final String path;
     private int hashCode;
     private String strVal;
 
@@ -43,11 +44,31 @@ public final class ServerPort implements Comparable<ServerPort> {
         this(new InetSocketAddress(port), protocol);
     }
 
+    /**
+     * Creates a new {@link ServerPort} that listens to the specified {@code port} of all available network
+     * interfaces using the specified {@link SessionProtocol}, which does not carry a path, such as
+     * {@link SessionProtocol#TFRAMED}. All requests received via this port are handled by the
+     * {@link Service} bound at the specified {@code path} of the default {@link VirtualHost}.
+     */
+    public ServerPort(int port, SessionProtocol protocol, String path) {
+        this(new InetSocketAddress(port), protocol, path);
+    }
+
     /**
      * Creates a new {@link ServerPort} that listens to the specified {@code localAddress} using the specified
      * {@link SessionProtocol}.
      */
     public ServerPort(InetSocketAddress localAddress, SessionProtocol protocol) {
+        this(localAddress, protocol, "/");
+    }
+
+    /**
+     * Creates a new {@link ServerPort} that listens to the specified {@code localAddress} using the specified
+     * {@link SessionProtocol}, which does not carry a path, such as {@link SessionProtocol#TFRAMED}.
+     * All requests received via this port are handled by the {@link Service} bound at the specified
+     * {@code path} of the default {@link VirtualHost}.
+     */
+    public ServerPort(InetSocketAddress localAddress, SessionProtocol protocol, String path) {
 
         // Try to resolve the localAddress if not resolved yet.
         if (requireNonNull(localAddress, "localAddress").isUnresolved()) {
@@ -62,14 +83,22 @@ public final class ServerPort implements Comparable<ServerPort> {
 
         requireNonNull(protocol, "protocol");
 
-        if (protocol != SessionProtocol.HTTP && protocol != SessionProtocol.HTTPS) {
+        if (protocol != SessionProtocol.HTTP && protocol != SessionProtocol.HTTPS &&
+            protocol != SessionProtocol.TFRAMED) {
             throw new IllegalArgumentException(
                     "protocol: " + protocol +
-                    " (expected: " + SessionProtocol.HTTP + " or " + SessionProtocol.HTTPS + ')');
+                    " (expected: " + SessionProtocol.HTTP + ", " + SessionProtocol.HTTPS + " or " +
+                    SessionProtocol.TFRAMED + ')');
+        }
+
+        requireNonNull(path, "path");
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            throw new IllegalArgumentException("path: " + path + " (expected: an absolute path)");
         }
 
         this.localAddress = localAddress;
         this.protocol = protocol;
+        this.path = path;
 
         localAddressString = localAddress.getAddress().getHostAddress() + ':' + localAddress.getPort();
     }
@@ -88,6 +117,15 @@ public final class ServerPort implements Comparable<ServerPort> {
         return protocol;
     }
 
+    /**
+     * Returns the path of the {@link Service} in the default {@link VirtualHost} which handles the requests
+     * received via this {@link ServerPort}. This property is used only when the {@link SessionProtocol} of
+     * this {@link ServerPort} does not carry a path, i.e. {@link SessionProtocol#TFRAMED}.
+     */
+    public String path() {
+        return path;
+    }
+
     @Override
     public int hashCode() {
         int hashCode = this.hashCode;
@@ -131,13 +169,14 @@ public final class ServerPort implements Comparable<ServerPort> {
     public String toString() {
         String strVal = this.strVal;
         if (strVal == null) {
-            this.strVal = strVal = toString(getClass(), localAddress(), protocol());
+            this.strVal = strVal = toString(getClass(), localAddress(), protocol(), path());
         }
 
         return strVal;
     }
 
-    static String toString(Class<?> type, InetSocketAddress localAddress, SessionProtocol protocol) {
+    static String toString(Class<?> type, InetSocketAddress localAddress, SessionProtocol protocol,
+                           String path) {
         StringBuilder buf = new StringBuilder();
         if (type != null) {
             buf.append(type.getSimpleName());
@@ -146,6 +185,10 @@ public final class ServerPort implements Comparable<ServerPort> {
         buf.append(localAddress);
         buf.append(", ");
         buf.append(protocol);
+        if (protocol == SessionProtocol.TFRAMED) {
+            buf.append(", ");
+            buf.append(path);
+        }
         buf.append(')');
 
         return buf.toString();
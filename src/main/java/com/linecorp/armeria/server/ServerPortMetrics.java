@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * The connection and stream-level metrics of a {@link ServerPort}, such as the number of active connections
+ * and the number of requests in flight. Use {@link Server#portMetrics()} to get the metrics of each
+ * {@link ServerPort}.
+ *
+ * <p>The metrics are updated by the event loops into the counters owned by each event loop, and are summed
+ * up on read. Therefore, updating a metric involves neither a lock nor a compare-and-set operation, while
+ * reading a metric may observe the updates of different event loops at slightly different points in time.
+ */
+public final class ServerPortMetrics {
+
+    // The gauges
+    static final int ACTIVE_CONNECTIONS = 0;
+    static final int ACTIVE_HTTP1_CONNECTIONS = 1;
+    static final int ACTIVE_HTTP2_CONNECTIONS = 2;
+    static final int INFLIGHT_REQUESTS = 3;
+    static final int PENDING_RESPONSES = 4;
+    static final int ACTIVE_HTTP2_STREAMS = 5;
+
+    // The counters
+    static final int ACCEPTED_CONNECTIONS = 6;
+    static final int REQUESTS = 7;
+    static final int BYTES_READ = 8;
+    static final int BYTES_WRITTEN = 9;
+
+    private static final int NUM_METRICS = 10;
+
+    private final ServerPort port;
+    private final List<AtomicLongArray> stripes = new CopyOnWriteArrayList<>();
+    private final FastThreadLocal<AtomicLongArray> threadLocalStripe = new FastThreadLocal<AtomicLongArray>() {
+        @Override
+        protected AtomicLongArray initialValue() {
+            final AtomicLongArray stripe = new AtomicLongArray(NUM_METRICS);
+            stripes.add(stripe);
+            return stripe;
+        }
+    };
+
+    ServerPortMetrics(ServerPort port) {
+        this.port = requireNonNull(port, "port");
+    }
+
+    /**
+     * Returns the {@link ServerPort} whose metrics are kept by this object. Note that the port number of the
+     * returned {@link ServerPort} is {@code 0} if the {@link ServerPort} was configured to listen to an
+     * ephemeral port.
+     */
+    public ServerPort port() {
+        return port;
+    }
+
+    /**
+     * Returns the number of the open connections.
+     */
+    public long activeConnections() {
+        return sum(ACTIVE_CONNECTIONS);
+    }
+
+    /**
+     * Returns the number of the open connections which are serving HTTP/1.
+     */
+    public long activeHttp1Connections() {
+        return sum(ACTIVE_HTTP1_CONNECTIONS);
+    }
+
+    /**
+     * Returns the number of the open connections which are serving HTTP/2.
+     */
+    public long activeHttp2Connections() {
+        return sum(ACTIVE_HTTP2_CONNECTIONS);
+    }
+
+    /**
+     * Returns the number of the requests whose responses have not been written yet.
+     */
+    public long inflightRequests() {
+        return sum(INFLIGHT_REQUESTS);
+    }
+
+    /**
+     * Returns the number of the HTTP/1 responses which are ready but cannot be written yet because the
+     * responses for the earlier requests in the same connection are not ready, i.e. head-of-line blocking.
+     */
+    public long pendingResponses() {
+        return sum(PENDING_RESPONSES);
+    }
+
+    /**
+     * Returns the number of the active HTTP/2 streams.
+     */
+    public long activeHttp2Streams() {
+        return sum(ACTIVE_HTTP2_STREAMS);
+    }
+
+    /**
+     * Returns the number of the connections accepted so far.
+     */
+    public long acceptedConnections() {
+        return sum(ACCEPTED_CONNECTIONS);
+    }
+
+    /**
+     * Returns the number of the requests received so far.
+     */
+    public long requests() {
+        return sum(REQUESTS);
+    }
+
+    /**
+     * Returns the number of the bytes read from the connections so far, including the TLS overhead.
+     */
+    public long bytesRead() {
+        return sum(BYTES_READ);
+    }
+
+    /**
+     * Returns the number of the bytes written to the connections so far, including the TLS overhead.
+     */
+    public long bytesWritten() {
+        return sum(BYTES_WRITTEN);
+    }
+
+    private long sum(int metric) {
+        long sum = 0;
+        for (AtomicLongArray s : stripes) {
+            sum += s.get(metric);
+        }
+        return sum;
+    }
+
+    /**
+     * Adds the specified {@code delta} to the specified metric of the current thread. The updates are
+     * published with {@code lazySet()}, which is sufficient because only the owner thread updates its
+     * counters.
+     */
+    void add(int metric, long delta) {
+        final AtomicLongArray stripe = threadLocalStripe.get();
+        stripe.lazySet(metric, stripe.get(metric) + delta);
+    }
+
+    void increment(int metric) {
+        add(metric, 1);
+    }
+
+    void decrement(int metric) {
+        add(metric, -1);
+    }
+
+    @Override
+    public String toString() {
+        return "ServerPortMetrics(" + port +
+               ", activeConnections: " + activeConnections() +
+               ", inflightRequests: " + inflightRequests() +
+               ", activeHttp2Streams: " + activeHttp2Streams() + ')';
+    }
+}
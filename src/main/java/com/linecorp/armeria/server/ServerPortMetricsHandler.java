@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import com.linecorp.armeria.common.jfr.FlightRecorderEvents;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Updates the connection count and the number of bytes read and written in {@link ServerPortMetrics}.
+ * Added at the head of the pipeline so that it sees the raw bytes of a connection.
+ */
+@Sharable
+final class ServerPortMetricsHandler extends ChannelDuplexHandler {
+
+    private final ServerPortMetrics metrics;
+
+    ServerPortMetricsHandler(ServerPortMetrics metrics) {
+        this.metrics = requireNonNull(metrics, "metrics");
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        metrics.increment(ServerPortMetrics.ACCEPTED_CONNECTIONS);
+        metrics.increment(ServerPortMetrics.ACTIVE_CONNECTIONS);
+        FlightRecorderEvents.connectionOpen(ctx.channel(), true);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        metrics.decrement(ServerPortMetrics.ACTIVE_CONNECTIONS);
+        FlightRecorderEvents.connectionClose(ctx.channel(), true);
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        final int bytes = readableBytes(msg);
+        if (bytes > 0) {
+            metrics.add(ServerPortMetrics.BYTES_READ, bytes);
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        final int bytes = readableBytes(msg);
+        if (bytes > 0) {
+            metrics.add(ServerPortMetrics.BYTES_WRITTEN, bytes);
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    private static int readableBytes(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+}
@@ -19,6 +19,7 @@ package com.linecorp.armeria.server;
 import static java.util.Objects.requireNonNull;
 
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
@@ -46,6 +47,9 @@ public final class ServiceConfig {
 
     private String fullLoggerName;
 
+    /** Initialized later by {@link Server} via {@link #setBlockingTaskExecutor(Executor)}. */
+    private Executor blockingTaskExecutor;
+
     /**
      * Creates a new instance.
      */
@@ -186,6 +190,21 @@ public final class ServiceConfig {
         return loggerName;
     }
 
+    /**
+     * Returns the {@link Executor} given to the {@link ServiceInvocationHandler} of the {@link #service()},
+     * which updates the {@link BlockingTaskMetrics} of the {@link #service()}.
+     */
+    Executor blockingTaskExecutor() {
+        if (blockingTaskExecutor == null) {
+            throw new IllegalStateException("Server has not been configured yet.");
+        }
+        return blockingTaskExecutor;
+    }
+
+    void setBlockingTaskExecutor(Executor blockingTaskExecutor) {
+        this.blockingTaskExecutor = requireNonNull(blockingTaskExecutor, "blockingTaskExecutor");
+    }
+
     @Override
     public String toString() {
         if (virtualHost != null) {
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linecorp.armeria.common.InvocationTimings;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.jfr.FlightRecorderEvents;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Performs the invocation of a successfully decoded request on behalf of {@link HttpServerHandler} and
+ * {@link TFramedServerHandler}, which only frame the request and write the response. It records the timings
+ * of the invocation, keeps track of the request with the {@link SlowRequestWatchdog}, enforces the request
+ * timeout and releases the request once the result of the invocation has been handled.
+ */
+final class ServiceInvoker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceInvoker.class);
+
+    /**
+     * Handles the result of an invocation, e.g. encodes and writes the response. Invoked by the event loop
+     * of the connection exactly once per invocation.
+     */
+    @FunctionalInterface
+    interface ResultHandler {
+        void handleResult(Future<Object> future);
+    }
+
+    private final ServerConfig config;
+    @Nullable
+    private final SlowRequestWatchdog slowRequestWatchdog;
+
+    ServiceInvoker(ServerConfig config, @Nullable SlowRequestWatchdog slowRequestWatchdog) {
+        this.config = requireNonNull(config, "config");
+        this.slowRequestWatchdog = slowRequestWatchdog;
+    }
+
+    /**
+     * Invokes the {@link Service} of the specified {@link ServiceConfig} with the specified decoded
+     * invocation, and invokes the specified {@link ResultHandler} when the {@code promise} is complete.
+     * The specified request is released after the {@link ResultHandler} returns, because the decoded request
+     * may refer to its content until the response is encoded.
+     *
+     * @param requestStartNanos the value of {@link System#nanoTime()} when the request was received
+     */
+    void invoke(ChannelHandlerContext ctx, ServiceConfig serviceCfg, ServiceInvocationContext iCtx,
+                long requestStartNanos, Object req, Promise<Object> promise, ResultHandler resultHandler) {
+
+        final InvocationTimings timings = iCtx.timings();
+        timings.setDecodeTimes(requestStartNanos, System.nanoTime());
+        // Added before any listener added by the handler, so that the listeners see the end time.
+        promise.addListener(future -> timings.markHandlerEnd());
+        if (FlightRecorderEvents.isServerRequestEnabled()) {
+            timings.onComplete(() -> FlightRecorderEvents.serverRequest(iCtx));
+        }
+
+        final Executor blockingTaskExecutor;
+        if (slowRequestWatchdog != null) {
+            // Keep track of the request so that it is reported if it takes too long.
+            final InflightRequest inflightReq = slowRequestWatchdog.register(iCtx, requestStartNanos);
+            promise.addListener(future -> slowRequestWatchdog.unregister(inflightReq));
+            blockingTaskExecutor = inflightReq.newExecutor(serviceCfg.blockingTaskExecutor());
+        } else {
+            blockingTaskExecutor = serviceCfg.blockingTaskExecutor();
+        }
+
+        ServiceInvocationContext.setCurrent(iCtx);
+        try {
+            timings.markHandlerStart();
+            serviceCfg.service().handler().invoke(iCtx, blockingTaskExecutor, promise);
+        } catch (Throwable t) {
+            if (!promise.tryFailure(t)) {
+                logger.warn("{} invoke() failed with a finished promise: {}", iCtx, promise, t);
+            }
+        } finally {
+            ServiceInvocationContext.removeCurrent();
+        }
+
+        if (promise.isDone()) {
+            // If the invocation has been finished immediately,
+            // there's no need to schedule a timeout nor to add a listener to the promise.
+            handleResult(req, promise, null, resultHandler);
+            return;
+        }
+
+        final long timeoutMillis = config.requestTimeoutPolicy().timeout(iCtx);
+        final ScheduledFuture<?> timeoutFuture;
+        if (timeoutMillis > 0) {
+            timeoutFuture = ctx.executor().schedule(
+                    () -> promise.tryFailure(new RequestTimeoutException(
+                            "request timed out after " + timeoutMillis + "ms: " + iCtx)),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+        } else {
+            timeoutFuture = null;
+        }
+
+        promise.addListener(
+                (Future<Object> future) -> handleResult(req, future, timeoutFuture, resultHandler));
+    }
+
+    private static void handleResult(Object req, Future<Object> future,
+                                     @Nullable ScheduledFuture<?> timeoutFuture, ResultHandler resultHandler) {
+        try {
+            // Cancel the associated timeout, if any.
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(true);
+            }
+
+            resultHandler.handleResult(future);
+        } finally {
+            // Release the original request which was retained before the invocation. It is released
+            // after the response is encoded because the decoded request may refer to its content.
+            ReferenceCountUtil.safeRelease(req);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * Keeps track of the requests in flight and periodically looks for the requests running for longer than
+ * {@link ServerConfig#slowRequestThreshold()}. When a slow request is found, its
+ * {@link ServiceInvocationContext} and the stack trace of the blocking task thread running it, if any, are
+ * logged once.
+ *
+ * <p>Each event loop registers its requests into its own set, so registration does not contend with other
+ * event loops nor with the watchdog thread scanning the sets.
+ */
+final class SlowRequestWatchdog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowRequestWatchdog.class);
+
+    private static final long MIN_SCAN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_SCAN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Comparator<InflightRequest> OLDEST_FIRST =
+            (a, b) -> Long.signum(a.startTimeNanos() - b.startTimeNanos());
+
+    private final long thresholdNanos;
+    private final long scanIntervalNanos;
+    private final List<Set<InflightRequest>> stripes = new CopyOnWriteArrayList<>();
+    private final FastThreadLocal<Set<InflightRequest>> threadLocalStripe =
+            new FastThreadLocal<Set<InflightRequest>>() {
+                @Override
+                protected Set<InflightRequest> initialValue() {
+                    final Set<InflightRequest> stripe = ConcurrentHashMap.newKeySet();
+                    stripes.add(stripe);
+                    return stripe;
+                }
+            };
+
+    private ScheduledExecutorService scheduler;
+
+    SlowRequestWatchdog(Duration threshold) {
+        requireNonNull(threshold, "threshold");
+        if (threshold.isNegative() || threshold.isZero()) {
+            throw new IllegalArgumentException("threshold: " + threshold + " (expected: > 0)");
+        }
+
+        thresholdNanos = threshold.toNanos();
+        scanIntervalNanos = Math.max(MIN_SCAN_INTERVAL_NANOS,
+                                     Math.min(MAX_SCAN_INTERVAL_NANOS, thresholdNanos / 2));
+    }
+
+    /**
+     * Registers a new request. {@link #unregister(InflightRequest)} must be called when the request is done.
+     */
+    InflightRequest register(ServiceInvocationContext ctx, long startTimeNanos) {
+        final Set<InflightRequest> stripe = threadLocalStripe.get();
+        final InflightRequest req = new InflightRequest(ctx, startTimeNanos, stripe);
+        stripe.add(req);
+        return req;
+    }
+
+    void unregister(InflightRequest req) {
+        req.stripe().remove(req);
+    }
+
+    /**
+     * Returns the requests which have been running for longer than the threshold, the oldest first.
+     */
+    List<InflightRequest> slowRequests() {
+        final long currentTimeNanos = System.nanoTime();
+        final List<InflightRequest> slowRequests = new ArrayList<>();
+        for (Set<InflightRequest> stripe : stripes) {
+            for (InflightRequest req : stripe) {
+                if (currentTimeNanos - req.startTimeNanos() >= thresholdNanos) {
+                    slowRequests.add(req);
+                }
+            }
+        }
+
+        slowRequests.sort(OLDEST_FIRST);
+        return slowRequests;
+    }
+
+    synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("armeria-slow-request-watchdog", true));
+        scheduler.scheduleWithFixedDelay(this::scan, scanIntervalNanos, scanIntervalNanos,
+                                         TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void scan() {
+        try {
+            for (InflightRequest req : slowRequests()) {
+                if (req.markSlow()) {
+                    logSlow(req);
+                }
+            }
+        } catch (Throwable t) {
+            logger.warn("Unexpected exception while looking for slow requests:", t);
+        }
+    }
+
+    private static void logSlow(InflightRequest req) {
+        final ServiceInvocationContext ctx = req.context();
+        final Thread thread = req.blockingTaskThread();
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(req.elapsedNanos());
+        if (thread == null) {
+            ctx.logger().warn("Slow request; running for {} ms: {}", elapsedMillis, ctx.timings());
+        } else {
+            ctx.logger().warn("Slow request; running for {} ms in {}: {}",
+                              elapsedMillis, thread.getName(), ctx.timings(),
+                              new SlowRequestStackTrace(thread.getName(), req.stackTrace()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SlowRequestWatchdog(threshold: " + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + "ms)";
+    }
+
+    /**
+     * Carries the stack trace of the blocking task thread running a slow request.
+     */
+    private static final class SlowRequestStackTrace extends Exception {
+
+        private static final long serialVersionUID = -2851402771562328735L;
+
+        SlowRequestStackTrace(String threadName, StackTraceElement[] stackTrace) {
+            super("stack trace of " + threadName, null, false, true);
+            setStackTrace(stackTrace);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.util.Exceptions;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResult;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Handles the requests received via a {@link SessionProtocol#TFRAMED} port, each of which is a Thrift message
+ * whose length prefix has been stripped already. All requests are handled by the {@link Service} bound at
+ * {@link ServerPort#path()} of the default {@link VirtualHost}.
+ *
+ * <p>Unlike HTTP/1, a response is written as soon as it is ready regardless of the order of the requests,
+ * because a client matches a reply with its call using the sequence ID of the message. A one-way call is
+ * not replied at all.
+ */
+final class TFramedServerHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TFramedServerHandler.class);
+
+    private static final SessionProtocol PROTOCOL = SessionProtocol.TFRAMED;
+
+    private static final ChannelFutureListener CLOSE_ON_FAILURE = future -> {
+        final Throwable cause = future.cause();
+        if (cause != null) {
+            final Channel ch = future.channel();
+            Exceptions.logIfUnexpected(logger, ch, PROTOCOL, cause);
+            ch.close();
+        }
+    };
+
+    @SuppressWarnings("ThrowableInstanceNeverThrown")
+    private static final Exception SERVICE_NOT_FOUND = new ServiceNotFoundException();
+
+    private final ServerPortMetrics metrics;
+    private final ServiceInvoker invoker;
+    private final String path;
+    private final String mappedPath;
+    private final ServiceConfig serviceCfg;
+
+    private boolean isReading;
+
+    /**
+     * The number of the requests in this connection whose invocations have not been finished yet.
+     */
+    private int inflightRequests;
+
+    /**
+     * Set when this handler is removed from the pipeline, after which {@link #metrics} is not updated.
+     */
+    private boolean removed;
+
+    TFramedServerHandler(ServerConfig config, ServerPortMetrics metrics,
+                         @Nullable SlowRequestWatchdog slowRequestWatchdog, String path) {
+
+        requireNonNull(config, "config");
+        this.metrics = requireNonNull(metrics, "metrics");
+        invoker = new ServiceInvoker(config, slowRequestWatchdog);
+        this.path = requireNonNull(path, "path");
+
+        // ServerConfig ensures that there's a service at the path.
+        final PathMapped<ServiceConfig> mapped = config.defaultVirtualHost().findServiceConfig(path);
+        if (!mapped.isPresent()) {
+            throw new IllegalStateException("no service at: " + path);
+        }
+
+        mappedPath = mapped.mappedPath();
+        serviceCfg = mapped.value();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        removed = true;
+        metrics.add(ServerPortMetrics.INFLIGHT_REQUESTS, -inflightRequests);
+    }
+
+    private void requestStarted() {
+        inflightRequests++;
+        metrics.increment(ServerPortMetrics.REQUESTS);
+        metrics.increment(ServerPortMetrics.INFLIGHT_REQUESTS);
+    }
+
+    private void requestEnded() {
+        if (!removed) {
+            inflightRequests--;
+            metrics.decrement(ServerPortMetrics.INFLIGHT_REQUESTS);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        isReading = true; // Cleared in channelReadComplete()
+        handleRequest(ctx, (ByteBuf) msg);
+    }
+
+    private void handleRequest(ChannelHandlerContext ctx, ByteBuf req) throws Exception {
+        final long requestStartNanos = System.nanoTime();
+        requestStarted();
+        boolean invoked = false;
+        try {
+            final Service service = serviceCfg.service();
+            final ServiceCodec codec = service.codec();
+            final Promise<Object> promise = ctx.executor().newPromise();
+            final DecodeResult decodeResult = codec.decodeRequest(
+                    serviceCfg, ctx.channel(), PROTOCOL, "", path, mappedPath, req, req, promise);
+
+            switch (decodeResult.type()) {
+            case SUCCESS: {
+                final ServiceInvocationContext iCtx = decodeResult.invocationContext();
+                invoked = true;
+                invoker.invoke(ctx, serviceCfg, iCtx, requestStartNanos, req, promise,
+                               future -> handleInvocationResult(ctx, iCtx, codec, future));
+                break;
+            }
+            case FAILURE: {
+                final Object errorResponse = decodeResult.errorResponse();
+                if (errorResponse instanceof ByteBuf) {
+                    // An error message which can be sent as a reply, e.g. an exception for an unknown method.
+                    final ByteBuf encoded = (ByteBuf) errorResponse;
+                    promise.tryFailure(new RequestDecodeException(decodeResult.cause(),
+                                                                  encoded.readableBytes()));
+                    respond(ctx, null, encoded);
+                } else {
+                    // The request cannot be replied without its sequence ID.
+                    ReferenceCountUtil.safeRelease(errorResponse);
+                    promise.tryFailure(new RequestDecodeException(decodeResult.cause(), 0));
+                    closeOnError(ctx, decodeResult.cause());
+                }
+                break;
+            }
+            case NOT_FOUND:
+                promise.tryFailure(SERVICE_NOT_FOUND);
+                closeOnError(ctx, null);
+                break;
+            }
+        } finally {
+            // If invocation has been started successfully, ServiceInvoker will release the request when
+            // the invocation is done.
+            if (!invoked) {
+                ReferenceCountUtil.safeRelease(req);
+            }
+        }
+    }
+
+    private void handleInvocationResult(ChannelHandlerContext ctx, ServiceInvocationContext iCtx,
+                                        ServiceCodec codec, Future<Object> future) {
+        try {
+            if (!ctx.channel().isActive()) {
+                if (future.isSuccess()) {
+                    ReferenceCountUtil.safeRelease(future.getNow());
+                }
+                iCtx.timings().markResponseEnd();
+                requestEnded();
+                return;
+            }
+
+            final ByteBuf encoded;
+            if (future.isSuccess()) {
+                encoded = codec.encodeResponse(iCtx, future.getNow());
+            } else {
+                encoded = codec.encodeFailureResponse(iCtx, future.cause());
+            }
+            iCtx.timings().markEncodeEnd();
+            respond(ctx, iCtx, encoded);
+        } catch (Exception e) {
+            // Failed to encode the response, which means the client will never get the reply.
+            iCtx.timings().markResponseEnd();
+            requestEnded();
+            closeOnError(ctx, e);
+        }
+    }
+
+    private void respond(ChannelHandlerContext ctx, ServiceInvocationContext iCtx, ByteBuf encoded) {
+        // A one-way call has no reply.
+        if (encoded != null) {
+            // The length prefix is prepended by LengthFieldPrepender.
+            ctx.write(encoded).addListener(CLOSE_ON_FAILURE);
+        }
+
+        if (iCtx != null) {
+            iCtx.timings().markResponseEnd();
+        }
+        requestEnded();
+
+        if (!isReading) {
+            ctx.flush();
+        }
+    }
+
+    private static void closeOnError(ChannelHandlerContext ctx, @Nullable Throwable cause) {
+        if (cause != null) {
+            Exceptions.logIfUnexpected(logger, ctx.channel(), PROTOCOL, cause);
+        }
+        ctx.close();
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        isReading = false;
+        ctx.flush();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        Exceptions.logIfUnexpected(logger, ctx.channel(), PROTOCOL, cause);
+        if (ctx.channel().isActive()) {
+            ctx.close();
+        }
+    }
+
+    /**
+     * Closes a connection which has been idle for the configured amount of time, unless it has a request
+     * whose invocation has not been finished yet.
+     */
+    static final class IdleTimeoutHandler extends IdleStateHandler {
+
+        IdleTimeoutHandler(long idleTimeoutMillis) {
+            super(0, 0, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) throws Exception {
+            final TFramedServerHandler handler = ctx.pipeline().get(TFramedServerHandler.class);
+            if (evt.isFirst() && (handler == null || handler.inflightRequests == 0)) {
+                logger.debug("{} Closing due to idleness", ctx.channel());
+                ctx.close();
+                return;
+            }
+
+            ctx.fireUserEventTriggered(evt);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.capture;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.function.Function;
+
+import com.linecorp.armeria.common.capture.TrafficCaptureReader;
+import com.linecorp.armeria.common.capture.TrafficCaptureWriter;
+import com.linecorp.armeria.server.DecoratingService;
+import com.linecorp.armeria.server.Service;
+
+/**
+ * A decorator {@link Service} that captures a sample of the raw requests and their responses into a
+ * {@link TrafficCaptureWriter}, so that they can be read later by {@link TrafficCaptureReader} and replayed.
+ * A request which is not sampled costs only a random number generation. For a sampled request, its headers
+ * and content are copied in the I/O thread and written to the disk by the background thread of the
+ * {@link TrafficCaptureWriter}.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * TrafficCaptureWriter writer = new TrafficCaptureWriterBuilder(Paths.get("/var/tmp/capture")).build();
+ * serverBuilder.serviceAt(
+ *         "/service",
+ *         ThriftService.of(handler).decorate(TrafficCaptureService.newDecorator(writer, 0.01)));
+ * }</pre>
+ */
+public class TrafficCaptureService extends DecoratingService {
+
+    /**
+     * Returns a new {@link Service} decorator that captures the specified fraction of the requests.
+     *
+     * @param samplingRate the fraction of the requests to capture, between 0 and 1 (inclusive)
+     */
+    public static Function<Service, Service> newDecorator(TrafficCaptureWriter writer, double samplingRate) {
+        requireNonNull(writer, "writer");
+        validateSamplingRate(samplingRate);
+        return service -> new TrafficCaptureService(service, writer, samplingRate);
+    }
+
+    /**
+     * Creates a new instance that decorates the specified {@link Service}.
+     *
+     * @param samplingRate the fraction of the requests to capture, between 0 and 1 (inclusive)
+     */
+    public TrafficCaptureService(Service service, TrafficCaptureWriter writer, double samplingRate) {
+        super(service,
+              codec -> new TrafficCaptureServiceCodec(codec, writer, validateSamplingRate(samplingRate)),
+              Function.identity());
+        requireNonNull(writer, "writer");
+    }
+
+    private static double validateSamplingRate(double samplingRate) {
+        if (!(samplingRate >= 0 && samplingRate <= 1)) {
+            throw new IllegalArgumentException(
+                    "samplingRate: " + samplingRate + " (expected: >= 0 and <= 1)");
+        }
+        return samplingRate;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.capture;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.capture.CapturedExchange;
+import com.linecorp.armeria.common.capture.TrafficCaptureWriter;
+import com.linecorp.armeria.server.DecoratingServiceCodec;
+import com.linecorp.armeria.server.RequestTimeoutException;
+import com.linecorp.armeria.server.ServiceCodec;
+import com.linecorp.armeria.server.ServiceConfig;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Promise;
+
+final class TrafficCaptureServiceCodec extends DecoratingServiceCodec {
+
+    private static final AttributeKey<CapturedRequest> CAPTURED_REQUEST =
+            AttributeKey.valueOf(TrafficCaptureServiceCodec.class, "CAPTURED_REQUEST");
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private final TrafficCaptureWriter writer;
+    private final double samplingRate;
+
+    TrafficCaptureServiceCodec(ServiceCodec codec, TrafficCaptureWriter writer, double samplingRate) {
+        super(codec);
+        this.writer = writer;
+        this.samplingRate = samplingRate;
+    }
+
+    @Override
+    public DecodeResult decodeRequest(ServiceConfig cfg, Channel ch, SessionProtocol sessionProtocol,
+                                      String hostname, String path, String mappedPath, ByteBuf in,
+                                      Object originalRequest, Promise<Object> promise) throws Exception {
+
+        if (ThreadLocalRandom.current().nextDouble() >= samplingRate) {
+            // Not sampled; no overhead other than the random number generation.
+            return delegate().decodeRequest(cfg, ch, sessionProtocol, hostname, path, mappedPath, in,
+                                            originalRequest, promise);
+        }
+
+        // Copy the request before the delegate consumes it.
+        final CapturedRequest req = new CapturedRequest(
+                System.nanoTime(), cfg.virtualHost().hostnamePattern(), hostname, path, mappedPath,
+                originalRequest, toByteArray(in));
+
+        final DecodeResult result = delegate().decodeRequest(
+                cfg, ch, sessionProtocol, hostname, path, mappedPath, in, originalRequest, promise);
+
+        switch (result.type()) {
+        case SUCCESS: {
+            final ServiceInvocationContext ctx = result.invocationContext();
+            ctx.attr(CAPTURED_REQUEST).set(req);
+
+            // The server writes a FullHttpResponse without passing it to encodeResponse(),
+            // so it has to be captured as soon as the promise is fulfilled.
+            promise.addListener(future -> {
+                if (future.isSuccess()) {
+                    final Object response = future.getNow();
+                    if (response instanceof FullHttpResponse) {
+                        final FullHttpResponse res = (FullHttpResponse) response;
+                        capture(req, ctx.scheme(), ctx.method(), res.status().code(), res.content());
+                    }
+                }
+            });
+            break;
+        }
+        case FAILURE: {
+            final Object errorResponse = result.errorResponse();
+            final Scheme scheme = Scheme.of(result.decodedSerializationFormat(), sessionProtocol);
+            final String method = result.decodedMethod().orElse(null);
+            if (errorResponse instanceof FullHttpResponse) {
+                final FullHttpResponse res = (FullHttpResponse) errorResponse;
+                capture(req, scheme, method, res.status().code(), res.content());
+            } else {
+                capture(req, scheme, method, HttpResponseStatus.BAD_REQUEST.code(), null);
+            }
+            break;
+        }
+        case NOT_FOUND:
+            capture(req, Scheme.of(result.decodedSerializationFormat(), sessionProtocol),
+                    result.decodedMethod().orElse(null), HttpResponseStatus.NOT_FOUND.code(), null);
+            break;
+        }
+
+        return result;
+    }
+
+    @Override
+    public ByteBuf encodeResponse(ServiceInvocationContext ctx, Object response) throws Exception {
+        final ByteBuf encoded = delegate().encodeResponse(ctx, response);
+        final CapturedRequest req = ctx.attr(CAPTURED_REQUEST).get();
+        if (req != null) {
+            capture(req, ctx.scheme(), ctx.method(), HttpResponseStatus.OK.code(), encoded);
+        }
+        return encoded;
+    }
+
+    @Override
+    public ByteBuf encodeFailureResponse(ServiceInvocationContext ctx, Throwable cause) throws Exception {
+        final ByteBuf encoded = delegate().encodeFailureResponse(ctx, cause);
+        final CapturedRequest req = ctx.attr(CAPTURED_REQUEST).get();
+        if (req != null) {
+            final HttpResponseStatus status = cause instanceof RequestTimeoutException ?
+                                              HttpResponseStatus.SERVICE_UNAVAILABLE :
+                                              HttpResponseStatus.INTERNAL_SERVER_ERROR;
+            capture(req, ctx.scheme(), ctx.method(), status.code(), encoded);
+        }
+        return encoded;
+    }
+
+    private void capture(CapturedRequest req, Scheme scheme, String method, int statusCode, ByteBuf content) {
+        writer.write(new CapturedExchange(
+                System.currentTimeMillis(), System.nanoTime() - req.startTimeNanos, scheme.uriText(),
+                req.virtualHost, req.hostname, req.httpMethod, req.path, req.mappedPath, method,
+                req.headers, req.content, statusCode, toByteArray(content)));
+    }
+
+    private static byte[] toByteArray(ByteBuf buf) {
+        if (buf == null || !buf.isReadable()) {
+            return EMPTY_BYTES;
+        }
+
+        final byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+
+    private static final class CapturedRequest {
+        final long startTimeNanos;
+        final String virtualHost;
+        final String hostname;
+        final String httpMethod;
+        final String path;
+        final String mappedPath;
+        final List<Entry<String, String>> headers;
+        final byte[] content;
+
+        CapturedRequest(long startTimeNanos, String virtualHost, String hostname, String path,
+                        String mappedPath, Object originalRequest, byte[] content) {
+            this.startTimeNanos = startTimeNanos;
+            this.virtualHost = virtualHost;
+            this.hostname = hostname;
+            this.mappedPath = mappedPath;
+            this.content = content;
+
+            if (originalRequest instanceof HttpRequest) {
+                final HttpRequest req = (HttpRequest) originalRequest;
+                httpMethod = req.method().name();
+                // Keep the query string so that the request can be replayed as it was received.
+                this.path = req.uri();
+
+                final List<Entry<String, String>> headers = new ArrayList<>(req.headers().size());
+                for (Iterator<Entry<String, String>> i = req.headers().iteratorAsString(); i.hasNext();) {
+                    final Entry<String, String> h = i.next();
+                    headers.add(new SimpleImmutableEntry<>(h.getKey(), h.getValue()));
+                }
+                this.headers = Collections.unmodifiableList(headers);
+            } else {
+                httpMethod = "";
+                this.path = path;
+                headers = Collections.emptyList();
+            }
+        }
+    }
+}
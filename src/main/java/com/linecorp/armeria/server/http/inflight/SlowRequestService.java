@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.http.inflight;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.server.InflightRequest;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.ServerConfig;
+import com.linecorp.armeria.server.ServiceConfig;
+import com.linecorp.armeria.server.ServiceInvocationHandler;
+import com.linecorp.armeria.server.http.HttpService;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * An {@link HttpService} that lists the requests which have been running for longer than
+ * {@link ServerConfig#slowRequestThreshold()} in plain text, with the stack traces of the blocking task
+ * threads running them. The requests are listed only when the threshold is set:
+ * <pre>{@code
+ * Server server = new ServerBuilder()
+ *         .slowRequestThreshold(Duration.ofSeconds(1))
+ *         .serviceAt("/internal/slow-requests", new SlowRequestService())
+ *         .build();
+ * }</pre>
+ *
+ * @see ServerBuilder#slowRequestThreshold(java.time.Duration)
+ */
+public class SlowRequestService extends HttpService {
+
+    private static final String CONTENT_TYPE = "text/plain; charset=utf-8";
+
+    private final ServiceInvocationHandler handler = this::invoke;
+
+    private Server server;
+
+    @Override
+    public void serviceAdded(ServiceConfig cfg) throws Exception {
+        super.serviceAdded(cfg);
+
+        if (server != null) {
+            if (server != cfg.server()) {
+                throw new IllegalStateException("cannot be added to more than one server");
+            } else {
+                return;
+            }
+        }
+
+        server = cfg.server();
+    }
+
+    @Override
+    public ServiceInvocationHandler handler() {
+        return handler;
+    }
+
+    private void invoke(ServiceInvocationContext ctx,
+                        Executor blockingTaskExecutor, Promise<Object> promise) throws Exception {
+
+        final ByteBuf content = ByteBufUtil.encodeString(
+                ctx.alloc(), CharBuffer.wrap(render(server.slowRequests())),
+                StandardCharsets.UTF_8);
+
+        final FullHttpResponse res = new DefaultFullHttpResponse(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+        res.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+        ctx.resolvePromise(promise, res);
+    }
+
+    static String render(List<InflightRequest> slowRequests) {
+        final StringBuilder buf = new StringBuilder(256);
+        buf.append(slowRequests.size()).append(" slow request(s)\n");
+        for (InflightRequest req : slowRequests) {
+            final ServiceInvocationContext ctx = req.context();
+            buf.append('\n');
+            buf.append(TimeUnit.NANOSECONDS.toMillis(req.elapsedNanos())).append("ms ");
+            buf.append(ctx).append('\n');
+            buf.append("  timings: ").append(ctx.timings()).append('\n');
+
+            final Thread thread = req.blockingTaskThread();
+            if (thread != null) {
+                buf.append("  thread: ").append(thread.getName()).append('\n');
+                // Show what the thread is doing now rather than when the request was found slow.
+                for (StackTraceElement e : thread.getStackTrace()) {
+                    buf.append("    at ").append(e).append('\n');
+                }
+            }
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "SlowRequestService()";
+    }
+}
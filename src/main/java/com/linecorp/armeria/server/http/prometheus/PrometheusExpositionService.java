@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.http.prometheus;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusCollector;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerListenerAdapter;
+import com.linecorp.armeria.server.ServiceConfig;
+import com.linecorp.armeria.server.ServiceInvocationHandler;
+import com.linecorp.armeria.server.http.HttpService;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * An {@link HttpService} that exposes the metrics of the specified {@link PrometheusCollector}s in the
+ * <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus text format</a>.
+ *
+ * <p>The metrics are written directly into a pooled {@link ByteBuf}, which is cached and shared by the
+ * responses for a short period of time, so that frequent scrapes by more than one Prometheus server do not
+ * render the metrics again and again.
+ *
+ * <h2>Example:</h2>
+ * <pre>{@code
+ * HistogramMetricConsumer metrics = new HistogramMetricConsumer();
+ * Server server = new ServerBuilder()
+ *         .serviceAt("/rpc", ThriftService.of(myHandler)
+ *                                         .decorate(MetricCollectingService.newHistogramDecorator(metrics)))
+ *         .serviceAt("/metrics", new PrometheusExpositionService(
+ *                 new RequestMetricsCollector(Collections.singletonMap("myService", metrics))))
+ *         .build();
+ * }</pre>
+ */
+public class PrometheusExpositionService extends HttpService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrometheusExpositionService.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final Duration DEFAULT_CACHE_TTL = Duration.ofSeconds(1);
+
+    private final List<PrometheusCollector> collectors;
+    private final long cacheTtlNanos;
+    private final ServiceInvocationHandler handler = this::invoke;
+
+    private Server server;
+
+    /**
+     * The rendered metrics shared by the responses, guarded by {@code this}.
+     */
+    private ByteBuf cachedContent;
+    private long cachedTimeNanos;
+
+    /**
+     * Creates a new instance that exposes the metrics of the specified {@link PrometheusCollector}s and
+     * caches them for 1 second.
+     */
+    public PrometheusExpositionService(PrometheusCollector... collectors) {
+        this(DEFAULT_CACHE_TTL, collectors);
+    }
+
+    /**
+     * Creates a new instance that exposes the metrics of the specified {@link PrometheusCollector}s and
+     * caches them for the specified {@link Duration}. Specify {@link Duration#ZERO} to disable the cache.
+     */
+    public PrometheusExpositionService(Duration cacheTtl, PrometheusCollector... collectors) {
+        requireNonNull(cacheTtl, "cacheTtl");
+        requireNonNull(collectors, "collectors");
+        if (cacheTtl.isNegative()) {
+            throw new IllegalArgumentException("cacheTtl: " + cacheTtl + " (expected: >= 0)");
+        }
+
+        final List<PrometheusCollector> list = new ArrayList<>(collectors.length);
+        for (PrometheusCollector c : collectors) {
+            list.add(requireNonNull(c, "collectors contains null."));
+        }
+
+        this.collectors = Collections.unmodifiableList(list);
+        cacheTtlNanos = cacheTtl.toNanos();
+    }
+
+    /**
+     * Returns the {@link PrometheusCollector}s whose metrics are exposed by this service.
+     */
+    public List<PrometheusCollector> collectors() {
+        return collectors;
+    }
+
+    @Override
+    public void serviceAdded(ServiceConfig cfg) throws Exception {
+        super.serviceAdded(cfg);
+
+        if (server != null) {
+            if (server != cfg.server()) {
+                throw new IllegalStateException("cannot be added to more than one server");
+            } else {
+                return;
+            }
+        }
+
+        server = cfg.server();
+        server.addListener(new ServerListenerAdapter() {
+            @Override
+            public void serverStopped(Server server) throws Exception {
+                invalidateCache();
+            }
+        });
+    }
+
+    @Override
+    public ServiceInvocationHandler handler() {
+        return handler;
+    }
+
+    private void invoke(ServiceInvocationContext ctx,
+                        Executor blockingTaskExecutor, Promise<Object> promise) throws Exception {
+
+        final FullHttpResponse res = new DefaultFullHttpResponse(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content(ctx.alloc()));
+        res.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+        ctx.resolvePromise(promise, res);
+    }
+
+    /**
+     * Returns the rendered metrics, which must be released by the caller.
+     */
+    private synchronized ByteBuf content(ByteBufAllocator alloc) {
+        final long currentTimeNanos = System.nanoTime();
+        ByteBuf content = cachedContent;
+        if (content == null || currentTimeNanos - cachedTimeNanos >= cacheTtlNanos) {
+            if (content != null) {
+                content.release();
+            }
+
+            cachedContent = content = render(alloc);
+            cachedTimeNanos = currentTimeNanos;
+        }
+
+        return content.duplicate().retain();
+    }
+
+    private ByteBuf render(ByteBufAllocator alloc) {
+        final ByteBuf buf = alloc.directBuffer();
+        final PrometheusWriter out = new PrometheusWriter(buf);
+        for (PrometheusCollector c : collectors) {
+            final int writerIndex = buf.writerIndex();
+            try {
+                c.collect(out);
+            } catch (Throwable t) {
+                // Discard the partial output of the failed collector.
+                buf.writerIndex(writerIndex);
+                logger.warn("Failed to collect the metrics from: {}", c, t);
+            }
+        }
+        return buf;
+    }
+
+    private synchronized void invalidateCache() {
+        if (cachedContent != null) {
+            cachedContent.release();
+            cachedContent = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PrometheusExpositionService(" + collectors + ')';
+    }
+}
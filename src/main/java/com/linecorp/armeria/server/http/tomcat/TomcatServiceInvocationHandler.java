@@ -105,6 +105,7 @@ class TomcatServiceInvocationHandler implements ServiceInvocationHandler {
                 return;
             }
 
+            ctx.timings().markHandlerStart();
             ServiceInvocationContext.setCurrent(ctx);
             try {
                 coyoteAdapter.service(coyoteReq, coyoteRes);
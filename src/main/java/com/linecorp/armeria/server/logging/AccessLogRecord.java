@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import java.net.SocketAddress;
+import java.time.Instant;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.util.UnitFormatter;
+
+/**
+ * A fixed-schema access log record written by {@link AccessLogService}.
+ *
+ * <p>Note that an {@link AccessLogRecord} is a mutable slot of a ring buffer which is reused for other
+ * requests once {@link AccessLogSink#write(AccessLogRecord)} returns. An {@link AccessLogSink} must not keep
+ * a reference to it.
+ */
+public final class AccessLogRecord {
+
+    private long timestampMillis;
+    private SocketAddress remoteAddress;
+    private Scheme scheme;
+    private String host;
+    private String path;
+    private String method;
+    private int statusCode;
+    private int requestSize;
+    private int responseSize;
+    private long elapsedNanos;
+
+    AccessLogRecord() {}
+
+    void set(long timestampMillis, SocketAddress remoteAddress, Scheme scheme, String host, String path,
+             String method, int statusCode, int requestSize, int responseSize, long elapsedNanos) {
+        this.timestampMillis = timestampMillis;
+        this.remoteAddress = remoteAddress;
+        this.scheme = scheme;
+        this.host = host;
+        this.path = path;
+        this.method = method;
+        this.statusCode = statusCode;
+        this.requestSize = requestSize;
+        this.responseSize = responseSize;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void clear() {
+        remoteAddress = null;
+        scheme = null;
+        host = null;
+        path = null;
+        method = null;
+    }
+
+    /**
+     * Returns the time when the response was sent, in milliseconds since the epoch.
+     */
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Returns the remote address of the invocation, or {@code null} if unknown.
+     */
+    public SocketAddress remoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Returns the {@link Scheme} of the invocation.
+     */
+    public Scheme scheme() {
+        return scheme;
+    }
+
+    /**
+     * Returns the host part of the invocation.
+     */
+    public String host() {
+        return host;
+    }
+
+    /**
+     * Returns the absolute path part of the invocation.
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * Returns the method name of the invocation, or {@code null} if the request could not be decoded.
+     */
+    public String method() {
+        return method;
+    }
+
+    /**
+     * Returns the {@link com.linecorp.armeria.common.SessionProtocol}-specific status code of the response.
+     * e.g. HTTP response status code, or {@code 0} if unknown. The status code of a response which is not
+     * an HTTP response, such as a Thrift reply, is unknown because it may carry an exception even if it is
+     * sent with {@code "200 OK"}.
+     */
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the number of bytes in the request.
+     */
+    public int requestSize() {
+        return requestSize;
+    }
+
+    /**
+     * Returns the number of bytes in the response.
+     */
+    public int responseSize() {
+        return responseSize;
+    }
+
+    /**
+     * Returns the elapsed time between the decoding of the request and the encoding of the response,
+     * in nanoseconds.
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Appends the human-readable representation of this record to the specified {@link StringBuilder}.
+     * e.g.
+     * <pre>{@code
+     * 2016-05-01T00:00:00.123Z /127.0.0.1:63466 tbinary+h2c://example.com/path#method 200 12B 34B 567µs
+     * }</pre>
+     */
+    public void appendTo(StringBuilder buf) {
+        buf.append(Instant.ofEpochMilli(timestampMillis));
+        buf.append(' ');
+        buf.append(remoteAddress);
+        buf.append(' ');
+        buf.append(scheme != null ? scheme.uriText() : "<unknown>");
+        buf.append("://");
+        buf.append(host);
+        buf.append(path);
+        buf.append('#');
+        buf.append(method != null ? method : "<unknown>");
+        buf.append(' ');
+        if (statusCode != 0) {
+            buf.append(statusCode);
+        } else {
+            buf.append("<unknown>");
+        }
+        buf.append(' ');
+        buf.append(requestSize).append('B');
+        buf.append(' ');
+        buf.append(responseSize).append('B');
+        buf.append(' ');
+        UnitFormatter.appendElapsed(buf, 0, elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(128);
+        appendTo(buf);
+        return buf.toString();
+    }
+}
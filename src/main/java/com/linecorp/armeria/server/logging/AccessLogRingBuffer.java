@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free single-producer single-consumer ring buffer of pre-allocated {@link AccessLogRecord}s.
+ * The producer is the thread which owns this buffer (usually an event loop) and the consumer is the
+ * background thread of {@link AccessLogWriter}.
+ */
+final class AccessLogRingBuffer {
+
+    private final AccessLogRecord[] records;
+    private final int mask;
+    private final WeakReference<Thread> owner;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    /** The last known consumer index, accessed by the producer only. */
+    private long cachedConsumerIndex;
+
+    AccessLogRingBuffer(int capacity, Thread owner) {
+        assert Integer.bitCount(capacity) == 1;
+
+        this.owner = new WeakReference<>(owner);
+
+        records = new AccessLogRecord[capacity];
+        for (int i = 0; i < capacity; i++) {
+            records[i] = new AccessLogRecord();
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the next free {@link AccessLogRecord} which must be published by {@link #publish()}, or
+     * {@code null} if the buffer is full. Must be invoked by the producer thread only.
+     */
+    AccessLogRecord claim() {
+        final long index = producerIndex.get();
+        if (index - cachedConsumerIndex >= records.length) {
+            cachedConsumerIndex = consumerIndex.get();
+            if (index - cachedConsumerIndex >= records.length) {
+                droppedRecords.lazySet(droppedRecords.get() + 1);
+                return null;
+            }
+        }
+
+        return records[(int) index & mask];
+    }
+
+    /**
+     * Makes the {@link AccessLogRecord} returned by {@link #claim()} visible to the consumer.
+     * Must be invoked by the producer thread only.
+     */
+    void publish() {
+        producerIndex.lazySet(producerIndex.get() + 1);
+    }
+
+    /**
+     * Writes all published {@link AccessLogRecord}s to the specified {@link AccessLogSink}.
+     * Must be invoked by the consumer thread only.
+     *
+     * @return the number of the records written
+     */
+    int drain(AccessLogSink sink) throws IOException {
+        final long start = consumerIndex.get();
+        final long end = producerIndex.get();
+        long index = start;
+        try {
+            while (index < end) {
+                final AccessLogRecord record = records[(int) index++ & mask];
+                try {
+                    // Note that a record which failed to be written is skipped.
+                    sink.write(record);
+                } finally {
+                    record.clear();
+                }
+            }
+        } finally {
+            consumerIndex.lazySet(index);
+        }
+
+        return (int) (index - start);
+    }
+
+    /**
+     * Returns whether the thread which owns this buffer has terminated and all its records have been
+     * drained, i.e. no record will be added to this buffer anymore. Must be invoked by the consumer thread
+     * only.
+     */
+    boolean isRetired() {
+        final Thread owner = this.owner.get();
+        if (owner != null && owner.isAlive()) {
+            return false;
+        }
+
+        return consumerIndex.get() == producerIndex.get();
+    }
+
+    /**
+     * Returns the number of the records dropped because the buffer was full.
+     */
+    long droppedRecords() {
+        return droppedRecords.get();
+    }
+}
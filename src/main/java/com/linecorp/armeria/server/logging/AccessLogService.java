@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.function.Function;
+
+import com.linecorp.armeria.server.DecoratingService;
+import com.linecorp.armeria.server.Service;
+
+/**
+ * A decorator {@link Service} that writes an {@link AccessLogRecord} for every request. Unlike
+ * {@link LoggingService}, it does not format any message in the I/O thread; the records are flushed in
+ * batches by the background thread of an {@link AccessLogWriter}.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * AccessLogWriter writer = new AccessLogWriterBuilder(AccessLogSink.ofFile(Paths.get("access.log"))).build();
+ * serverBuilder.serviceAt(
+ *         "/service",
+ *         ThriftService.of(handler).decorate(AccessLogService.newDecorator(writer)));
+ * }</pre>
+ *
+ * <p>Note that the {@link AccessLogWriter} is not closed when the {@link Service} is removed or the
+ * {@link com.linecorp.armeria.server.Server} is stopped, because it can be shared by more than one
+ * {@link Service}.
+ */
+public class AccessLogService extends DecoratingService {
+
+    /**
+     * Returns a new {@link Service} decorator that writes access logs into the specified
+     * {@link AccessLogWriter}.
+     */
+    public static Function<Service, Service> newDecorator(AccessLogWriter writer) {
+        requireNonNull(writer, "writer");
+        return service -> new AccessLogService(service, writer);
+    }
+
+    /**
+     * Creates a new instance that decorates the specified {@link Service}.
+     */
+    public AccessLogService(Service service, AccessLogWriter writer) {
+        super(service, codec -> new AccessLogServiceCodec(codec, writer), Function.identity());
+        requireNonNull(writer, "writer");
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.server.DecoratingServiceCodec;
+import com.linecorp.armeria.server.RequestTimeoutException;
+import com.linecorp.armeria.server.ServiceCodec;
+import com.linecorp.armeria.server.ServiceConfig;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Promise;
+
+final class AccessLogServiceCodec extends DecoratingServiceCodec {
+
+    private static final AttributeKey<RequestInfo> REQUEST_INFO =
+            AttributeKey.valueOf(AccessLogServiceCodec.class, "REQUEST_INFO");
+
+    private final AccessLogWriter writer;
+
+    AccessLogServiceCodec(ServiceCodec codec, AccessLogWriter writer) {
+        super(codec);
+        this.writer = writer;
+    }
+
+    @Override
+    public DecodeResult decodeRequest(ServiceConfig cfg, Channel ch, SessionProtocol sessionProtocol,
+                                      String hostname, String path, String mappedPath, ByteBuf in,
+                                      Object originalRequest, Promise<Object> promise) throws Exception {
+
+        final long startTimeNanos = System.nanoTime();
+        final int requestSize = in.readableBytes();
+        final DecodeResult result = delegate().decodeRequest(
+                cfg, ch, sessionProtocol, hostname, path, mappedPath, in, originalRequest, promise);
+
+        switch (result.type()) {
+        case SUCCESS: {
+            final ServiceInvocationContext ctx = result.invocationContext();
+            ctx.attr(REQUEST_INFO).set(new RequestInfo(startTimeNanos, requestSize));
+
+            // Log a FullHttpResponse here; the server sends it without calling encodeResponse(),
+            // where the other responses are logged.
+            promise.addListener(future -> {
+                if (future.isSuccess()) {
+                    final Object response = future.getNow();
+                    if (response instanceof FullHttpResponse) {
+                        final FullHttpResponse res = (FullHttpResponse) response;
+                        write(ctx, res.status().code(), res.content().readableBytes());
+                    }
+                }
+            });
+            break;
+        }
+        case FAILURE: {
+            final Object errorResponse = result.errorResponse();
+            final int statusCode;
+            final int responseSize;
+            if (errorResponse instanceof FullHttpResponse) {
+                final FullHttpResponse res = (FullHttpResponse) errorResponse;
+                statusCode = res.status().code();
+                responseSize = res.content().readableBytes();
+            } else {
+                statusCode = HttpResponseStatus.BAD_REQUEST.code();
+                responseSize = 0;
+            }
+            writer.write(System.currentTimeMillis(), ch.remoteAddress(),
+                         Scheme.of(result.decodedSerializationFormat(), sessionProtocol),
+                         hostname, path, result.decodedMethod().orElse(null),
+                         statusCode, requestSize, responseSize, System.nanoTime() - startTimeNanos);
+            break;
+        }
+        case NOT_FOUND:
+            writer.write(System.currentTimeMillis(), ch.remoteAddress(),
+                         Scheme.of(result.decodedSerializationFormat(), sessionProtocol),
+                         hostname, path, result.decodedMethod().orElse(null),
+                         HttpResponseStatus.NOT_FOUND.code(), requestSize, 0,
+                         System.nanoTime() - startTimeNanos);
+            break;
+        }
+
+        return result;
+    }
+
+    @Override
+    public ByteBuf encodeResponse(ServiceInvocationContext ctx, Object response) throws Exception {
+        final ByteBuf encoded = delegate().encodeResponse(ctx, response);
+        // The status of a non-HTTP reply is unknown; e.g. a Thrift reply may carry a TApplicationException
+        // even though it is sent with '200 OK'.
+        final int statusCode = response instanceof Throwable ? failureStatus((Throwable) response).code() : 0;
+        write(ctx, statusCode, encoded != null ? encoded.readableBytes() : 0);
+        return encoded;
+    }
+
+    @Override
+    public ByteBuf encodeFailureResponse(ServiceInvocationContext ctx, Throwable cause) throws Exception {
+        final ByteBuf encoded = delegate().encodeFailureResponse(ctx, cause);
+        write(ctx, failureStatus(cause).code(), encoded != null ? encoded.readableBytes() : 0);
+        return encoded;
+    }
+
+    private static HttpResponseStatus failureStatus(Throwable cause) {
+        return cause instanceof RequestTimeoutException ? HttpResponseStatus.SERVICE_UNAVAILABLE
+                                                        : HttpResponseStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    private void write(ServiceInvocationContext ctx, int statusCode, int responseSize) {
+        final RequestInfo info = ctx.attr(REQUEST_INFO).get();
+        if (info == null) {
+            return;
+        }
+
+        writer.write(System.currentTimeMillis(), ctx.remoteAddress(), ctx.scheme(), ctx.host(), ctx.path(),
+                     ctx.method(), statusCode, info.requestSize, responseSize,
+                     System.nanoTime() - info.startTimeNanos);
+    }
+
+    private static final class RequestInfo {
+        final long startTimeNanos;
+        final int requestSize;
+
+        RequestInfo(long startTimeNanos, int requestSize) {
+            this.startTimeNanos = startTimeNanos;
+            this.requestSize = requestSize;
+        }
+    }
+}
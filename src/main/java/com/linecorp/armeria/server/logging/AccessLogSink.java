@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+
+/**
+ * Receives the {@link AccessLogRecord}s flushed in batches by the background thread of an
+ * {@link AccessLogWriter}. All methods are invoked by the same thread.
+ */
+@FunctionalInterface
+public interface AccessLogSink extends AutoCloseable {
+
+    /**
+     * Returns a new {@link AccessLogSink} that appends the records to the file at the specified {@link Path},
+     * one record per line.
+     */
+    static AccessLogSink ofFile(Path path) throws IOException {
+        return new FileAccessLogSink(requireNonNull(path, "path"));
+    }
+
+    /**
+     * Returns a new {@link AccessLogSink} that logs the records at {@code INFO} level.
+     */
+    static AccessLogSink ofLogger(Logger logger) {
+        requireNonNull(logger, "logger");
+        return record -> {
+            if (logger.isInfoEnabled()) {
+                logger.info(record.toString());
+            }
+        };
+    }
+
+    /**
+     * Writes the specified {@link AccessLogRecord}. Note that the {@link AccessLogRecord} is reused once this
+     * method returns.
+     */
+    void write(AccessLogRecord record) throws IOException;
+
+    /**
+     * Invoked after a batch of {@link AccessLogRecord}s has been written.
+     */
+    default void flush() throws IOException {}
+
+    /**
+     * Invoked when the {@link AccessLogWriter} is closed.
+     */
+    @Override
+    default void close() throws IOException {}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linecorp.armeria.common.Scheme;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * Collects {@link AccessLogRecord}s into a lock-free ring buffer per thread (usually an event loop) and
+ * flushes them in batches to an {@link AccessLogSink} from a background thread. When a ring buffer is full,
+ * new records are dropped and counted rather than blocking the caller.
+ *
+ * @see AccessLogWriterBuilder
+ * @see AccessLogService
+ */
+public final class AccessLogWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    private final AccessLogSink sink;
+    private final int ringBufferSize;
+    private final long flushIntervalNanos;
+
+    private final List<AccessLogRingBuffer> ringBuffers = new CopyOnWriteArrayList<>();
+    private final FastThreadLocal<AccessLogRingBuffer> threadLocalRingBuffer =
+            new FastThreadLocal<AccessLogRingBuffer>() {
+                @Override
+                protected AccessLogRingBuffer initialValue() {
+                    final AccessLogRingBuffer ringBuffer =
+                            new AccessLogRingBuffer(ringBufferSize, Thread.currentThread());
+                    ringBuffers.add(ringBuffer);
+                    return ringBuffer;
+                }
+            };
+
+    /**
+     * The number of the records dropped by the ring buffers removed from {@link #ringBuffers}, which is
+     * updated together with {@link #ringBuffers} while holding the lock of this writer.
+     */
+    private long retiredDroppedRecords;
+
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    AccessLogWriter(AccessLogSink sink, int ringBufferSize, long flushIntervalNanos) {
+        this.sink = sink;
+        this.ringBufferSize = ringBufferSize;
+        this.flushIntervalNanos = flushIntervalNanos;
+
+        flusher = new DefaultThreadFactory("armeria-access-log", true).newThread(this::runFlusher);
+        flusher.start();
+    }
+
+    /**
+     * Adds a new {@link AccessLogRecord}. This method never blocks; the record is dropped if the ring buffer
+     * of the current thread is full or this writer has been closed.
+     */
+    void write(long timestampMillis, SocketAddress remoteAddress, Scheme scheme, String host, String path,
+               String method, int statusCode, int requestSize, int responseSize, long elapsedNanos) {
+
+        if (closed) {
+            return;
+        }
+
+        final AccessLogRingBuffer ringBuffer = threadLocalRingBuffer.get();
+        final AccessLogRecord record = ringBuffer.claim();
+        if (record == null) {
+            return;
+        }
+
+        record.set(timestampMillis, remoteAddress, scheme, host, path, method,
+                   statusCode, requestSize, responseSize, elapsedNanos);
+        ringBuffer.publish();
+    }
+
+    /**
+     * Returns the total number of the {@link AccessLogRecord}s dropped because a ring buffer was full.
+     */
+    public synchronized long droppedRecords() {
+        long sum = retiredDroppedRecords;
+        for (AccessLogRingBuffer b : ringBuffers) {
+            sum += b.droppedRecords();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the {@link AccessLogSink} of this writer.
+     */
+    public AccessLogSink sink() {
+        return sink;
+    }
+
+    private void runFlusher() {
+        long lastDroppedRecords = 0;
+        for (;;) {
+            final boolean closed = this.closed;
+
+            int numWritten = 0;
+            for (AccessLogRingBuffer b : ringBuffers) {
+                try {
+                    numWritten += b.drain(sink);
+                } catch (Throwable t) {
+                    logger.warn("Failed to write access log records to: {}", sink, t);
+                }
+            }
+
+            if (numWritten != 0) {
+                try {
+                    sink.flush();
+                } catch (Throwable t) {
+                    logger.warn("Failed to flush access log records to: {}", sink, t);
+                }
+            }
+
+            removeRetiredRingBuffers();
+
+            final long droppedRecords = droppedRecords();
+            if (droppedRecords != lastDroppedRecords) {
+                logger.warn("Dropped {} access log record(s) due to full ring buffers (total: {})",
+                            droppedRecords - lastDroppedRecords, droppedRecords);
+                lastDroppedRecords = droppedRecords;
+            }
+
+            if (closed) {
+                // All records published before close() have been drained.
+                break;
+            }
+
+            if (numWritten == 0) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+
+        try {
+            sink.close();
+        } catch (Throwable t) {
+            logger.warn("Failed to close: {}", sink, t);
+        }
+    }
+
+    /**
+     * Removes the drained ring buffers of the terminated threads, so that a thread which wrote once and then
+     * terminated does not leave its ring buffer behind.
+     */
+    private void removeRetiredRingBuffers() {
+        for (AccessLogRingBuffer b : ringBuffers) {
+            if (b.isRetired()) {
+                synchronized (this) {
+                    retiredDroppedRecords += b.droppedRecords();
+                    ringBuffers.remove(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the ring buffers, which is one per thread which wrote a record.
+     */
+    int numRingBuffers() {
+        return ringBuffers.size();
+    }
+
+    /**
+     * Flushes the pending {@link AccessLogRecord}s, closes the {@link AccessLogSink} and stops the background
+     * thread. {@link AccessLogRecord}s added after this method is called are discarded.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        LockSupport.unpark(flusher);
+
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                flusher.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() +
+               "(sink: " + sink +
+               ", ringBufferSize: " + ringBufferSize +
+               ", flushInterval: " + TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + "ms)";
+    }
+}
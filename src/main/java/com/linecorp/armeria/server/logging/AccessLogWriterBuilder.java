@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+
+/**
+ * Builds an {@link AccessLogWriter} instance using builder pattern.
+ */
+public final class AccessLogWriterBuilder {
+
+    private static final class Defaults {
+
+        private static final int RING_BUFFER_SIZE = 8192;
+
+        private static final Duration FLUSH_INTERVAL = Duration.ofMillis(100);
+    }
+
+    private final AccessLogSink sink;
+
+    private int ringBufferSize = Defaults.RING_BUFFER_SIZE;
+
+    private Duration flushInterval = Defaults.FLUSH_INTERVAL;
+
+    /**
+     * Creates a new {@link AccessLogWriterBuilder} that writes to the specified {@link AccessLogSink}.
+     */
+    public AccessLogWriterBuilder(AccessLogSink sink) {
+        this.sink = requireNonNull(sink, "sink");
+    }
+
+    /**
+     * Sets the number of {@link AccessLogRecord}s each per-thread ring buffer can hold. Records are dropped
+     * when a ring buffer is full. The specified value is rounded up to the next power of two.
+     */
+    public AccessLogWriterBuilder ringBufferSize(int ringBufferSize) {
+        if (ringBufferSize <= 0 || ringBufferSize > 1 << 30) {
+            throw new IllegalArgumentException(
+                    "ringBufferSize: " + ringBufferSize + " (expected: > 0 and <= 1073741824)");
+        }
+        this.ringBufferSize = ringBufferSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum interval between two flushes when there are no more records to write.
+     */
+    public AccessLogWriterBuilder flushInterval(Duration flushInterval) {
+        requireNonNull(flushInterval, "flushInterval");
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("flushInterval: " + flushInterval + " (expected: > 0)");
+        }
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * Sets the maximum interval between two flushes when there are no more records to write.
+     */
+    public AccessLogWriterBuilder flushIntervalMillis(long flushIntervalMillis) {
+        flushInterval(Duration.ofMillis(flushIntervalMillis));
+        return this;
+    }
+
+    /**
+     * Returns a newly-created {@link AccessLogWriter} whose background thread has been started.
+     */
+    public AccessLogWriter build() {
+        final int capacity = ringBufferSize == 1 ? 1 : Integer.highestOneBit(ringBufferSize - 1) << 1;
+        return new AccessLogWriter(sink, capacity, flushInterval.toNanos());
+    }
+}
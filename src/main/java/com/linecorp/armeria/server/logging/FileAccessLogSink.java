@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An {@link AccessLogSink} that appends the records to a file.
+ */
+final class FileAccessLogSink implements AccessLogSink {
+
+    private final Path path;
+    private final Writer out;
+    private final StringBuilder buf = new StringBuilder(256);
+
+    FileAccessLogSink(Path path) throws IOException {
+        this.path = path;
+        out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                                      StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void write(AccessLogRecord record) throws IOException {
+        buf.setLength(0);
+        record.appendTo(buf);
+        buf.append('\n');
+        out.append(buf);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '(' + path + ')';
+    }
+}
@@ -18,6 +18,7 @@ package com.linecorp.armeria.server.logging;
 
 import static com.linecorp.armeria.common.util.UnitFormatter.elapsedAndSize;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -63,7 +64,14 @@ final class LoggingServiceCodec extends DecoratingServiceCodec {
             final ServiceInvocationContext ctx = result.invocationContext();
             final Logger logger = ctx.logger();
             if (logger.isInfoEnabled()) {
-                logger.info("Request: {} ({}B)", ctx.params(), requestSize);
+                // Do not decode the invocation parameters in the event loop if the codec left them undecoded,
+                // e.g. to decode a large message outside the event loop.
+                final Optional<List<Object>> params = result.decodedParams();
+                if (params.isPresent()) {
+                    logger.info("Request: {} ({}B)", params.get(), requestSize);
+                } else {
+                    logger.info("Request: {}(<undecoded>) ({}B)", ctx.method(), requestSize);
+                }
                 ctx.attr(START_TIME_NANOS).set(System.nanoTime());
             }
             break;
@@ -105,7 +113,8 @@ final class LoggingServiceCodec extends DecoratingServiceCodec {
         final long startTimeNanos = ctx.attr(START_TIME_NANOS).get();
         final ByteBuf encoded = delegate().encodeResponse(ctx, response);
 
-        logger.info("Response: {} ({})", response, elapsedAndSize(startTimeNanos, endTimeNanos, encoded));
+        logger.info("Response: {} ({})", response,
+                    elapsedSizeAndTimings(ctx, startTimeNanos, endTimeNanos, encoded));
 
         return encoded;
     }
@@ -127,8 +136,26 @@ final class LoggingServiceCodec extends DecoratingServiceCodec {
         final long startTimeNanos = ctx.attr(START_TIME_NANOS).get();
         final ByteBuf encoded = delegate().encodeFailureResponse(ctx, cause);
 
-        logger.warn("Exception: {} ({})", cause, elapsedAndSize(startTimeNanos, endTimeNanos, encoded), cause);
+        logger.warn("Exception: {} ({})", cause,
+                    elapsedSizeAndTimings(ctx, startTimeNanos, endTimeNanos, encoded), cause);
 
         return encoded;
     }
+
+    /**
+     * Appends the durations of the phases recorded so far, i.e. decode, queue and handler, to the elapsed
+     * time and the size of the response.
+     */
+    private static StringBuilder elapsedSizeAndTimings(ServiceInvocationContext ctx, long startTimeNanos,
+                                                       long endTimeNanos, ByteBuf encoded) {
+        final StringBuilder buf = elapsedAndSize(startTimeNanos, endTimeNanos, encoded);
+        final int length = buf.length();
+        buf.append(", ");
+        ctx.timings().appendTo(buf);
+        if (buf.length() == length + 2) {
+            // No phases were recorded.
+            buf.setLength(length);
+        }
+        return buf;
+    }
 }
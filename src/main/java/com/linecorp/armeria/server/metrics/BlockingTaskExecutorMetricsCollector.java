@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.metrics;
+
+import java.util.Collection;
+
+import com.linecorp.armeria.common.metrics.LatencyHistogram;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusCollector;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+import com.linecorp.armeria.server.BlockingTaskExecutorMetrics;
+import com.linecorp.armeria.server.BlockingTaskMetrics;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerConfig;
+import com.linecorp.armeria.server.ServerListenerAdapter;
+
+/**
+ * Exposes the {@link BlockingTaskExecutorMetrics} of a {@link Server} in the Prometheus text format.
+ * Register this collector as a listener of the {@link Server} whose metrics are to be exposed:
+ * <pre>{@code
+ * BlockingTaskExecutorMetricsCollector blockingTaskMetrics = new BlockingTaskExecutorMetricsCollector();
+ * Server server = new ServerBuilder()
+ *         .serviceAt("/metrics", new PrometheusExpositionService(blockingTaskMetrics))
+ *         .build();
+ * server.addListener(blockingTaskMetrics);
+ * }</pre>
+ *
+ * <p>The metrics of the tasks are distinguished by the {@code service} label.
+ * <table summary="metrics exposed by this class">
+ * <tr><th>metric name</th><th>type</th><th>description</th></tr>
+ * <tr><td>{@code armeria_blocking_executor_threads}</td><td>gauge</td>
+ * <td>The number of the threads in the pool of {@link ServerConfig#blockingTaskExecutor()}, if it is a
+ * {@link java.util.concurrent.ThreadPoolExecutor}.</td></tr>
+ * <tr><td>{@code armeria_blocking_executor_max_threads}</td><td>gauge</td>
+ * <td>The maximum allowed number of the threads in the pool, if known.</td></tr>
+ * <tr><td>{@code armeria_blocking_tasks_queued}</td><td>gauge</td>
+ * <td>The number of the tasks waiting in the queue.</td></tr>
+ * <tr><td>{@code armeria_blocking_tasks_active}</td><td>gauge</td>
+ * <td>The number of the running tasks.</td></tr>
+ * <tr><td>{@code armeria_blocking_tasks_rejected_total}</td><td>counter</td>
+ * <td>The number of the tasks rejected by the executor.</td></tr>
+ * <tr><td>{@code armeria_blocking_task_queue_wait_seconds}</td><td>summary</td>
+ * <td>The time the tasks spent in the queue before they start.</td></tr>
+ * <tr><td>{@code armeria_blocking_task_execution_seconds}</td><td>summary</td>
+ * <td>The time taken to run the tasks.</td></tr>
+ * </table>
+ */
+public final class BlockingTaskExecutorMetricsCollector
+        extends ServerListenerAdapter implements PrometheusCollector {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.9", "0.99", "0.999" };
+
+    private volatile Server server;
+
+    @Override
+    public void serverStarting(Server server) throws Exception {
+        final Server oldServer = this.server;
+        if (oldServer != null && oldServer != server) {
+            throw new IllegalStateException("cannot be added to more than one server");
+        }
+        this.server = server;
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        final Server server = this.server;
+        if (server == null) {
+            return;
+        }
+
+        final BlockingTaskExecutorMetrics executorMetrics = server.blockingTaskExecutorMetrics();
+        final int poolSize = executorMetrics.poolSize();
+        if (poolSize >= 0) {
+            out.family("armeria_blocking_executor_threads", Type.GAUGE,
+                       "The number of the threads in the pool.");
+            out.sample("armeria_blocking_executor_threads").value(poolSize);
+            out.family("armeria_blocking_executor_max_threads", Type.GAUGE,
+                       "The maximum allowed number of the threads in the pool.");
+            out.sample("armeria_blocking_executor_max_threads").value(executorMetrics.maxPoolSize());
+        }
+
+        final Collection<BlockingTaskMetrics> metrics = executorMetrics.serviceMetrics().values();
+        out.family("armeria_blocking_tasks_queued", Type.GAUGE,
+                   "The number of the tasks waiting in the queue.");
+        for (BlockingTaskMetrics m : metrics) {
+            out.sample("armeria_blocking_tasks_queued").label("service", m.serviceName())
+               .value(m.queuedTasks());
+        }
+
+        out.family("armeria_blocking_tasks_active", Type.GAUGE, "The number of the running tasks.");
+        for (BlockingTaskMetrics m : metrics) {
+            out.sample("armeria_blocking_tasks_active").label("service", m.serviceName())
+               .value(m.activeTasks());
+        }
+
+        out.family("armeria_blocking_tasks_rejected_total", Type.COUNTER,
+                   "The number of the tasks rejected by the executor.");
+        for (BlockingTaskMetrics m : metrics) {
+            out.sample("armeria_blocking_tasks_rejected_total").label("service", m.serviceName())
+               .value(m.rejectedTasks());
+        }
+
+        out.family("armeria_blocking_task_queue_wait_seconds", Type.SUMMARY,
+                   "The time the tasks spent in the queue before they start.");
+        for (BlockingTaskMetrics m : metrics) {
+            summary(out, "armeria_blocking_task_queue_wait_seconds", m.serviceName(), m.queueWaitTime());
+        }
+
+        out.family("armeria_blocking_task_execution_seconds", Type.SUMMARY, "The time taken to run the tasks.");
+        for (BlockingTaskMetrics m : metrics) {
+            summary(out, "armeria_blocking_task_execution_seconds", m.serviceName(), m.executionTime());
+        }
+    }
+
+    private static void summary(PrometheusWriter out, String name, String service, LatencyHistogram histogram) {
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.sample(name).label("service", service).label("quantile", QUANTILE_LABELS[i])
+               .nanosAsSeconds(histogram.valueAtPercentile(QUANTILES[i] * 100));
+        }
+        out.sample(name + "_sum").label("service", service).nanosAsSeconds(histogram.totalNanos());
+        out.sample(name + "_count").label("service", service).value(histogram.count());
+    }
+}
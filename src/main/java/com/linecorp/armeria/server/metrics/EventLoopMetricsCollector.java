@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.metrics;
+
+import java.util.List;
+
+import com.linecorp.armeria.common.metrics.EventLoopMetrics;
+import com.linecorp.armeria.common.metrics.LatencySnapshot;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusCollector;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.ServerListenerAdapter;
+
+/**
+ * Exposes the {@link EventLoopMetrics} of a {@link Server} in the Prometheus text format. The event loops
+ * are monitored only when {@link ServerBuilder#eventLoopBlockedThreshold(java.time.Duration)} is set.
+ * Register this collector as a listener of the {@link Server} whose metrics are to be exposed:
+ * <pre>{@code
+ * EventLoopMetricsCollector eventLoopMetrics = new EventLoopMetricsCollector();
+ * Server server = new ServerBuilder()
+ *         .eventLoopBlockedThreshold(Duration.ofMillis(500))
+ *         .serviceAt("/metrics", new PrometheusExpositionService(eventLoopMetrics))
+ *         .build();
+ * server.addListener(eventLoopMetrics);
+ * }</pre>
+ *
+ * <p>Each event loop is distinguished by the {@code event_loop} label.
+ * <table summary="metrics exposed by this class">
+ * <tr><th>metric name</th><th>type</th><th>description</th></tr>
+ * <tr><td>{@code armeria_event_loop_task_latency_seconds}</td><td>summary</td>
+ * <td>The time taken for a task submitted to the event loop to start.</td></tr>
+ * <tr><td>{@code armeria_event_loop_pending_tasks}</td><td>gauge</td>
+ * <td>The number of the tasks in the task queue of the event loop.</td></tr>
+ * <tr><td>{@code armeria_event_loop_blocked_total}</td><td>counter</td>
+ * <td>The number of times that the event loop has been found blocked.</td></tr>
+ * </table>
+ */
+public final class EventLoopMetricsCollector extends ServerListenerAdapter implements PrometheusCollector {
+
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.99", "0.999" };
+
+    private volatile Server server;
+
+    @Override
+    public void serverStarting(Server server) throws Exception {
+        final Server oldServer = this.server;
+        if (oldServer != null && oldServer != server) {
+            throw new IllegalStateException("cannot be added to more than one server");
+        }
+        this.server = server;
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        final Server server = this.server;
+        if (server == null) {
+            return;
+        }
+
+        final List<EventLoopMetrics> metrics = server.eventLoopMetrics();
+        if (metrics.isEmpty()) {
+            return;
+        }
+
+        out.family("armeria_event_loop_task_latency_seconds", Type.SUMMARY,
+                   "The time taken for a task submitted to the event loop to start.");
+        for (EventLoopMetrics m : metrics) {
+            final String name = m.name();
+            final LatencySnapshot snapshot = m.taskLatency();
+            for (int i = 0; i < QUANTILES.length; i++) {
+                out.sample("armeria_event_loop_task_latency_seconds").label("event_loop", name)
+                   .label("quantile", QUANTILE_LABELS[i])
+                   .nanosAsSeconds(snapshot.valueAtPercentile(QUANTILES[i] * 100));
+            }
+            out.sample("armeria_event_loop_task_latency_seconds_sum").label("event_loop", name)
+               .nanosAsSeconds(snapshot.totalNanos());
+            out.sample("armeria_event_loop_task_latency_seconds_count").label("event_loop", name)
+               .value(snapshot.count());
+        }
+
+        out.family("armeria_event_loop_pending_tasks", Type.GAUGE,
+                   "The number of the tasks in the task queue of the event loop.");
+        for (EventLoopMetrics m : metrics) {
+            final long pendingTasks = m.pendingTasks();
+            if (pendingTasks >= 0) {
+                out.sample("armeria_event_loop_pending_tasks").label("event_loop", m.name())
+                   .value(pendingTasks);
+            }
+        }
+
+        out.family("armeria_event_loop_blocked_total", Type.COUNTER,
+                   "The number of times that the event loop has been found blocked.");
+        for (EventLoopMetrics m : metrics) {
+            out.sample("armeria_event_loop_blocked_total").label("event_loop", m.name())
+               .value(m.blockedCount());
+        }
+    }
+}
@@ -16,11 +16,14 @@
 
 package com.linecorp.armeria.server.metrics;
 
+import static java.util.Objects.requireNonNull;
+
 import java.util.function.Function;
 
 import com.codahale.metrics.MetricRegistry;
 
 import com.linecorp.armeria.common.metrics.DropwizardMetricConsumer;
+import com.linecorp.armeria.common.metrics.HistogramMetricConsumer;
 import com.linecorp.armeria.common.metrics.MetricConsumer;
 import com.linecorp.armeria.server.DecoratingService;
 import com.linecorp.armeria.server.Service;
@@ -59,6 +62,17 @@ public class MetricCollectingService extends DecoratingService {
                 new DropwizardMetricConsumer(metricRegistry, metricNamePrefix));
     }
 
+    /**
+     * A {@link Service} decorator that records the latencies of the requests into the histograms of the
+     * specified {@link HistogramMetricConsumer}, which are accurate at high percentiles.
+     *
+     * @param consumer the {@link HistogramMetricConsumer} to store metrics into.
+     */
+    public static Function<Service, Service> newHistogramDecorator(HistogramMetricConsumer consumer) {
+        requireNonNull(consumer, "consumer");
+        return service -> new MetricCollectingService(service, consumer);
+    }
+
     public MetricCollectingService(Service service, MetricConsumer consumer) {
         super(service, x -> new MetricCollectingServiceCodec(x, consumer), Function.identity());
     }
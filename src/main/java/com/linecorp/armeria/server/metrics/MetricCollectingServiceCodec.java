@@ -16,12 +16,14 @@
 
 package com.linecorp.armeria.server.metrics;
 
-import java.util.Optional;
-import java.util.function.LongSupplier;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.linecorp.armeria.common.Scheme;
 import com.linecorp.armeria.common.ServiceInvocationContext;
 import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.metrics.MethodMetricConsumer;
 import com.linecorp.armeria.common.metrics.MetricConsumer;
 import com.linecorp.armeria.server.DecoratingServiceCodec;
 import com.linecorp.armeria.server.RequestTimeoutException;
@@ -33,6 +35,8 @@ import io.netty.channel.Channel;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
 import io.netty.util.concurrent.Promise;
 
 /**
@@ -44,8 +48,23 @@ final class MetricCollectingServiceCodec extends DecoratingServiceCodec {
     private static final AttributeKey<MetricsData> METRICS =
             AttributeKey.valueOf(MetricCollectingServiceCodec.class, "METRICS");
 
+    /**
+     * The maximum number of the {@link MethodMetricConsumer}s cached by the identity of the method name.
+     * The method names from a well-behaving {@link ServiceCodec} are usually constants, e.g. the name of a
+     * Thrift function or an HTTP method, but a misbehaving one could yield a new {@link String} for every
+     * request.
+     */
+    private static final int MAX_IDENTITY_CACHE_SIZE = 256;
+
     private final MetricConsumer metricConsumer;
 
+    /**
+     * The {@link MethodMetricConsumer}s keyed by the identity of the method name, which is replaced rather
+     * than updated so that it can be read without synchronization.
+     */
+    private volatile Map<String, MethodMetricConsumer> methodConsumersByIdentity = new IdentityHashMap<>();
+    private final Map<String, MethodMetricConsumer> methodConsumers = new ConcurrentHashMap<>();
+
     /**
      * Creates a new instance that decorates the specified {@link ServiceCodec} with
      * the specified {@link MetricConsumer}.
@@ -66,29 +85,16 @@ final class MetricCollectingServiceCodec extends DecoratingServiceCodec {
         DecodeResult decodeResult = delegate().decodeRequest(
                 cfg, ch, sessionProtocol, hostname, path, mappedPath, in, originalRequest, promise);
 
-        LongSupplier lazyElapsedTime = () -> System.nanoTime() - startTime;
-
         switch (decodeResult.type()) {
         case SUCCESS: {
-            ServiceInvocationContext context = decodeResult.invocationContext();
-            context.attr(METRICS).set(new MetricsData(requestSize, startTime));
-
-            promise.addListener(future -> {
-                if (!future.isSuccess()) {
-                    // encodeFailureResponse will process this case.
-                    return;
-                }
-                Object result = future.getNow();
-
-                if (result instanceof FullHttpResponse) {
-                    FullHttpResponse httpResponse = (FullHttpResponse) result;
-                    metricConsumer.invocationComplete(
-                            context.scheme(), httpResponse.status().code(),
-                            lazyElapsedTime.getAsLong(), requestSize, httpResponse.content().readableBytes(),
-                            hostname, path, decodeResult.decodedMethod());
-                }
-                // encodeResponse will process this case.
-            });
+            final ServiceInvocationContext context = decodeResult.invocationContext();
+            final MetricsData metricsData =
+                    new MetricsData(context, methodConsumer(context.method()), requestSize, startTime);
+            context.attr(METRICS).set(metricsData);
+            promise.addListener(metricsData);
+
+            // Report when the response has been written, so that the time spent until then is included.
+            context.timings().onComplete(metricsData);
             break;
         }
         case FAILURE: {
@@ -97,43 +103,60 @@ final class MetricCollectingServiceCodec extends DecoratingServiceCodec {
                 FullHttpResponse httpResponse = (FullHttpResponse) errorResponse;
                 metricConsumer.invocationComplete(
                         Scheme.of(decodeResult.decodedSerializationFormat(), sessionProtocol),
-                        httpResponse.status().code(), lazyElapsedTime.getAsLong(), requestSize,
-                        httpResponse.content().readableBytes(), hostname, path, decodeResult.decodedMethod());
+                        httpResponse.status().code(), System.nanoTime() - startTime, requestSize,
+                        httpResponse.content().readableBytes(), hostname, path, decodeResult.decodedMethod(),
+                        null);
             } else {
                 metricConsumer.invocationComplete(
                         Scheme.of(decodeResult.decodedSerializationFormat(), sessionProtocol),
-                        HttpResponseStatus.BAD_REQUEST.code(), lazyElapsedTime.getAsLong(), requestSize, 0, hostname,
-                        path, decodeResult.decodedMethod());
+                        HttpResponseStatus.BAD_REQUEST.code(), System.nanoTime() - startTime, requestSize, 0,
+                        hostname, path, decodeResult.decodedMethod(), null);
             }
             break;
         }
         case NOT_FOUND:
             metricConsumer.invocationComplete(
                     Scheme.of(decodeResult.decodedSerializationFormat(), sessionProtocol),
-                    HttpResponseStatus.NOT_FOUND.code(), lazyElapsedTime.getAsLong(), requestSize, 0, hostname, path,
-                    decodeResult.decodedMethod());
+                    HttpResponseStatus.NOT_FOUND.code(), System.nanoTime() - startTime, requestSize, 0,
+                    hostname, path, decodeResult.decodedMethod(), null);
             break;
         }
 
         return decodeResult;
     }
 
-    private void invokeComplete(ServiceInvocationContext ctx, HttpResponseStatus status, ByteBuf buf)
-            throws Exception {
-        MetricsData metricsData = ctx.attr(METRICS).get();
-        long elapsedTime = System.nanoTime() - metricsData.startTimeNanos;
-        metricConsumer.invocationComplete(
-                ctx.scheme(), status.code(), elapsedTime, metricsData.requestSizeBytes,
-                buf.readableBytes(), ctx.host(), ctx.path(), Optional.of(ctx.method()));
+    private MethodMetricConsumer methodConsumer(String method) {
+        final MethodMetricConsumer methodConsumer = methodConsumersByIdentity.get(method);
+        if (methodConsumer != null) {
+            return methodConsumer;
+        }
+
+        return newMethodConsumer(method);
+    }
+
+    private MethodMetricConsumer newMethodConsumer(String method) {
+        final MethodMetricConsumer methodConsumer =
+                methodConsumers.computeIfAbsent(method, metricConsumer::methodConsumer);
+
+        synchronized (methodConsumers) {
+            final Map<String, MethodMetricConsumer> oldMap = methodConsumersByIdentity;
+            if (oldMap.size() < MAX_IDENTITY_CACHE_SIZE && !oldMap.containsKey(method)) {
+                final Map<String, MethodMetricConsumer> newMap = new IdentityHashMap<>(oldMap);
+                newMap.put(method, methodConsumer);
+                methodConsumersByIdentity = newMap;
+            }
+        }
+
+        return methodConsumer;
     }
 
     @Override
     public ByteBuf encodeFailureResponse(ServiceInvocationContext ctx, Throwable cause) throws Exception {
         ByteBuf buf = delegate().encodeFailureResponse(ctx, cause);
         if (cause instanceof RequestTimeoutException) {
-            invokeComplete(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE, buf);
+            setResponse(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE, buf);
         } else {
-            invokeComplete(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, buf);
+            setResponse(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, buf);
         }
         return buf;
     }
@@ -141,20 +164,74 @@ final class MetricCollectingServiceCodec extends DecoratingServiceCodec {
     @Override
     public ByteBuf encodeResponse(ServiceInvocationContext ctx, Object response) throws Exception {
         ByteBuf buf = delegate().encodeResponse(ctx, response);
-        invokeComplete(ctx, HttpResponseStatus.OK, buf);
+        setResponse(ctx, HttpResponseStatus.OK, buf);
         return buf;
     }
 
+    private static void setResponse(ServiceInvocationContext ctx, HttpResponseStatus status, ByteBuf buf) {
+        MetricsData metricsData = ctx.attr(METRICS).get();
+        if (metricsData != null) {
+            metricsData.setResponse(status.code(), buf != null ? buf.readableBytes() : 0);
+        }
+    }
+
     /**
-     * internal container for metric data
+     * The metric data of an invocation, which also listens to the completion of the invocation and the
+     * response, so that no other object has to be created for each invocation.
      */
-    private static class MetricsData {
+    private static final class MetricsData implements FutureListener<Object>, Runnable {
+        private final ServiceInvocationContext ctx;
+        private final MethodMetricConsumer methodConsumer;
         private final int requestSizeBytes;
         private final long startTimeNanos;
+        private int statusCode;
+        private int responseSizeBytes;
 
-        private MetricsData(int requestSizeBytes, long startTimeNanos) {
+        MetricsData(ServiceInvocationContext ctx, MethodMetricConsumer methodConsumer,
+                    int requestSizeBytes, long startTimeNanos) {
+            this.ctx = ctx;
+            this.methodConsumer = methodConsumer;
             this.requestSizeBytes = requestSizeBytes;
             this.startTimeNanos = startTimeNanos;
         }
+
+        void setResponse(int statusCode, int responseSizeBytes) {
+            this.statusCode = statusCode;
+            this.responseSizeBytes = responseSizeBytes;
+        }
+
+        /**
+         * Invoked when the invocation is complete.
+         */
+        @Override
+        public void operationComplete(Future<Object> future) {
+            if (!future.isSuccess()) {
+                // encodeFailureResponse will process this case.
+                return;
+            }
+
+            final Object result = future.getNow();
+            if (result instanceof FullHttpResponse) {
+                final FullHttpResponse httpResponse = (FullHttpResponse) result;
+                setResponse(httpResponse.status().code(), httpResponse.content().readableBytes());
+            }
+            // encodeResponse will process this case.
+        }
+
+        /**
+         * Invoked when the response has been written.
+         */
+        @Override
+        public void run() {
+            if (statusCode == 0) {
+                // The connection or the stream was closed before the response is ready.
+                return;
+            }
+
+            final long elapsedTime = System.nanoTime() - startTimeNanos;
+            methodConsumer.invocationComplete(
+                    ctx.scheme(), statusCode, elapsedTime, requestSizeBytes, responseSizeBytes,
+                    ctx.host(), ctx.path(), ctx.timings());
+        }
     }
 }
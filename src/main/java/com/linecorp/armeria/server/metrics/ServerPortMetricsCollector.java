@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.metrics;
+
+import java.util.function.ToLongFunction;
+
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusCollector;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter;
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerListenerAdapter;
+import com.linecorp.armeria.server.ServerPort;
+import com.linecorp.armeria.server.ServerPortMetrics;
+
+/**
+ * Exposes the {@link ServerPortMetrics} of a {@link Server} in the Prometheus text format. Register this
+ * collector as a listener of the {@link Server} whose metrics are to be exposed:
+ * <pre>{@code
+ * ServerPortMetricsCollector portMetrics = new ServerPortMetricsCollector();
+ * Server server = new ServerBuilder()
+ *         .serviceAt("/metrics", new PrometheusExpositionService(portMetrics))
+ *         .build();
+ * server.addListener(portMetrics);
+ * }</pre>
+ *
+ * <p>Each {@link ServerPort} is distinguished by the {@code port} and {@code protocol} labels.
+ * <table summary="metrics exposed by this class">
+ * <tr><th>metric name</th><th>type</th><th>description</th></tr>
+ * <tr><td>{@code armeria_server_connections}</td><td>gauge</td>
+ * <td>The number of the open connections, labeled with {@code http} ({@code 1} or {@code 2}) once the HTTP
+ * version of a connection is determined.</td></tr>
+ * <tr><td>{@code armeria_server_connections_accepted_total}</td><td>counter</td>
+ * <td>The number of the connections accepted.</td></tr>
+ * <tr><td>{@code armeria_server_inflight_requests}</td><td>gauge</td>
+ * <td>The number of the requests whose responses have not been written yet.</td></tr>
+ * <tr><td>{@code armeria_server_pending_responses}</td><td>gauge</td>
+ * <td>The number of the HTTP/1 responses blocked by the earlier responses of the same connection.</td></tr>
+ * <tr><td>{@code armeria_server_http2_streams}</td><td>gauge</td>
+ * <td>The number of the active HTTP/2 streams.</td></tr>
+ * <tr><td>{@code armeria_server_requests_total}</td><td>counter</td>
+ * <td>The number of the requests received.</td></tr>
+ * <tr><td>{@code armeria_server_read_bytes_total}</td><td>counter</td>
+ * <td>The number of the bytes read from the connections.</td></tr>
+ * <tr><td>{@code armeria_server_written_bytes_total}</td><td>counter</td>
+ * <td>The number of the bytes written to the connections.</td></tr>
+ * </table>
+ */
+public final class ServerPortMetricsCollector extends ServerListenerAdapter implements PrometheusCollector {
+
+    private volatile Server server;
+
+    @Override
+    public void serverStarting(Server server) throws Exception {
+        final Server oldServer = this.server;
+        if (oldServer != null && oldServer != server) {
+            throw new IllegalStateException("cannot be added to more than one server");
+        }
+        this.server = server;
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        final Server server = this.server;
+        if (server == null) {
+            return;
+        }
+
+        final Iterable<ServerPortMetrics> metrics = server.portMetrics().values();
+
+        out.family("armeria_server_connections", Type.GAUGE, "The number of the open connections.");
+        for (ServerPortMetrics m : metrics) {
+            final long http1 = m.activeHttp1Connections();
+            final long http2 = m.activeHttp2Connections();
+            sample(out, "armeria_server_connections", m.port())
+                    .label("http", "unknown").value(Math.max(0, m.activeConnections() - http1 - http2));
+            sample(out, "armeria_server_connections", m.port()).label("http", "1").value(http1);
+            sample(out, "armeria_server_connections", m.port()).label("http", "2").value(http2);
+        }
+
+        collect(out, metrics, "armeria_server_connections_accepted_total", Type.COUNTER,
+                "The number of the connections accepted.", ServerPortMetrics::acceptedConnections);
+        collect(out, metrics, "armeria_server_inflight_requests", Type.GAUGE,
+                "The number of the requests whose responses have not been written yet.",
+                ServerPortMetrics::inflightRequests);
+        collect(out, metrics, "armeria_server_pending_responses", Type.GAUGE,
+                "The number of the HTTP/1 responses blocked by the earlier responses.",
+                ServerPortMetrics::pendingResponses);
+        collect(out, metrics, "armeria_server_http2_streams", Type.GAUGE,
+                "The number of the active HTTP/2 streams.", ServerPortMetrics::activeHttp2Streams);
+        collect(out, metrics, "armeria_server_requests_total", Type.COUNTER,
+                "The number of the requests received.", ServerPortMetrics::requests);
+        collect(out, metrics, "armeria_server_read_bytes_total", Type.COUNTER,
+                "The number of the bytes read from the connections.", ServerPortMetrics::bytesRead);
+        collect(out, metrics, "armeria_server_written_bytes_total", Type.COUNTER,
+                "The number of the bytes written to the connections.", ServerPortMetrics::bytesWritten);
+    }
+
+    private static void collect(PrometheusWriter out, Iterable<ServerPortMetrics> metrics,
+                                String name, Type type, String help, ToLongFunction<ServerPortMetrics> value) {
+        out.family(name, type, help);
+        for (ServerPortMetrics m : metrics) {
+            sample(out, name, m.port()).value(value.applyAsLong(m));
+        }
+    }
+
+    private static PrometheusWriter sample(PrometheusWriter out, String name, ServerPort port) {
+        return out.sample(name).label("port", String.valueOf(port.localAddress().getPort()))
+                  .label("protocol", port.protocol().uriText());
+    }
+}
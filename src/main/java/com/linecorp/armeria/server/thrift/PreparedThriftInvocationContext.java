@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.thrift.ThriftUtil;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResult;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResultType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+/**
+ * The {@link ServiceInvocationContext} of a Thrift call whose reply is prepared by a decorator without
+ * invoking the service, such as a reply found in the cache of {@link ThriftResponseCacheService}. The
+ * arguments of the call are not decoded, and the invocation result is the encoded reply.
+ */
+final class PreparedThriftInvocationContext extends ServiceInvocationContext implements DecodeResult {
+
+    final ThriftFunction func;
+    final int seqId;
+    private String seqIdStr;
+
+    PreparedThriftInvocationContext(
+            Channel ch, Scheme protocol, String host, String path, String mappedPath,
+            String loggerName, Object originalRequest, ThriftFunction func, int seqId) {
+        super(ch, protocol, host, path, mappedPath, loggerName, originalRequest);
+
+        this.func = func;
+        this.seqId = seqId;
+    }
+
+    /**
+     * Encodes the reply to this call which failed before the prepared reply is sent, e.g. timed out.
+     */
+    ByteBuf encodeFailureResponse(Throwable cause) {
+        final ByteBuf out = alloc().buffer();
+        ThriftServiceCodec.writeException(scheme().serializationFormat(), method(), seqId,
+                                          ThriftServiceCodec.toApplicationException(cause), out);
+        return out;
+    }
+
+    @Override
+    public String method() {
+        return func.methodName();
+    }
+
+    @Override
+    public List<Class<?>> paramTypes() {
+        return func.paramTypes();
+    }
+
+    @Override
+    public Class<?> returnType() {
+        return func.returnType();
+    }
+
+    @Override
+    public String invocationId() {
+        String seqIdStr = this.seqIdStr;
+        if (seqIdStr == null) {
+            this.seqIdStr = seqIdStr = ThriftUtil.seqIdToString(seqId);
+        }
+        return seqIdStr;
+    }
+
+    @Override
+    public List<Object> params() {
+        return Collections.emptyList();
+    }
+
+    // The methods from DecodeResult:
+
+    @Override
+    public DecodeResultType type() {
+        return DecodeResultType.SUCCESS;
+    }
+
+    @Override
+    public ServiceInvocationContext invocationContext() {
+        return this;
+    }
+
+    @Override
+    public ByteBuf errorResponse() {
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public Throwable cause() {
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public SerializationFormat decodedSerializationFormat() {
+        return scheme().serializationFormat();
+    }
+
+    @Override
+    public Optional<String> decodedInvocationId() {
+        return Optional.of(invocationId());
+    }
+
+    @Override
+    public Optional<String> decodedMethod() {
+        return Optional.of(method());
+    }
+
+    @Override
+    public Optional<List<Object>> decodedParams() {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.thrift.TApplicationException;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.thrift.ThriftUtil;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResult;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResultType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * The invocation of a batch of Thrift calls decoded from a single request by a batched {@link ThriftService}.
+ */
+final class ThriftBatchInvocationContext extends ServiceInvocationContext implements DecodeResult {
+
+    static final String METHOD_NAME = "batch";
+
+    final List<Call> calls;
+    private String invocationId;
+
+    ThriftBatchInvocationContext(
+            Channel ch, Scheme protocol, String host, String path, String mappedPath,
+            String loggerName, Object originalRequest, List<Call> calls) {
+        super(ch, protocol, host, path, mappedPath, loggerName, originalRequest);
+
+        this.calls = Collections.unmodifiableList(calls);
+    }
+
+    @Override
+    public String method() {
+        return METHOD_NAME;
+    }
+
+    @Override
+    public List<Class<?>> paramTypes() {
+        return Collections.nCopies(calls.size(), Call.class);
+    }
+
+    @Override
+    public Class<?> returnType() {
+        return List.class;
+    }
+
+    @Override
+    public String invocationId() {
+        String invocationId = this.invocationId;
+        if (invocationId == null) {
+            this.invocationId = invocationId =
+                    calls.stream().map(c -> ThriftUtil.seqIdToString(c.seqId)).collect(Collectors.joining(","));
+        }
+        return invocationId;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object> params() {
+        return (List<Object>) (List<?>) calls;
+    }
+
+    // The methods from DecodeResult:
+
+    @Override
+    public DecodeResultType type() {
+        return DecodeResultType.SUCCESS;
+    }
+
+    @Override
+    public ServiceInvocationContext invocationContext() {
+        return this;
+    }
+
+    @Override
+    public ByteBuf errorResponse() {
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public Throwable cause() {
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public SerializationFormat decodedSerializationFormat() {
+        return scheme().serializationFormat();
+    }
+
+    @Override
+    public Optional<String> decodedInvocationId() {
+        return Optional.of(invocationId());
+    }
+
+    @Override
+    public Optional<String> decodedMethod() {
+        return Optional.of(method());
+    }
+
+    @Override
+    public Optional<List<Object>> decodedParams() {
+        return Optional.of(params());
+    }
+
+    /**
+     * A Thrift call in a batch, which is either decoded into a {@link ThriftServiceInvocationContext} or
+     * failed to be decoded.
+     */
+    static final class Call {
+
+        final int seqId;
+        final String method;
+
+        /**
+         * The invocation of this call, or {@code null} if this call failed to be decoded.
+         */
+        final ThriftServiceInvocationContext ctx;
+
+        /**
+         * The reason why this call failed to be decoded, or {@code null} if decoded successfully.
+         */
+        final TApplicationException decodeFailure;
+
+        /**
+         * The {@link Promise} of the invocation, which is set when this call is invoked.
+         */
+        Promise<Object> promise;
+
+        Call(ThriftServiceInvocationContext ctx) {
+            seqId = ctx.seqId;
+            method = ctx.method();
+            this.ctx = ctx;
+            decodeFailure = null;
+        }
+
+        Call(int seqId, String method, TApplicationException decodeFailure) {
+            this.seqId = seqId;
+            this.method = method;
+            ctx = null;
+            this.decodeFailure = decodeFailure;
+        }
+
+        @Override
+        public String toString() {
+            return method + '#' + ThriftUtil.seqIdToString(seqId);
+        }
+    }
+}
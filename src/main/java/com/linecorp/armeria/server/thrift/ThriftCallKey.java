@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.server.ServiceCodec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Identifies the Thrift calls with the same arguments, which consists of the serialization format, the method
+ * name and the serialized arguments of a call. The sequence ID of the call is kept to encode its reply, but it
+ * is not a part of the key.
+ */
+final class ThriftCallKey {
+
+    /**
+     * The approximate memory footprint of a {@link ThriftCallKey} and the map entry which contains it,
+     * excluding the serialized arguments. See {@link #sizeBytes()}.
+     */
+    private static final int SIZE_BYTES = 128;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * Returns the {@link ThriftServiceCodec} decorated by the specified {@link ServiceCodec}, after ensuring
+     * that the specified methods are the two-way methods of the service.
+     *
+     * @throws IllegalArgumentException if the calls of the specified methods cannot be identified
+     */
+    static ThriftServiceCodec thriftCodec(ServiceCodec codec, Set<String> methods) {
+        final ThriftServiceCodec thriftCodec = codec.as(ThriftServiceCodec.class).orElseThrow(
+                () -> new IllegalArgumentException("not a Thrift service codec: " + codec));
+        if (thriftCodec.isBatch()) {
+            throw new IllegalArgumentException("batched Thrift service: " + codec);
+        }
+
+        for (String m : methods) {
+            final ThriftFunction func = thriftCodec.function(m);
+            if (func == null) {
+                throw new IllegalArgumentException("unknown method: " + m);
+            }
+            if (func.isOneway()) {
+                throw new IllegalArgumentException("one-way method: " + m);
+            }
+        }
+
+        return thriftCodec;
+    }
+
+    /**
+     * Returns the {@link ThriftCallKey} of the specified call, or {@code null} if the call is not a call to
+     * one of the specified methods.
+     */
+    static ThriftCallKey of(ThriftServiceCodec thriftCodec, Set<String> methods,
+                            Object originalRequest, ByteBuf in) {
+
+        final SerializationFormat serializationFormat = thriftCodec.serializationFormat(originalRequest);
+        if (serializationFormat == null || serializationFormat == SerializationFormat.THRIFT_TEXT) {
+            // TTextProtocol does not write a message header separately from its body.
+            return null;
+        }
+
+        final ByteBuf args = in.duplicate();
+        final TMessage header;
+        try {
+            header = ThriftServiceCodec.readMessageBegin(serializationFormat, args);
+        } catch (TException e) {
+            // Let the decorated codec reject the call.
+            return null;
+        }
+
+        if (header.type != TMessageType.CALL || !methods.contains(header.name)) {
+            return null;
+        }
+
+        final byte[] argsBytes = ByteBufUtil.getBytes(args);
+        return new ThriftCallKey(serializationFormat, header.name, header.seqid,
+                                 argsBytes, HASH_FUNCTION.hashBytes(argsBytes).asInt());
+    }
+
+    final SerializationFormat serializationFormat;
+    final String method;
+    final int seqId;
+
+    /**
+     * The serialized arguments, which are compared as a whole because different arguments may have the same
+     * hash.
+     */
+    private final byte[] args;
+    private final int argsHash;
+
+    ThriftCallKey(SerializationFormat serializationFormat, String method, int seqId,
+                  byte[] args, int argsHash) {
+        this.serializationFormat = serializationFormat;
+        this.method = method;
+        this.seqId = seqId;
+        this.args = args;
+        this.argsHash = argsHash;
+    }
+
+    /**
+     * Returns the approximate memory footprint of this key and the map entry which contains it.
+     */
+    int sizeBytes() {
+        return SIZE_BYTES + args.length;
+    }
+
+    /**
+     * Returns the length of the message header of the specified reply to this call, or {@code -1} if the
+     * reply does not start with the header of the specified type.
+     */
+    int replyHeaderLength(byte type, ByteBuf reply) {
+        final ByteBuf header = Unpooled.buffer(method.length() + 16);
+        ThriftServiceCodec.writeMessageBegin(serializationFormat, new TMessage(method, type, seqId), header);
+
+        final int headerLength = header.readableBytes();
+        if (reply.readableBytes() < headerLength ||
+            !ByteBufUtil.equals(header, header.readerIndex(), reply, reply.readerIndex(), headerLength)) {
+            return -1;
+        }
+        return headerLength;
+    }
+
+    /**
+     * Returns a new reply to the call with the specified sequence ID, which consists of the message header of
+     * the specified type and the specified message body. The body is not copied but released when the reply
+     * is released.
+     */
+    ByteBuf newReply(ByteBufAllocator alloc, byte type, int seqId, ByteBuf body) {
+        final ByteBuf header = alloc.buffer(method.length() + 16);
+        ThriftServiceCodec.writeMessageBegin(serializationFormat, new TMessage(method, type, seqId), header);
+        return Unpooled.wrappedBuffer(header, body);
+    }
+
+    @Override
+    public int hashCode() {
+        return argsHash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof ThriftCallKey)) {
+            return false;
+        }
+
+        final ThriftCallKey that = (ThriftCallKey) obj;
+        return argsHash == that.argsHash &&
+               serializationFormat == that.serializationFormat &&
+               method.equals(that.method) &&
+               Arrays.equals(args, that.args);
+    }
+
+    @Override
+    public String toString() {
+        return serializationFormat.uriText() + ':' + method + '(' + Integer.toHexString(argsHash) + ", " +
+               args.length + "B)";
+    }
+}
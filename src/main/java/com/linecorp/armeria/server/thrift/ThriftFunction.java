@@ -16,11 +16,9 @@
 
 package com.linecorp.armeria.server.thrift;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
 import org.apache.thrift.AsyncProcessFunction;
@@ -30,6 +28,9 @@ import org.apache.thrift.TFieldIdEnum;
 import org.apache.thrift.meta_data.FieldMetaData;
 import org.apache.thrift.meta_data.FieldValueMetaData;
 
+import com.linecorp.armeria.common.thrift.ThriftBufferSizePredictor;
+import com.linecorp.armeria.common.thrift.ThriftStructAccessor;
+import com.linecorp.armeria.common.thrift.ThriftStructAccessor.Field;
 import com.linecorp.armeria.common.thrift.ThriftUtil;
 
 final class ThriftFunction {
@@ -42,11 +43,12 @@ final class ThriftFunction {
     private final String name;
     private final Object func;
     private final Type type;
-    private final TBase<TBase<?, ?>, TFieldIdEnum> result;
-    private final TFieldIdEnum successField;
-    private final Map<Class<Throwable>, TFieldIdEnum> exceptionFields = new HashMap<>();
+    private final ThriftStructAccessor result;
+    private final Field successField;
+    private final List<Field> exceptionFields;
     private final List<Class<?>> paramTypes;
     private final Class<?> returnType;
+    private final ThriftBufferSizePredictor replySizePredictor = new ThriftBufferSizePredictor();
 
     ThriftFunction(ProcessFunction<?, ?> func) throws Exception {
         this(func.getMethodName(), func, Type.SYNC, getResultType(func));
@@ -70,30 +72,22 @@ final class ThriftFunction {
                         .map(e -> ThriftUtil.toJavaType(e.valueMetaData)).collect(Collectors.toList()));
 
         // Determine the success and exception fields of the function.
-        TFieldIdEnum successField = null;
+        Field successField = null;
         FieldValueMetaData successFieldMetadata = null;
+        final List<Field> exceptionFields = new ArrayList<>();
 
         if (resultType != null) {
-            result = resultType.newInstance();
+            result = ThriftStructAccessor.of(resultType);
 
-            @SuppressWarnings("unchecked")
-            final Map<TFieldIdEnum, FieldMetaData> metaDataMap =
-                    (Map<TFieldIdEnum, FieldMetaData>) FieldMetaData.getStructMetaDataMap(resultType);
-
-            for (Entry<TFieldIdEnum, FieldMetaData> e: metaDataMap.entrySet()) {
-                final TFieldIdEnum key = e.getKey();
-                final String fieldName = key.getFieldName();
-                if ("success".equals(fieldName)) {
-                    successField = key;
-                    successFieldMetadata = e.getValue().valueMetaData;
+            for (Field f : result.fields()) {
+                if ("success".equals(f.name())) {
+                    successField = f;
+                    successFieldMetadata = f.metaData().valueMetaData;
                     continue;
                 }
 
-                Class<?> fieldType = resultType.getField(fieldName).getType();
-                if (Throwable.class.isAssignableFrom(fieldType)) {
-                    @SuppressWarnings("unchecked")
-                    Class<Throwable> exceptionFieldType = (Class<Throwable>) fieldType;
-                    exceptionFields.put(exceptionFieldType, key);
+                if (Throwable.class.isAssignableFrom(f.type())) {
+                    exceptionFields.add(f);
                 }
             }
         } else {
@@ -101,6 +95,7 @@ final class ThriftFunction {
         }
 
         this.successField = successField;
+        this.exceptionFields = exceptionFields;
 
         if (successFieldMetadata != null) {
             returnType = ThriftUtil.toJavaType(successFieldMetadata);
@@ -143,6 +138,13 @@ final class ThriftFunction {
         return returnType;
     }
 
+    /**
+     * Returns the {@link ThriftBufferSizePredictor} which pre-sizes the buffers of the replies.
+     */
+    ThriftBufferSizePredictor replySizePredictor() {
+        return replySizePredictor;
+    }
+
     boolean hasSuccess() {
         return successField != null;
     }
@@ -156,24 +158,25 @@ final class ThriftFunction {
     }
 
     boolean isResult(Object obj) {
-        return result != null && result.getClass().isInstance(obj);
+        return result != null && result.structClass().isInstance(obj);
     }
 
     TBase<TBase<?, ?>, TFieldIdEnum> newResult() {
-        return result.deepCopy();
+        return result.newInstance();
     }
 
     void setSuccess(TBase<?, TFieldIdEnum> result, Object value) {
         if (successField != null) {
-            result.setFieldValue(successField, value);
+            successField.set(result, value);
         }
     }
 
     boolean setException(TBase<?, TFieldIdEnum> result, Throwable cause) {
-        Class<?> causeType = cause.getClass();
-        for (Entry<Class<Throwable>, TFieldIdEnum> e: exceptionFields.entrySet()) {
-            if (e.getKey().isAssignableFrom(causeType)) {
-                result.setFieldValue(e.getValue(), cause);
+        final List<Field> exceptionFields = this.exceptionFields;
+        for (int i = 0; i < exceptionFields.size(); i++) {
+            final Field f = exceptionFields.get(i);
+            if (f.type().isInstance(cause)) {
+                f.set(result, cause);
                 return true;
             }
         }
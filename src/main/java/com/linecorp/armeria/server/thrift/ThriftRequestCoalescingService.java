@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.server.DecoratingService;
+import com.linecorp.armeria.server.DecoratingServiceInvocationHandler;
+import com.linecorp.armeria.server.Service;
+import com.linecorp.armeria.server.ServiceInvocationHandler;
+
+import io.netty.util.concurrent.Promise;
+
+/**
+ * A decorator {@link Service} that coalesces the identical in-flight calls to the specified Thrift methods,
+ * which must be pure functions of their arguments. While a call is being served, the calls with the same
+ * method name and serialized arguments are not decoded nor passed to the service; they are replied with the
+ * reply to the first call when it is done, whose message header is rewritten with their sequence IDs. This
+ * prevents a burst of identical calls, e.g. after a cache entry expired, from overloading a backend.
+ *
+ * <p>The number of the distinct calls tracked at the same time is bounded by {@code maxInflightCalls},
+ * and the number of the calls coalesced into one call is bounded by {@value #MAX_FOLLOWERS}.
+ * The calls beyond the limits are served as usual without coalescing.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * serverBuilder.serviceAt(
+ *         "/service",
+ *         ThriftService.of(handler).decorate(
+ *                 ThriftRequestCoalescingService.newDecorator(1024, "getProfile", "getSettings")));
+ * }</pre>
+ */
+public class ThriftRequestCoalescingService extends DecoratingService {
+
+    /**
+     * The maximum number of the calls which wait for the reply to an identical call.
+     */
+    static final int MAX_FOLLOWERS = 1024;
+
+    /**
+     * Returns a new {@link Service} decorator that coalesces the identical calls to the specified methods.
+     *
+     * @param maxInflightCalls the maximum number of the distinct calls which can be coalesced at the same time
+     * @param coalescedMethods the names of the methods whose calls can be coalesced
+     */
+    public static Function<Service, Service> newDecorator(int maxInflightCalls, String... coalescedMethods) {
+        requireNonNull(coalescedMethods, "coalescedMethods");
+        return newDecorator(maxInflightCalls, Arrays.asList(coalescedMethods));
+    }
+
+    /**
+     * Returns a new {@link Service} decorator that coalesces the identical calls to the specified methods.
+     *
+     * @param maxInflightCalls the maximum number of the distinct calls which can be coalesced at the same time
+     * @param coalescedMethods the names of the methods whose calls can be coalesced
+     */
+    public static Function<Service, Service> newDecorator(int maxInflightCalls,
+                                                          Iterable<String> coalescedMethods) {
+        validateMaxInflightCalls(maxInflightCalls);
+        final Set<String> methods = copyCoalescedMethods(coalescedMethods);
+        return service -> new ThriftRequestCoalescingService(
+                service, maxInflightCalls, MAX_FOLLOWERS, methods);
+    }
+
+    private final ThriftRequestCoalescingServiceCodec codec;
+
+    /**
+     * Creates a new instance that decorates the specified {@link Service}, which must be a
+     * {@link ThriftService} or a decorated one.
+     *
+     * @param maxInflightCalls the maximum number of the distinct calls which can be coalesced at the same time
+     * @param coalescedMethods the names of the methods whose calls can be coalesced
+     */
+    public ThriftRequestCoalescingService(Service service, int maxInflightCalls,
+                                          Iterable<String> coalescedMethods) {
+        this(service, validateMaxInflightCalls(maxInflightCalls), MAX_FOLLOWERS,
+             copyCoalescedMethods(coalescedMethods));
+    }
+
+    ThriftRequestCoalescingService(Service service, int maxInflightCalls, int maxFollowers,
+                                   Set<String> coalescedMethods) {
+        super(service,
+              codec -> new ThriftRequestCoalescingServiceCodec(
+                      codec, maxInflightCalls, maxFollowers, coalescedMethods),
+              FollowerHandler::new);
+
+        codec = (ThriftRequestCoalescingServiceCodec) codec();
+    }
+
+    /**
+     * Returns the number of the calls which were replied with the reply to an identical call.
+     */
+    public long coalescedCount() {
+        return codec.coalescedCalls();
+    }
+
+    /**
+     * Returns the number of the distinct calls being served whose identical calls can be coalesced.
+     */
+    public int inflightCount() {
+        return codec.inflightCalls();
+    }
+
+    private static int validateMaxInflightCalls(int maxInflightCalls) {
+        if (maxInflightCalls <= 0) {
+            throw new IllegalArgumentException("maxInflightCalls: " + maxInflightCalls + " (expected: > 0)");
+        }
+        return maxInflightCalls;
+    }
+
+    private static Set<String> copyCoalescedMethods(Iterable<String> coalescedMethods) {
+        requireNonNull(coalescedMethods, "coalescedMethods");
+        final Set<String> methods = new LinkedHashSet<>();
+        for (String m : coalescedMethods) {
+            methods.add(requireNonNull(m, "coalescedMethods contains null."));
+        }
+        if (methods.isEmpty()) {
+            throw new IllegalArgumentException("coalescedMethods is empty.");
+        }
+        return Collections.unmodifiableSet(methods);
+    }
+
+    /**
+     * Leaves the calls coalesced by {@link ThriftRequestCoalescingServiceCodec} to be replied when the
+     * identical call is done, and invokes the decorated handler for the others.
+     */
+    private static final class FollowerHandler extends DecoratingServiceInvocationHandler {
+
+        FollowerHandler(ServiceInvocationHandler handler) {
+            super(handler);
+        }
+
+        @Override
+        public void invoke(ServiceInvocationContext ctx,
+                           Executor blockingTaskExecutor, Promise<Object> promise) throws Exception {
+
+            if (ctx instanceof PreparedThriftInvocationContext &&
+                ctx.attr(ThriftRequestCoalescingServiceCodec.LEADER).get() != null) {
+                // The promise was registered to the leader when the call was decoded.
+                return;
+            }
+
+            delegate().invoke(ctx, blockingTaskExecutor, promise);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.thrift.protocol.TMessageType;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.server.DecoratingServiceCodec;
+import com.linecorp.armeria.server.ServiceCodec;
+import com.linecorp.armeria.server.ServiceConfig;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+final class ThriftRequestCoalescingServiceCodec extends DecoratingServiceCodec {
+
+    /**
+     * The {@link Leader} whose reply is also the reply to a follower, which is a
+     * {@link PreparedThriftInvocationContext}.
+     */
+    static final AttributeKey<Leader> LEADER =
+            AttributeKey.valueOf(ThriftRequestCoalescingServiceCodec.class, "LEADER");
+
+    /**
+     * The {@link Leader} of an invocation, which holds the reply encoded for its followers.
+     */
+    private static final AttributeKey<Leader> SELF =
+            AttributeKey.valueOf(ThriftRequestCoalescingServiceCodec.class, "SELF");
+
+    private final ThriftServiceCodec thriftCodec;
+    private final int maxInflightCalls;
+    private final int maxFollowers;
+    private final Set<String> coalescedMethods;
+    private final ConcurrentMap<ThriftCallKey, Leader> leaders = new ConcurrentHashMap<>();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    ThriftRequestCoalescingServiceCodec(ServiceCodec codec, int maxInflightCalls, int maxFollowers,
+                                        Set<String> coalescedMethods) {
+        super(codec);
+
+        thriftCodec = ThriftCallKey.thriftCodec(codec, coalescedMethods);
+        this.maxInflightCalls = maxInflightCalls;
+        this.maxFollowers = maxFollowers;
+        this.coalescedMethods = coalescedMethods;
+    }
+
+    int inflightCalls() {
+        return leaders.size();
+    }
+
+    long coalescedCalls() {
+        return coalescedCalls.sum();
+    }
+
+    @Override
+    public DecodeResult decodeRequest(ServiceConfig cfg, Channel ch, SessionProtocol sessionProtocol,
+                                      String hostname, String path, String mappedPath, ByteBuf in,
+                                      Object originalRequest, Promise<Object> promise) throws Exception {
+
+        final ThriftCallKey key = ThriftCallKey.of(thriftCodec, coalescedMethods, originalRequest, in);
+        if (key == null) {
+            return delegate().decodeRequest(cfg, ch, sessionProtocol, hostname, path, mappedPath, in,
+                                            originalRequest, promise);
+        }
+
+        final Leader leader = leaders.get(key);
+        if (leader != null) {
+            final PreparedThriftInvocationContext ctx = new PreparedThriftInvocationContext(
+                    ch, Scheme.of(key.serializationFormat, sessionProtocol), hostname, path, mappedPath,
+                    cfg.loggerName(), originalRequest, thriftCodec.function(key.method), key.seqId);
+            if (leader.addFollower(ctx, promise)) {
+                ctx.attr(LEADER).set(leader);
+                coalescedCalls.increment();
+                return ctx;
+            }
+            // The leader has just been replied or has as many followers as it can have;
+            // invoke the service again.
+        }
+
+        final DecodeResult result = delegate().decodeRequest(
+                cfg, ch, sessionProtocol, hostname, path, mappedPath, in, originalRequest, promise);
+        if (result.type() != DecodeResultType.SUCCESS || leaders.size() >= maxInflightCalls) {
+            return result;
+        }
+
+        final ServiceInvocationContext ctx = result.invocationContext();
+        final Leader newLeader = new Leader(key, ctx, ch, maxFollowers);
+        if (leaders.putIfAbsent(key, newLeader) == null) {
+            ctx.attr(SELF).set(newLeader);
+            promise.addListener(future -> reply(newLeader, future));
+        }
+        return result;
+    }
+
+    /**
+     * Replies to the followers of the specified {@link Leader} with the reply to the leader, whose message
+     * header is rewritten with the sequence ID of each follower. The reply is encoded only once; the body of
+     * each follower's reply is a slice of the leader's reply, which is encoded here, or taken from the
+     * invocation if it was encoded outside the event loop, and written as the leader's reply later.
+     */
+    private void reply(Leader leader, Future<?> future) {
+        leaders.remove(leader.key, leader);
+        final List<Follower> followers = leader.complete();
+        if (followers.isEmpty()) {
+            return;
+        }
+
+        final Object result = future.isSuccess() ? future.getNow() : null;
+        final ByteBuf encoded;
+        try {
+            if (future.isSuccess()) {
+                encoded = delegate().encodeResponse(leader.ctx, result);
+            } else {
+                encoded = delegate().encodeFailureResponse(leader.ctx, future.cause());
+            }
+        } catch (Throwable t) {
+            followers.forEach(f -> f.promise.tryFailure(t));
+            return;
+        }
+
+        // Hand it to encodeResponse() for the leader.
+        leader.setReply(encoded);
+
+        final ThriftCallKey key = leader.key;
+        byte type = TMessageType.REPLY;
+        int headerLength = key.replyHeaderLength(type, encoded);
+        if (headerLength < 0) {
+            type = TMessageType.EXCEPTION;
+            headerLength = key.replyHeaderLength(type, encoded);
+        }
+
+        if (headerLength < 0) {
+            // Not a reply encoded by ThriftServiceCodec, e.g. modified by another decorator.
+            final IllegalStateException cause =
+                    new IllegalStateException("cannot coalesce the calls to " + key.method);
+            followers.forEach(f -> f.promise.tryFailure(cause));
+            return;
+        }
+
+        // Share the body of the reply with the followers without copying.
+        final int bodyIndex = encoded.readerIndex() + headerLength;
+        final int bodyLength = encoded.readableBytes() - headerLength;
+        for (Follower f : followers) {
+            if (f.promise.isDone()) {
+                // Timed out already.
+                continue;
+            }
+
+            final ByteBuf reply = key.newReply(f.ctx.alloc(), type, f.ctx.seqId,
+                                               encoded.slice(bodyIndex, bodyLength).retain());
+            if (!f.promise.trySuccess(reply)) {
+                reply.release();
+            }
+        }
+    }
+
+    @Override
+    public ByteBuf encodeResponse(ServiceInvocationContext ctx, Object response) throws Exception {
+        if (isFollower(ctx)) {
+            return (ByteBuf) response;
+        }
+
+        final ByteBuf reply = takeReply(ctx);
+        if (reply != null) {
+            return reply;
+        }
+
+        return delegate().encodeResponse(ctx, response);
+    }
+
+    @Override
+    public ByteBuf encodeFailureResponse(ServiceInvocationContext ctx, Throwable cause) throws Exception {
+        if (isFollower(ctx)) {
+            return ((PreparedThriftInvocationContext) ctx).encodeFailureResponse(cause);
+        }
+
+        final ByteBuf reply = takeReply(ctx);
+        if (reply != null) {
+            return reply;
+        }
+
+        return delegate().encodeFailureResponse(ctx, cause);
+    }
+
+    /**
+     * Returns the reply encoded for the followers of the specified leader, or {@code null} if the specified
+     * invocation is not a leader or its reply has not been encoded yet.
+     */
+    private static ByteBuf takeReply(ServiceInvocationContext ctx) {
+        final Leader leader = ctx.attr(SELF).get();
+        return leader != null ? leader.takeReply() : null;
+    }
+
+    private static boolean isFollower(ServiceInvocationContext ctx) {
+        return ctx instanceof PreparedThriftInvocationContext && ctx.attr(LEADER).get() != null;
+    }
+
+    /**
+     * An in-flight call to the service, whose reply is shared with the identical calls received meanwhile.
+     */
+    static final class Leader {
+
+        final ThriftCallKey key;
+        final ServiceInvocationContext ctx;
+        private final Channel ch;
+        private final int maxFollowers;
+        private List<Follower> followers = new ArrayList<>();
+        private ByteBuf reply;
+        private ChannelFutureListener releaseOnClose;
+
+        Leader(ThriftCallKey key, ServiceInvocationContext ctx, Channel ch, int maxFollowers) {
+            this.key = key;
+            this.ctx = ctx;
+            this.ch = ch;
+            this.maxFollowers = maxFollowers;
+        }
+
+        /**
+         * Adds a follower unless the leader has been replied already or has {@code maxFollowers} followers,
+         * so that a burst of identical calls cannot pile up an unbounded number of waiting calls on one
+         * leader.
+         *
+         * @return {@code true} if the follower has been added
+         */
+        synchronized boolean addFollower(PreparedThriftInvocationContext ctx, Promise<Object> promise) {
+            if (followers == null || followers.size() >= maxFollowers) {
+                return false;
+            }
+
+            followers.add(new Follower(ctx, promise));
+            return true;
+        }
+
+        /**
+         * Returns the followers to reply, and prevents a new follower from being added.
+         */
+        synchronized List<Follower> complete() {
+            final List<Follower> followers = this.followers;
+            this.followers = null;
+            return followers != null ? followers : Collections.emptyList();
+        }
+
+        /**
+         * Keeps the reply encoded for the followers until it is taken as the leader's reply. It is released
+         * when the connection is closed before then, because the leader's reply is not encoded at all then.
+         */
+        synchronized void setReply(ByteBuf reply) {
+            this.reply = reply;
+            releaseOnClose = future -> ReferenceCountUtil.safeRelease(takeReply());
+            ch.closeFuture().addListener(releaseOnClose);
+        }
+
+        /**
+         * Returns the reply encoded for the followers, or {@code null} if it has not been set or has been
+         * taken already.
+         */
+        synchronized ByteBuf takeReply() {
+            final ByteBuf reply = this.reply;
+            if (reply == null) {
+                return null;
+            }
+
+            this.reply = null;
+            ch.closeFuture().removeListener(releaseOnClose);
+            releaseOnClose = null;
+            return reply;
+        }
+    }
+
+    private static final class Follower {
+
+        final PreparedThriftInvocationContext ctx;
+        final Promise<Object> promise;
+
+        Follower(PreparedThriftInvocationContext ctx, Promise<Object> promise) {
+            this.ctx = ctx;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.server.DecoratingService;
+import com.linecorp.armeria.server.DecoratingServiceInvocationHandler;
+import com.linecorp.armeria.server.Service;
+import com.linecorp.armeria.server.ServiceInvocationHandler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * A decorator {@link Service} that caches the replies of the specified Thrift methods, which must be pure
+ * functions of their arguments. A call is looked up in the cache by its method name and its serialized
+ * arguments before it is decoded, and a cached reply is sent with the sequence ID of the call without
+ * decoding the call, invoking the service or encoding the reply. Only successful replies are cached.
+ *
+ * <p>The replies are kept in direct buffers. The cache is bounded by the total size of the replies and the
+ * serialized arguments, and a reply expires after the specified time-to-live since it was cached.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * serverBuilder.serviceAt(
+ *         "/service",
+ *         ThriftService.of(handler).decorate(ThriftResponseCacheService.newDecorator(
+ *                 64 * 1024 * 1024, Duration.ofMinutes(1), "getProfile", "getSettings")));
+ * }</pre>
+ */
+public class ThriftResponseCacheService extends DecoratingService {
+
+    /**
+     * Returns a new {@link Service} decorator that caches the replies of the specified methods.
+     *
+     * @param maxSizeBytes the maximum total size of the cached replies
+     * @param timeToLive how long a reply is served from the cache since it was cached
+     * @param cacheableMethods the names of the methods whose replies can be cached
+     */
+    public static Function<Service, Service> newDecorator(long maxSizeBytes, Duration timeToLive,
+                                                          String... cacheableMethods) {
+        requireNonNull(cacheableMethods, "cacheableMethods");
+        return newDecorator(maxSizeBytes, timeToLive, Arrays.asList(cacheableMethods));
+    }
+
+    /**
+     * Returns a new {@link Service} decorator that caches the replies of the specified methods.
+     *
+     * @param maxSizeBytes the maximum total size of the cached replies
+     * @param timeToLive how long a reply is served from the cache since it was cached
+     * @param cacheableMethods the names of the methods whose replies can be cached
+     */
+    public static Function<Service, Service> newDecorator(long maxSizeBytes, Duration timeToLive,
+                                                          Iterable<String> cacheableMethods) {
+        validateMaxSizeBytes(maxSizeBytes);
+        validateTimeToLive(timeToLive);
+        final Set<String> methods = copyCacheableMethods(cacheableMethods);
+        return service -> new ThriftResponseCacheService(service, maxSizeBytes, timeToLive, methods);
+    }
+
+    private final Cache<ThriftCallKey, ByteBuf> cache;
+
+    /**
+     * Creates a new instance that decorates the specified {@link Service}, which must be a
+     * {@link ThriftService} or a decorated one.
+     *
+     * @param maxSizeBytes the maximum total size of the cached replies
+     * @param timeToLive how long a reply is served from the cache since it was cached
+     * @param cacheableMethods the names of the methods whose replies can be cached
+     */
+    public ThriftResponseCacheService(Service service, long maxSizeBytes, Duration timeToLive,
+                                      Iterable<String> cacheableMethods) {
+        this(service, newCache(maxSizeBytes, timeToLive), copyCacheableMethods(cacheableMethods));
+    }
+
+    private ThriftResponseCacheService(Service service, Cache<ThriftCallKey, ByteBuf> cache,
+                                       Set<String> cacheableMethods) {
+        super(service,
+              codec -> new ThriftResponseCacheServiceCodec(codec, cache, cacheableMethods),
+              CacheHitHandler::new);
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the number of the calls replied from the cache.
+     */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * Returns the number of the calls to the cacheable methods which were not replied from the cache.
+     */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Returns the number of the replies removed from the cache due to its size limit.
+     */
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * Returns the approximate number of the replies in the cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all replies from the cache.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static Cache<ThriftCallKey, ByteBuf> newCache(long maxSizeBytes, Duration timeToLive) {
+        validateMaxSizeBytes(maxSizeBytes);
+        validateTimeToLive(timeToLive);
+
+        final Weigher<ThriftCallKey, ByteBuf> weigher =
+                (key, value) -> key.sizeBytes() + value.capacity();
+        final RemovalListener<ThriftCallKey, ByteBuf> releaser =
+                notification -> notification.getValue().release();
+        return CacheBuilder.newBuilder()
+                           .maximumWeight(maxSizeBytes)
+                           .weigher(weigher)
+                           .expireAfterWrite(timeToLive.toNanos(), TimeUnit.NANOSECONDS)
+                           .removalListener(releaser)
+                           .recordStats()
+                           .build();
+    }
+
+    private static long validateMaxSizeBytes(long maxSizeBytes) {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException("maxSizeBytes: " + maxSizeBytes + " (expected: > 0)");
+        }
+        return maxSizeBytes;
+    }
+
+    private static Duration validateTimeToLive(Duration timeToLive) {
+        requireNonNull(timeToLive, "timeToLive");
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("timeToLive: " + timeToLive + " (expected: > 0)");
+        }
+        return timeToLive;
+    }
+
+    private static Set<String> copyCacheableMethods(Iterable<String> cacheableMethods) {
+        requireNonNull(cacheableMethods, "cacheableMethods");
+        final Set<String> methods = new LinkedHashSet<>();
+        for (String m : cacheableMethods) {
+            methods.add(requireNonNull(m, "cacheableMethods contains null."));
+        }
+        if (methods.isEmpty()) {
+            throw new IllegalArgumentException("cacheableMethods is empty.");
+        }
+        return Collections.unmodifiableSet(methods);
+    }
+
+    /**
+     * Replies to a call found in the cache with the reply prepared by
+     * {@link ThriftResponseCacheServiceCodec}, and invokes the decorated handler for the others.
+     */
+    private static final class CacheHitHandler extends DecoratingServiceInvocationHandler {
+
+        CacheHitHandler(ServiceInvocationHandler handler) {
+            super(handler);
+        }
+
+        @Override
+        public void invoke(ServiceInvocationContext ctx,
+                           Executor blockingTaskExecutor, Promise<Object> promise) throws Exception {
+
+            final ByteBuf response = ctx.attr(ThriftResponseCacheServiceCodec.CACHED_RESPONSE).get();
+            if (response != null && ctx instanceof PreparedThriftInvocationContext) {
+                // The reply is released by the codec if the promise has been done already, e.g. timed out.
+                promise.trySuccess(response);
+                return;
+            }
+
+            delegate().invoke(ctx, blockingTaskExecutor, promise);
+        }
+    }
+}
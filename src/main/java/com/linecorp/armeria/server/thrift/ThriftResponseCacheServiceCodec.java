@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import java.util.Set;
+
+import org.apache.thrift.protocol.TMessageType;
+
+import com.google.common.cache.Cache;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.server.DecoratingServiceCodec;
+import com.linecorp.armeria.server.ServiceCodec;
+import com.linecorp.armeria.server.ServiceConfig;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Promise;
+
+final class ThriftResponseCacheServiceCodec extends DecoratingServiceCodec {
+
+    private static final AttributeKey<ThriftCallKey> CALL_KEY =
+            AttributeKey.valueOf(ThriftResponseCacheServiceCodec.class, "CALL_KEY");
+
+    /**
+     * The reply found in the cache, which is the invocation result of the
+     * {@link PreparedThriftInvocationContext} of a cache hit.
+     */
+    static final AttributeKey<ByteBuf> CACHED_RESPONSE =
+            AttributeKey.valueOf(ThriftResponseCacheServiceCodec.class, "CACHED_RESPONSE");
+
+    private final ThriftServiceCodec thriftCodec;
+    private final Cache<ThriftCallKey, ByteBuf> cache;
+    private final Set<String> cacheableMethods;
+
+    ThriftResponseCacheServiceCodec(ServiceCodec codec, Cache<ThriftCallKey, ByteBuf> cache,
+                                    Set<String> cacheableMethods) {
+        super(codec);
+
+        thriftCodec = ThriftCallKey.thriftCodec(codec, cacheableMethods);
+        this.cache = cache;
+        this.cacheableMethods = cacheableMethods;
+    }
+
+    @Override
+    public DecodeResult decodeRequest(ServiceConfig cfg, Channel ch, SessionProtocol sessionProtocol,
+                                      String hostname, String path, String mappedPath, ByteBuf in,
+                                      Object originalRequest, Promise<Object> promise) throws Exception {
+
+        final ThriftCallKey key = ThriftCallKey.of(thriftCodec, cacheableMethods, originalRequest, in);
+        if (key == null) {
+            return delegate().decodeRequest(cfg, ch, sessionProtocol, hostname, path, mappedPath, in,
+                                            originalRequest, promise);
+        }
+
+        final ByteBuf response = cachedResponse(ch.alloc(), key);
+        if (response != null) {
+            // Release the reply unless it is sent, e.g. the invocation timed out.
+            promise.addListener(future -> {
+                if (!future.isSuccess()) {
+                    ReferenceCountUtil.safeRelease(response);
+                }
+            });
+
+            final PreparedThriftInvocationContext ctx = new PreparedThriftInvocationContext(
+                    ch, Scheme.of(key.serializationFormat, sessionProtocol), hostname, path, mappedPath,
+                    cfg.loggerName(), originalRequest, thriftCodec.function(key.method), key.seqId);
+            ctx.attr(CACHED_RESPONSE).set(response);
+            return ctx;
+        }
+
+        final DecodeResult result = delegate().decodeRequest(
+                cfg, ch, sessionProtocol, hostname, path, mappedPath, in, originalRequest, promise);
+        if (result.type() == DecodeResultType.SUCCESS) {
+            result.invocationContext().attr(CALL_KEY).set(key);
+        }
+        return result;
+    }
+
+    private ByteBuf cachedResponse(ByteBufAllocator alloc, ThriftCallKey key) {
+        final ByteBuf cached = cache.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+
+        try {
+            cached.retain();
+        } catch (IllegalReferenceCountException e) {
+            // Evicted and released just now.
+            return null;
+        }
+
+        // The reply takes over the reference retained above.
+        return key.newReply(alloc, TMessageType.REPLY, key.seqId, cached.duplicate());
+    }
+
+    @Override
+    public ByteBuf encodeResponse(ServiceInvocationContext ctx, Object response) throws Exception {
+        if (isCacheHit(ctx)) {
+            return (ByteBuf) response;
+        }
+
+        final ByteBuf encoded = delegate().encodeResponse(ctx, response);
+        final ThriftCallKey key = ctx.attr(CALL_KEY).get();
+        if (key != null && encoded != null) {
+            cache(key, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Caches the body of the specified reply, i.e. the reply without its header which contains the sequence
+     * ID of the call.
+     */
+    private void cache(ThriftCallKey key, ByteBuf encoded) {
+        final int headerLength = key.replyHeaderLength(TMessageType.REPLY, encoded);
+        if (headerLength < 0) {
+            // Not a reply encoded by ThriftServiceCodec, e.g. modified by another decorator.
+            return;
+        }
+
+        final int bodyLength = encoded.readableBytes() - headerLength;
+        final ByteBuf body = Unpooled.directBuffer(bodyLength);
+        body.writeBytes(encoded, encoded.readerIndex() + headerLength, bodyLength);
+        cache.put(key, body);
+    }
+
+    @Override
+    public ByteBuf encodeFailureResponse(ServiceInvocationContext ctx, Throwable cause) throws Exception {
+        if (isCacheHit(ctx)) {
+            return ((PreparedThriftInvocationContext) ctx).encodeFailureResponse(cause);
+        }
+
+        return delegate().encodeFailureResponse(ctx, cause);
+    }
+
+    private static boolean isCacheHit(ServiceInvocationContext ctx) {
+        return ctx instanceof PreparedThriftInvocationContext && ctx.attr(CACHED_RESPONSE).get() != null;
+    }
+}
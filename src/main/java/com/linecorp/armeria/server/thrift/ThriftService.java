@@ -18,14 +18,22 @@ package com.linecorp.armeria.server.thrift;
 
 import static java.util.Objects.requireNonNull;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.thrift.ThriftBufferSizePredictor;
 import com.linecorp.armeria.common.thrift.ThriftProtocolFactories;
+import com.linecorp.armeria.common.util.Ticker;
 import com.linecorp.armeria.server.Service;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResult;
 import com.linecorp.armeria.server.SimpleService;
+import com.linecorp.armeria.server.logging.LoggingService;
 
 /**
  * A {@link Service} that handles a Thrift call.
@@ -132,6 +140,162 @@ public class ThriftService extends SimpleService {
         return ((ThriftServiceCodec) codec()).defaultSerializationFormat();
     }
 
+    /**
+     * Returns the {@link ThriftBufferSizePredictor}s which pre-size the buffers of the replies of this service,
+     * keyed by method name. The predictors are shared by the {@link #batched()} variant of this service,
+     * but the batched replies are not recorded.
+     */
+    public Map<String, ThriftBufferSizePredictor> replySizePredictors() {
+        return ((ThriftServiceCodec) codec()).replySizePredictors();
+    }
+
+    /**
+     * Returns whether this service serves a batch of Thrift calls per request.
+     *
+     * @see #batched()
+     */
+    public boolean isBatched() {
+        return ((ThriftServiceCodec) codec()).isBatch();
+    }
+
+    /**
+     * Returns a new {@link ThriftService} that serves the same service implementation with the same
+     * serialization formats, but accepts a batch of Thrift calls in a single request. The content of
+     * a request is a sequence of Thrift messages, each of which is prefixed with its length as a 4-byte
+     * big-endian integer, like {@code TFramedTransport} does. The calls in a batch are invoked concurrently,
+     * and the response is sent once all of them are complete. The content of the response is the sequence
+     * of the replies framed in the same way, in the order of the calls. One-way calls are not replied.
+     * A call which fails to be decoded or invoked is replied with an exception without failing the other
+     * calls in the batch, hence a client should match a reply with its call using the sequence ID. However,
+     * a call whose message header cannot be decoded cannot be replied without its sequence ID, so it fails
+     * the whole batch with a {@code 400 Bad Request} response, as a batch with a malformed length prefix does.
+     */
+    public ThriftService batched() {
+        final ThriftServiceCodec codec = (ThriftServiceCodec) codec();
+        if (codec.isBatch()) {
+            return this;
+        }
+
+        return new ThriftService(codec.withBatch(true), (ThriftServiceInvocationHandler) handler());
+    }
+
+    /**
+     * Returns whether this service decodes the binary fields of a request without copying them.
+     *
+     * @see #sliceBinary()
+     */
+    public boolean isSliceBinary() {
+        return ((ThriftServiceCodec) codec()).isSliceBinary();
+    }
+
+    /**
+     * Returns a new {@link ThriftService} that decodes the {@code binary} fields of a request as views of
+     * the request content rather than copies, which saves a copy of every binary field, e.g. a large blob.
+     * A service implementation must not keep such a binary field, or the {@link java.nio.ByteBuffer} or
+     * the array which backs it, after it returns, or after it invokes the callback if it is asynchronous
+     * ({@code *.AsyncIface}), because the request content is released then. Copy the field if it has to be
+     * kept longer, e.g. when it is stored in a cache.
+     */
+    public ThriftService sliceBinary() {
+        final ThriftServiceCodec codec = (ThriftServiceCodec) codec();
+        if (codec.isSliceBinary()) {
+            return this;
+        }
+
+        return new ThriftService(codec.withSliceBinary(true), (ThriftServiceInvocationHandler) handler());
+    }
+
+    /**
+     * Returns a new {@link ThriftService} that invokes the specified methods of the synchronous service
+     * implementation ({@code *.Iface}) directly in the event loop rather than in the blocking task executor,
+     * which saves two thread hand-offs per call. Specify only the methods which neither block nor take long,
+     * e.g. a lookup in an in-memory map. Once three invocations of a method in a row take longer than
+     * {@code maxExecutionTime}, a warning is logged and the method is invoked in the blocking task executor
+     * for a minute, so that it does not keep stalling the other connections served by the event loop.
+     * The method is then tried in the event loop again, until its next invocation takes too long.
+     *
+     * @param maxExecutionTime the maximum time an invocation can take in the event loop
+     * @param methodNames the names of the synchronous methods to invoke in the event loop
+     */
+    public ThriftService invokeInEventLoop(Duration maxExecutionTime, String... methodNames) {
+        requireNonNull(methodNames, "methodNames");
+        return invokeInEventLoop(maxExecutionTime, Arrays.asList(methodNames));
+    }
+
+    /**
+     * Returns a new {@link ThriftService} that invokes the specified methods of the synchronous service
+     * implementation ({@code *.Iface}) directly in the event loop rather than in the blocking task executor.
+     *
+     * @param maxExecutionTime the maximum time an invocation can take in the event loop
+     * @param methodNames the names of the synchronous methods to invoke in the event loop
+     *
+     * @see #invokeInEventLoop(Duration, String...)
+     */
+    public ThriftService invokeInEventLoop(Duration maxExecutionTime, Iterable<String> methodNames) {
+        return invokeInEventLoop(maxExecutionTime, methodNames, Ticker.systemTicker());
+    }
+
+    ThriftService invokeInEventLoop(Duration maxExecutionTime, Iterable<String> methodNames, Ticker ticker) {
+        requireNonNull(maxExecutionTime, "maxExecutionTime");
+        requireNonNull(methodNames, "methodNames");
+        if (maxExecutionTime.isNegative() || maxExecutionTime.isZero()) {
+            throw new IllegalArgumentException("maxExecutionTime: " + maxExecutionTime + " (expected: > 0)");
+        }
+
+        final ThriftServiceCodec codec = (ThriftServiceCodec) codec();
+        for (String m : methodNames) {
+            requireNonNull(m, "methodNames contains null.");
+            final ThriftFunction func = codec.function(m);
+            if (func == null) {
+                throw new IllegalArgumentException("unknown method: " + m);
+            }
+            if (func.isAsync()) {
+                throw new IllegalArgumentException(
+                        "asynchronous method: " + m + " (expected: a method of Iface)");
+            }
+        }
+
+        final ThriftServiceInvocationHandler handler = (ThriftServiceInvocationHandler) handler();
+        return new ThriftService(codec,
+                                 handler.withEventLoopMethods(methodNames, maxExecutionTime.toNanos(), ticker));
+    }
+
+    /**
+     * Returns a new {@link ThriftService} that decodes and encodes large Thrift messages outside the event
+     * loop, so that a multi-megabyte message does not stall the other connections served by the event loop.
+     * <ul>
+     *   <li>The invocation parameters of a request not shorter than {@code sizeThreshold} bytes are decoded
+     *       in the blocking task executor for a synchronous method ({@code *.Iface}), or in the specified
+     *       {@code executor} for an asynchronous method ({@code *.AsyncIface}). Such a request is never
+     *       invoked in the event loop even if {@link #invokeInEventLoop(Duration, String...)} is used.</li>
+     *   <li>The reply of a method whose recent replies are predicted to be not shorter than
+     *       {@code sizeThreshold} bytes (see {@link #replySizePredictors()}) is encoded in the thread which
+     *       completed the invocation, or in the specified {@code executor} if it was the event loop.</li>
+     * </ul>
+     * A batch of calls (see {@link #batched()}) is always decoded and encoded in the event loop.
+     *
+     * <p>A reply encoded outside the event loop does not change what the decorators of the codec see, e.g.
+     * {@link LoggingService} still logs the result of the invocation. However, the invocation parameters of
+     * a request decoded outside the event loop are not available when the request is decoded, so
+     * {@link LoggingService} logs only the method name of such a request. A decorator of the codec must use
+     * {@link DecodeResult#decodedParams()} rather than {@link ServiceInvocationContext#params()}, which
+     * decodes the parameters in the event loop.
+     *
+     * @param sizeThreshold the minimum length of a message to decode or encode outside the event loop
+     * @param executor the {@link Executor} which runs CPU-bound tasks such as decoding and encoding
+     */
+    public ThriftService offloadLargeMessages(int sizeThreshold, Executor executor) {
+        requireNonNull(executor, "executor");
+        if (sizeThreshold <= 0) {
+            throw new IllegalArgumentException("sizeThreshold: " + sizeThreshold + " (expected: > 0)");
+        }
+
+        final ThriftServiceCodec codec = (ThriftServiceCodec) codec();
+        final ThriftServiceInvocationHandler handler = (ThriftServiceInvocationHandler) handler();
+        return new ThriftService(codec.withOffloadThreshold(sizeThreshold),
+                                 handler.withOffloadExecutor(sizeThreshold, executor));
+    }
+
     private ThriftService(ThriftServiceCodec codec,
                           ThriftServiceInvocationHandler handler) {
         super(codec, handler);
@@ -19,6 +19,7 @@ package com.linecorp.armeria.server.thrift;
 import static java.util.Objects.requireNonNull;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -48,11 +49,14 @@ import com.linecorp.armeria.common.Scheme;
 import com.linecorp.armeria.common.SerializationFormat;
 import com.linecorp.armeria.common.ServiceInvocationContext;
 import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.thrift.TByteBufTransport;
+import com.linecorp.armeria.common.thrift.ThriftBufferSizePredictor;
 import com.linecorp.armeria.common.thrift.ThriftProtocolFactories;
 import com.linecorp.armeria.common.thrift.ThriftUtil;
 import com.linecorp.armeria.common.util.Exceptions;
 import com.linecorp.armeria.server.ServiceCodec;
 import com.linecorp.armeria.server.ServiceConfig;
+import com.linecorp.armeria.server.thrift.ThriftBatchInvocationContext.Call;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -63,6 +67,7 @@ import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 
 final class ThriftServiceCodec implements ServiceCodec {
@@ -78,6 +83,12 @@ final class ThriftServiceCodec implements ServiceCodec {
                     "Thrift protocol specified in Accept header must match the one specified " +
                     "in Content-Type header"));
 
+    private static final Exception MALFORMED_BATCH =
+            Exceptions.clearTrace(new IllegalArgumentException("malformed Thrift batch"));
+
+    private static final Exception CALL_NOT_INVOKED =
+            Exceptions.clearTrace(new IllegalStateException("Thrift call in a batch not invoked"));
+
     private static final Logger logger = LoggerFactory.getLogger(ThriftServiceCodec.class);
 
     private final SerializationFormat defaultSerializationFormat;
@@ -88,7 +99,25 @@ final class ThriftServiceCodec implements ServiceCodec {
     /**
      * A map whose key is a method name and whose value is {@link AsyncProcessFunction} or {@link ProcessFunction}.
      */
-    private final Map<String, ThriftFunction> functions = new HashMap<>();
+    private final Map<String, ThriftFunction> functions;
+
+    /**
+     * Whether a request carries a batch of length-prefixed Thrift calls rather than a single call.
+     */
+    private final boolean batch;
+
+    /**
+     * The minimum length of a request whose invocation parameters are decoded by
+     * {@link ThriftServiceInvocationHandler} rather than in the event loop.
+     */
+    private final int offloadThreshold;
+
+    /**
+     * Whether the binary fields of a request are decoded as the views of the request content rather than
+     * copies. The request content is retained by the invocation context and released only after the
+     * invocation completes and the handler returns.
+     */
+    private final boolean sliceBinary;
 
     private static final Map<SerializationFormat, ThreadLocalTProtocol> FORMAT_TO_THREAD_LOCAL_IN_PROTOCOL =
             createFormatToThreadLocalTProtocolMap();
@@ -97,13 +126,61 @@ final class ThriftServiceCodec implements ServiceCodec {
 
     ThriftServiceCodec(Object service, SerializationFormat defaultSerializationFormat,
                        Set<SerializationFormat> allowedSerializationFormats) {
-        requireNonNull(allowedSerializationFormats, "allowedSerializationFormats");
-        this.service = requireNonNull(service, "service");
-        this.defaultSerializationFormat =
-                requireNonNull(defaultSerializationFormat, "defaultSerializationFormat");
-        this.allowedSerializationFormats = Collections.unmodifiableSet(allowedSerializationFormats);
+        this(requireNonNull(service, "service"),
+             requireNonNull(defaultSerializationFormat, "defaultSerializationFormat"),
+             Collections.unmodifiableSet(requireNonNull(allowedSerializationFormats,
+                                                        "allowedSerializationFormats")),
+             findFunctions(service), false, Integer.MAX_VALUE, false);
+    }
+
+    private ThriftServiceCodec(Object service, SerializationFormat defaultSerializationFormat,
+                               Set<SerializationFormat> allowedSerializationFormats,
+                               Map<String, ThriftFunction> functions, boolean batch, int offloadThreshold,
+                               boolean sliceBinary) {
+        this.service = service;
+        this.defaultSerializationFormat = defaultSerializationFormat;
+        this.allowedSerializationFormats = allowedSerializationFormats;
+        this.functions = functions;
+        this.batch = batch;
+        this.offloadThreshold = offloadThreshold;
+        this.sliceBinary = sliceBinary;
+    }
+
+    /**
+     * Returns a new codec which shares everything with this codec except that it decodes a request as
+     * a batch of Thrift calls if {@code batch} is {@code true}.
+     */
+    ThriftServiceCodec withBatch(boolean batch) {
+        return new ThriftServiceCodec(service, defaultSerializationFormat, allowedSerializationFormats,
+                                      functions, batch, offloadThreshold, sliceBinary);
+    }
+
+    /**
+     * Returns a new codec which shares everything with this codec except that it leaves the invocation
+     * parameters of a request not shorter than {@code offloadThreshold} undecoded, so that
+     * {@link ThriftServiceInvocationHandler} decodes them outside the event loop. A batch of calls is always
+     * decoded in the event loop.
+     */
+    ThriftServiceCodec withOffloadThreshold(int offloadThreshold) {
+        return new ThriftServiceCodec(service, defaultSerializationFormat, allowedSerializationFormats,
+                                      functions, batch, offloadThreshold, sliceBinary);
+    }
+
+    /**
+     * Returns a new codec which shares everything with this codec except that it decodes the binary fields
+     * of a request as the views of the request content if {@code sliceBinary} is {@code true}.
+     */
+    ThriftServiceCodec withSliceBinary(boolean sliceBinary) {
+        return new ThriftServiceCodec(service, defaultSerializationFormat, allowedSerializationFormats,
+                                      functions, batch, offloadThreshold, sliceBinary);
+    }
 
-        // Build the map of method names and their corresponding process functions.
+    /**
+     * Builds the map of the method names of the specified service implementation and their corresponding
+     * process functions.
+     */
+    private static Map<String, ThriftFunction> findFunctions(Object service) {
+        final Map<String, ThriftFunction> functions = new HashMap<>();
         final Set<String> methodNames = new HashSet<>();
         final Class<?> serviceClass = service.getClass();
         final ClassLoader serviceClassLoader = serviceClass.getClassLoader();
@@ -115,14 +192,14 @@ final class ThriftServiceCodec implements ServiceCodec {
             asyncProcessMap = getThriftAsyncProcessMap(service, iface, serviceClassLoader);
             if (asyncProcessMap != null) {
                 asyncProcessMap.forEach(
-                        (name, func) -> registerFunction(methodNames, serviceClass, name, func));
+                        (name, func) -> registerFunction(functions, methodNames, serviceClass, name, func));
             }
 
             final Map<String, ProcessFunction<?, ?>> processMap;
             processMap = getThriftProcessMap(service, iface, serviceClassLoader);
             if (processMap != null) {
                 processMap.forEach(
-                        (name, func) -> registerFunction(methodNames, serviceClass, name, func));
+                        (name, func) -> registerFunction(functions, methodNames, serviceClass, name, func));
             }
         }
 
@@ -130,10 +207,13 @@ final class ThriftServiceCodec implements ServiceCodec {
             throw new IllegalArgumentException('\'' + serviceClass.getName() +
                                                "' is not a Thrift service implementation.");
         }
+
+        return functions;
     }
 
     @SuppressWarnings("rawtypes")
-    private void registerFunction(Set<String> methodNames, Class<?> serviceClass, String name, Object func) {
+    private static void registerFunction(Map<String, ThriftFunction> functions, Set<String> methodNames,
+                                         Class<?> serviceClass, String name, Object func) {
         checkDuplicateMethodName(methodNames, serviceClass, name);
         methodNames.add(name);
         try {
@@ -232,6 +312,71 @@ final class ThriftServiceCodec implements ServiceCodec {
         return defaultSerializationFormat;
     }
 
+    boolean isBatch() {
+        return batch;
+    }
+
+    boolean isSliceBinary() {
+        return sliceBinary;
+    }
+
+    /**
+     * Returns the {@link ThriftFunction} of the specified method, or {@code null} if there's no such method.
+     */
+    ThriftFunction function(String methodName) {
+        return functions.get(methodName);
+    }
+
+    Map<String, ThriftBufferSizePredictor> replySizePredictors() {
+        return Collections.unmodifiableMap(functions.entrySet().stream().collect(
+                Collectors.toMap(Map.Entry::getKey, e -> e.getValue().replySizePredictor())));
+    }
+
+    /**
+     * Returns the {@link SerializationFormat} of the specified request, or {@code null} if the request is
+     * invalid and thus will be rejected by {@link #decodeRequest}.
+     */
+    SerializationFormat serializationFormat(Object originalRequest) {
+        try {
+            return validateRequestAndDetermineSerializationFormat(originalRequest);
+        } catch (InvalidHttpRequestException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the header of the Thrift message from the specified {@link ByteBuf}, leaving its reader index
+     * at the beginning of the message body.
+     */
+    static TMessage readMessageBegin(SerializationFormat serializationFormat, ByteBuf in) throws TException {
+        final TProtocol inProto = FORMAT_TO_THREAD_LOCAL_IN_PROTOCOL.get(serializationFormat).get();
+        inProto.reset();
+        final TByteBufTransport inTransport = (TByteBufTransport) inProto.getTransport();
+        inTransport.reset(in);
+        try {
+            return inProto.readMessageBegin();
+        } finally {
+            inTransport.clear();
+        }
+    }
+
+    /**
+     * Writes the header of a Thrift message into the specified {@link ByteBuf}.
+     */
+    static void writeMessageBegin(SerializationFormat serializationFormat, TMessage header, ByteBuf out) {
+        final TProtocol outProto = FORMAT_TO_THREAD_LOCAL_OUT_PROTOCOL.get(serializationFormat).get();
+        outProto.reset();
+        final TByteBufTransport outTransport = (TByteBufTransport) outProto.getTransport();
+        outTransport.reset(out);
+        try {
+            outProto.writeMessageBegin(header);
+        } catch (TException e) {
+            throw new Error(e); // Should never reach here.
+        } finally {
+            outTransport.clear();
+        }
+    }
+
     @Override
     public DecodeResult decodeRequest(
             ServiceConfig cfg, Channel ch, SessionProtocol sessionProtocol, String hostname,
@@ -245,10 +390,107 @@ final class ThriftServiceCodec implements ServiceCodec {
                     new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, e.httpResponseStatus), e.getCause());
         }
 
-        final TProtocol inProto = FORMAT_TO_THREAD_LOCAL_IN_PROTOCOL.get(serializationFormat).get();
+        final Scheme scheme = Scheme.of(serializationFormat, sessionProtocol);
+        if (batch) {
+            final DecodeResult result = decodeBatch(cfg, ch, scheme, hostname, path, mappedPath, in,
+                                                    originalRequest);
+            if (result instanceof ThriftBatchInvocationContext) {
+                for (Call c : ((ThriftBatchInvocationContext) result).calls) {
+                    final ThriftServiceInvocationContext callCtx = c.ctx;
+                    if (callCtx != null && callCtx.needsCompletion()) {
+                        promise.addListener(future -> callCtx.invocationComplete());
+                    }
+                }
+            }
+            return result;
+        }
+
+        try {
+            final ThriftServiceInvocationContext ctx = decodeCall(
+                    cfg, ch, scheme, hostname, path, mappedPath, in, originalRequest,
+                    in.readableBytes() >= offloadThreshold);
+            if (ctx.needsCompletion()) {
+                // Release the message if the invocation completes without decoding it, e.g. timed out,
+                // and the content of the binary fields once the handler does not read them anymore.
+                promise.addListener(future -> ctx.invocationComplete());
+            }
+            return ctx;
+        } catch (CallDecodeException e) {
+            return new ThriftDecodeFailureResult(
+                    serializationFormat,
+                    encodeException(ch.alloc(), serializationFormat, e.method, e.seqId, e.cause),
+                    e.cause, e.seqId, e.method, null);
+        }
+    }
+
+    private DecodeResult decodeBatch(
+            ServiceConfig cfg, Channel ch, Scheme scheme, String hostname,
+            String path, String mappedPath, ByteBuf in, Object originalRequest) throws Exception {
+
+        final List<Call> calls = new ArrayList<>();
+        boolean success = false;
+        try {
+            while (in.isReadable()) {
+                // Every call is prefixed with its length, as done by TFramedTransport.
+                if (in.readableBytes() < 4) {
+                    return newMalformedBatchResult();
+                }
+
+                final int length = in.readInt();
+                if (length < 0 || length > in.readableBytes()) {
+                    return newMalformedBatchResult();
+                }
+
+                final ByteBuf frame = in.readSlice(length);
+                try {
+                    calls.add(new Call(decodeCall(cfg, ch, scheme, hostname, path, mappedPath,
+                                                  frame, originalRequest, false)));
+                } catch (CallDecodeException e) {
+                    calls.add(new Call(e.seqId, e.method, e.cause));
+                }
+            }
+
+            final ThriftBatchInvocationContext ctx = new ThriftBatchInvocationContext(
+                    ch, scheme, hostname, path, mappedPath, cfg.loggerName(), originalRequest, calls);
+            success = true;
+            return ctx;
+        } catch (TException e) {
+            // The message header of a call cannot be decoded, so the call cannot be replied without its
+            // sequence ID.
+            return newMalformedBatchResult();
+        } finally {
+            if (!success) {
+                // Release the messages retained by the calls decoded so far.
+                for (Call c : calls) {
+                    if (c.ctx != null) {
+                        c.ctx.invocationComplete();
+                    }
+                }
+            }
+        }
+    }
+
+    private static DecodeResult newMalformedBatchResult() {
+        return new DefaultDecodeResult(
+                new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.BAD_REQUEST),
+                MALFORMED_BATCH);
+    }
+
+    private ThriftServiceInvocationContext decodeCall(
+            ServiceConfig cfg, Channel ch, Scheme scheme, String hostname,
+            String path, String mappedPath, ByteBuf in, Object originalRequest,
+            boolean deferArgs) throws Exception {
+
+        // The header is read again when the deferred invocation parameters are decoded. The message is
+        // retained because the request may be released before then, e.g. when the invocation timed out.
+        // For the same reason, the content is retained when the binary fields are its views.
+        final ByteBuf message = deferArgs || sliceBinary ? in.slice().retain() : null;
+        boolean success = false;
+
+        final TProtocol inProto = FORMAT_TO_THREAD_LOCAL_IN_PROTOCOL.get(scheme.serializationFormat()).get();
         inProto.reset();
         final TByteBufTransport inTransport = (TByteBufTransport) inProto.getTransport();
-        inTransport.reset(in);
+        inTransport.reset(in, sliceBinary);
 
         try {
             final TMessage header = inProto.readMessageBegin();
@@ -258,117 +500,242 @@ final class ThriftServiceCodec implements ServiceCodec {
 
             // Basic sanity check. We usually should never fail here.
             if (typeValue != TMessageType.CALL && typeValue != TMessageType.ONEWAY) {
-                final TApplicationException cause = new TApplicationException(
+                throw new CallDecodeException(seqId, methodName, new TApplicationException(
                         TApplicationException.INVALID_MESSAGE_TYPE,
-                        "unexpected TMessageType: " + typeString(typeValue));
-
-                return new ThriftDecodeFailureResult(
-                        serializationFormat,
-                        encodeException(ch.alloc(), serializationFormat, methodName, seqId, cause),
-                        cause, seqId, methodName, null);
+                        "unexpected TMessageType: " + typeString(typeValue)));
             }
 
-
             // Ensure that such a method exists.
             final ThriftFunction f = functions.get(methodName);
             if (f == null) {
-                final TApplicationException cause = new TApplicationException(
-                        TApplicationException.UNKNOWN_METHOD, "unknown method: " + methodName);
+                throw new CallDecodeException(seqId, methodName, new TApplicationException(
+                        TApplicationException.UNKNOWN_METHOD, "unknown method: " + methodName));
+            }
 
-                return new ThriftDecodeFailureResult(
-                        serializationFormat,
-                        encodeException(ch.alloc(), serializationFormat, methodName, seqId, cause),
-                        cause, seqId, methodName, null);
+            if (deferArgs) {
+                final ThriftServiceInvocationContext ctx = new ThriftServiceInvocationContext(
+                        ch, scheme, hostname, path, mappedPath, cfg.loggerName(), originalRequest,
+                        f, seqId, message, sliceBinary);
+                success = true;
+                return ctx;
             }
 
             // Decode the invocation parameters.
             final TBase<TBase<?, ?>, TFieldIdEnum> args;
             try {
-                if (f.isAsync()) {
-                    AsyncProcessFunction<Object, TBase<TBase<?, ?>, TFieldIdEnum>, Object> asyncFunc = f.asyncFunc();
-
-                    args = asyncFunc.getEmptyArgsInstance();
-                    args.read(inProto);
-                    inProto.readMessageEnd();
-                } else {
-                    ProcessFunction<Object, TBase<TBase<?, ?>, TFieldIdEnum>> syncFunc = f.syncFunc();
-
-                    args = syncFunc.getEmptyArgsInstance();
-                    args.read(inProto);
-                    inProto.readMessageEnd();
-                }
+                args = readArgs(f, inProto);
             } catch (Exception e) {
                 // Failed to decode the invocation parameters.
-                final TApplicationException cause = new TApplicationException(
-                        TApplicationException.PROTOCOL_ERROR, "argument decode failure: " + e);
+                throw new CallDecodeException(seqId, methodName, newArgsDecodeException(e));
+            }
 
-                return new ThriftDecodeFailureResult(
-                        serializationFormat,
-                        encodeException(ch.alloc(), serializationFormat, methodName, seqId, cause),
-                        cause, seqId, methodName, null);
+            final ThriftServiceInvocationContext ctx = new ThriftServiceInvocationContext(
+                    ch, scheme, hostname, path, mappedPath, cfg.loggerName(), originalRequest,
+                    f, seqId, args, message);
+            success = true;
+            return ctx;
+        } finally {
+            inTransport.clear();
+            if (message != null && !success) {
+                message.release();
             }
+        }
+    }
+
+    /**
+     * Decodes the invocation parameters of the specified {@code message} which has been left undecoded by
+     * {@link #decodeRequest(ServiceConfig, Channel, SessionProtocol, String, String, String, ByteBuf, Object,
+     * Promise)}. The reader index of {@code message} is not modified.
+     */
+    static TBase<TBase<?, ?>, TFieldIdEnum> decodeArgs(
+            ThriftFunction func, SerializationFormat serializationFormat,
+            ByteBuf message, boolean sliceBinary) throws TApplicationException {
 
-            return new ThriftServiceInvocationContext(
-                    ch, Scheme.of(serializationFormat, sessionProtocol),
-                    hostname, path, mappedPath, cfg.loggerName(), originalRequest, f, seqId, args);
+        final TProtocol inProto = FORMAT_TO_THREAD_LOCAL_IN_PROTOCOL.get(serializationFormat).get();
+        inProto.reset();
+        final TByteBufTransport inTransport = (TByteBufTransport) inProto.getTransport();
+        inTransport.reset(message.duplicate(), sliceBinary);
+        try {
+            inProto.readMessageBegin();
+            return readArgs(func, inProto);
+        } catch (Exception e) {
+            throw newArgsDecodeException(e);
         } finally {
             inTransport.clear();
         }
     }
 
+    private static TBase<TBase<?, ?>, TFieldIdEnum> readArgs(
+            ThriftFunction func, TProtocol inProto) throws TException {
+
+        final TBase<TBase<?, ?>, TFieldIdEnum> args;
+        if (func.isAsync()) {
+            AsyncProcessFunction<Object, TBase<TBase<?, ?>, TFieldIdEnum>, Object> asyncFunc = func.asyncFunc();
+            args = asyncFunc.getEmptyArgsInstance();
+        } else {
+            ProcessFunction<Object, TBase<TBase<?, ?>, TFieldIdEnum>> syncFunc = func.syncFunc();
+            args = syncFunc.getEmptyArgsInstance();
+        }
+
+        args.read(inProto);
+        inProto.readMessageEnd();
+        return args;
+    }
+
+    private static TApplicationException newArgsDecodeException(Exception cause) {
+        return new TApplicationException(TApplicationException.PROTOCOL_ERROR,
+                                         "argument decode failure: " + cause);
+    }
+
     @Override
     public boolean failureResponseFailsSession(ServiceInvocationContext ctx) {
         return false;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public ByteBuf encodeResponse(ServiceInvocationContext ctx, Object response) throws Exception {
+        if (ctx instanceof ThriftBatchInvocationContext) {
+            return encodeBatch((ThriftBatchInvocationContext) ctx, null);
+        }
+
         final ThriftServiceInvocationContext tctx = (ThriftServiceInvocationContext) ctx;
-        final ThriftFunction func = tctx.func;
-        if (func.isOneway()) {
-            return null;
+        final ByteBuf encoded = tctx.takeEncodedReply(response);
+        if (encoded != null) {
+            // Encoded already by ThriftServiceInvocationHandler outside the event loop.
+            return encoded;
         }
 
-        TBase<TBase<?, ?>, TFieldIdEnum> result;
-        if (func.isResult(response)) {
-            result = (TBase<TBase<?, ?>, TFieldIdEnum>) response;
-        } else {
-            result = func.newResult();
-            func.setSuccess(result, response);
+        return encodeReply(tctx, response);
+    }
+
+    /**
+     * Encodes the reply of the specified single call, or returns {@code null} if the call is one-way.
+     */
+    static ByteBuf encodeReply(ThriftServiceInvocationContext tctx, Object response) {
+        final TBase<TBase<?, ?>, TFieldIdEnum> result = toResult(tctx.func, response);
+        if (result == null) {
+            return null;
         }
 
-        return encodeSuccess(tctx, result);
+        final ThriftBufferSizePredictor sizePredictor = tctx.func.replySizePredictor();
+        final ByteBuf out = sizePredictor.newBuffer(tctx.alloc());
+        final int initialCapacity = out.capacity();
+        writeSuccess(tctx, result, out);
+        sizePredictor.record(initialCapacity, out.readableBytes());
+        return out;
     }
 
     @Override
     public ByteBuf encodeFailureResponse(ServiceInvocationContext ctx, Throwable cause) throws Exception {
+        if (ctx instanceof ThriftBatchInvocationContext) {
+            return encodeBatch((ThriftBatchInvocationContext) ctx, cause);
+        }
+
         final ThriftServiceInvocationContext tctx = (ThriftServiceInvocationContext) ctx;
-        final ThriftFunction func = tctx.func;
+        // The reply may have been encoded outside the event loop before the invocation timed out.
+        tctx.releaseEncodedReply();
+
+        final ByteBuf out = ctx.alloc().buffer();
+        writeFailure(tctx, cause, out);
+        return out;
+    }
+
+    /**
+     * Encodes the replies of the calls in the specified batch in the order of the calls, each of which is
+     * prefixed with its length. The calls not done yet, which happens only when the batch failed as a whole,
+     * e.g. timed out, are replied with the specified {@code cause}.
+     */
+    private static ByteBuf encodeBatch(ThriftBatchInvocationContext ctx, Throwable cause) {
+        final SerializationFormat serializationFormat = ctx.scheme().serializationFormat();
+        final ByteBuf out = ctx.alloc().buffer();
+        for (Call call : ctx.calls) {
+            final int frameStart = out.writerIndex();
+            out.writeInt(0); // Updated once the reply is written.
+
+            if (call.decodeFailure != null) {
+                writeException(serializationFormat, call.method, call.seqId, call.decodeFailure, out);
+            } else {
+                final Future<Object> future = call.promise;
+                if (future != null && future.isSuccess()) {
+                    TBase<TBase<?, ?>, TFieldIdEnum> result;
+                    Throwable failure = null;
+                    try {
+                        result = toResult(call.ctx.func, future.getNow());
+                    } catch (Throwable t) {
+                        result = null;
+                        failure = t;
+                    }
+
+                    if (failure != null) {
+                        writeFailure(call.ctx, failure, out);
+                    } else if (result != null) {
+                        writeSuccess(call.ctx, result, out);
+                    } else {
+                        // A one-way call has no reply.
+                        out.writerIndex(frameStart);
+                        continue;
+                    }
+                } else if (future != null && future.isDone()) {
+                    writeFailure(call.ctx, future.cause(), out);
+                } else {
+                    writeFailure(call.ctx, cause != null ? cause : CALL_NOT_INVOKED, out);
+                }
+            }
+
+            out.setInt(frameStart, out.writerIndex() - frameStart - 4);
+        }
+
+        return out;
+    }
+
+    /**
+     * Converts the specified response into the result struct of the specified function, or returns
+     * {@code null} if the function is one-way.
+     */
+    @SuppressWarnings("unchecked")
+    private static TBase<TBase<?, ?>, TFieldIdEnum> toResult(ThriftFunction func, Object response) {
         if (func.isOneway()) {
-            return encodeException(tctx, cause);
+            return null;
         }
 
-        try {
-            TBase<TBase<?, ?>, TFieldIdEnum> result = func.newResult();
-            if (func.setException(result, cause)) {
-                return encodeSuccess(tctx, result);
-            } else {
-                return encodeException(tctx, cause);
+        if (func.isResult(response)) {
+            return (TBase<TBase<?, ?>, TFieldIdEnum>) response;
+        }
+
+        final TBase<TBase<?, ?>, TFieldIdEnum> result = func.newResult();
+        func.setSuccess(result, response);
+        return result;
+    }
+
+    private static void writeFailure(ThriftServiceInvocationContext ctx, Throwable cause, ByteBuf out) {
+        final ThriftFunction func = ctx.func;
+        TBase<TBase<?, ?>, TFieldIdEnum> result = null;
+        Throwable exception = cause;
+        if (!func.isOneway()) {
+            try {
+                final TBase<TBase<?, ?>, TFieldIdEnum> r = func.newResult();
+                if (func.setException(r, cause)) {
+                    result = r;
+                }
+            } catch (Throwable t) {
+                exception = t;
             }
-        } catch (Throwable t) {
-            return encodeException(tctx, t);
+        }
+
+        if (result != null) {
+            writeSuccess(ctx, result, out);
+        } else {
+            writeException(ctx, exception, out);
         }
     }
 
-    private static ByteBuf encodeSuccess(ThriftServiceInvocationContext ctx,
-                                         TBase<TBase<?, ?>, TFieldIdEnum> result) {
+    private static void writeSuccess(ThriftServiceInvocationContext ctx,
+                                     TBase<TBase<?, ?>, TFieldIdEnum> result, ByteBuf out) {
 
         final TProtocol outProto =
                 FORMAT_TO_THREAD_LOCAL_OUT_PROTOCOL.get(ctx.scheme().serializationFormat()).get();
         outProto.reset();
         final TByteBufTransport outTransport = (TByteBufTransport) outProto.getTransport();
-        final ByteBuf out = ctx.alloc().buffer();
         outTransport.reset(out);
         try {
             outProto.writeMessageBegin(new TMessage(ctx.method(), TMessageType.REPLY, ctx.seqId));
@@ -379,32 +746,36 @@ final class ThriftServiceCodec implements ServiceCodec {
         } finally {
             outTransport.clear();
         }
-
-        return out;
     }
 
-    private static ByteBuf encodeException(ThriftServiceInvocationContext ctx, Throwable t) {
+    private static void writeException(ThriftServiceInvocationContext ctx, Throwable t, ByteBuf out) {
+        writeException(ctx.scheme().serializationFormat(), ctx.method(), ctx.seqId,
+                       toApplicationException(t), out);
+    }
 
+    static TApplicationException toApplicationException(Throwable t) {
         if (t instanceof TApplicationException) {
-            return encodeException(ctx.alloc(), ctx.scheme().serializationFormat(),
-                                   ctx.method(), ctx.seqId, (TApplicationException) t);
-        } else {
-            return encodeException(ctx.alloc(), ctx.scheme().serializationFormat(),
-                                   ctx.method(), ctx.seqId,
-                                   new TApplicationException(
-                                           TApplicationException.INTERNAL_ERROR, t.toString()));
+            return (TApplicationException) t;
         }
+        return new TApplicationException(TApplicationException.INTERNAL_ERROR, t.toString());
     }
 
     private static ByteBuf encodeException(
             ByteBufAllocator alloc, SerializationFormat serializationFormat,
             String methodName, int seqId, TApplicationException cause) {
 
+        final ByteBuf out = alloc.buffer();
+        writeException(serializationFormat, methodName, seqId, cause, out);
+        return out;
+    }
+
+    static void writeException(
+            SerializationFormat serializationFormat, String methodName, int seqId,
+            TApplicationException cause, ByteBuf out) {
+
         final TProtocol outProto = FORMAT_TO_THREAD_LOCAL_OUT_PROTOCOL.get(serializationFormat).get();
         outProto.reset();
         final TByteBufTransport outTransport = (TByteBufTransport) outProto.getTransport();
-        final ByteBuf out = alloc.buffer();
-
         outTransport.reset(out);
         try {
             outProto.writeMessageBegin(new TMessage(methodName, TMessageType.EXCEPTION, seqId));
@@ -415,8 +786,6 @@ final class ThriftServiceCodec implements ServiceCodec {
         } finally {
             outTransport.clear();
         }
-
-        return out;
     }
 
     private SerializationFormat validateRequestAndDetermineSerializationFormat(Object originalRequest)
@@ -483,6 +852,25 @@ final class ThriftServiceCodec implements ServiceCodec {
         }
     }
 
+    /**
+     * Raised when a Thrift call has a valid header but cannot be invoked, so that it is replied with
+     * a {@link TApplicationException}.
+     */
+    private static final class CallDecodeException extends Exception {
+        private static final long serialVersionUID = 2935283829428624215L;
+
+        private final int seqId;
+        private final String method;
+        private final TApplicationException cause;
+
+        private CallDecodeException(int seqId, String method, TApplicationException cause) {
+            super(cause.getMessage(), cause, false, false);
+            this.seqId = seqId;
+            this.method = method;
+            this.cause = cause;
+        }
+    }
+
     private static final class ThriftDecodeFailureResult extends DefaultDecodeResult {
 
         private final SerializationFormat serializationFormat;
@@ -16,9 +16,11 @@
 
 package com.linecorp.armeria.server.thrift;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import org.apache.thrift.TApplicationException;
 import org.apache.thrift.TBase;
 import org.apache.thrift.TFieldIdEnum;
 
@@ -31,24 +33,238 @@ import com.linecorp.armeria.server.ServiceCodec.DecodeResultType;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.ReferenceCountUtil;
 
 final class ThriftServiceInvocationContext extends ServiceInvocationContext implements DecodeResult {
 
     final ThriftFunction func;
     final int seqId;
-    final TBase<TBase<?, ?>, TFieldIdEnum> args;
+    private TBase<TBase<?, ?>, TFieldIdEnum> args;
+
+    /**
+     * The whole Thrift message whose invocation parameters have not been decoded yet, or {@code null} if
+     * decoded or discarded already. It is released once it is decoded or discarded.
+     */
+    private ByteBuf message;
+
+    /**
+     * The retained request content whose views are the binary fields of the invocation parameters, or
+     * {@code null} if the binary fields are copies or the content has been released. See
+     * {@link #acquireContent()}.
+     */
+    private ByteBuf content;
+
+    /**
+     * The number of the parties which may still read {@link #content}, one of which is the invocation
+     * itself until {@link #invocationComplete()} is invoked.
+     */
+    private int contentUsers;
+    private boolean contentReleased;
+
+    /**
+     * The reply encoded outside the event loop and the result it was encoded from, or {@code null} if not
+     * encoded so or taken already. See {@link #setEncodedReply(Object, ByteBuf)}.
+     */
+    private Object encodedResult;
+    private ByteBuf encodedReply;
+    private ChannelFutureListener releaseOnClose;
+
+    private final Channel ch;
+
+    /**
+     * The cause of the failure to decode the invocation parameters, or {@code null} if not failed.
+     */
+    private TApplicationException argsCause;
+
     private String seqIdStr;
     private List<Object> argList;
 
     ThriftServiceInvocationContext(
             Channel ch, Scheme protocol, String host, String path, String mappedPath,
             String loggerName, Object originalRequest,
-            ThriftFunction func, int seqId, TBase<TBase<?, ?>, TFieldIdEnum> args) {
+            ThriftFunction func, int seqId, TBase<TBase<?, ?>, TFieldIdEnum> args, ByteBuf content) {
         super(ch, protocol, host, path, mappedPath, loggerName, originalRequest);
 
+        this.ch = ch;
         this.func = func;
         this.seqId = seqId;
         this.args = args;
+        setContent(content);
+    }
+
+    /**
+     * Creates a new context whose invocation parameters are decoded from the specified {@code message} when
+     * {@link #args()} is invoked for the first time. The context takes over the reference to the message.
+     * If {@code sliceBinary} is {@code true}, the message is kept as the content of the binary fields after
+     * it is decoded.
+     */
+    ThriftServiceInvocationContext(
+            Channel ch, Scheme protocol, String host, String path, String mappedPath,
+            String loggerName, Object originalRequest,
+            ThriftFunction func, int seqId, ByteBuf message, boolean sliceBinary) {
+        super(ch, protocol, host, path, mappedPath, loggerName, originalRequest);
+
+        this.ch = ch;
+        this.func = func;
+        this.seqId = seqId;
+        this.message = message;
+        if (sliceBinary) {
+            setContent(message);
+        }
+    }
+
+    private void setContent(ByteBuf content) {
+        if (content != null) {
+            this.content = content;
+            contentUsers = 1;
+        }
+    }
+
+    /**
+     * Returns whether the invocation parameters have been decoded.
+     */
+    synchronized boolean isArgsDecoded() {
+        return message == null;
+    }
+
+    /**
+     * Returns the invocation parameters, decoding them first if not decoded yet.
+     *
+     * @throws TApplicationException if failed to decode the invocation parameters
+     */
+    synchronized TBase<TBase<?, ?>, TFieldIdEnum> args() throws TApplicationException {
+        final ByteBuf message = this.message;
+        if (message != null) {
+            this.message = null;
+            try {
+                args = ThriftServiceCodec.decodeArgs(func, scheme().serializationFormat(), message,
+                                                     content != null);
+            } catch (TApplicationException e) {
+                argsCause = e;
+            } finally {
+                if (content == null) {
+                    // The binary fields are copies.
+                    message.release();
+                }
+            }
+        }
+
+        if (argsCause != null) {
+            throw argsCause;
+        }
+        return args;
+    }
+
+    /**
+     * Returns whether this context has to be notified via {@link #invocationComplete()}, i.e. it holds the
+     * undecoded message or the content of the binary fields.
+     */
+    synchronized boolean needsCompletion() {
+        return message != null || content != null;
+    }
+
+    /**
+     * Invoked when the invocation completes, e.g. timed out. The message whose invocation parameters have
+     * not been decoded yet is released so that they are never decoded, and the content of the binary fields
+     * is released unless a handler still reads it.
+     */
+    synchronized void invocationComplete() {
+        final ByteBuf message = this.message;
+        if (message != null) {
+            this.message = null;
+            argsCause = new TApplicationException(TApplicationException.INTERNAL_ERROR,
+                                                  "invocation completed before decoding the arguments");
+            if (content == null) {
+                message.release();
+            }
+        }
+
+        if (content != null) {
+            releaseContent();
+        }
+    }
+
+    /**
+     * Prevents the content of the binary fields from being released until {@link #releaseContent()} is
+     * invoked, so that a handler can read the invocation parameters even after the invocation completes,
+     * e.g. timed out while a synchronous method is still running.
+     *
+     * @return {@code false} if the content has been released already, in which case the invocation
+     *         parameters must not be read
+     */
+    synchronized boolean acquireContent() {
+        if (content != null) {
+            contentUsers++;
+            return true;
+        }
+
+        // The binary fields are copies unless the content has been released already.
+        return !contentReleased;
+    }
+
+    /**
+     * Releases the content acquired by {@link #acquireContent()}.
+     */
+    synchronized void releaseContent() {
+        final ByteBuf content = this.content;
+        if (content == null) {
+            return;
+        }
+
+        if (--contentUsers == 0) {
+            this.content = null;
+            contentReleased = true;
+            content.release();
+        }
+    }
+
+    /**
+     * Keeps the reply encoded from the specified {@code result} outside the event loop until the codec takes
+     * it via {@link #takeEncodedReply(Object)}, so that the promise of the invocation is resolved with the
+     * result rather than its encoded form. It is released when the connection is closed before then, because
+     * the response is not encoded at all then.
+     */
+    synchronized void setEncodedReply(Object result, ByteBuf reply) {
+        encodedResult = result;
+        encodedReply = reply;
+        releaseOnClose = future -> releaseEncodedReply();
+        ch.closeFuture().addListener(releaseOnClose);
+    }
+
+    /**
+     * Returns the reply encoded from the specified {@code result} outside the event loop, or {@code null} if
+     * it has not been set or has been taken already. The reply encoded from another result, e.g. when
+     * a decorator replaced the result, is released.
+     */
+    synchronized ByteBuf takeEncodedReply(Object result) {
+        final Object encodedResult = this.encodedResult;
+        final ByteBuf reply = removeEncodedReply();
+        if (reply != null && encodedResult != result) {
+            reply.release();
+            return null;
+        }
+        return reply;
+    }
+
+    /**
+     * Releases the reply encoded outside the event loop, if any, e.g. when the invocation timed out.
+     */
+    synchronized void releaseEncodedReply() {
+        ReferenceCountUtil.safeRelease(removeEncodedReply());
+    }
+
+    private ByteBuf removeEncodedReply() {
+        final ByteBuf reply = encodedReply;
+        if (reply == null) {
+            return null;
+        }
+
+        encodedResult = null;
+        encodedReply = null;
+        ch.closeFuture().removeListener(releaseOnClose);
+        releaseOnClose = null;
+        return reply;
     }
 
     @Override
@@ -79,7 +295,13 @@ final class ThriftServiceInvocationContext extends ServiceInvocationContext impl
     public List<Object> params() {
         List<Object> argList = this.argList;
         if (argList == null) {
-            this.argList = argList = ThriftUtil.toJavaParams(args);
+            try {
+                argList = ThriftUtil.toJavaParams(args());
+            } catch (TApplicationException e) {
+                // The invocation fails with the same cause.
+                argList = Collections.emptyList();
+            }
+            this.argList = argList;
         }
         return argList;
     }
@@ -123,6 +345,7 @@ final class ThriftServiceInvocationContext extends ServiceInvocationContext impl
 
     @Override
     public Optional<List<Object>> decodedParams() {
-        return Optional.of(params());
+        // Do not decode the invocation parameters in the event loop if they were left undecoded.
+        return isArgsDecoded() ? Optional.of(params()) : Optional.empty();
     }
 }
@@ -18,77 +18,254 @@ package com.linecorp.armeria.server.thrift;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.apache.thrift.AsyncProcessFunction;
 import org.apache.thrift.ProcessFunction;
 import org.apache.thrift.TBase;
 import org.apache.thrift.TFieldIdEnum;
 import org.apache.thrift.async.AsyncMethodCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.util.Ticker;
 import com.linecorp.armeria.server.ServiceInvocationHandler;
+import com.linecorp.armeria.server.thrift.ThriftBatchInvocationContext.Call;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.util.concurrent.Promise;
 
 final class ThriftServiceInvocationHandler implements ServiceInvocationHandler {
 
+    private static final Logger logger = LoggerFactory.getLogger(ThriftServiceInvocationHandler.class);
+
     private final Object service;
 
+    /**
+     * A map whose key is the name of a synchronous method invoked in the event loop.
+     */
+    private final Map<String, EventLoopMethod> eventLoopMethods;
+
+    /**
+     * The {@link Executor} which decodes and encodes the large messages outside the event loop, or
+     * {@code null} if such messages are decoded and encoded in the event loop.
+     */
+    private final Executor offloadExecutor;
+
+    /**
+     * The minimum predicted length of a reply which is encoded by {@link #offloadExecutor}.
+     */
+    private final int offloadThreshold;
+
     ThriftServiceInvocationHandler(Object service) {
-        this.service = requireNonNull(service, "service");
+        this(requireNonNull(service, "service"), Collections.emptyMap(), null, Integer.MAX_VALUE);
+    }
+
+    private ThriftServiceInvocationHandler(Object service, Map<String, EventLoopMethod> eventLoopMethods,
+                                           Executor offloadExecutor, int offloadThreshold) {
+        this.service = service;
+        this.eventLoopMethods = eventLoopMethods;
+        this.offloadExecutor = offloadExecutor;
+        this.offloadThreshold = offloadThreshold;
+    }
+
+    /**
+     * Returns a new handler which shares everything with this handler except that it also invokes the
+     * specified synchronous methods in the event loop unless their invocations keep taking longer than
+     * {@code maxExecutionTimeNanos}, as measured by the specified {@link Ticker}.
+     */
+    ThriftServiceInvocationHandler withEventLoopMethods(Iterable<String> methodNames,
+                                                        long maxExecutionTimeNanos, Ticker ticker) {
+        final Map<String, EventLoopMethod> eventLoopMethods = new HashMap<>(this.eventLoopMethods);
+        for (String m : methodNames) {
+            eventLoopMethods.put(m, new EventLoopMethod(maxExecutionTimeNanos, ticker));
+        }
+        return new ThriftServiceInvocationHandler(service, Collections.unmodifiableMap(eventLoopMethods),
+                                                  offloadExecutor, offloadThreshold);
+    }
+
+    /**
+     * Returns a new handler which shares everything with this handler except that it decodes the undecoded
+     * invocation parameters and encodes the replies whose predicted length is not less than
+     * {@code offloadThreshold} using the specified {@link Executor}.
+     */
+    ThriftServiceInvocationHandler withOffloadExecutor(int offloadThreshold, Executor offloadExecutor) {
+        return new ThriftServiceInvocationHandler(service, eventLoopMethods, offloadExecutor, offloadThreshold);
     }
 
     @Override
     public void invoke(ServiceInvocationContext ctx,
                        Executor blockingTaskExecutor, Promise<Object> promise) throws Exception {
+        if (ctx instanceof ThriftBatchInvocationContext) {
+            invokeBatch((ThriftBatchInvocationContext) ctx, blockingTaskExecutor, promise);
+            return;
+        }
+
         final ThriftServiceInvocationContext tCtx = (ThriftServiceInvocationContext) ctx;
         final ThriftFunction f = tCtx.func;
 
         if (f.isAsync()) {
-            invokeAsynchronously(tCtx, promise);
+            if (offloadExecutor != null && !tCtx.isArgsDecoded()) {
+                // Decode the invocation parameters and start the invocation outside the event loop.
+                offload(tCtx, promise, () -> {
+                    ServiceInvocationContext.setCurrent(tCtx);
+                    try {
+                        invokeAsynchronously(tCtx, promise, true);
+                    } finally {
+                        ServiceInvocationContext.removeCurrent();
+                    }
+                });
+            } else {
+                invokeAsynchronously(tCtx, promise, true);
+            }
         } else {
-            invokeSynchronously(tCtx, blockingTaskExecutor, promise);
+            invokeSynchronously(tCtx, blockingTaskExecutor, promise, true);
         }
     }
 
-    private void invokeAsynchronously(ThriftServiceInvocationContext ctx, Promise<Object> promise) {
+    /**
+     * Invokes the calls in the specified batch concurrently, and resolves the specified {@code promise} once
+     * all of them are done. The codec gets the outcome of each call from {@link Call#promise}.
+     */
+    private void invokeBatch(ThriftBatchInvocationContext ctx,
+                             Executor blockingTaskExecutor, Promise<Object> promise) {
+
+        final List<Call> calls = ctx.calls;
+        int numCalls = 0;
+        for (Call c : calls) {
+            if (c.ctx != null) {
+                numCalls++;
+            }
+        }
+
+        if (numCalls == 0) {
+            ctx.resolvePromise(promise, calls);
+            return;
+        }
+
+        final AtomicInteger remainingCalls = new AtomicInteger(numCalls);
+        for (Call c : calls) {
+            if (c.ctx != null) {
+                c.promise = ctx.eventLoop().newPromise();
+                c.promise.addListener(future -> {
+                    if (remainingCalls.decrementAndGet() == 0) {
+                        ctx.resolvePromise(promise, calls);
+                    }
+                });
+            }
+        }
+
+        for (Call c : calls) {
+            final ThriftServiceInvocationContext callCtx = c.ctx;
+            if (callCtx == null) {
+                continue;
+            }
+
+            if (callCtx.func.isAsync()) {
+                // Start the call with its own context as the current one, as getResult() does.
+                final ServiceInvocationContext oldCtx =
+                        ServiceInvocationContext.mapCurrent(Function.identity(), null);
+                callCtx.timings().markHandlerStart();
+                ServiceInvocationContext.setCurrent(callCtx);
+                try {
+                    invokeAsynchronously(callCtx, c.promise, false);
+                } finally {
+                    restoreCurrent(oldCtx);
+                }
+            } else {
+                invokeSynchronously(callCtx, blockingTaskExecutor, c.promise, false);
+            }
+        }
+    }
+
+    /**
+     * Invokes the specified asynchronous call. The reply is encoded by this handler rather than the codec if
+     * {@code encodable} is {@code true} and the reply is expected to be large.
+     */
+    private void invokeAsynchronously(ThriftServiceInvocationContext ctx, Promise<Object> promise,
+                                      boolean encodable) {
         final ThriftFunction func = ctx.func;
         final AsyncProcessFunction<Object, TBase<TBase<?, ?>, TFieldIdEnum>, Object> f = func.asyncFunc();
 
+        if (!ctx.acquireContent()) {
+            // The invocation completed already and the content of the binary fields has been released.
+            return;
+        }
+
+        // The content of the binary fields is released when the callback is invoked, which is when the
+        // service is done with the invocation parameters.
+        final AtomicBoolean done = new AtomicBoolean();
         try {
-            f.start(service, ctx.args, new AsyncMethodCallback<Object>() {
+            f.start(service, ctx.args(), new AsyncMethodCallback<Object>() {
                 @Override
                 public void onComplete(Object response) {
-                    if (func.isOneway()) {
-                        ctx.resolvePromise(promise, null);
+                    if (!done.compareAndSet(false, true)) {
                         return;
                     }
 
                     try {
+                        if (func.isOneway()) {
+                            ctx.resolvePromise(promise, null);
+                            return;
+                        }
+
                         TBase<TBase<?, ?>, TFieldIdEnum> result = func.newResult();
                         func.setSuccess(result, response);
-                        ctx.resolvePromise(promise, result);
+                        resolvePromise(ctx, promise, result, encodable);
                     } catch (Throwable t) {
                         ctx.rejectPromise(promise, t);
+                    } finally {
+                        ctx.releaseContent();
                     }
                 }
 
                 @Override
                 public void onError(Exception e) {
-                    ctx.rejectPromise(promise, e);
+                    if (done.compareAndSet(false, true)) {
+                        ctx.rejectPromise(promise, e);
+                        ctx.releaseContent();
+                    }
                 }
             });
         } catch (Throwable t) {
-            ctx.rejectPromise(promise, t);
+            if (done.compareAndSet(false, true)) {
+                ctx.rejectPromise(promise, t);
+                ctx.releaseContent();
+            }
         }
     }
 
-    private void invokeSynchronously(ThriftServiceInvocationContext ctx,
-                                     Executor blockingTaskExecutor, Promise<Object> promise) {
+    private void invokeSynchronously(ThriftServiceInvocationContext ctx, Executor blockingTaskExecutor,
+                                     Promise<Object> promise, boolean encodable) {
+
+        final EventLoopMethod eventLoopMethod = eventLoopMethods.get(ctx.method());
+        if (eventLoopMethod != null && ctx.isArgsDecoded() && ctx.eventLoop().inEventLoop() &&
+            !eventLoopMethod.isSlow()) {
+            final long startTimeNanos = eventLoopMethod.ticker.read();
+            getResult(ctx, promise, encodable);
+            final long elapsedNanos = eventLoopMethod.ticker.read() - startTimeNanos;
+
+            if (eventLoopMethod.record(elapsedNanos)) {
+                logger.warn("{}.{}() took {} ms in an event loop, exceeding the limit of {} ms {} times in a " +
+                            "row; invoking it in the blocking task executor for {} seconds.",
+                            service.getClass().getName(), ctx.method(),
+                            TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                            TimeUnit.NANOSECONDS.toMillis(eventLoopMethod.maxExecutionTimeNanos),
+                            EventLoopMethod.MAX_SLOW_INVOCATIONS,
+                            TimeUnit.NANOSECONDS.toSeconds(EventLoopMethod.SLOW_PERIOD_NANOS));
+            }
+            return;
+        }
 
-        final ThriftFunction func = ctx.func;
-        final ProcessFunction<Object, TBase<TBase<?, ?>, TFieldIdEnum>> f = func.syncFunc();
         try {
             blockingTaskExecutor.execute(() -> {
                 if (promise.isDone()) {
@@ -96,23 +273,196 @@ final class ThriftServiceInvocationHandler implements ServiceInvocationHandler {
                     return;
                 }
 
-                ServiceInvocationContext.setCurrent(ctx);
+                getResult(ctx, promise, encodable);
+            });
+        } catch (Throwable t) {
+            ctx.rejectPromise(promise, t);
+        }
+    }
+
+    private void getResult(ThriftServiceInvocationContext ctx, Promise<Object> promise, boolean encodable) {
+        final ThriftFunction func = ctx.func;
+        final ProcessFunction<Object, TBase<TBase<?, ?>, TFieldIdEnum>> f = func.syncFunc();
+
+        if (!ctx.acquireContent()) {
+            ctx.logger().warn("Invocation completed already; not invoking: {}", promise);
+            return;
+        }
+
+        // Restore the context of the enclosing invocation, e.g. a batch, when invoked in the event loop.
+        final ServiceInvocationContext oldCtx = ServiceInvocationContext.mapCurrent(Function.identity(), null);
+        ctx.timings().markHandlerStart();
+        ServiceInvocationContext.setCurrent(ctx);
+        try {
+            @SuppressWarnings("unchecked")
+            TBase<TBase<?, ?>, TFieldIdEnum> result = f.getResult(service, ctx.args());
+            if (func.isOneway()) {
+                result = null;
+            }
+
+            resolvePromise(ctx, promise, result, encodable);
+        } catch (Throwable t) {
+            ctx.rejectPromise(promise, t);
+        } finally {
+            // The service may keep reading the invocation parameters even after the invocation timed out.
+            ctx.releaseContent();
+            restoreCurrent(oldCtx);
+        }
+    }
+
+    private static void restoreCurrent(ServiceInvocationContext oldCtx) {
+        if (oldCtx != null) {
+            ServiceInvocationContext.setCurrent(oldCtx);
+        } else {
+            ServiceInvocationContext.removeCurrent();
+        }
+    }
+
+    /**
+     * Resolves the specified {@code promise} with the specified {@code result}. If the reply of the function
+     * is expected to be large, the result is encoded outside the event loop first and the encoded reply is
+     * kept in the context for the codec, so that the codec does not encode it in the event loop while the
+     * decorators still see the result. A batch of calls is always encoded by the codec.
+     */
+    private void resolvePromise(ThriftServiceInvocationContext ctx, Promise<Object> promise,
+                                TBase<TBase<?, ?>, TFieldIdEnum> result, boolean encodable) {
+
+        if (!encodable || result == null || offloadExecutor == null ||
+            ctx.func.replySizePredictor().predictedSize() < offloadThreshold) {
+            ctx.resolvePromise(promise, result);
+            return;
+        }
+
+        if (ctx.eventLoop().inEventLoop()) {
+            offload(ctx, promise, () -> resolvePromiseWithReply(ctx, promise, result));
+        } else {
+            resolvePromiseWithReply(ctx, promise, result);
+        }
+    }
+
+    private static void resolvePromiseWithReply(ThriftServiceInvocationContext ctx, Promise<Object> promise,
+                                                TBase<TBase<?, ?>, TFieldIdEnum> result) {
+        if (promise.isDone()) {
+            // Timed out already; no need to encode.
+            return;
+        }
+
+        final ByteBuf reply;
+        try {
+            reply = ThriftServiceCodec.encodeReply(ctx, result);
+        } catch (Throwable t) {
+            ctx.rejectPromise(promise, t);
+            return;
+        }
+
+        if (reply == null) {
+            ctx.resolvePromise(promise, result);
+            return;
+        }
+
+        ctx.setEncodedReply(result, reply);
+        ctx.resolvePromise(promise, result);
+        if (!promise.isSuccess() || promise.getNow() != result) {
+            // Timed out meanwhile; the codec never takes the reply encoded from the result.
+            ctx.releaseEncodedReply();
+        }
+    }
+
+    private void offload(ThriftServiceInvocationContext ctx, Promise<Object> promise, Runnable task) {
+        if (!ctx.acquireContent()) {
+            // Timed out already and the content of the binary fields has been released.
+            return;
+        }
+
+        try {
+            offloadExecutor.execute(() -> {
                 try {
-                    @SuppressWarnings("unchecked")
-                    TBase<TBase<?, ?>, TFieldIdEnum> result = f.getResult(service, ctx.args);
-                    if (func.isOneway()) {
-                        result = null;
+                    if (promise.isDone()) {
+                        // Timed out already; no need to decode or encode.
+                        return;
                     }
 
-                    ctx.resolvePromise(promise, result);
-                } catch (Throwable t) {
-                    ctx.rejectPromise(promise, t);
+                    task.run();
                 } finally {
-                    ServiceInvocationContext.removeCurrent();
+                    ctx.releaseContent();
                 }
             });
         } catch (Throwable t) {
+            ctx.releaseContent();
             ctx.rejectPromise(promise, t);
         }
     }
+
+    /**
+     * A synchronous method invoked in the event loop.
+     */
+    static final class EventLoopMethod {
+
+        /**
+         * The number of the consecutive invocations longer than {@link #maxExecutionTimeNanos} which makes
+         * the method slow.
+         */
+        static final int MAX_SLOW_INVOCATIONS = 3;
+
+        /**
+         * How long a slow method is invoked in the blocking task executor before it is tried in the event
+         * loop again.
+         */
+        static final long SLOW_PERIOD_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+        final long maxExecutionTimeNanos;
+        final Ticker ticker;
+
+        // Updated by the event loops without a lock; a lost update only delays the method from becoming
+        // slow or being tried in the event loop again by an invocation.
+        private volatile int slowInvocations;
+        private volatile boolean slow;
+        private volatile long slowSinceNanos;
+
+        EventLoopMethod(long maxExecutionTimeNanos, Ticker ticker) {
+            this.maxExecutionTimeNanos = maxExecutionTimeNanos;
+            this.ticker = ticker;
+        }
+
+        /**
+         * Returns whether the method has to be invoked in the blocking task executor.
+         */
+        boolean isSlow() {
+            if (!slow) {
+                return false;
+            }
+
+            if (ticker.read() - slowSinceNanos < SLOW_PERIOD_NANOS) {
+                return true;
+            }
+
+            // Try the event loop again, but go back to the blocking task executor if the next invocation is
+            // still slow.
+            slowInvocations = MAX_SLOW_INVOCATIONS - 1;
+            slow = false;
+            return false;
+        }
+
+        /**
+         * Records the execution time of an invocation in the event loop.
+         *
+         * @return {@code true} if the method has just become slow
+         */
+        boolean record(long elapsedNanos) {
+            if (elapsedNanos <= maxExecutionTimeNanos) {
+                if (slowInvocations != 0) {
+                    slowInvocations = 0;
+                }
+                return false;
+            }
+
+            if (slow || ++slowInvocations < MAX_SLOW_INVOCATIONS) {
+                return false;
+            }
+
+            slowSinceNanos = ticker.read();
+            slow = true;
+            return true;
+        }
+    }
 }
@@ -16,9 +16,14 @@
 
 package com.linecorp.armeria.server.tracing;
 
+import static java.util.Objects.requireNonNull;
+
 import java.util.function.Function;
 
+import javax.annotation.Nullable;
+
 import com.github.kristofa.brave.Brave;
+import com.github.kristofa.brave.Sampler;
 
 import com.linecorp.armeria.server.DecoratingService;
 import com.linecorp.armeria.server.Service;
@@ -35,10 +40,21 @@ public class HttpTracingService extends DecoratingService {
      * Creates a new tracing {@link Service} decorator using the specified {@link Brave} instance.
      */
     public static Function<Service, Service> newDecorator(Brave brave) {
-        return service -> new HttpTracingService(service, brave);
+        return service -> new HttpTracingService(service, brave, null);
+    }
+
+    /**
+     * Creates a new tracing {@link Service} decorator using the specified {@link Brave} instance.
+     * The specified {@link Sampler} decides whether to trace the requests without a sampling decision
+     * before any span is created, e.g. {@link com.linecorp.armeria.common.tracing.RateLimitingSampler}.
+     */
+    public static Function<Service, Service> newDecorator(Brave brave, Sampler sampler) {
+        requireNonNull(sampler, "sampler");
+        return service -> new HttpTracingService(service, brave, sampler);
     }
 
-    HttpTracingService(Service service, Brave brave) {
-        super(service, Function.identity(), handler -> new HttpTracingServiceInvocationHandler(handler, brave));
+    HttpTracingService(Service service, Brave brave, @Nullable Sampler sampler) {
+        super(service, Function.identity(),
+              handler -> new HttpTracingServiceInvocationHandler(handler, brave, sampler));
     }
 }
\ No newline at end of file
@@ -16,8 +16,11 @@
 
 package com.linecorp.armeria.server.tracing;
 
+import javax.annotation.Nullable;
+
 import com.github.kristofa.brave.Brave;
 import com.github.kristofa.brave.IdConversion;
+import com.github.kristofa.brave.Sampler;
 import com.github.kristofa.brave.SpanId;
 import com.github.kristofa.brave.TraceData;
 import com.github.kristofa.brave.http.BraveHttpHeaders;
@@ -33,15 +36,23 @@ import io.netty.handler.codec.http.HttpRequest;
  */
 class HttpTracingServiceInvocationHandler extends TracingServiceInvocationHandler {
 
+    private static final TraceData EMPTY_TRACE_DATA = TraceData.builder().build();
+    private static final TraceData NOT_SAMPLED_TRACE_DATA = TraceData.builder().sample(false).build();
+
     HttpTracingServiceInvocationHandler(ServiceInvocationHandler handler, Brave brave) {
-        super(handler, brave);
+        this(handler, brave, null);
+    }
+
+    HttpTracingServiceInvocationHandler(ServiceInvocationHandler handler, Brave brave,
+                                        @Nullable Sampler sampler) {
+        super(handler, brave, sampler);
     }
 
     @Override
     protected TraceData getTraceData(ServiceInvocationContext ctx) {
         final Object request = ctx.originalRequest();
         if (request == null || !(request instanceof HttpRequest)) {
-            return TraceData.builder().build();
+            return EMPTY_TRACE_DATA;
         }
 
         final HttpHeaders headers = ((HttpRequest) request).headers();
@@ -52,18 +63,18 @@ class HttpTracingServiceInvocationHandler extends TracingServiceInvocationHandle
         final String sampled = headers.get(BraveHttpHeaders.Sampled.getName());
         if (sampled == null) {
             // trace data is not specified
-            return TraceData.builder().build();
+            return EMPTY_TRACE_DATA;
         }
         if ("0".equals(sampled) || "false".equalsIgnoreCase(sampled)) {
             // this request is not sampled
-            return TraceData.builder().sample(false).build();
+            return NOT_SAMPLED_TRACE_DATA;
         }
 
         final String traceId = headers.get(BraveHttpHeaders.TraceId.getName());
         final String spanId = headers.get(BraveHttpHeaders.SpanId.getName());
         if (traceId == null || spanId == null) {
             // broken trace header
-            return TraceData.builder().build();
+            return EMPTY_TRACE_DATA;
         }
 
         // parentSpanId can be null
@@ -53,6 +53,14 @@ class ServerTracingInterceptor {
         return spanThreadBinder.getCurrentServerSpan();
     }
 
+    /**
+     * Marks the current request as not sampled without creating a span.
+     */
+    ServerSpan openUnsampledSpan() {
+        serverTracer.setStateNoTracing();
+        return spanThreadBinder.getCurrentServerSpan();
+    }
+
     void setSpan(ServerSpan span) {
         spanThreadBinder.setCurrentSpan(span);
     }
@@ -21,12 +21,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nullable;
 
 import com.github.kristofa.brave.Brave;
 import com.github.kristofa.brave.KeyValueAnnotation;
+import com.github.kristofa.brave.Sampler;
 import com.github.kristofa.brave.ServerRequestAdapter;
 import com.github.kristofa.brave.ServerResponseAdapter;
 import com.github.kristofa.brave.ServerSpan;
+import com.github.kristofa.brave.SpanId;
 import com.github.kristofa.brave.TraceData;
 
 import com.linecorp.armeria.common.ServiceInvocationContext;
@@ -45,9 +50,26 @@ public abstract class TracingServiceInvocationHandler extends DecoratingServiceI
 
     private final ServerTracingInterceptor serverInterceptor;
 
+    @Nullable
+    private final Sampler sampler;
+
     protected TracingServiceInvocationHandler(ServiceInvocationHandler handler, Brave brave) {
+        this(handler, brave, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sampler the {@link Sampler} that decides whether to trace a request which does not carry
+     *                the sampling decision of its caller, or {@code null} to leave it to {@link Brave}.
+     *                Unlike the {@link Sampler} of {@link Brave}, this {@link Sampler} is consulted before
+     *                any span is created, and thus the unsampled requests cost almost nothing.
+     */
+    protected TracingServiceInvocationHandler(ServiceInvocationHandler handler, Brave brave,
+                                              @Nullable Sampler sampler) {
         super(handler);
         serverInterceptor = new ServerTracingInterceptor(brave);
+        this.sampler = sampler;
     }
 
     @Override
@@ -55,11 +77,29 @@ public abstract class TracingServiceInvocationHandler extends DecoratingServiceI
                              Executor blockingTaskExecutor,
                              Promise<Object> promise) throws Exception {
 
-        final TraceData traceData = getTraceData(ctx);
+        TraceData traceData = getTraceData(ctx);
+        Boolean sample = traceData.getSample();
+        if (sample == null && sampler != null) {
+            // Start a new trace only if sampled.
+            final long traceId = ThreadLocalRandom.current().nextLong();
+            if (sampler.isSampled(traceId)) {
+                traceData = TraceData.builder().sample(true).spanId(SpanId.create(traceId, traceId, null))
+                                     .build();
+            } else {
+                sample = false;
+            }
+        }
 
-        final ServerRequestAdapter requestAdapter = new InternalServerRequestAdapter(ctx.method(), traceData);
+        final ServerSpan serverSpan;
+        if (Boolean.FALSE.equals(sample)) {
+            // Skip the interceptor and the span, but keep the decision so that the clients do not trace.
+            serverSpan = serverInterceptor.openUnsampledSpan();
+        } else {
+            final ServerRequestAdapter requestAdapter =
+                    new InternalServerRequestAdapter(ctx.method(), traceData);
+            serverSpan = serverInterceptor.openSpan(requestAdapter);
+        }
 
-        final ServerSpan serverSpan = serverInterceptor.openSpan(requestAdapter);
         if (serverSpan != null) {
             ctx.onEnter(() -> serverInterceptor.setSpan(serverSpan))
                .onExit(serverInterceptor::clearSpan);
@@ -86,7 +126,7 @@ public abstract class TracingServiceInvocationHandler extends DecoratingServiceI
      * Returns server side annotations that should be added to span.
      */
     protected <T> List<KeyValueAnnotation> annotations(ServiceInvocationContext ctx, Future<? super T> result) {
-        final List<KeyValueAnnotation> annotations = new ArrayList<>(5);
+        final List<KeyValueAnnotation> annotations = new ArrayList<>(6);
 
         final StringBuilder uriBuilder = new StringBuilder();
         uriBuilder.append(ctx.scheme() != null ? ctx.scheme().uriText() : "unknown");
@@ -114,6 +154,13 @@ public abstract class TracingServiceInvocationHandler extends DecoratingServiceI
             if (result.cause() != null) {
                 annotations.add(KeyValueAnnotation.create("server.cause", result.cause().toString()));
             }
+
+            // The decode, queue and handler phases have been recorded by now.
+            final StringBuilder timingsBuilder = new StringBuilder(64);
+            ctx.timings().appendTo(timingsBuilder);
+            if (timingsBuilder.length() != 0) {
+                annotations.add(KeyValueAnnotation.create("server.timings", timingsBuilder.toString()));
+            }
         }
         return annotations;
     }
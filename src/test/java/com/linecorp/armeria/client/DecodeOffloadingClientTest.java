@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.client;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.linecorp.armeria.client.http.SimpleHttpClient;
+import com.linecorp.armeria.client.http.SimpleHttpRequestBuilder;
+import com.linecorp.armeria.client.http.SimpleHttpResponse;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.http.HttpService;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+public class DecodeOffloadingClientTest {
+
+    private static final int SIZE_THRESHOLD = 1024;
+
+    private static final Server server;
+    private static final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+
+    private static int httpPort;
+
+    static {
+        final ServerBuilder sb = new ServerBuilder();
+        try {
+            sb.port(0, SessionProtocol.HTTP);
+            sb.serviceAt("/small", newService(SIZE_THRESHOLD - 1));
+            sb.serviceAt("/large", newService(SIZE_THRESHOLD));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+        server = sb.build();
+    }
+
+    private static HttpService newService(int contentLength) {
+        return new HttpService((ctx, executor, promise) -> promise.setSuccess(
+                new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                            Unpooled.wrappedBuffer(new byte[contentLength]))));
+    }
+
+    @BeforeClass
+    public static void init() throws Exception {
+        server.start().sync();
+        httpPort = server.activePorts().values().stream()
+                .filter(p -> p.protocol() == SessionProtocol.HTTP).findAny().get().localAddress()
+                .getPort();
+    }
+
+    @AfterClass
+    public static void destroy() throws Exception {
+        server.stop();
+        decodeExecutor.shutdown();
+    }
+
+    @Test
+    public void testOffloading() throws Exception {
+        final AtomicInteger offloaded = new AtomicInteger();
+        final SimpleHttpClient client = newClient(task -> {
+            offloaded.incrementAndGet();
+            decodeExecutor.execute(task);
+        });
+
+        assertThat(get(client, "/small").content().length, is(SIZE_THRESHOLD - 1));
+        assertThat(offloaded.get(), is(0));
+
+        assertThat(get(client, "/large").content().length, is(SIZE_THRESHOLD));
+        assertThat(offloaded.get(), is(1));
+    }
+
+    @Test
+    public void testRejectedExecution() throws Exception {
+        final SimpleHttpClient client = newClient(task -> {
+            throw new RejectedExecutionException();
+        });
+
+        // Decoded in the event loop instead.
+        assertThat(get(client, "/large").content().length, is(SIZE_THRESHOLD));
+    }
+
+    private static SimpleHttpClient newClient(Executor executor) {
+        return new ClientBuilder("none+http://127.0.0.1:" + httpPort)
+                .decorator(DecodeOffloadingClient.newDecorator(SIZE_THRESHOLD, executor))
+                .build(SimpleHttpClient.class);
+    }
+
+    private static SimpleHttpResponse get(SimpleHttpClient client, String path) throws Exception {
+        return client.execute(SimpleHttpRequestBuilder.forGet(path).build()).get();
+    }
+}
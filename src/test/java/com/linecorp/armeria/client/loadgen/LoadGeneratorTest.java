@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.linecorp.armeria.client.loadgen;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.linecorp.armeria.client.RemoteInvokerFactory;
+import com.linecorp.armeria.client.http.SimpleHttpRequest;
+import com.linecorp.armeria.client.http.SimpleHttpRequestBuilder;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.http.HttpService;
+
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+public class LoadGeneratorTest {
+
+    private static final Server server;
+
+    private static int httpPort;
+
+    static {
+        final ServerBuilder sb = new ServerBuilder();
+
+        try {
+            sb.port(0, SessionProtocol.HTTP);
+            sb.serviceAt("/ok", new HttpService((ctx, executor, promise) -> promise.setSuccess(
+                    new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK))));
+            sb.serviceAt("/slow", new HttpService((ctx, executor, promise) -> ctx.eventLoop().schedule(
+                    () -> promise.setSuccess(
+                            new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK)),
+                    100, TimeUnit.MILLISECONDS)));
+            sb.serviceAt("/error", new HttpService((ctx, executor, promise) -> promise.setSuccess(
+                    new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                                                HttpResponseStatus.INTERNAL_SERVER_ERROR))));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+        server = sb.build();
+    }
+
+    @BeforeClass
+    public static void init() throws Exception {
+        server.start().sync();
+        httpPort = server.activePorts().values().stream()
+                         .filter(p -> p.protocol() == SessionProtocol.HTTP).findAny().get().localAddress()
+                         .getPort();
+    }
+
+    @AfterClass
+    public static void destroy() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testFixedRate() throws Exception {
+        final LoadGeneratorResult result = newGenerator("/ok", "/error").rate(200)
+                                                                        .warmupMillis(200)
+                                                                        .durationMillis(500)
+                                                                        .build().run();
+
+        // 200 requests/s for 500 milliseconds
+        assertThat(result.requests(), is(100L));
+        assertThat(result.successes(), is(50L));
+        assertThat(result.failures(), is(50L));
+        assertThat(result.latency().count(), is(100L));
+        assertThat(result.serviceTime().count(), is(100L));
+    }
+
+    @Test
+    public void testCoordinatedOmissionCorrection() throws Exception {
+        // Only one request can be outstanding, so the requests are delayed by the slow responses.
+        final LoadGeneratorResult result = newGenerator("/slow").rate(50)
+                                                                .durationMillis(200)
+                                                                .maxOutstandingRequests(1)
+                                                                .build().run();
+
+        assertThat(result.requests(), is(10L));
+        // The service time of each request is about 100 milliseconds, ..
+        assertThat(result.serviceTime().valueAtPercentile(50),
+                   is(lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(500))));
+        // .. but the last request was scheduled at 180 ms and sent after 900 ms.
+        assertThat(result.latency().maxNanos(),
+                   is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(700))));
+        assertThat(result.elapsedNanos(), is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(1000))));
+    }
+
+    private static LoadGeneratorBuilder newGenerator(String... paths) {
+        final SimpleHttpRequest[] requests = new SimpleHttpRequest[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            requests[i] = SimpleHttpRequestBuilder.forGet(paths[i]).build();
+        }
+        return new LoadGeneratorBuilder(RemoteInvokerFactory.DEFAULT, "http://127.0.0.1:" + httpPort,
+                                        RequestSource.of(requests));
+    }
+}
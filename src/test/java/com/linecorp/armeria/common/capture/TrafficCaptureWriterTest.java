@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.capture;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TrafficCaptureWriterTest {
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static CapturedExchange exchange(int i, String method, int contentLength) {
+        final List<Entry<String, String>> headers =
+                Collections.singletonList(new SimpleImmutableEntry<>("content-type", "application/x-thrift"));
+        return new CapturedExchange(i, 1000 + i, "tbinary+h2c", "*.foo.com", "a.foo.com", "POST",
+                                    "/thrift/" + i, "/" + i, method, headers,
+                                    new byte[contentLength], 200,
+                                    ("response" + i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final Path dir = tempFolder.newFolder().toPath();
+        final TrafficCaptureWriter writer = new TrafficCaptureWriterBuilder(dir).segmentSize(4096).build();
+        for (int i = 0; i < 10; i++) {
+            assertThat(writer.write(exchange(i, i % 2 == 0 ? "hello" : null, i)), is(true));
+        }
+        writer.close();
+
+        assertThat(writer.writtenExchanges(), is(10L));
+        assertThat(writer.droppedExchanges(), is(0L));
+
+        final List<CapturedExchange> exchanges = new TrafficCaptureReader(dir).readAll();
+        assertThat(exchanges, hasSize(10));
+        for (int i = 0; i < 10; i++) {
+            final CapturedExchange e = exchanges.get(i);
+            assertThat(e.timestampMillis(), is((long) i));
+            assertThat(e.elapsedNanos(), is(1000L + i));
+            assertThat(e.scheme(), is("tbinary+h2c"));
+            assertThat(e.virtualHost(), is("*.foo.com"));
+            assertThat(e.hostname(), is("a.foo.com"));
+            assertThat(e.httpMethod(), is("POST"));
+            assertThat(e.path(), is("/thrift/" + i));
+            assertThat(e.mappedPath(), is("/" + i));
+            if (i % 2 == 0) {
+                assertThat(e.method(), is("hello"));
+            } else {
+                assertThat(e.method(), is(nullValue()));
+            }
+            assertThat(e.requestHeaders(),
+                       contains(new SimpleImmutableEntry<>("content-type", "application/x-thrift")));
+            assertThat(e.requestContent().length, is(i));
+            assertThat(e.statusCode(), is(200));
+            assertThat(new String(e.responseContent(), StandardCharsets.UTF_8), is("response" + i));
+        }
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        final Path dir = tempFolder.newFolder().toPath();
+        final TrafficCaptureWriter writer =
+                new TrafficCaptureWriterBuilder(dir).segmentSize(4096).maxSegments(2).build();
+
+        // Each exchange takes about 1 KiB, so a segment can hold 3 of them.
+        for (int i = 0; i < 20; i++) {
+            writer.write(exchange(i, "hello", 1024));
+        }
+        // Larger than a segment.
+        writer.write(exchange(20, "hello", 8192));
+        writer.close();
+
+        assertThat(writer.writtenExchanges(), is(20L));
+        assertThat(writer.droppedExchanges(), is(1L));
+        assertThat(TrafficCaptureWriter.listSegments(dir), hasSize(2));
+
+        final List<CapturedExchange> exchanges = new TrafficCaptureReader(dir).readAll();
+        assertThat(exchanges, hasSize(5));
+        assertThat(exchanges.get(4).path(), is("/thrift/19"));
+
+        // A new writer continues from the last segment.
+        final TrafficCaptureWriter writer2 = new TrafficCaptureWriterBuilder(dir).segmentSize(4096).build();
+        writer2.write(exchange(21, "hello", 0));
+        writer2.close();
+
+        final List<CapturedExchange> exchanges2 = new TrafficCaptureReader(dir).readAll();
+        assertThat(exchanges2, hasSize(6));
+        assertThat(exchanges2.get(5).path(), is("/thrift/21"));
+    }
+}
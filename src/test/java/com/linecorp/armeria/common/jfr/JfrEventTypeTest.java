@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.jfr;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.linecorp.armeria.common.jfr.JfrEventType.Field;
+
+public class JfrEventTypeTest {
+
+    @Test
+    public void testCommit() throws Exception {
+        assumeTrue(JfrEventType.isAvailable());
+
+        final JfrEventType type = new JfrEventType(
+                "armeria.JfrEventTypeTest", "Test", "An event emitted by JfrEventTypeTest",
+                Field.of("text", "Text", String.class),
+                Field.ofTimespan("elapsed", "Elapsed"));
+        assertThat(type.isEnabled(), is(false));
+
+        // Use the jdk.jfr API reflectively so that this test compiles without it.
+        final Class<?> recordingType = Class.forName("jdk.jfr.Recording");
+        final Object recording = recordingType.newInstance();
+        final Path path = Files.createTempFile("armeria-", ".jfr");
+        try {
+            recordingType.getMethod("enable", String.class).invoke(recording, type.name());
+            recordingType.getMethod("start").invoke(recording);
+            assertThat(type.isEnabled(), is(true));
+
+            type.commit("foo", 42L);
+
+            recordingType.getMethod("stop").invoke(recording);
+            recordingType.getMethod("dump", Path.class).invoke(recording, path);
+
+            final List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                                                  .getMethod("readAllEvents", Path.class)
+                                                  .invoke(null, path);
+            final List<Object> testEvents = new ArrayList<>();
+            for (Object e : events) {
+                final Object eventType = e.getClass().getMethod("getEventType").invoke(e);
+                if (type.name().equals(eventType.getClass().getMethod("getName").invoke(eventType))) {
+                    testEvents.add(e);
+                }
+            }
+
+            assertThat(testEvents, hasSize(1));
+            final Object event = testEvents.get(0);
+            assertThat(event.getClass().getMethod("getString", String.class).invoke(event, "text"),
+                       is("foo"));
+            assertThat(event.getClass().getMethod("getLong", String.class).invoke(event, "elapsed"),
+                       is(42L));
+        } finally {
+            recordingType.getMethod("close").invoke(recording);
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfValues() {
+        final JfrEventType type = new JfrEventType(
+                "armeria.JfrEventTypeTest2", "Test", "An event emitted by JfrEventTypeTest",
+                Field.of("text", "Text", String.class));
+        type.commit("foo", "bar");
+    }
+}
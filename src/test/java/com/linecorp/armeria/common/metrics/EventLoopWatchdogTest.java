@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+
+public class EventLoopWatchdogTest {
+
+    private static EventLoopGroup group;
+
+    @BeforeClass
+    public static void createGroup() {
+        group = new DefaultEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void destroyGroup() {
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBlockedEventLoop() throws Exception {
+        try (EventLoopWatchdog watchdog = new EventLoopWatchdog(group, Duration.ofMillis(50))) {
+            watchdog.start();
+
+            final EventLoopMetrics metrics = watchdog.metrics().get(0);
+            await(() -> metrics.taskLatency().count() > 0);
+            assertThat(metrics.blockedCount(), is(0L));
+            assertThat(metrics.pendingTasks(), is(0L));
+
+            // Block the event loop.
+            group.execute(() -> {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException ignored) {
+                    // Ignore
+                }
+            });
+
+            await(() -> metrics.blockedCount() == 1);
+            assertThat(metrics.stallNanos(), greaterThan(TimeUnit.MILLISECONDS.toNanos(50)));
+
+            // The event loop is counted as blocked only once per stall.
+            final long count = metrics.taskLatency().count();
+            await(() -> metrics.taskLatency().count() > count);
+            assertThat(metrics.blockedCount(), is(1L));
+            assertThat(metrics.taskLatency().maxNanos(), greaterThan(TimeUnit.MILLISECONDS.toNanos(50)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroThreshold() {
+        new EventLoopWatchdog(group, Duration.ZERO);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat("timed out", System.nanoTime() - deadline < 0, is(true));
+            Thread.sleep(10);
+        }
+    }
+}
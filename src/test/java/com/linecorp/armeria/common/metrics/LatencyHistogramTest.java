@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.linecorp.armeria.common.metrics;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketIndex() {
+        long lastIndex = -1;
+        for (long v = 0; v < 1 << 20; v++) {
+            final int index = LatencyHistogram.bucketIndex(v);
+            assertThat(index == lastIndex || index == lastIndex + 1, is(true));
+            assertThat(LatencyHistogram.highestEquivalentValue(index) >= v, is(true));
+            lastIndex = index;
+        }
+
+        assertThat(LatencyHistogram.highestEquivalentValue(LatencyHistogram.bucketIndex(Long.MAX_VALUE)),
+                   is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 10000; v++) {
+            h.record(v * 1000);
+        }
+
+        assertThat(h.count(), is(10000L));
+        assertThat(h.maxNanos(), is(10000000L));
+        assertThat(h.meanNanos(), is(5000500.0));
+        assertThat((double) h.valueAtPercentile(50), closeTo(5000000, 5000000 / 128.0));
+        assertThat((double) h.valueAtPercentile(99), closeTo(9900000, 9900000 / 128.0));
+        assertThat(h.valueAtPercentile(100), is(10000000L));
+        assertThat((double) h.valueAtPercentile(0), closeTo(1000, 1000 / 128.0));
+
+        h.reset();
+        assertThat(h.count(), is(0L));
+        assertThat(h.valueAtPercentile(99), is(0L));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void testMultipleThreads() throws Exception {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final Thread t = new Thread(() -> {
+                for (long v = 1; v <= 10000; v++) {
+                    recorder.record(v * 1000);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        final LatencySnapshot snapshot = recorder.snapshot();
+        assertThat(snapshot.count(), is(40000L));
+        assertThat(snapshot.maxNanos(), is(10000000L));
+        assertThat(snapshot.meanNanos(), is(5000500.0));
+        assertThat((double) snapshot.valueAtPercentile(99.9), closeTo(9990000, 9990000 / 128.0));
+        assertThat(snapshot.valueAtPercentile(100), is(10000000L));
+    }
+
+    @Test
+    public void testTerminatedThreads() throws Exception {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1; i <= 10; i++) {
+            final long nanos = i * 1000;
+            final Thread t = new Thread(() -> recorder.record(nanos));
+            t.start();
+            t.join();
+        }
+
+        // The histograms of the terminated threads are folded into the snapshot and removed.
+        LatencySnapshot snapshot = recorder.snapshot();
+        assertThat(recorder.numRecorders(), is(0));
+        assertThat(snapshot.count(), is(10L));
+        assertThat(snapshot.totalNanos(), is(55000L));
+        assertThat(snapshot.maxNanos(), is(10000L));
+
+        recorder.record(20000);
+        snapshot = recorder.snapshot();
+        assertThat(recorder.numRecorders(), is(1));
+        assertThat(snapshot.count(), is(11L));
+        assertThat(snapshot.maxNanos(), is(20000L));
+    }
+
+    @Test
+    public void testIntervalSnapshot() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        for (long v = 1; v <= 100; v++) {
+            recorder.record(v * 1000000);
+        }
+
+        LatencySnapshot interval = recorder.intervalSnapshot();
+        assertThat(interval.count(), is(100L));
+        assertThat((double) interval.maxNanos(), closeTo(100000000, 100000000 / 128.0));
+
+        recorder.record(1000);
+        recorder.record(3000);
+        interval = recorder.intervalSnapshot();
+        assertThat(interval.count(), is(2L));
+        assertThat(interval.meanNanos(), is(2000.0));
+        assertThat((double) interval.maxNanos(), closeTo(3000, 3000 / 128.0));
+        assertThat((double) interval.valueAtPercentile(50), closeTo(1000, 1000 / 128.0));
+
+        interval = recorder.intervalSnapshot();
+        assertThat(interval.count(), is(0L));
+        assertThat(interval.maxNanos(), is(0L));
+
+        // The cumulative snapshot is not affected by the interval snapshots.
+        assertThat(recorder.snapshot().count(), is(102L));
+    }
+
+    @Test
+    public void testLongDurations() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        final long longNanos = LatencyRecorder.MAX_TRACKABLE_NANOS * 4;
+        recorder.record(1000);
+        recorder.record(longNanos);
+
+        // A duration longer than the tracked range is counted as the largest tracked duration
+        // in the percentiles, but the maximum and the total remain exact.
+        final LatencySnapshot snapshot = recorder.snapshot();
+        assertThat(snapshot.count(), is(2L));
+        assertThat(snapshot.totalNanos(), is(longNanos + 1000));
+        assertThat(snapshot.maxNanos(), is(longNanos));
+        assertThat(snapshot.valueAtPercentile(100), is(LatencyRecorder.MAX_TRACKABLE_NANOS));
+        assertThat((double) snapshot.valueAtPercentile(50), closeTo(1000, 1000 / 128.0));
+    }
+
+    @Test
+    public void testMultipleRecordersInSameThread() {
+        final LatencyRecorder a = new LatencyRecorder();
+        final LatencyRecorder b = new LatencyRecorder();
+        a.record(1000);
+        a.record(2000);
+        b.record(5000);
+
+        assertThat(a.numRecorders(), is(1));
+        assertThat(b.numRecorders(), is(1));
+        assertThat(a.snapshot().count(), is(2L));
+        assertThat(a.snapshot().totalNanos(), is(3000L));
+        assertThat(b.snapshot().count(), is(1L));
+        assertThat(b.snapshot().maxNanos(), is(5000L));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics.prometheus;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.linecorp.armeria.common.util.ByteBufAllocatorBuilder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+public class ByteBufAllocatorMetricsCollectorTest {
+
+    @Test
+    public void testPooled() {
+        final ByteBufAllocator alloc = new ByteBufAllocatorBuilder().preferDirect(false)
+                                                                    .numHeapArenas(1)
+                                                                    .numDirectArenas(0)
+                                                                    .threadLocalCache(false)
+                                                                    .build();
+        assertThat(alloc, is(instanceOf(PooledByteBufAllocator.class)));
+
+        final ByteBuf buf = alloc.buffer(PooledByteBufAllocator.defaultPageSize() * 2);
+        try {
+            final String text = collect(new ByteBufAllocatorMetricsCollector("foo", alloc));
+            final String labels = "{allocator=\"foo\",type=\"heap\",arena=\"0\"";
+            assertThat(text, containsString("armeria_bytebuf_arena_allocations_total" + labels +
+                                            ",size=\"normal\"} 1\n"));
+            assertThat(text, containsString("armeria_bytebuf_arena_active_allocations" + labels +
+                                            ",size=\"normal\"} 1\n"));
+            assertThat(text, containsString("armeria_bytebuf_arena_chunk_bytes" + labels + "} " +
+                                            (PooledByteBufAllocator.defaultPageSize() <<
+                                             PooledByteBufAllocator.defaultMaxOrder()) + '\n'));
+            assertThat(text, containsString("armeria_bytebuf_arena_chunks" + labels + ",usage=\""));
+            assertThat(text, not(containsString("type=\"direct\"")));
+        } finally {
+            buf.release();
+        }
+
+        final String text = collect(new ByteBufAllocatorMetricsCollector("foo", alloc));
+        assertThat(text, containsString("armeria_bytebuf_arena_deallocations_total" +
+                                        "{allocator=\"foo\",type=\"heap\",arena=\"0\",size=\"normal\"} 1\n"));
+    }
+
+    @Test
+    public void testUnpooled() {
+        final ByteBufAllocator alloc = new ByteBufAllocatorBuilder().pooled(false).build();
+        assertThat(alloc, is(instanceOf(UnpooledByteBufAllocator.class)));
+        assertThat(collect(new ByteBufAllocatorMetricsCollector("foo", alloc)), is(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPageSize() {
+        new ByteBufAllocatorBuilder().pageSize(4097);
+    }
+
+    private static String collect(ByteBufAllocatorMetricsCollector collector) {
+        final ByteBuf buf = Unpooled.buffer();
+        collector.collect(new PrometheusWriter(buf));
+        return buf.toString(StandardCharsets.UTF_8);
+    }
+}
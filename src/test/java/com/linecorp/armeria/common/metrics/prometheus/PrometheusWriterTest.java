@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.metrics.prometheus;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.linecorp.armeria.common.metrics.prometheus.PrometheusWriter.Type;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class PrometheusWriterTest {
+
+    @Test
+    public void testSamples() {
+        final ByteBuf buf = Unpooled.buffer();
+        final PrometheusWriter out = new PrometheusWriter(buf);
+        out.family("foo_total", Type.COUNTER, "The number of foos.\nReally.");
+        out.sample("foo_total").value(0);
+        out.sample("foo_total").label("a", "b").value(-42);
+        out.sample("foo_total").label("a", "\"x\\y\"\n").label("c", "\uD83D\uDE00").value(Long.MAX_VALUE);
+        out.sample("bar_seconds").label("quantile", "0.99").nanosAsSeconds(1500);
+        out.sample("bar_seconds_sum").nanosAsSeconds(0);
+        out.sample("baz").value(Long.MIN_VALUE);
+
+        assertThat(buf.toString(StandardCharsets.UTF_8),
+                   is("# HELP foo_total The number of foos.\\nReally.\n" +
+                      "# TYPE foo_total counter\n" +
+                      "foo_total 0\n" +
+                      "foo_total{a=\"b\"} -42\n" +
+                      "foo_total{a=\"\\\"x\\\\y\\\"\\n\",c=\"\uD83D\uDE00\"} 9223372036854775807\n" +
+                      "bar_seconds{quantile=\"0.99\"} 1500e-9\n" +
+                      "bar_seconds_sum 0\n" +
+                      "baz -9223372036854775808\n"));
+    }
+}
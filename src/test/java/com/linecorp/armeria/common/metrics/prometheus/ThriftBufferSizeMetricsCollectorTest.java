@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.linecorp.armeria.common.metrics.prometheus;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.linecorp.armeria.common.thrift.ThriftBufferSizePredictor;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class ThriftBufferSizeMetricsCollectorTest {
+
+    @Test
+    public void testCollect() {
+        final ThriftBufferSizePredictor predictor = new ThriftBufferSizePredictor();
+        predictor.record(predictor.predictedSize(), 16);
+        predictor.record(predictor.predictedSize(), predictor.predictedSize() + 1);
+
+        final String text = collect(new ThriftBufferSizeMetricsCollector(
+                "foo", Collections.singletonMap("hello", predictor)));
+        final String labels = "{service=\"foo\",method=\"hello\"} ";
+        assertThat(text, containsString("armeria_thrift_buffer_predicted_bytes" + labels +
+                                        predictor.predictedSize() + '\n'));
+        assertThat(text, containsString("armeria_thrift_buffer_messages_total" + labels + "2\n"));
+        assertThat(text, containsString("armeria_thrift_buffer_resized_messages_total" + labels + "1\n"));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(collect(new ThriftBufferSizeMetricsCollector("foo", Collections.emptyMap())), is(""));
+    }
+
+    private static String collect(ThriftBufferSizeMetricsCollector collector) {
+        final ByteBuf buf = Unpooled.buffer();
+        collector.collect(new PrometheusWriter(buf));
+        return buf.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+public class TByteBufProtocolTest {
+
+    private static final String STR = "fooé€😀\uD800bar";
+    private static final byte[] BINARY = { 1, 2, 3, (byte) 0xFF };
+
+    @Test
+    public void testBinary() throws Exception {
+        testCompatibility(ThriftProtocolFactories.BINARY, new TBinaryProtocol.Factory());
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        testCompatibility(ThriftProtocolFactories.COMPACT, new TCompactProtocol.Factory());
+    }
+
+    private static void testCompatibility(TProtocolFactory factory, TProtocolFactory thriftFactory)
+            throws Exception {
+
+        final ByteBuf buf = Unpooled.directBuffer();
+        try {
+            final TByteBufTransport transport = new TByteBufTransport(buf);
+            final TProtocol proto = factory.getProtocol(transport);
+            assertThat(proto.getClass() == TBinaryProtocol.class, is(false));
+            assertThat(proto.getClass() == TCompactProtocol.class, is(false));
+
+            // Must encode exactly the same as the protocols of Thrift.
+            write(proto);
+            final TMemoryBuffer expected = new TMemoryBuffer(64);
+            write(thriftFactory.getProtocol(expected));
+            assertThat(ByteBufUtil.getBytes(buf),
+                       is(Arrays.copyOf(expected.getArray(), expected.length())));
+
+            // Must decode what the protocols of Thrift encoded, copying out the binary.
+            transport.reset(buf);
+            read(proto);
+            assertThat(buf.isReadable(), is(false));
+
+            // Must decode the binary as a view if allowed.
+            buf.readerIndex(0);
+            transport.reset(buf, true);
+            proto.reset();
+            final ByteBuffer binary = read(proto);
+            assertThat(binary.isDirect(), is(true));
+            buf.setByte(buf.writerIndex() - BINARY.length - 1, 42);
+            assertThat(binary.get(0), is((byte) 42));
+
+            // Must fail on a truncated message.
+            buf.readerIndex(0);
+            buf.writerIndex(buf.writerIndex() - 3);
+            proto.reset();
+            try {
+                read(proto);
+                throw new AssertionError();
+            } catch (TTransportException e) {
+                assertThat(e.getType(), is(TTransportException.END_OF_FILE));
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void write(TProtocol proto) throws TException {
+        proto.writeMessageBegin(new TMessage("hello", TMessageType.CALL, 42));
+        proto.writeStructBegin(new TStruct("args"));
+        proto.writeFieldBegin(new TField("a", TType.STRING, (short) 1));
+        proto.writeString(STR);
+        proto.writeFieldEnd();
+        proto.writeFieldBegin(new TField("b", TType.LIST, (short) 2));
+        proto.writeListBegin(new TList(TType.I64, 3));
+        proto.writeI64(Long.MIN_VALUE);
+        proto.writeI64(-1);
+        proto.writeI64(Long.MAX_VALUE);
+        proto.writeListEnd();
+        proto.writeFieldEnd();
+        proto.writeFieldBegin(new TField("c", TType.I16, (short) 3));
+        proto.writeI16(Short.MIN_VALUE);
+        proto.writeFieldEnd();
+        proto.writeFieldBegin(new TField("d", TType.I32, (short) 4));
+        proto.writeI32(-300);
+        proto.writeFieldEnd();
+        proto.writeFieldBegin(new TField("e", TType.DOUBLE, (short) 5));
+        proto.writeDouble(Math.PI);
+        proto.writeFieldEnd();
+        proto.writeFieldBegin(new TField("f", TType.BOOL, (short) 6));
+        proto.writeBool(true);
+        proto.writeFieldEnd();
+        proto.writeFieldBegin(new TField("g", TType.STRING, (short) 7));
+        proto.writeString("");
+        proto.writeFieldEnd();
+        proto.writeFieldBegin(new TField("h", TType.STRING, (short) 8));
+        proto.writeBinary(ByteBuffer.wrap(BINARY));
+        proto.writeFieldEnd();
+        proto.writeFieldStop();
+        proto.writeStructEnd();
+        proto.writeMessageEnd();
+    }
+
+    private static ByteBuffer read(TProtocol proto) throws TException {
+        final TMessage msg = proto.readMessageBegin();
+        assertThat(msg.name, is("hello"));
+        assertThat(msg.type, is(TMessageType.CALL));
+        assertThat(msg.seqid, is(42));
+        proto.readStructBegin();
+        assertThat(proto.readFieldBegin().id, is((short) 1));
+        // A malformed surrogate is encoded as '?' just like String.getBytes() does.
+        assertThat(proto.readString(),
+                   is(new String(STR.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)));
+        proto.readFieldEnd();
+        assertThat(proto.readFieldBegin().id, is((short) 2));
+        assertThat(proto.readListBegin().size, is(3));
+        assertThat(proto.readI64(), is(Long.MIN_VALUE));
+        assertThat(proto.readI64(), is(-1L));
+        assertThat(proto.readI64(), is(Long.MAX_VALUE));
+        proto.readListEnd();
+        proto.readFieldEnd();
+        assertThat(proto.readFieldBegin().id, is((short) 3));
+        assertThat(proto.readI16(), is(Short.MIN_VALUE));
+        proto.readFieldEnd();
+        assertThat(proto.readFieldBegin().id, is((short) 4));
+        assertThat(proto.readI32(), is(-300));
+        proto.readFieldEnd();
+        assertThat(proto.readFieldBegin().id, is((short) 5));
+        assertThat(proto.readDouble(), is(Math.PI));
+        proto.readFieldEnd();
+        assertThat(proto.readFieldBegin().id, is((short) 6));
+        assertThat(proto.readBool(), is(true));
+        proto.readFieldEnd();
+        assertThat(proto.readFieldBegin().id, is((short) 7));
+        assertThat(proto.readString(), is(""));
+        proto.readFieldEnd();
+        assertThat(proto.readFieldBegin().id, is((short) 8));
+        final ByteBuffer binary = proto.readBinary();
+        final byte[] array = new byte[binary.remaining()];
+        binary.duplicate().get(array);
+        assertThat(array, is(BINARY));
+        proto.readFieldEnd();
+        assertThat(proto.readFieldBegin().type, is(TType.STOP));
+        proto.readStructEnd();
+        proto.readMessageEnd();
+        return binary;
+    }
+}
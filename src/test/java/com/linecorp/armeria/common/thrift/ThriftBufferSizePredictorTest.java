@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+public class ThriftBufferSizePredictorTest {
+
+    @Test
+    public void testPrediction() {
+        final ThriftBufferSizePredictor predictor = new ThriftBufferSizePredictor();
+        assertThat(predictor.predictedSize(), is(256));
+
+        // Not updated until enough sizes are recorded.
+        for (int i = 0; i < ThriftBufferSizePredictor.UPDATE_INTERVAL - 1; i++) {
+            predictor.record(256, 10000);
+        }
+        assertThat(predictor.predictedSize(), is(256));
+
+        predictor.record(256, 10000);
+        assertThat(predictor.predictedSize(), is(10000));
+        assertThat(predictor.count(), is((long) ThriftBufferSizePredictor.UPDATE_INTERVAL));
+        assertThat(predictor.resizedCount(), is((long) ThriftBufferSizePredictor.UPDATE_INTERVAL));
+
+        final ByteBuf buf = predictor.newBuffer(UnpooledByteBufAllocator.DEFAULT);
+        assertThat(buf.capacity(), is(10000));
+        buf.release();
+    }
+
+    @Test
+    public void testPercentile() {
+        final ThriftBufferSizePredictor predictor = new ThriftBufferSizePredictor();
+
+        // The largest 10% of the sizes are outliers.
+        for (int i = 0; i < ThriftBufferSizePredictor.WINDOW_SIZE; i++) {
+            predictor.record(predictor.predictedSize(), i < 58 ? 1000 : 1000000);
+        }
+        assertThat(predictor.predictedSize(), is(1000));
+
+        // The oldest sizes are forgotten.
+        for (int i = 0; i < ThriftBufferSizePredictor.WINDOW_SIZE; i++) {
+            predictor.record(predictor.predictedSize(), 500);
+        }
+        assertThat(predictor.predictedSize(), is(500));
+
+        // The first 16 sizes before the first update and the 6 outliers did not fit.
+        assertThat(predictor.resizedCount(), is(22L));
+    }
+
+    @Test
+    public void testBounds() {
+        final ThriftBufferSizePredictor predictor = new ThriftBufferSizePredictor();
+        for (int i = 0; i < ThriftBufferSizePredictor.UPDATE_INTERVAL; i++) {
+            predictor.record(0, 1);
+        }
+        assertThat(predictor.predictedSize(), is(64));
+
+        for (int i = 0; i < ThriftBufferSizePredictor.WINDOW_SIZE; i++) {
+            predictor.record(0, Integer.MAX_VALUE);
+        }
+        assertThat(predictor.predictedSize(), is(4 * 1024 * 1024));
+    }
+}
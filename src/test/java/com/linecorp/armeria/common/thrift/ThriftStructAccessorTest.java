@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.thrift;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.linecorp.armeria.common.thrift.ThriftStructAccessor.Field;
+import com.linecorp.armeria.service.test.thrift.cassandra.Column;
+import com.linecorp.armeria.service.test.thrift.main.FileService;
+import com.linecorp.armeria.service.test.thrift.main.FileServiceException;
+import com.linecorp.armeria.service.test.thrift.main.HelloService;
+import com.linecorp.armeria.service.test.thrift.main.TimeService;
+
+public class ThriftStructAccessorTest {
+
+    @Test
+    public void testObjectField() {
+        final ThriftStructAccessor accessor = ThriftStructAccessor.of(HelloService.hello_args.class);
+        final HelloService.hello_args args = accessor.newInstance();
+        final Field name = accessor.field("name");
+
+        assertThat(name.type() == String.class, is(true));
+        assertThat(name.isSet(args), is(false));
+
+        name.set(args, "armeria");
+        assertThat(args.getName(), is("armeria"));
+        assertThat(name.isSet(args), is(true));
+        assertThat(name.get(args), is("armeria"));
+        assertThat(accessor.values(args), contains("armeria"));
+
+        name.set(args, null);
+        assertThat(args.isSetName(), is(false));
+    }
+
+    @Test
+    public void testPrimitiveField() {
+        final ThriftStructAccessor accessor = ThriftStructAccessor.of(TimeService.getServerTime_result.class);
+        final TimeService.getServerTime_result result = accessor.newInstance();
+        final Field success = accessor.field("success");
+
+        // The isset bit of a primitive field must be updated as well.
+        success.set(result, 42L);
+        assertThat(result.isSetSuccess(), is(true));
+        assertThat(success.isSet(result), is(true));
+        assertThat(success.get(result), is(42L));
+
+        success.set(result, null);
+        assertThat(result.isSetSuccess(), is(false));
+        assertThat(success.isSet(result), is(false));
+    }
+
+    @Test
+    public void testBinaryField() {
+        final ThriftStructAccessor accessor = ThriftStructAccessor.of(Column.class);
+        final Column column = accessor.newInstance();
+        final Field name = accessor.field("name");
+        final byte[] bytes = { 1, 2, 3 };
+
+        assertThat(name.type() == ByteBuffer.class, is(true));
+        name.set(column, ByteBuffer.wrap(bytes));
+        assertThat(name.get(column), is(ByteBuffer.wrap(bytes)));
+
+        // A binary field is converted to a byte array like TBase.getFieldValue() does.
+        assertThat(accessor.values(column).get(0), is(bytes));
+    }
+
+    @Test
+    public void testExceptionField() {
+        final ThriftStructAccessor accessor = ThriftStructAccessor.of(FileService.create_result.class);
+        assertThat(accessor.field("success"), is(nullValue()));
+
+        final Field ouch = accessor.field("ouch");
+        assertThat(ouch.type() == FileServiceException.class, is(true));
+
+        final FileService.create_result result = accessor.newInstance();
+        final FileServiceException cause = new FileServiceException();
+        ouch.set(result, cause);
+        assertThat(result.getOuch() == cause, is(true));
+        assertThat(ouch.isSet(result), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonStruct() {
+        ThriftStructAccessor.of(String.class);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.tracing;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Span;
+
+public class BatchingSpanCollectorTest {
+
+    @Test
+    public void testBatching() throws Exception {
+        final List<List<Span>> batches = new ArrayList<>();
+        final BatchingSpanCollector collector = new BatchingSpanCollector(
+                spans -> batches.add(new ArrayList<>(spans)), 16, 4, Duration.ofHours(1));
+
+        collector.addDefaultAnnotation("environment", "test");
+        for (int i = 0; i < 10; i++) {
+            collector.collect(newSpan(i));
+        }
+        assertThat(collector.pendingSpans(), is(10));
+
+        collector.close();
+        assertThat(batches, hasSize(3));
+        for (List<Span> b : batches) {
+            assertThat(b.size(), lessThanOrEqualTo(4));
+        }
+
+        final Span span = batches.get(0).get(0);
+        assertThat(span.getBinary_annotations(), hasSize(1));
+        final BinaryAnnotation annotation = span.getBinary_annotations().get(0);
+        assertThat(annotation.getKey(), is("environment"));
+
+        assertThat(collector.acceptedSpans(), is(10L));
+        assertThat(collector.reportedSpans(), is(10L));
+        assertThat(collector.droppedSpans(), is(0L));
+        assertThat(collector.failedSpans(), is(0L));
+    }
+
+    @Test
+    public void testDropAndFailure() throws Exception {
+        final BatchingSpanCollector collector = new BatchingSpanCollector(
+                spans -> { throw new Exception("expected"); }, 2, 2, Duration.ofHours(1));
+
+        for (int i = 0; i < 5; i++) {
+            collector.collect(newSpan(i));
+        }
+
+        collector.close();
+        assertThat(collector.acceptedSpans(), is(2L));
+        assertThat(collector.droppedSpans(), is(3L));
+        assertThat(collector.reportedSpans(), is(0L));
+        assertThat(collector.failedSpans(), is(2L));
+    }
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final BatchingSpanCollector collector = new BatchingSpanCollector(
+                spans -> latch.countDown(), 16, 16, Duration.ofMillis(10));
+
+        try {
+            collector.collect(newSpan(0));
+            assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            collector.close();
+        }
+        assertThat(collector.reportedSpans(), is(1L));
+    }
+
+    private static Span newSpan(long id) {
+        return new Span().setTrace_id(id).setId(id).setName("span" + id);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.common.tracing;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class RateLimitingSamplerTest {
+
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void testRateLimit() {
+        final RateLimitingSampler sampler = new RateLimitingSampler(3);
+        final long start = 42 * SECOND;
+        assertThat(sampled(sampler, start, 10), is(3));
+        assertThat(sampled(sampler, start + SECOND / 2, 10), is(0));
+
+        // A new window.
+        assertThat(sampled(sampler, start + SECOND, 2), is(2));
+        assertThat(sampled(sampler, start + SECOND + 1, 2), is(1));
+    }
+
+    @Test
+    public void testZero() {
+        final RateLimitingSampler sampler = new RateLimitingSampler(0);
+        assertThat(sampled(sampler, 0, 10), is(0));
+        assertThat(sampler.isSampled(1), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegative() {
+        new RateLimitingSampler(-1);
+    }
+
+    private static int sampled(RateLimitingSampler sampler, long currentTimeNanos, int attempts) {
+        int sampled = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (sampler.trySample(currentTimeNanos)) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BlockingTaskMetricsTest {
+
+    @Test
+    public void testQueuedAndActiveTasks() throws Exception {
+        final BlockingTaskMetrics metrics = new BlockingTaskMetrics("foo");
+        final Queue<Runnable> queue = new ArrayDeque<>();
+        final Executor executor = metrics.newExecutor(queue::add);
+
+        executor.execute(() -> {
+            assertThat(metrics.queuedTasks(), is(0L));
+            assertThat(metrics.activeTasks(), is(1L));
+        });
+
+        assertThat(metrics.submittedTasks(), is(1L));
+        assertThat(metrics.queuedTasks(), is(1L));
+        assertThat(metrics.activeTasks(), is(0L));
+
+        Thread.sleep(10);
+        queue.poll().run();
+
+        assertThat(metrics.queuedTasks(), is(0L));
+        assertThat(metrics.activeTasks(), is(0L));
+        assertThat(metrics.queueWaitTime().count(), is(1L));
+        assertThat(metrics.queueWaitTime().maxNanos(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10)));
+        assertThat(metrics.executionTime().count(), is(1L));
+    }
+
+    @Test
+    public void testFailedTask() {
+        final BlockingTaskMetrics metrics = new BlockingTaskMetrics("foo");
+        final Executor executor = metrics.newExecutor(Runnable::run);
+
+        try {
+            executor.execute(() -> {
+                throw new IllegalStateException();
+            });
+            fail();
+        } catch (IllegalStateException ignored) {
+            // Expected
+        }
+
+        assertThat(metrics.activeTasks(), is(0L));
+        assertThat(metrics.executionTime().count(), is(1L));
+    }
+
+    @Test
+    public void testRejectedTask() {
+        final BlockingTaskMetrics metrics = new BlockingTaskMetrics("foo");
+        final Executor executor = metrics.newExecutor(command -> {
+            throw new RejectedExecutionException();
+        });
+
+        try {
+            executor.execute(() -> {});
+            fail();
+        } catch (RejectedExecutionException ignored) {
+            // Expected
+        }
+
+        assertThat(metrics.submittedTasks(), is(1L));
+        assertThat(metrics.rejectedTasks(), is(1L));
+        assertThat(metrics.queuedTasks(), is(0L));
+        assertThat(metrics.queueWaitTime().count(), is(0L));
+    }
+}
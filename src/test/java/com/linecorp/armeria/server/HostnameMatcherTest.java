@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import io.netty.util.AsciiString;
+
+public class HostnameMatcherTest {
+
+    private static HostnameMatcher<String> matcher(String... patterns) {
+        final List<Entry<String, String>> mappings = new ArrayList<>();
+        for (String p : patterns) {
+            mappings.add(new SimpleImmutableEntry<>(VirtualHost.normalizeHostnamePattern(p), p));
+        }
+        return new HostnameMatcher<>("default", mappings);
+    }
+
+    @Test
+    public void testExactMatch() throws Exception {
+        final HostnameMatcher<String> m = matcher("foo.com", "bar.com");
+        assertThat(m.map("foo.com"), is("foo.com"));
+        assertThat(m.map("FOO.Com"), is("foo.com"));
+        assertThat(m.map("bar.com"), is("bar.com"));
+        assertThat(m.map("baz.com"), is("default"));
+        assertThat(m.map("a.foo.com"), is("default"));
+        assertThat(m.map(""), is("default"));
+        assertThat(m.map(null), is("default"));
+    }
+
+    @Test
+    public void testWildcardMatch() throws Exception {
+        final HostnameMatcher<String> m = matcher("*.foo.com", "*.bar.foo.com");
+        assertThat(m.map("foo.com"), is("*.foo.com"));
+        assertThat(m.map("a.foo.com"), is("*.foo.com"));
+        assertThat(m.map("a.b.foo.com"), is("*.foo.com"));
+        assertThat(m.map("A.BAR.foo.com"), is("*.bar.foo.com"));
+        assertThat(m.map("bar.foo.com"), is("*.bar.foo.com"));
+        assertThat(m.map("xfoo.com"), is("default"));
+        assertThat(m.map("foo.org"), is("default"));
+        assertThat(m.map(".foo.com"), is("*.foo.com"));
+    }
+
+    @Test
+    public void testExactMatchPreferredToWildcard() throws Exception {
+        final HostnameMatcher<String> m = matcher("*.foo.com", "a.foo.com");
+        assertThat(m.map("a.foo.com"), is("a.foo.com"));
+        assertThat(m.map("b.foo.com"), is("*.foo.com"));
+    }
+
+    @Test
+    public void testFirstDuplicateWins() throws Exception {
+        final List<Entry<String, String>> mappings = new ArrayList<>();
+        mappings.add(new SimpleImmutableEntry<>("foo.com", "1"));
+        mappings.add(new SimpleImmutableEntry<>("foo.com", "2"));
+        mappings.add(new SimpleImmutableEntry<>("*.bar.com", "3"));
+        mappings.add(new SimpleImmutableEntry<>("*.bar.com", "4"));
+        final HostnameMatcher<String> m = new HostnameMatcher<>("default", mappings);
+        assertThat(m.map("foo.com"), is("1"));
+        assertThat(m.map("a.bar.com"), is("3"));
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        final HostnameMatcher<String> m = matcher("foo.com", "*.bar.com");
+        final AsciiString host = new AsciiString("foo.com:8080");
+        assertThat(m.map(host, 0, 7), is("foo.com"));
+        assertThat(m.map(host, 0, host.length()), is("default"));
+        assertThat(m.map("xa.bar.com:80", 1, 10), is("*.bar.com"));
+        assertThat(m.map("foo.com", 0, 0), is("default"));
+    }
+
+    @Test
+    public void testInternationalizedHostname() throws Exception {
+        final HostnameMatcher<String> m = matcher("*.éxample.com");
+        assertThat(m.map("a.ÉXAMPLE.com"), is("*.éxample.com"));
+        assertThat(m.map("a.xn--xample-9ua.com"), is("*.éxample.com"));
+    }
+
+    @Test
+    public void testManyHosts() throws Exception {
+        final List<Entry<String, String>> mappings = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            mappings.add(new SimpleImmutableEntry<>("host" + i + ".foo.com", "exact" + i));
+            mappings.add(new SimpleImmutableEntry<>("*.tenant" + i + ".foo.com", "wildcard" + i));
+        }
+        final HostnameMatcher<String> m = new HostnameMatcher<>("default", mappings);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(m.map("host" + i + ".foo.com"), is("exact" + i));
+            assertThat(m.map("a.tenant" + i + ".foo.com"), is("wildcard" + i));
+        }
+        assertThat(m.map("host1000.foo.com"), is("default"));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.server.http.HttpService;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.Promise;
+
+public class ServerPortMetricsTest extends AbstractServerTest {
+
+    private static final BlockingQueue<Promise<Object>> pendingPromises = new LinkedBlockingQueue<>();
+    private static final BlockingQueue<ServiceInvocationContext> okContexts = new LinkedBlockingQueue<>();
+
+    @Override
+    protected void configureServer(ServerBuilder sb) throws Exception {
+        sb.port(0, SessionProtocol.HTTP);
+        sb.serviceAt("/ok", new HttpService((ctx, exec, promise) -> {
+            okContexts.add(ctx);
+            ctx.resolvePromise(promise, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                                                    Unpooled.copiedBuffer(new byte[16])));
+        }));
+        sb.serviceAt("/pending", new HttpService((ctx, exec, promise) -> pendingPromises.add(promise)));
+    }
+
+    @Test
+    public void testConnectionMetrics() throws Exception {
+        final ServerPortMetrics metrics = metrics();
+        final long acceptedConnections = metrics.acceptedConnections();
+        final long requests = metrics.requests();
+        final long bytesRead = metrics.bytesRead();
+        final long bytesWritten = metrics.bytesWritten();
+
+        try (CloseableHttpClient hc = HttpClients.createMinimal()) {
+            for (int i = 0; i < 3; i++) {
+                try (CloseableHttpResponse res = hc.execute(new HttpGet(uri("/ok")))) {
+                    assertThat(res.getStatusLine().getStatusCode(), is(200));
+                    EntityUtils.consume(res.getEntity());
+                }
+            }
+
+            // All requests were sent via a single keep-alive connection.
+            assertThat(metrics.acceptedConnections() - acceptedConnections, is(1L));
+            assertThat(metrics.activeConnections(), is(1L));
+            assertThat(metrics.activeHttp1Connections(), is(1L));
+            assertThat(metrics.activeHttp2Connections(), is(0L));
+            assertThat(metrics.requests() - requests, is(3L));
+            assertThat(metrics.bytesRead(), greaterThan(bytesRead));
+            assertThat(metrics.bytesWritten() - bytesWritten, greaterThan(3L * 16));
+        }
+
+        // The HTTP/1 connection count is decremented when the pipeline is torn down, which may happen
+        // slightly after the channel becomes inactive.
+        await(() -> metrics.activeConnections() == 0 && metrics.activeHttp1Connections() == 0);
+        assertThat(metrics.inflightRequests(), is(0L));
+        assertThat(metrics.pendingResponses(), is(0L));
+    }
+
+    @Test
+    public void testInflightRequests() throws Exception {
+        final ServerPortMetrics metrics = metrics();
+
+        try (CloseableHttpClient hc = HttpClients.createMinimal()) {
+            final Thread requester = new Thread(() -> {
+                try (CloseableHttpResponse res = hc.execute(new HttpGet(uri("/pending")))) {
+                    EntityUtils.consume(res.getEntity());
+                } catch (Exception ignored) {
+                    // Validated by the main thread.
+                }
+            });
+            requester.start();
+
+            final Promise<Object> promise = pendingPromises.poll(10, TimeUnit.SECONDS);
+            assertThat(metrics.inflightRequests(), is(1L));
+
+            promise.setSuccess(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+            requester.join(10000);
+            assertThat(requester.isAlive(), is(false));
+            await(() -> metrics.inflightRequests() == 0);
+        }
+    }
+
+    @Test
+    public void testPendingResponsesOnClose() throws Exception {
+        final ServerPortMetrics metrics = metrics();
+        okContexts.clear();
+
+        try (Socket s = new Socket(NetUtil.LOCALHOST, httpPort())) {
+            // The response of '/ok' is held back until the response of '/pending' is written.
+            s.getOutputStream().write(("GET /pending HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                                       "GET /ok HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                                              .getBytes(StandardCharsets.US_ASCII));
+            assertThat(pendingPromises.poll(10, TimeUnit.SECONDS), is(notNullValue()));
+            await(() -> metrics.pendingResponses() == 1);
+        }
+
+        // The invocation whose response was never written must be completed when the connection is closed.
+        final ServiceInvocationContext ctx = okContexts.poll(10, TimeUnit.SECONDS);
+        assertThat(ctx, is(notNullValue()));
+        await(() -> ctx.timings().isComplete());
+        await(() -> metrics.pendingResponses() == 0 && metrics.inflightRequests() == 0);
+    }
+
+    private static ServerPortMetrics metrics() {
+        assertThat(server().portMetrics().size(), is(1));
+        return server().portMetrics().values().iterator().next();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat("timed out", System.nanoTime() - deadline < 0, is(true));
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.server.http.HttpService;
+import com.linecorp.armeria.server.http.inflight.SlowRequestService;
+
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+public class SlowRequestWatchdogTest extends AbstractServerTest {
+
+    private static final CountDownLatch blockingTaskLatch = new CountDownLatch(1);
+
+    @Override
+    protected void configureServer(ServerBuilder sb) throws Exception {
+        sb.port(0, SessionProtocol.HTTP);
+        sb.slowRequestThreshold(Duration.ofMillis(100));
+        sb.serviceAt("/slow", new HttpService((ctx, blockingTaskExecutor, promise) -> {
+            blockingTaskExecutor.execute(() -> {
+                try {
+                    blockingTaskLatch.await();
+                } catch (InterruptedException ignored) {
+                    // Ignore.
+                }
+                ctx.resolvePromise(promise, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                                                                        HttpResponseStatus.OK));
+            });
+        }));
+        sb.serviceAt("/slow-requests", new SlowRequestService());
+    }
+
+    @Test
+    public void testSlowRequest() throws Exception {
+        assertThat(server().slowRequests().isEmpty(), is(true));
+
+        try (CloseableHttpClient hc = HttpClients.createMinimal()) {
+            final Thread requester = new Thread(() -> {
+                try (CloseableHttpResponse res = hc.execute(new HttpGet(uri("/slow")))) {
+                    EntityUtils.consume(res.getEntity());
+                } catch (Exception ignored) {
+                    // Validated by the main thread.
+                }
+            });
+            requester.start();
+
+            // Wait until the request is found slow by the watchdog.
+            await(() -> {
+                final List<InflightRequest> slowRequests = server().slowRequests();
+                return slowRequests.size() == 1 && slowRequests.get(0).isSlow();
+            });
+
+            final InflightRequest req = server().slowRequests().get(0);
+            assertThat(req.context().path(), is("/slow"));
+            assertThat(req.blockingTaskThread(), is(notNullValue()));
+            assertThat(req.stackTrace().length > 0, is(true));
+
+            try (CloseableHttpClient hc2 = HttpClients.createMinimal();
+                 CloseableHttpResponse res = hc2.execute(new HttpGet(uri("/slow-requests")))) {
+                assertThat(res.getStatusLine().getStatusCode(), is(200));
+                final String content = EntityUtils.toString(res.getEntity());
+                assertThat(content, containsString("1 slow request(s)"));
+                assertThat(content, containsString(req.blockingTaskThread().getName()));
+                assertThat(content, containsString("CountDownLatch.await"));
+            }
+
+            blockingTaskLatch.countDown();
+            requester.join(10000);
+            assertThat(requester.isAlive(), is(false));
+            await(() -> server().slowRequests().isEmpty());
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat("timed out", System.nanoTime() - deadline < 0, is(true));
+            Thread.sleep(10);
+        }
+    }
+}
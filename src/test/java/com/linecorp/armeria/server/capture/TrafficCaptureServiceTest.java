@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.capture;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.linecorp.armeria.common.capture.CapturedExchange;
+import com.linecorp.armeria.common.capture.TrafficCaptureReader;
+import com.linecorp.armeria.common.capture.TrafficCaptureWriter;
+import com.linecorp.armeria.common.capture.TrafficCaptureWriterBuilder;
+import com.linecorp.armeria.server.AbstractServerTest;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.http.HttpService;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+public class TrafficCaptureServiceTest extends AbstractServerTest {
+
+    @ClassRule
+    public static final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static TrafficCaptureWriter writer;
+
+    @Override
+    protected void configureServer(ServerBuilder sb) throws Exception {
+        writer = new TrafficCaptureWriterBuilder(tempFolder.newFolder().toPath()).build();
+        sb.serviceAt("/foo", new HttpService((ctx, exec, promise) -> promise.trySuccess(
+                new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                           Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8))))
+                .decorate(TrafficCaptureService.newDecorator(writer, 1.0)));
+    }
+
+    @Test
+    public void testQueryStringIsCaptured() throws Exception {
+        try (CloseableHttpClient hc = HttpClients.createMinimal();
+             CloseableHttpResponse res = hc.execute(new HttpGet(uri("/foo?bar=baz")))) {
+            assertThat(res.getStatusLine().getStatusCode(), is(200));
+        }
+
+        // Flush the pending exchanges to the disk.
+        writer.close();
+
+        final List<CapturedExchange> exchanges = new TrafficCaptureReader(writer.directory()).readAll();
+        assertThat(exchanges, hasSize(1));
+
+        final CapturedExchange e = exchanges.get(0);
+        assertThat(e.httpMethod(), is("GET"));
+        assertThat(e.path(), is("/foo?bar=baz"));
+        assertThat(e.statusCode(), is(200));
+        assertThat(new String(e.responseContent(), StandardCharsets.UTF_8), is("hello"));
+    }
+}
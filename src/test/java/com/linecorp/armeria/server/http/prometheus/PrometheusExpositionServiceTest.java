@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.http.prometheus;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.metrics.HistogramMetricConsumer;
+import com.linecorp.armeria.common.metrics.prometheus.RequestMetricsCollector;
+import com.linecorp.armeria.server.AbstractServerTest;
+import com.linecorp.armeria.server.ServerBuilder;
+
+public class PrometheusExpositionServiceTest extends AbstractServerTest {
+
+    private static final HistogramMetricConsumer consumer = new HistogramMetricConsumer();
+
+    @Override
+    protected void configureServer(ServerBuilder sb) throws Exception {
+        final RequestMetricsCollector requestMetrics =
+                new RequestMetricsCollector(Collections.singletonMap("hello", consumer));
+
+        sb.serviceAt("/metrics", new PrometheusExpositionService(
+                requestMetrics,
+                out -> {
+                    out.sample("broken").label("a", "b");
+                    throw new IllegalStateException();
+                }));
+        sb.serviceAt("/uncached", new PrometheusExpositionService(Duration.ZERO, requestMetrics));
+    }
+
+    @Test
+    public void testExposition() throws Exception {
+        record("greet", 200, 1000000);
+        record("greet", 500, 3000000);
+
+        try (CloseableHttpClient hc = HttpClients.createMinimal()) {
+            final String content;
+            try (CloseableHttpResponse res = hc.execute(new HttpGet(uri("/metrics")))) {
+                assertThat(res.getStatusLine().getStatusCode(), is(200));
+                assertThat(res.getFirstHeader("Content-Type").getValue(),
+                           startsWith("text/plain; version=0.0.4"));
+                content = EntityUtils.toString(res.getEntity());
+            }
+
+            assertThat(content, containsString("# TYPE armeria_requests_total counter\n"));
+            assertThat(content, containsString(
+                    "armeria_requests_total{service=\"hello\",method=\"greet\",result=\"success\"} 1\n"));
+            assertThat(content, containsString(
+                    "armeria_requests_total{service=\"hello\",method=\"greet\",result=\"failure\"} 1\n"));
+            assertThat(content, containsString(
+                    "armeria_request_duration_seconds_sum{service=\"hello\",method=\"greet\"} 4000000e-9\n"));
+            assertThat(content, containsString(
+                    "armeria_request_duration_seconds_count{service=\"hello\",method=\"greet\"} 2\n"));
+
+            // The partial output of the broken collector must be discarded.
+            assertThat(content, not(containsString("broken")));
+
+            // The cached content is served until it expires.
+            record("greet", 200, 1000000);
+            try (CloseableHttpResponse res = hc.execute(new HttpGet(uri("/metrics")))) {
+                assertThat(EntityUtils.toString(res.getEntity()), is(content));
+            }
+
+            try (CloseableHttpResponse res = hc.execute(new HttpGet(uri("/uncached")))) {
+                assertThat(EntityUtils.toString(res.getEntity()), containsString(
+                        "armeria_requests_total{service=\"hello\",method=\"greet\",result=\"success\"} 2\n"));
+            }
+        }
+    }
+
+    private static void record(String method, int code, long processTimeNanos) {
+        consumer.invocationComplete(Scheme.of(SerializationFormat.NONE, SessionProtocol.HTTP), code,
+                                    processTimeNanos, 10, 20, "localhost", "/", Optional.of(method));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.logging;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import com.linecorp.armeria.common.Scheme;
+import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.common.SessionProtocol;
+
+public class AccessLogWriterTest {
+
+    private static final Scheme SCHEME = Scheme.of(SerializationFormat.THRIFT_BINARY, SessionProtocol.H2C);
+    private static final InetSocketAddress ADDR = new InetSocketAddress("127.0.0.1", 8080);
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testBatchedWrites() throws Exception {
+        final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        final AccessLogWriter writer = new AccessLogWriterBuilder(r -> lines.add(r.toString())).build();
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final Thread t = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    writer.write(0, ADDR, SCHEME, "foo.com", "/path", "hello", 200, 10, 20, 1000);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        writer.close();
+
+        assertThat(writer.droppedRecords(), is(0L));
+        assertThat(lines, hasSize(4000));
+        assertThat(lines.get(0), is("1970-01-01T00:00:00Z /127.0.0.1:8080 tbinary+h2c://foo.com/path#hello " +
+                                    "200 10B 20B 1000ns"));
+    }
+
+    @Test
+    public void testUnknownStatusCode() throws Exception {
+        final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        final AccessLogWriter writer = new AccessLogWriterBuilder(r -> lines.add(r.toString())).build();
+        writer.write(0, ADDR, SCHEME, "foo.com", "/path", "hello", 0, 10, 20, 1000);
+        writer.close();
+
+        assertThat(lines, hasSize(1));
+        assertThat(lines.get(0), containsString("tbinary+h2c://foo.com/path#hello <unknown> 10B"));
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<AccessLogRecord> written = Collections.synchronizedList(new ArrayList<>());
+        final AccessLogWriter writer = new AccessLogWriterBuilder(r -> {
+            Uninterruptibles.awaitUninterruptibly(latch);
+            written.add(r);
+        }).ringBufferSize(3).build();
+
+        for (int i = 0; i < 100; i++) {
+            writer.write(0, ADDR, SCHEME, "foo.com", "/path", null, 200, 0, 0, 0);
+        }
+
+        assertThat(writer.droppedRecords(), greaterThan(0L));
+        latch.countDown();
+        writer.close();
+
+        // The ring buffer size is rounded up to 4.
+        assertThat(written.size() + writer.droppedRecords(), is(100L));
+        assertThat(written.size() <= 4, is(true));
+    }
+
+    @Test(timeout = 10000)
+    public void testTerminatedThread() throws Exception {
+        final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        final AccessLogWriter writer = new AccessLogWriterBuilder(r -> lines.add(r.toString()))
+                .flushInterval(Duration.ofMillis(10)).build();
+
+        final Thread t = new Thread(
+                () -> writer.write(0, ADDR, SCHEME, "foo.com", "/path", "hello", 200, 10, 20, 1000));
+        t.start();
+        t.join();
+
+        // The ring buffer of the terminated thread is removed once drained.
+        while (writer.numRingBuffers() != 0) {
+            Thread.sleep(10);
+        }
+        assertThat(lines, hasSize(1));
+
+        writer.close();
+    }
+
+    @Test
+    public void testFileSink() throws Exception {
+        final Path path = tempFolder.newFile().toPath();
+        final AccessLogWriter writer = new AccessLogWriterBuilder(AccessLogSink.ofFile(path)).build();
+        writer.write(0, ADDR, SCHEME, "foo.com", "/path", "hello", 500, 10, 20, 1000);
+        writer.close();
+
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertThat(lines, hasSize(1));
+        assertThat(lines.get(0), containsString("tbinary+h2c://foo.com/path#hello 500"));
+    }
+}
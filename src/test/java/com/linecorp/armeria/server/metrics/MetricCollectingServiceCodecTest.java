@@ -16,11 +16,17 @@
 
 package com.linecorp.armeria.server.metrics;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
@@ -31,7 +37,10 @@ import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 
+import com.linecorp.armeria.common.InvocationTimings;
+import com.linecorp.armeria.common.Scheme;
 import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.metrics.MethodMetricConsumer;
 import com.linecorp.armeria.common.metrics.MetricConsumer;
 import com.linecorp.armeria.server.AbstractServerTest;
 import com.linecorp.armeria.server.ServerBuilder;
@@ -126,4 +135,91 @@ public class MetricCollectingServiceCodecTest {
                         defaultConsumer);
         }
     }
+
+    public static class TimingsTest extends AbstractServerTest {
+        private volatile InvocationTimings timings;
+
+        @Override
+        protected void configureServer(ServerBuilder sb) throws Exception {
+            setupServer(sb, (ctx, blockingTaskExecutor, promise) -> blockingTaskExecutor.execute(() -> {
+                            try {
+                                Thread.sleep(100);
+                            } catch (InterruptedException ignored) {
+                                // Ignore
+                            }
+                            promise.trySuccess("Hello World");
+                        }),
+                        new MetricConsumer() {
+                            @Override
+                            public void invocationComplete(Scheme scheme, int code, long processTimeNanos,
+                                                           int requestSize, int responseSize, String hostname,
+                                                           String path, Optional<String> method) {}
+
+                            @Override
+                            public void invocationComplete(Scheme scheme, int code, long processTimeNanos,
+                                                           int requestSize, int responseSize, String hostname,
+                                                           String path, Optional<String> method,
+                                                           InvocationTimings timings) {
+                                TimingsTest.this.timings = timings;
+                            }
+                        });
+        }
+
+        @Test
+        public void test() throws Exception {
+            try (CloseableHttpClient hc = HttpClients.createMinimal()) {
+                final HttpPost req = new HttpPost(uri("/"));
+                req.setEntity(new StringEntity("Hello, world!", StandardCharsets.UTF_8));
+
+                hc.execute(req);
+
+                final InvocationTimings timings = this.timings;
+                assertThat(timings.isComplete(), is(true));
+                assertThat(timings.handlerDurationNanos(),
+                           is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100))));
+                assertThat(timings.totalDurationNanos(),
+                           is(greaterThanOrEqualTo(timings.decodeDurationNanos() +
+                                                   timings.queueDurationNanos() +
+                                                   timings.handlerDurationNanos() +
+                                                   timings.encodeDurationNanos() +
+                                                   timings.pendingDurationNanos())));
+            }
+        }
+    }
+
+    public static class MethodConsumerTest extends AbstractServerTest {
+        private final AtomicInteger resolved = new AtomicInteger();
+
+        @Override
+        protected void configureServer(ServerBuilder sb) throws Exception {
+            setupServer(sb, (ctx, blockingTaskExecutor, promise) -> promise.trySuccess("Hello World"),
+                        new MetricConsumer() {
+                            @Override
+                            public void invocationComplete(Scheme scheme, int code, long processTimeNanos,
+                                                           int requestSize, int responseSize, String hostname,
+                                                           String path, Optional<String> method) {}
+
+                            @Override
+                            public MethodMetricConsumer methodConsumer(String method) {
+                                assertThat(method, is("someMethod"));
+                                resolved.incrementAndGet();
+                                return MetricConsumer.super.methodConsumer(method);
+                            }
+                        });
+        }
+
+        @Test
+        public void test() throws Exception {
+            try (CloseableHttpClient hc = HttpClients.createMinimal()) {
+                for (int i = 0; i < 3; i++) {
+                    final HttpPost req = new HttpPost(uri("/"));
+                    req.setEntity(new StringEntity("Hello, world!", StandardCharsets.UTF_8));
+                    hc.execute(req).close();
+                }
+            }
+
+            // Resolved only once for the same method.
+            assertThat(resolved.get(), is(1));
+        }
+    }
 }
@@ -18,13 +18,18 @@ package com.linecorp.armeria.server.metrics;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
+import com.linecorp.armeria.common.InvocationTimings;
 import com.linecorp.armeria.common.Scheme;
 import com.linecorp.armeria.common.SerializationFormat;
 import org.junit.Test;
 
 import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.metrics.MethodMetricConsumer;
 import com.linecorp.armeria.common.metrics.MetricConsumer;
 
 public class MetricConsumerTest {
@@ -39,5 +44,43 @@ public class MetricConsumerTest {
 
         assertEquals("invocationComplete should be executed twice", 2, executeCounter[0]);
     }
-}
 
+    @Test
+    public void testAndThenWithTimings() throws Exception {
+        final InvocationTimings timings = new InvocationTimings();
+        final List<InvocationTimings> received = new ArrayList<>();
+
+        MetricConsumer consumer = new MetricConsumer() {
+            @Override
+            public void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
+                                           int responseSize, String hostname, String path,
+                                           Optional<String> method) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void invocationComplete(Scheme scheme, int code, long processTimeNanos, int requestSize,
+                                           int responseSize, String hostname, String path,
+                                           Optional<String> method, InvocationTimings timings) {
+                received.add(timings);
+            }
+        };
+        consumer.andThen(consumer).invocationComplete(
+                Scheme.of(SerializationFormat.NONE, SessionProtocol.HTTP), 200, 0, 0, 0, "", "",
+                Optional.of(""), timings);
+
+        assertEquals(Arrays.asList(timings, timings), received);
+    }
+
+    @Test
+    public void testAndThenWithMethodConsumer() throws Exception {
+        final List<Optional<String>> received = new ArrayList<>();
+
+        MetricConsumer consumer = (a, b, c, d, e, f, g, h) -> received.add(h);
+        final MethodMetricConsumer methodConsumer = consumer.andThen(consumer).methodConsumer("foo");
+        methodConsumer.invocationComplete(
+                Scheme.of(SerializationFormat.NONE, SessionProtocol.HTTP), 200, 0, 0, 0, "", "", null);
+
+        assertEquals(Arrays.asList(Optional.of("foo"), Optional.of("foo")), received);
+    }
+}
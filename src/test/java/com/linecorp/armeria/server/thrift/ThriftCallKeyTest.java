@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.linecorp.armeria.common.SerializationFormat;
+
+/**
+ * Tests {@link ThriftCallKey}.
+ */
+public class ThriftCallKeyTest {
+
+    private static final int COLLIDING_HASH = 42;
+
+    @Test
+    public void testHashCollision() {
+        final ThriftCallKey a = new ThriftCallKey(SerializationFormat.THRIFT_BINARY, "hello", 1,
+                                                  new byte[] { 1, 2, 3 }, COLLIDING_HASH);
+        final ThriftCallKey b = new ThriftCallKey(SerializationFormat.THRIFT_BINARY, "hello", 2,
+                                                  new byte[] { 3, 2, 1 }, COLLIDING_HASH);
+
+        // The arguments of the same length and hash are still different.
+        assertThat(a.hashCode(), is(b.hashCode()));
+        assertThat(a, is(not(b)));
+
+        final Map<ThriftCallKey, String> map = new HashMap<>();
+        map.put(a, "a");
+        map.put(b, "b");
+        assertThat(map.size(), is(2));
+        assertThat(map.get(a), is("a"));
+        assertThat(map.get(b), is("b"));
+    }
+
+    @Test
+    public void testSameArguments() {
+        final ThriftCallKey a = new ThriftCallKey(SerializationFormat.THRIFT_BINARY, "hello", 1,
+                                                  new byte[] { 1, 2, 3 }, COLLIDING_HASH);
+        final ThriftCallKey b = new ThriftCallKey(SerializationFormat.THRIFT_BINARY, "hello", 2,
+                                                  new byte[] { 1, 2, 3 }, COLLIDING_HASH);
+        final ThriftCallKey c = new ThriftCallKey(SerializationFormat.THRIFT_COMPACT, "hello", 3,
+                                                  new byte[] { 1, 2, 3 }, COLLIDING_HASH);
+
+        // The sequence ID is not a part of the key, but the serialization format is.
+        assertThat(a, is(b));
+        assertThat(a, is(not(c)));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.junit.Test;
+
+import com.linecorp.armeria.client.Clients;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.thrift.ThriftProtocolFactories;
+import com.linecorp.armeria.server.AbstractServerTest;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.ServerPort;
+import com.linecorp.armeria.server.http.HttpService;
+import com.linecorp.armeria.server.logging.LoggingService;
+import com.linecorp.armeria.service.test.thrift.main.HelloService;
+import com.linecorp.armeria.service.test.thrift.main.SleepService;
+
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+public class ThriftOverTFramedTest extends AbstractServerTest {
+
+    private static class SleepAndHelloService implements SleepService.AsyncIface, HelloService.Iface {
+        @Override
+        public void sleep(long milliseconds, AsyncMethodCallback resultHandler) {
+            GlobalEventExecutor.INSTANCE.schedule(() -> resultHandler.onComplete(milliseconds),
+                                                  milliseconds, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public String hello(String name) {
+            return "Hello, " + name + '!';
+        }
+    }
+
+    @Override
+    protected void configureServer(ServerBuilder sb) throws Exception {
+        sb.port(0, SessionProtocol.HTTP);
+        sb.port(new ServerPort(0, SessionProtocol.TFRAMED, "/thrift"));
+        sb.serviceAt("/thrift", ThriftService.of(new SleepAndHelloService()).decorate(LoggingService::new));
+    }
+
+    @Test
+    public void testInvocation() throws Exception {
+        try (TTransport transport = newTransport()) {
+            final HelloService.Client client = new HelloService.Client.Factory().getClient(
+                    ThriftProtocolFactories.BINARY.getProtocol(transport));
+
+            assertThat(client.hello("Trustin"), is("Hello, Trustin!"));
+            assertThat(client.hello("Armeria"), is("Hello, Armeria!"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testOutOfOrderReplies() throws Exception {
+        try (TTransport transport = newTransport()) {
+            final TProtocol proto = ThriftProtocolFactories.BINARY.getProtocol(transport);
+            final SleepService.Client sleepClient = new SleepService.Client.Factory().getClient(proto);
+            final HelloService.Client helloClient = new HelloService.Client.Factory().getClient(proto);
+
+            // Send both calls before reading any reply.
+            sleepClient.send_sleep(500);
+            helloClient.send_hello("Trustin");
+
+            // The reply of the call which finished earlier must come first.
+            assertThat(helloClient.recv_hello(), is("Hello, Trustin!"));
+            assertThat(sleepClient.recv_sleep(), is(500L));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonThriftService() throws Exception {
+        final HttpService service = new HttpService((ctx, exec, promise) -> promise.setSuccess(null));
+        new ServerBuilder().port(new ServerPort(0, SessionProtocol.TFRAMED, "/http"))
+                           .serviceAt("/http", service)
+                           .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchedThriftService() throws Exception {
+        new ServerBuilder().port(new ServerPort(0, SessionProtocol.TFRAMED, "/thrift"))
+                           .serviceAt("/thrift", ThriftService.of(new SleepAndHelloService()).batched())
+                           .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClientRejectsTFramed() throws Exception {
+        Clients.newClient("tbinary+tframed://127.0.0.1:" + httpPort() + "/thrift", HelloService.Iface.class);
+    }
+
+    private static TTransport newTransport() throws Exception {
+        final int port = server().activePorts().values().stream()
+                                 .filter(p -> p.protocol() == SessionProtocol.TFRAMED).findAny().get()
+                                 .localAddress().getPort();
+
+        final TTransport transport = new TFramedTransport(new TSocket("127.0.0.1", port));
+        transport.open();
+        return transport;
+    }
+}
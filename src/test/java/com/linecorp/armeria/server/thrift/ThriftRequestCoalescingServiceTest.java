@@ -0,0 +1,310 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.protocol.TProtocol;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.thrift.TByteBufTransport;
+import com.linecorp.armeria.common.thrift.ThriftProtocolFactories;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.Service;
+import com.linecorp.armeria.server.ServiceCodec;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResult;
+import com.linecorp.armeria.server.ServiceConfig;
+import com.linecorp.armeria.service.test.thrift.main.HelloService;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Tests {@link ThriftRequestCoalescingService}.
+ */
+@RunWith(Parameterized.class)
+public class ThriftRequestCoalescingServiceTest {
+
+    private static final Channel CH = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    private static final SessionProtocol PROTO = SessionProtocol.HTTP;
+    private static final String HOST = "localhost";
+    private static final String PATH = "/service";
+
+    private static final TByteBufTransport inTransport = new TByteBufTransport();
+    private static final TByteBufTransport outTransport = new TByteBufTransport();
+
+    private static final ByteBuf in = Unpooled.buffer();
+    private static final ByteBuf out = Unpooled.buffer();
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws Exception {
+        List<Object[]> parameters = new ArrayList<>();
+
+        parameters.add(new Object[] { SerializationFormat.THRIFT_BINARY });
+        parameters.add(new Object[] { SerializationFormat.THRIFT_COMPACT });
+        parameters.add(new Object[] { SerializationFormat.THRIFT_JSON });
+
+        return parameters;
+    }
+
+    private final SerializationFormat defaultSerializationFormat;
+    private final TProtocol inProto;
+    private final TProtocol outProto;
+    private final List<AsyncMethodCallback> callbacks = new ArrayList<>();
+
+    public ThriftRequestCoalescingServiceTest(SerializationFormat defaultSerializationFormat) {
+        this.defaultSerializationFormat = defaultSerializationFormat;
+        inProto = ThriftProtocolFactories.get(defaultSerializationFormat).getProtocol(inTransport);
+        outProto = ThriftProtocolFactories.get(defaultSerializationFormat).getProtocol(outTransport);
+    }
+
+    @BeforeClass
+    public static void beforeClass() {
+        inTransport.reset(in);
+        outTransport.reset(out);
+    }
+
+    @Before
+    public void before() {
+        in.clear();
+        out.clear();
+        callbacks.clear();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        in.release();
+        out.release();
+    }
+
+    @Test
+    public void testCoalesced() throws Exception {
+        final ThriftRequestCoalescingService service = newService();
+        final HelloService.Client client1 = new HelloService.Client.Factory().getClient(inProto, outProto);
+        final HelloService.Client client2 = newClientWithDifferentSeqId();
+
+        final Promise<ByteBuf> promise1 = hello(service, client1, "foo");
+        final Promise<ByteBuf> promise2 = hello(service, client2, "foo");
+
+        assertThat(callbacks.size(), is(1));
+        assertThat(service.inflightCount(), is(1));
+        assertThat(service.coalescedCount(), is(1L));
+        assertThat(promise2.isDone(), is(false));
+
+        callbacks.get(0).onComplete("Hello, foo!");
+        assertThat(service.inflightCount(), is(0));
+
+        // Each reply must have the sequence ID of its call.
+        assertThat(recv(client1, promise1), is("Hello, foo!"));
+        assertThat(recv(client2, promise2), is("Hello, foo!"));
+    }
+
+    @Test
+    public void testCoalesced_encodedReply() throws Exception {
+        // The reply is encoded by the invocation handler rather than the codec.
+        final ThriftRequestCoalescingService service =
+                newService(s -> s.offloadLargeMessages(1, ImmediateEventExecutor.INSTANCE));
+        final HelloService.Client client1 = new HelloService.Client.Factory().getClient(inProto, outProto);
+        final HelloService.Client client2 = newClientWithDifferentSeqId();
+
+        final Promise<ByteBuf> promise1 = hello(service, client1, "foo");
+        final Promise<ByteBuf> promise2 = hello(service, client2, "foo");
+
+        assertThat(callbacks.size(), is(1));
+        assertThat(service.coalescedCount(), is(1L));
+
+        callbacks.get(0).onComplete("Hello, foo!");
+
+        // The reply to the leader must not be released until it is sent,
+        // and the reply to the follower must outlive the reply to the leader.
+        final ByteBuf reply1 = promise1.sync().getNow();
+        assertThat(reply1.refCnt() > 0, is(true));
+        assertThat(recv(client1, promise1), is("Hello, foo!"));
+        assertThat(recv(client2, promise2), is("Hello, foo!"));
+        assertThat(reply1.refCnt(), is(0));
+    }
+
+    @Test
+    public void testCoalescedFailure() throws Exception {
+        final ThriftRequestCoalescingService service = newService();
+        final HelloService.Client client1 = new HelloService.Client.Factory().getClient(inProto, outProto);
+        final HelloService.Client client2 = newClientWithDifferentSeqId();
+
+        final Promise<ByteBuf> promise1 = hello(service, client1, "foo");
+        final Promise<ByteBuf> promise2 = hello(service, client2, "foo");
+
+        assertThat(callbacks.size(), is(1));
+        callbacks.get(0).onError(new IllegalStateException("failed"));
+
+        assertInternalError(client1, promise1);
+        assertInternalError(client2, promise2);
+    }
+
+    @Test
+    public void testDifferentArgs() throws Exception {
+        final ThriftRequestCoalescingService service = newService();
+        final HelloService.Client client1 = new HelloService.Client.Factory().getClient(inProto, outProto);
+        final HelloService.Client client2 = newClientWithDifferentSeqId();
+
+        final Promise<ByteBuf> promise1 = hello(service, client1, "foo");
+        final Promise<ByteBuf> promise2 = hello(service, client2, "bar");
+
+        assertThat(callbacks.size(), is(2));
+        assertThat(service.inflightCount(), is(2));
+        assertThat(service.coalescedCount(), is(0L));
+
+        callbacks.get(0).onComplete("Hello, foo!");
+        callbacks.get(1).onComplete("Hello, bar!");
+
+        assertThat(recv(client1, promise1), is("Hello, foo!"));
+        assertThat(recv(client2, promise2), is("Hello, bar!"));
+    }
+
+    @Test
+    public void testMaxFollowers() throws Exception {
+        final ThriftRequestCoalescingService service = new ThriftRequestCoalescingService(
+                newThriftService(), 16, 1, Collections.singleton("hello"));
+        final HelloService.Client client1 = new HelloService.Client.Factory().getClient(inProto, outProto);
+        final HelloService.Client client2 = newClientWithDifferentSeqId();
+        final HelloService.Client client3 = newClientWithDifferentSeqId();
+
+        final Promise<ByteBuf> promise1 = hello(service, client1, "foo");
+        final Promise<ByteBuf> promise2 = hello(service, client2, "foo");
+        final Promise<ByteBuf> promise3 = hello(service, client3, "foo");
+
+        // The third call is served as usual because the leader has as many followers as it can have.
+        assertThat(callbacks.size(), is(2));
+        assertThat(service.inflightCount(), is(1));
+        assertThat(service.coalescedCount(), is(1L));
+
+        callbacks.get(0).onComplete("Hello, foo!");
+        callbacks.get(1).onComplete("Hello, foo!");
+
+        assertThat(recv(client1, promise1), is("Hello, foo!"));
+        assertThat(recv(client2, promise2), is("Hello, foo!"));
+        assertThat(recv(client3, promise3), is("Hello, foo!"));
+    }
+
+    private ThriftRequestCoalescingService newService() {
+        return newService(Function.identity());
+    }
+
+    private ThriftRequestCoalescingService newService(Function<ThriftService, ThriftService> customizer) {
+        return customizer.apply(newThriftService())
+                         .decorate(ThriftRequestCoalescingService.newDecorator(16, "hello"))
+                         .as(ThriftRequestCoalescingService.class).get();
+    }
+
+    private ThriftService newThriftService() {
+        return ThriftService.of(
+                (HelloService.AsyncIface) (name, resultHandler) -> callbacks.add(resultHandler),
+                defaultSerializationFormat);
+    }
+
+    private HelloService.Client newClientWithDifferentSeqId() throws Exception {
+        final HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello("");
+        client.send_hello("");
+        out.clear();
+        return client;
+    }
+
+    private static Promise<ByteBuf> hello(Service service, HelloService.Client client,
+                                          String name) throws Exception {
+        client.send_hello(name);
+
+        final Promise<ByteBuf> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+        invoke(service, out.copy(), promise);
+        out.clear();
+        return promise;
+    }
+
+    private static String recv(HelloService.Client client, Promise<ByteBuf> promise) throws Exception {
+        promise.sync();
+
+        in.clear();
+        in.writeBytes(promise.get());
+        promise.get().release();
+
+        return client.recv_hello();
+    }
+
+    private static void assertInternalError(HelloService.Client client, Promise<ByteBuf> promise)
+            throws Exception {
+        try {
+            recv(client, promise);
+            fail(TApplicationException.class.getSimpleName() + " not raised.");
+        } catch (TApplicationException e) {
+            assertThat(e.getType(), is(TApplicationException.INTERNAL_ERROR));
+        }
+    }
+
+    private static void invoke(Service service, ByteBuf in, Promise<ByteBuf> promise) throws Exception {
+        final ServiceConfig cfg =
+                new ServerBuilder().serviceAt("/", service).build().config().serviceConfigs().get(0);
+
+        final ServiceCodec codec = service.codec();
+        final Promise<Object> objPromise = CH.eventLoop().newPromise();
+        final DecodeResult result = codec.decodeRequest(
+                cfg, CH, PROTO, HOST, PATH, PATH, in, null, objPromise);
+
+        switch (result.type()) {
+        case SUCCESS:
+            final ServiceInvocationContext ctx = result.invocationContext();
+            cfg.service().handler().invoke(ctx, GlobalEventExecutor.INSTANCE, objPromise);
+            objPromise.addListener((Future<Object> future) -> {
+                if (future.isSuccess()) {
+                    promise.setSuccess(codec.encodeResponse(ctx, future.getNow()));
+                } else {
+                    promise.setSuccess(codec.encodeFailureResponse(ctx, future.cause()));
+                }
+            });
+            break;
+        case FAILURE:
+            promise.setSuccess((ByteBuf) result.errorResponse());
+            break;
+        default:
+            promise.setFailure(new IllegalStateException("unexpected decode result type: " + result.type()));
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 LINE Corporation
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.linecorp.armeria.server.thrift;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.protocol.TProtocol;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.linecorp.armeria.common.SerializationFormat;
+import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.thrift.TByteBufTransport;
+import com.linecorp.armeria.common.thrift.ThriftProtocolFactories;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.Service;
+import com.linecorp.armeria.server.ServiceCodec;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResult;
+import com.linecorp.armeria.server.ServiceConfig;
+import com.linecorp.armeria.service.test.thrift.main.HelloService;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Tests {@link ThriftResponseCacheService}.
+ */
+@RunWith(Parameterized.class)
+public class ThriftResponseCacheServiceTest {
+
+    private static final Channel CH = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    private static final SessionProtocol PROTO = SessionProtocol.HTTP;
+    private static final String HOST = "localhost";
+    private static final String PATH = "/service";
+
+    private static final TByteBufTransport inTransport = new TByteBufTransport();
+    private static final TByteBufTransport outTransport = new TByteBufTransport();
+
+    private static final ByteBuf in = Unpooled.buffer();
+    private static final ByteBuf out = Unpooled.buffer();
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws Exception {
+        List<Object[]> parameters = new ArrayList<>();
+
+        parameters.add(new Object[] { SerializationFormat.THRIFT_BINARY });
+        parameters.add(new Object[] { SerializationFormat.THRIFT_COMPACT });
+        parameters.add(new Object[] { SerializationFormat.THRIFT_JSON });
+
+        return parameters;
+    }
+
+    private final SerializationFormat defaultSerializationFormat;
+    private final TProtocol inProto;
+    private final TProtocol outProto;
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    public ThriftResponseCacheServiceTest(SerializationFormat defaultSerializationFormat) {
+        this.defaultSerializationFormat = defaultSerializationFormat;
+        inProto = ThriftProtocolFactories.get(defaultSerializationFormat).getProtocol(inTransport);
+        outProto = ThriftProtocolFactories.get(defaultSerializationFormat).getProtocol(outTransport);
+    }
+
+    @BeforeClass
+    public static void beforeClass() {
+        inTransport.reset(in);
+        outTransport.reset(out);
+    }
+
+    @Before
+    public void before() {
+        in.clear();
+        out.clear();
+        invocations.set(0);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        in.release();
+        out.release();
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        final ThriftResponseCacheService service = newService();
+        final HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+
+        // The second call has a different sequence ID, which must be set to the cached reply.
+        for (int i = 0; i < 2; i++) {
+            assertThat(hello(service, client, "foo"), is("Hello, foo!"));
+        }
+
+        assertThat(invocations.get(), is(1));
+        assertThat(service.hitCount(), is(1L));
+        assertThat(service.missCount(), is(1L));
+        assertThat(service.size(), is(1L));
+    }
+
+    @Test
+    public void testCacheMiss() throws Exception {
+        final ThriftResponseCacheService service = newService();
+        final HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+
+        assertThat(hello(service, client, "foo"), is("Hello, foo!"));
+        assertThat(hello(service, client, "bar"), is("Hello, bar!"));
+
+        assertThat(invocations.get(), is(2));
+        assertThat(service.hitCount(), is(0L));
+        assertThat(service.missCount(), is(2L));
+
+        service.invalidateAll();
+        assertThat(hello(service, client, "foo"), is("Hello, foo!"));
+        assertThat(invocations.get(), is(3));
+    }
+
+    @Test
+    public void testExceptionNotCached() throws Exception {
+        final ThriftResponseCacheService service = newService();
+        final HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                hello(service, client, "");
+                fail(TApplicationException.class.getSimpleName() + " not raised.");
+            } catch (TApplicationException e) {
+                assertThat(e.getType(), is(TApplicationException.INTERNAL_ERROR));
+            }
+        }
+
+        assertThat(invocations.get(), is(2));
+        assertThat(service.size(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMethod() {
+        ThriftService.of((HelloService.Iface) name -> name, defaultSerializationFormat)
+                     .decorate(ThriftResponseCacheService.newDecorator(1024, Duration.ofMinutes(1), "bye"));
+    }
+
+    private ThriftResponseCacheService newService() {
+        return ThriftService.of((HelloService.Iface) name -> {
+            invocations.incrementAndGet();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("empty name");
+            }
+            return "Hello, " + name + '!';
+        }, defaultSerializationFormat).decorate(ThriftResponseCacheService.newDecorator(
+                1024 * 1024, Duration.ofMinutes(1), "hello")).as(ThriftResponseCacheService.class).get();
+    }
+
+    private static String hello(Service service, HelloService.Client client, String name) throws Exception {
+        client.send_hello(name);
+
+        final Promise<ByteBuf> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+        invoke(service, out, promise);
+        promise.sync();
+
+        in.clear();
+        in.writeBytes(promise.get());
+        promise.get().release();
+        out.clear();
+
+        return client.recv_hello();
+    }
+
+    private static void invoke(Service service, ByteBuf in, Promise<ByteBuf> promise) throws Exception {
+        final ServiceConfig cfg =
+                new ServerBuilder().serviceAt("/", service).build().config().serviceConfigs().get(0);
+
+        final ServiceCodec codec = service.codec();
+        final Promise<Object> objPromise = CH.eventLoop().newPromise();
+        final DecodeResult result = codec.decodeRequest(
+                cfg, CH, PROTO, HOST, PATH, PATH, in, null, objPromise);
+
+        switch (result.type()) {
+        case SUCCESS:
+            final ServiceInvocationContext ctx = result.invocationContext();
+            cfg.service().handler().invoke(ctx, GlobalEventExecutor.INSTANCE, objPromise);
+            objPromise.addListener((Future<Object> future) -> {
+                if (future.isSuccess()) {
+                    promise.setSuccess(codec.encodeResponse(ctx, future.getNow()));
+                } else {
+                    promise.setSuccess(codec.encodeFailureResponse(ctx, future.cause()));
+                }
+            });
+            break;
+        case FAILURE:
+            promise.setSuccess((ByteBuf) result.errorResponse());
+            break;
+        default:
+            promise.setFailure(new IllegalStateException("unexpected decode result type: " + result.type()));
+        }
+    }
+}
@@ -17,16 +17,28 @@
 package com.linecorp.armeria.server.thrift;
 
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nonnull;
@@ -45,15 +57,22 @@ import org.junit.runners.Parameterized.Parameters;
 import com.linecorp.armeria.common.SerializationFormat;
 import com.linecorp.armeria.common.ServiceInvocationContext;
 import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.thrift.TByteBufTransport;
 import com.linecorp.armeria.common.thrift.ThriftProtocolFactories;
 import com.linecorp.armeria.common.util.Exceptions;
 import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.Service;
 import com.linecorp.armeria.server.ServiceCodec;
 import com.linecorp.armeria.server.ServiceCodec.DecodeResult;
+import com.linecorp.armeria.server.ServiceCodec.DecodeResultType;
 import com.linecorp.armeria.server.ServiceConfig;
+import com.linecorp.armeria.server.logging.LoggingService;
+import com.linecorp.armeria.server.thrift.ThriftServiceInvocationHandler.EventLoopMethod;
 import com.linecorp.armeria.service.test.thrift.main.DevNullService;
 import com.linecorp.armeria.service.test.thrift.main.FileService;
 import com.linecorp.armeria.service.test.thrift.main.FileServiceException;
+import com.linecorp.armeria.service.test.thrift.main.FooService;
+import com.linecorp.armeria.service.test.thrift.main.FooStruct;
 import com.linecorp.armeria.service.test.thrift.main.HelloService;
 import com.linecorp.armeria.service.test.thrift.main.Name;
 import com.linecorp.armeria.service.test.thrift.main.NameService;
@@ -85,6 +104,10 @@ import io.netty.util.concurrent.Promise;
  *         <li>{@code Async} tests an invocation of asynchronous service. i.e. {@code *.AsyncIface}</li>
  *         <li>{@code Identity} tests if the results of synchronous and asynchronous operations are identical
  *             at protocol level.</li>
+ *         <li>{@code EventLoop} tests an invocation of synchronous service in the event loop.
+ *             See {@link ThriftService#invokeInEventLoop(Duration, String...)}.</li>
+ *         <li>{@code Offload} tests decoding and encoding a large message outside the event loop.
+ *             See {@link ThriftService#offloadLargeMessages(int, Executor)}.</li>
  *         <li>{@code MultipleInheritance} tests the case where a service implementation implements
  *             multiple interfaces.</li>
  *     </ul></li>
@@ -216,6 +239,283 @@ public class ThriftServiceTest {
         assertThat(promise.get(), is(promise2.get()));
     }
 
+    @Test
+    public void testEventLoop_HelloService_hello() throws Exception {
+        HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello(FOO);
+
+        final AtomicReference<Thread> invokerThread = new AtomicReference<>();
+        ThriftService service = ThriftService.of((HelloService.Iface) name -> {
+            invokerThread.set(Thread.currentThread());
+            return "Hello, " + name + '!';
+        }, defaultSerializationFormat).invokeInEventLoop(Duration.ofMinutes(1), "hello");
+
+        // Invoked in the current thread, which is the event loop of the embedded channel.
+        invoke(service, CH, PROTO, HOST, PATH, out, promise);
+        assertThat(promise.isDone(), is(true));
+        assertThat(invokerThread.get(), is(Thread.currentThread()));
+
+        in.writeBytes(promise.get());
+        assertThat(client.recv_hello(), is("Hello, foo!"));
+    }
+
+    @Test
+    public void testEventLoop_HelloService_hello_slow() throws Exception {
+        final AtomicLong ticker = new AtomicLong();
+        final AtomicReference<Thread> invokerThread = new AtomicReference<>();
+        ThriftService service = ThriftService.of((HelloService.Iface) name -> {
+            invokerThread.set(Thread.currentThread());
+            // Take longer than the limit.
+            ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+            return "Hello, " + name + '!';
+        }, defaultSerializationFormat).invokeInEventLoop(Duration.ofMillis(1), Collections.singleton("hello"),
+                                                         ticker::get);
+
+        // Invoked in the event loop until it takes too long several times in a row.
+        for (int i = 0; i < EventLoopMethod.MAX_SLOW_INVOCATIONS; i++) {
+            assertThat(hello(service, invokerThread), is(Thread.currentThread()));
+        }
+
+        // Invoked in the blocking task executor once it took too long.
+        assertThat(hello(service, invokerThread), is(not(Thread.currentThread())));
+
+        // Tried in the event loop again after a while, but only once as long as it is still slow.
+        ticker.addAndGet(EventLoopMethod.SLOW_PERIOD_NANOS);
+        assertThat(hello(service, invokerThread), is(Thread.currentThread()));
+        assertThat(hello(service, invokerThread), is(not(Thread.currentThread())));
+    }
+
+    @Test
+    public void testEventLoop_HelloService_hello_slowOnce() throws Exception {
+        final AtomicLong ticker = new AtomicLong();
+        final AtomicInteger slowInvocations = new AtomicInteger();
+        final AtomicReference<Thread> invokerThread = new AtomicReference<>();
+        ThriftService service = ThriftService.of((HelloService.Iface) name -> {
+            invokerThread.set(Thread.currentThread());
+            if (slowInvocations.getAndDecrement() > 0) {
+                ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            return "Hello, " + name + '!';
+        }, defaultSerializationFormat).invokeInEventLoop(Duration.ofMillis(1), Collections.singleton("hello"),
+                                                         ticker::get);
+
+        // An occasional slow invocation does not stop invoking the method in the event loop.
+        for (int i = 0; i < EventLoopMethod.MAX_SLOW_INVOCATIONS * 2; i++) {
+            slowInvocations.set(EventLoopMethod.MAX_SLOW_INVOCATIONS - 1);
+            for (int j = 0; j < EventLoopMethod.MAX_SLOW_INVOCATIONS; j++) {
+                assertThat(hello(service, invokerThread), is(Thread.currentThread()));
+            }
+        }
+    }
+
+    @Test
+    public void testOffload_HelloService_hello() throws Exception {
+        HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello(FOO);
+
+        final AtomicReference<Thread> invokerThread = new AtomicReference<>();
+        ThriftService service = ThriftService.of((HelloService.Iface) name -> {
+            invokerThread.set(Thread.currentThread());
+            return "Hello, " + name + '!';
+        }, defaultSerializationFormat).invokeInEventLoop(Duration.ofMinutes(1), "hello")
+                                      .offloadLargeMessages(1, GlobalEventExecutor.INSTANCE);
+
+        // Decoded and invoked in the blocking task executor even if the method is invoked in the event loop.
+        invoke(service, CH, PROTO, HOST, PATH, out, promise);
+        promise.sync();
+        assertThat(invokerThread.get(), is(not(Thread.currentThread())));
+
+        in.writeBytes(promise.get());
+        assertThat(client.recv_hello(), is("Hello, foo!"));
+    }
+
+    @Test
+    public void testOffload_HelloService_hello_logged() throws Exception {
+        HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello(FOO);
+
+        final Service service = ThriftService.of((HelloService.Iface) name -> "Hello, " + name + '!',
+                                                 defaultSerializationFormat)
+                                             .offloadLargeMessages(1, GlobalEventExecutor.INSTANCE)
+                                             .decorate(LoggingService::new);
+
+        final ServiceConfig cfg =
+                new ServerBuilder().serviceAt("/", service).build().config().serviceConfigs().get(0);
+        final ServiceCodec codec = service.codec();
+        final Promise<Object> objPromise = CH.eventLoop().newPromise();
+        final DecodeResult result = codec.decodeRequest(
+                cfg, CH, PROTO, HOST, PATH, PATH, out, null, objPromise);
+        final ThriftServiceInvocationContext ctx = (ThriftServiceInvocationContext) result.invocationContext();
+        service.handler().invoke(ctx, GlobalEventExecutor.INSTANCE, objPromise);
+        objPromise.sync();
+
+        // The decorators see the result even though the reply has been encoded outside the event loop.
+        final Object res = objPromise.getNow();
+        assertThat(res, is(instanceOf(HelloService.hello_result.class)));
+
+        final ByteBuf reply = codec.encodeResponse(ctx, res);
+        assertThat(ctx.takeEncodedReply(res), is(nullValue()));
+        in.writeBytes(reply);
+        reply.release();
+        assertThat(client.recv_hello(), is("Hello, foo!"));
+    }
+
+    @Test(timeout = 10000)
+    public void testOffload_HelloService_hello_loggedRequest() throws Exception {
+        HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello(FOO);
+
+        final AtomicReference<Thread> invokerThread = new AtomicReference<>();
+        final List<Runnable> tasks = new ArrayList<>();
+        final Service service = ThriftService.of((HelloService.AsyncIface) (name, resultHandler) -> {
+            invokerThread.set(Thread.currentThread());
+            resultHandler.onComplete("Hello, " + name + '!');
+        }, defaultSerializationFormat).offloadLargeMessages(1, tasks::add).decorate(LoggingService::new);
+
+        final ServiceConfig cfg =
+                new ServerBuilder().serviceAt("/", service).build().config().serviceConfigs().get(0);
+        final ServiceCodec codec = service.codec();
+        final Promise<Object> objPromise = CH.eventLoop().newPromise();
+        final DecodeResult result = codec.decodeRequest(
+                cfg, CH, PROTO, HOST, PATH, PATH, out, null, objPromise);
+        final ThriftServiceInvocationContext ctx = (ThriftServiceInvocationContext) result.invocationContext();
+
+        // Logging the request does not decode the invocation parameters in the event loop.
+        assertThat(ctx.logger().isInfoEnabled(), is(true));
+        assertThat(ctx.isArgsDecoded(), is(false));
+
+        service.handler().invoke(ctx, GlobalEventExecutor.INSTANCE, objPromise);
+        assertThat(ctx.isArgsDecoded(), is(false));
+        assertThat(tasks.size(), is(1));
+
+        // Decoded and invoked in the offload thread, which also encodes the reply if offloaded again.
+        final Thread offloadThread = new Thread(() -> {
+            for (int i = 0; i < tasks.size(); i++) {
+                tasks.get(i).run();
+            }
+        });
+        offloadThread.start();
+        offloadThread.join();
+        objPromise.sync();
+        assertThat(ctx.isArgsDecoded(), is(true));
+        assertThat(invokerThread.get(), is(offloadThread));
+
+        final ByteBuf reply = codec.encodeResponse(ctx, objPromise.getNow());
+        in.writeBytes(reply);
+        reply.release();
+        assertThat(client.recv_hello(), is("Hello, foo!"));
+    }
+
+    @Test
+    public void testOffload_HelloService_hello_async() throws Exception {
+        HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello(FOO);
+
+        final AtomicReference<Thread> invokerThread = new AtomicReference<>();
+        final AtomicInteger offloaded = new AtomicInteger();
+        ThriftService service = ThriftService.of((HelloService.AsyncIface) (name, resultHandler) -> {
+            invokerThread.set(Thread.currentThread());
+            resultHandler.onComplete("Hello, " + name + '!');
+        }, defaultSerializationFormat).offloadLargeMessages(1, task -> {
+            offloaded.incrementAndGet();
+            GlobalEventExecutor.INSTANCE.execute(task);
+        });
+
+        // Decoded and started in the specified executor rather than in the event loop.
+        invoke(service, CH, PROTO, HOST, PATH, out, promise);
+        promise.sync();
+        assertThat(invokerThread.get(), is(not(Thread.currentThread())));
+        assertThat(offloaded.get(), is(greaterThan(0)));
+
+        in.writeBytes(promise.get());
+        assertThat(client.recv_hello(), is("Hello, foo!"));
+    }
+
+    @Test
+    public void testOffload_HelloService_hello_timedOut() throws Exception {
+        HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello(FOO);
+        final ByteBuf req = out.copy();
+
+        final AtomicInteger invoked = new AtomicInteger();
+        final List<Runnable> tasks = new ArrayList<>();
+        ThriftService service = ThriftService.of((HelloService.AsyncIface) (name, resultHandler) -> {
+            invoked.incrementAndGet();
+            resultHandler.onComplete("Hello, " + name + '!');
+        }, defaultSerializationFormat).offloadLargeMessages(1, tasks::add);
+
+        final ServiceConfig cfg =
+                new ServerBuilder().serviceAt("/", service).build().config().serviceConfigs().get(0);
+        final Promise<Object> objPromise = CH.eventLoop().newPromise();
+        final DecodeResult result = service.codec().decodeRequest(
+                cfg, CH, PROTO, HOST, PATH, PATH, req, null, objPromise);
+        service.handler().invoke(result.invocationContext(), GlobalEventExecutor.INSTANCE, objPromise);
+
+        // The undecoded message holds a reference to the request until the invocation completes.
+        assertThat(req.refCnt(), is(2));
+        assertThat(tasks.size(), is(1));
+
+        // Time out before the offloaded task runs.
+        objPromise.tryFailure(new IllegalStateException("timed out"));
+        assertThat(req.refCnt(), is(1));
+
+        // The offloaded task neither decodes the released message nor invokes the service.
+        tasks.get(0).run();
+        assertThat(invoked.get(), is(0));
+        req.release();
+    }
+
+    @Test(timeout = 10000)
+    public void testSliceBinary_FooService_bar3_timedOut() throws Exception {
+        FooService.Client client = new FooService.Client.Factory().getClient(inProto, outProto);
+        client.send_bar3(1, new FooStruct().setBinaryVal(new byte[] { 1, 2, 3 }));
+        final ByteBuf req = out.copy();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final AtomicInteger refCntInHandler = new AtomicInteger();
+        final AtomicReference<byte[]> binaryInHandler = new AtomicReference<>();
+        final FooService.Iface foo = mock(FooService.Iface.class);
+        when(foo.bar3(anyInt(), any())).then(invocation -> {
+            started.countDown();
+            timedOut.await();
+            refCntInHandler.set(req.refCnt());
+            final FooStruct struct = (FooStruct) invocation.getArguments()[1];
+            binaryInHandler.set(struct.getBinaryVal());
+            return struct;
+        });
+
+        final ThriftService service = ThriftService.of(foo, defaultSerializationFormat).sliceBinary();
+        assertThat(service.isSliceBinary(), is(true));
+        final ServiceCodec codec = service.codec();
+        final ServiceConfig cfg =
+                new ServerBuilder().serviceAt("/", service).build().config().serviceConfigs().get(0);
+        final Promise<Object> objPromise = CH.eventLoop().newPromise();
+        final DecodeResult result = codec.decodeRequest(
+                cfg, CH, PROTO, HOST, PATH, PATH, req, null, objPromise);
+
+        // The binary field is a view of the request, which is retained by the invocation.
+        assertThat(req.refCnt(), is(2));
+
+        service.handler().invoke(result.invocationContext(), GlobalEventExecutor.INSTANCE, objPromise);
+        started.await();
+
+        // Time out while the service is still running, and release the request as the server does once the
+        // failure response is encoded.
+        objPromise.tryFailure(new IllegalStateException("timed out"));
+        codec.encodeFailureResponse(result.invocationContext(), objPromise.cause()).release();
+        req.release();
+        assertThat(req.refCnt(), is(1));
+
+        // The service can still read the binary field, and the request is released once it returns.
+        timedOut.countDown();
+        while (req.refCnt() != 0) {
+            Thread.sleep(10);
+        }
+        assertThat(refCntInHandler.get(), is(1));
+        assertThat(binaryInHandler.get(), is(new byte[] { 1, 2, 3 }));
+    }
+
     @Test
     public void testSync_OnewayHelloService_hello() throws Exception {
         final AtomicReference<String> actualName = new AtomicReference<>();
@@ -613,6 +913,109 @@ public class ThriftServiceTest {
         assertThat(client2.recv_sort(), is(Arrays.asList(NAME_A, NAME_B, NAME_C)));
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        final ByteBuf batch = Unpooled.buffer();
+
+        NameService.Client client1 = new NameService.Client.Factory().getClient(inProto, outProto);
+        client1.send_removeMiddle(new Name(BAZ, BAR, FOO));
+        batch.writeInt(out.readableBytes()).writeBytes(out);
+        out.clear();
+
+        NameSortService.Client client2 = new NameSortService.Client.Factory().getClient(inProto, outProto);
+        client2.send_sort(Arrays.asList(NAME_C, NAME_B, NAME_A));
+        batch.writeInt(out.readableBytes()).writeBytes(out);
+        out.clear();
+
+        // Not implemented by UberNameService.
+        HelloService.Client client3 = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client3.send_hello(FOO);
+        batch.writeInt(out.readableBytes()).writeBytes(out);
+        out.clear();
+
+        ThriftService service = ThriftService.of(new UberNameService(), defaultSerializationFormat).batched();
+        assertThat(service.isBatched(), is(true));
+
+        invoke(service, CH, PROTO, HOST, PATH, batch, promise);
+        promise.sync();
+
+        // The replies must be in the order of the calls.
+        final ByteBuf res = promise.get();
+        in.writeBytes(res, res.readInt());
+        assertThat(client1.recv_removeMiddle(), is(new Name(BAZ, null, FOO)));
+
+        in.clear();
+        in.writeBytes(res, res.readInt());
+        assertThat(client2.recv_sort(), is(Arrays.asList(NAME_A, NAME_B, NAME_C)));
+
+        in.clear();
+        in.writeBytes(res, res.readInt());
+        try {
+            client3.recv_hello();
+            fail();
+        } catch (TApplicationException e) {
+            assertThat(e.getType(), is(TApplicationException.UNKNOWN_METHOD));
+        }
+
+        assertThat(res.isReadable(), is(false));
+    }
+
+    @Test
+    public void testBatch_malformed() throws Exception {
+        HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello(FOO);
+        final ByteBuf call = out.copy();
+        out.clear();
+
+        // Every decoded call retains the request because its binary fields are views of the request.
+        final ThriftService service = ThriftService.of((HelloService.Iface) name -> "Hello, " + name + '!',
+                                                       defaultSerializationFormat).batched().sliceBinary();
+        final ServiceCodec codec = service.codec();
+        final ServiceConfig cfg =
+                new ServerBuilder().serviceAt("/", service).build().config().serviceConfigs().get(0);
+
+        // A length prefix longer than the remaining content, and a call whose message header is empty.
+        final ByteBuf truncated = Unpooled.buffer();
+        truncated.writeInt(call.readableBytes()).writeBytes(call.duplicate()).writeInt(Integer.MAX_VALUE);
+        final ByteBuf badHeader = Unpooled.buffer();
+        badHeader.writeInt(call.readableBytes()).writeBytes(call.duplicate()).writeInt(0);
+
+        for (ByteBuf req : Arrays.asList(truncated, badHeader)) {
+            final DecodeResult result = codec.decodeRequest(
+                    cfg, CH, PROTO, HOST, PATH, PATH, req, null, CH.eventLoop().newPromise());
+
+            // The whole batch is rejected, and the calls decoded before the malformed one are released.
+            assertThat(result.type(), is(DecodeResultType.FAILURE));
+            assertThat(req.refCnt(), is(1));
+            req.release();
+        }
+        call.release();
+    }
+
+    @Test
+    public void testBatch_currentContext() throws Exception {
+        final ByteBuf batch = Unpooled.buffer();
+        HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        client.send_hello(FOO);
+        batch.writeInt(out.readableBytes()).writeBytes(out);
+        out.clear();
+
+        // An asynchronous call in a batch must see its own context, as a synchronous call does.
+        final AtomicReference<String> currentMethod = new AtomicReference<>();
+        ThriftService service = ThriftService.of((HelloService.AsyncIface) (name, resultHandler) -> {
+            currentMethod.set(ServiceInvocationContext.mapCurrent(ServiceInvocationContext::method, null));
+            resultHandler.onComplete("Hello, " + name + '!');
+        }, defaultSerializationFormat).batched();
+
+        invoke(service, CH, PROTO, HOST, PATH, batch, promise);
+        promise.sync();
+        assertThat(currentMethod.get(), is("hello"));
+
+        final ByteBuf res = promise.get();
+        in.writeBytes(res, res.readInt());
+        assertThat(client.recv_hello(), is("Hello, foo!"));
+    }
+
     private static final class UberNameService implements NameService.Iface, NameSortService.AsyncIface {
         @Override
         public Name removeMiddle(Name name) {
@@ -627,6 +1030,25 @@ public class ThriftServiceTest {
         }
     }
 
+    /**
+     * Invokes {@code HelloService.hello()} and returns the thread which invoked the service implementation.
+     */
+    private Thread hello(ThriftService service, AtomicReference<Thread> invokerThread) throws Exception {
+        final HelloService.Client client = new HelloService.Client.Factory().getClient(inProto, outProto);
+        out.clear();
+        client.send_hello(FOO);
+
+        final Promise<ByteBuf> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+        invoke(service, CH, PROTO, HOST, PATH, out, promise);
+        final ByteBuf reply = promise.sync().getNow();
+        in.clear();
+        in.writeBytes(reply);
+        reply.release();
+
+        assertThat(client.recv_hello(), is("Hello, foo!"));
+        return invokerThread.get();
+    }
+
     private static void invoke(ThriftService service,
                                Channel ch, SessionProtocol protocol, String hostname, String path,
                                ByteBuf in, Promise<ByteBuf> promise) throws Exception {
@@ -46,6 +46,7 @@ import com.twitter.zipkin.gen.Annotation;
 import com.twitter.zipkin.gen.Span;
 
 import com.linecorp.armeria.common.ServiceInvocationContext;
+import com.linecorp.armeria.common.tracing.RateLimitingSampler;
 import com.linecorp.armeria.common.tracing.TracingTestBase;
 import com.linecorp.armeria.server.ServiceInvocationHandler;
 
@@ -92,7 +93,24 @@ public class TracingServiceInvocationHandlerTest extends TracingTestBase {
         assertThat(spanCollector.spans, hasSize(0));
     }
 
+    @Test
+    public void shouldDecideWithSamplerWhenCallerDidNotDecide() throws Exception {
+        StubCollector spanCollector = testServiceInvocation(TraceData.builder().build(),
+                                                            new RateLimitingSampler(1));
+        assertThat(spanCollector.spans, hasSize(1));
+        assertThat(spanCollector.spans.get(0).getName(), is(TEST_SPAN));
+
+        spanCollector = testServiceInvocation(TraceData.builder().build(), new RateLimitingSampler(0));
+        assertThat(spanCollector.spans, hasSize(0));
+    }
+
     private static StubCollector testServiceInvocation(boolean sampled) throws Exception {
+        return testServiceInvocation(
+                TraceData.builder().sample(sampled).spanId(SpanId.create(1, 2, 3L)).build(), null);
+    }
+
+    private static StubCollector testServiceInvocation(TraceData traceData,
+                                                       @Nullable Sampler sampler) throws Exception {
         StubCollector spanCollector = new StubCollector();
 
         Brave brave = new Brave.Builder(TEST_SERVICE)
@@ -102,10 +120,8 @@ public class TracingServiceInvocationHandlerTest extends TracingTestBase {
 
         ServiceInvocationHandler serviceInvocationHandler = mock(ServiceInvocationHandler.class);
 
-        TraceData traceData = TraceData.builder().sample(sampled).spanId(SpanId.create(1, 2, 3L)).build();
-
         TracingServiceInvocationHandlerImpl stub = new TracingServiceInvocationHandlerImpl(
-                serviceInvocationHandler, brave, traceData);
+                serviceInvocationHandler, brave, sampler, traceData);
 
         ServiceInvocationContext ctx = mock(ServiceInvocationContext.class);
         when(ctx.method()).thenReturn(TEST_SPAN);
@@ -127,8 +143,9 @@ public class TracingServiceInvocationHandlerTest extends TracingTestBase {
 
         TracingServiceInvocationHandlerImpl(ServiceInvocationHandler serviceInvocationHandler,
                                             Brave brave,
+                                            @Nullable Sampler sampler,
                                             TraceData traceData) {
-            super(serviceInvocationHandler, brave);
+            super(serviceInvocationHandler, brave, sampler);
             this.traceData = traceData;
         }
 